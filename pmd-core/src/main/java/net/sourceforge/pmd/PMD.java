@@ -39,6 +39,7 @@ import net.sourceforge.pmd.lang.Parser;
 import net.sourceforge.pmd.lang.ParserOptions;
 import net.sourceforge.pmd.processor.MonoThreadProcessor;
 import net.sourceforge.pmd.processor.MultiThreadProcessor;
+import net.sourceforge.pmd.processor.StreamingProcessor;
 import net.sourceforge.pmd.renderers.Renderer;
 import net.sourceforge.pmd.stat.Metric;
 import net.sourceforge.pmd.util.ClasspathClassLoader;
@@ -323,7 +324,9 @@ public class PMD {
          * be disabled if threadCount is not positive, e.g. using the
          * "-threads 0" command line option.
          */
-        if (configuration.getThreads() > 0) {
+        if (configuration.getThreads() > 0 && configuration.isStreaming()) {
+            new StreamingProcessor(configuration).processFiles(silentFactoy, files, ctx, renderers);
+        } else if (configuration.getThreads() > 0) {
             new MultiThreadProcessor(configuration).processFiles(silentFactoy, files, ctx, renderers);
         } else {
             new MonoThreadProcessor(configuration).processFiles(silentFactoy, files, ctx, renderers);
@@ -11,11 +11,14 @@ import java.util.List;
 import java.util.Properties;
 
 import net.sourceforge.pmd.cache.AnalysisCache;
-import net.sourceforge.pmd.cache.FileAnalysisCache;
+import net.sourceforge.pmd.cache.AnalysisCacheFormat;
+import net.sourceforge.pmd.cache.ContentAddressedAnalysisCache;
 import net.sourceforge.pmd.cache.NoopAnalysisCache;
 import net.sourceforge.pmd.lang.LanguageRegistry;
 import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.LanguageVersionDiscoverer;
+import net.sourceforge.pmd.processor.ExecutorFactory;
+import net.sourceforge.pmd.processor.StandardExecutorFactory;
 import net.sourceforge.pmd.renderers.Renderer;
 import net.sourceforge.pmd.renderers.RendererFactory;
 import net.sourceforge.pmd.util.ClasspathClassLoader;
@@ -31,6 +34,8 @@ import net.sourceforge.pmd.util.IOUtil;
  * defaults to {@link PMD#SUPPRESS_MARKER}. {@link #getSuppressMarker()}</li>
  * <li>The number of threads to create when invoking on multiple files, defaults
  * one thread per available processor. {@link #getThreads()}</li>
+ * <li>The factory for the executor, that runs the analysis when using multiple
+ * threads, defaults to a fixed thread pool. {@link #getExecutorFactory()}</li>
  * <li>A ClassLoader to use when loading classes during Rule processing (e.g.
  * during type resolution), defaults to ClassLoader of the Configuration class.
  * {@link #getClassLoader()}</li>
@@ -77,12 +82,18 @@ import net.sourceforge.pmd.util.IOUtil;
  * as randomizing the order of file processing. {@link #isStressTest()}</li>
  * <li>An indicator of whether PMD should log benchmarking information.
  * {@link #isBenchmark()}</li>
+ * <li>An indicator of whether PMD should render the report of each file as
+ * soon as it has been analyzed, using bounded queues between the analysis
+ * and the rendering. {@link #isStreaming()}</li>
+ * <li>An indicator of whether PMD should start the analysis of the most
+ * expensive files first. {@link #isLargestFilesFirst()}</li>
  * </ul>
  */
 public class PMDConfiguration extends AbstractConfiguration {
     // General behavior options
     private String suppressMarker = PMD.SUPPRESS_MARKER;
     private int threads = Runtime.getRuntime().availableProcessors();
+    private ExecutorFactory executorFactory = StandardExecutorFactory.FIXED_THREAD_POOL;
     private ClassLoader classLoader = getClass().getClassLoader();
     private LanguageVersionDiscoverer languageVersionDiscoverer = new LanguageVersionDiscoverer();
 
@@ -104,6 +115,10 @@ public class PMDConfiguration extends AbstractConfiguration {
 
     private boolean stressTest;
     private boolean benchmark;
+    private boolean streaming;
+    private int analysisQueueSize = 100;
+    private int reportQueueSize = 100;
+    private boolean largestFilesFirst;
     private AnalysisCache analysisCache = new NoopAnalysisCache();
     private boolean ignoreIncrementalAnalysis;
 
@@ -146,6 +161,30 @@ public class PMDConfiguration extends AbstractConfiguration {
         this.threads = threads;
     }
 
+    /**
+     * Get the factory for the executor, that runs the analysis of the files
+     * when using more than one thread.
+     *
+     * @return The executor factory.
+     */
+    public ExecutorFactory getExecutorFactory() {
+        return executorFactory;
+    }
+
+    /**
+     * Set the factory for the executor, that runs the analysis of the files
+     * when using more than one thread. Independently of the executor, at most
+     * {@link #getThreads()} files are analyzed concurrently. Setting a value
+     * of <code>null</code> will cause a fixed thread pool to be used.
+     *
+     * @param executorFactory
+     *            The executor factory.
+     * @see StandardExecutorFactory
+     */
+    public void setExecutorFactory(ExecutorFactory executorFactory) {
+        this.executorFactory = executorFactory == null ? StandardExecutorFactory.FIXED_THREAD_POOL : executorFactory;
+    }
+
     /**
      * Get the ClassLoader being used by PMD when processing Rules.
      *
@@ -517,6 +556,111 @@ public class PMDConfiguration extends AbstractConfiguration {
         this.benchmark = benchmark;
     }
 
+    /**
+     * Return the streaming indicator. If this value is <code>true</code> and
+     * more than one thread is used, then PMD renders the report of each file
+     * as soon as the file has been analyzed, instead of submitting all the
+     * files first. The number of files and reports kept in memory is then
+     * bounded by {@link #getAnalysisQueueSize()} and
+     * {@link #getReportQueueSize()}.
+     *
+     * @return <code>true</code> if streaming is enabled, <code>false</code>
+     *         otherwise.
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Set the streaming indicator.
+     *
+     * @param streaming
+     *            The streaming indicator to set.
+     * @see #isStreaming()
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Get the number of files, that may wait for a free thread when
+     * streaming. Defaults to 100.
+     *
+     * @return The analysis queue size.
+     * @see #isStreaming()
+     */
+    public int getAnalysisQueueSize() {
+        return analysisQueueSize;
+    }
+
+    /**
+     * Set the number of files, that may wait for a free thread when
+     * streaming.
+     *
+     * @param analysisQueueSize
+     *            The analysis queue size, must not be negative.
+     * @see #isStreaming()
+     */
+    public void setAnalysisQueueSize(int analysisQueueSize) {
+        if (analysisQueueSize < 0) {
+            throw new IllegalArgumentException("Analysis queue size must not be negative: " + analysisQueueSize);
+        }
+        this.analysisQueueSize = analysisQueueSize;
+    }
+
+    /**
+     * Get the number of analyzed files, that may wait to be rendered when
+     * streaming. Defaults to 100.
+     *
+     * @return The report queue size.
+     * @see #isStreaming()
+     */
+    public int getReportQueueSize() {
+        return reportQueueSize;
+    }
+
+    /**
+     * Set the number of analyzed files, that may wait to be rendered when
+     * streaming.
+     *
+     * @param reportQueueSize
+     *            The report queue size, must be positive.
+     * @see #isStreaming()
+     */
+    public void setReportQueueSize(int reportQueueSize) {
+        if (reportQueueSize < 1) {
+            throw new IllegalArgumentException("Report queue size must be positive: " + reportQueueSize);
+        }
+        this.reportQueueSize = reportQueueSize;
+    }
+
+    /**
+     * Return whether the files are analyzed in the order of their estimated
+     * cost, the most expensive first, so that a few large files at the end
+     * don't leave a single thread busy at the end of the analysis. The cost
+     * of a file is estimated from the duration of its last analysis, if the
+     * analysis cache knows it, or from its size otherwise. The reports of the
+     * files are still rendered in the usual order. Defaults to
+     * <code>false</code>.
+     *
+     * @return <code>true</code> if the largest files are analyzed first
+     */
+    public boolean isLargestFilesFirst() {
+        return largestFilesFirst;
+    }
+
+    /**
+     * Set whether the files are analyzed in the order of their estimated
+     * cost.
+     *
+     * @param largestFilesFirst
+     *            <code>true</code> to analyze the largest files first
+     * @see #isLargestFilesFirst()
+     */
+    public void setLargestFilesFirst(boolean largestFilesFirst) {
+        this.largestFilesFirst = largestFilesFirst;
+    }
+
     /**
      * Whether PMD should exit with status 4 (the default behavior, true) if
      * violations are found or just with 0 (to not break the build, e.g.).
@@ -596,9 +740,25 @@ public class PMDConfiguration extends AbstractConfiguration {
      * @param cacheLocation The location of the analysis cache to be used.
      */
     public void setAnalysisCacheLocation(final String cacheLocation) {
-        setAnalysisCache(cacheLocation == null
-                                 ? new NoopAnalysisCache()
-                                 : new FileAnalysisCache(new File(cacheLocation)));
+        setAnalysisCacheLocation(cacheLocation, AnalysisCacheFormat.FILE);
+    }
+
+    /**
+     * Sets the location of the analysis cache to be used, and the format in
+     * which the cache is stored.
+     *
+     * @param cacheLocation The location of the analysis cache to be used.
+     * @param cacheFormat The format of the analysis cache.
+     */
+    public void setAnalysisCacheLocation(final String cacheLocation, final AnalysisCacheFormat cacheFormat) {
+        final AnalysisCache cache = cacheLocation == null
+                ? new NoopAnalysisCache()
+                : cacheFormat.createCache(new File(cacheLocation));
+        if (cache instanceof ContentAddressedAnalysisCache) {
+            // the language versions are part of the keys of the results
+            ((ContentAddressedAnalysisCache) cache).setLanguageVersionDiscoverer(languageVersionDiscoverer);
+        }
+        setAnalysisCache(cache);
     }
 
 
@@ -5,6 +5,7 @@
 package net.sourceforge.pmd;
 
 import java.io.File;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -35,6 +36,7 @@ public class RuleContext {
     private LanguageVersion languageVersion;
     private final ConcurrentMap<String, Object> attributes;
     private boolean ignoreExceptions = true;
+    private Set<Rule> rulesToApply;
 
     /**
      * Default constructor.
@@ -236,4 +238,31 @@ public class RuleContext {
     public boolean isIgnoreExceptions() {
         return ignoreExceptions;
     }
+
+    /**
+     * Restricts the rules applied to the current source file. This is used by
+     * the analysis cache, when only some rules changed since the file was
+     * last analyzed.
+     *
+     * @param rulesToApply
+     *            the rules to apply, <code>null</code> to apply all rules
+     *            (default).
+     */
+    public void setRulesToApply(Set<Rule> rulesToApply) {
+        this.rulesToApply = rulesToApply;
+    }
+
+    /**
+     * Checks whether the given rule should be applied to the current source
+     * file.
+     *
+     * @param rule
+     *            The rule.
+     * @return <code>true</code> if the rule should be applied,
+     *         <code>false</code> otherwise.
+     * @see #setRulesToApply(Set)
+     */
+    public boolean shouldApply(Rule rule) {
+        return rulesToApply == null || rulesToApply.contains(rule);
+    }
 }
@@ -25,7 +25,9 @@ import net.sourceforge.pmd.cache.ChecksumAware;
 import net.sourceforge.pmd.lang.Language;
 import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.rule.AbstractDelegateRule;
 import net.sourceforge.pmd.lang.rule.RuleReference;
+import net.sourceforge.pmd.lang.rule.ThreadSafeRule;
 import net.sourceforge.pmd.util.CollectionUtil;
 import net.sourceforge.pmd.util.filter.Filter;
 import net.sourceforge.pmd.util.filter.Filters;
@@ -80,6 +82,19 @@ public class RuleSet implements ChecksumAware {
     }
     
     public RuleSet(final RuleSet rs) {
+        this(rs, false);
+    }
+
+    /**
+     * Copy constructor. Creates a copy of the rules of the given rule set,
+     * except for the rules tagged with {@link ThreadSafeRule} if
+     * {@code shareThreadSafeRules} is set. These are shared with the given
+     * rule set.
+     *
+     * @param rs the original RuleSet
+     * @param shareThreadSafeRules whether to share thread-safe rules
+     */
+    /* package */ RuleSet(final RuleSet rs, final boolean shareThreadSafeRules) {
         checksum = rs.checksum;
         fileName = rs.fileName;
         name = rs.name;
@@ -87,7 +102,7 @@ public class RuleSet implements ChecksumAware {
         
         rules = new ArrayList<>(rs.rules.size());
         for (final Rule rule : rs.rules) {
-            rules.add(rule.deepCopy());
+            rules.add(shareThreadSafeRules && isThreadSafe(rule) ? rule : rule.deepCopy());
         }
         
         excludePatterns = rs.excludePatterns; // we can share immutable lists of immutable elements
@@ -95,6 +110,14 @@ public class RuleSet implements ChecksumAware {
         filter = rs.filter; // filters are immutable, can be shared
     }
 
+    private static boolean isThreadSafe(Rule rule) {
+        Rule actualRule = rule;
+        while (actualRule instanceof AbstractDelegateRule) {
+            actualRule = ((AbstractDelegateRule) actualRule).getRule();
+        }
+        return actualRule instanceof ThreadSafeRule;
+    }
+
     /* package */ static class RuleSetBuilder {
         public String description;
         public String name;
@@ -496,7 +519,7 @@ public class RuleSet implements ChecksumAware {
     public void apply(List<? extends Node> acuList, RuleContext ctx) {
         try (TimedOperation to = TimeTracker.startOperation(TimedOperationCategory.RULE)) {
             for (Rule rule : rules) {
-                if (!rule.isRuleChain() && applies(rule, ctx.getLanguageVersion())) {
+                if (!rule.isRuleChain() && ctx.shouldApply(rule) && applies(rule, ctx.getLanguageVersion())) {
 
                     try (TimedOperation rto = TimeTracker.startOperation(TimedOperationCategory.RULE, rule.getName())) {
                         rule.apply(acuList, ctx);
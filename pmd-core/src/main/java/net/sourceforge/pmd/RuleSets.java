@@ -14,6 +14,7 @@ import java.util.Set;
 
 import net.sourceforge.pmd.lang.Language;
 import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.rule.ThreadSafeRule;
 
 /**
  * Grouping of Rules per Language in a RuleSet.
@@ -43,8 +44,21 @@ public class RuleSets {
      * @param ruleSets The RuleSets to copy.
      */
     public RuleSets(final RuleSets ruleSets) {
+        this(ruleSets, false);
+    }
+
+    /**
+     * Copy constructor. Deep copies RuleSets, but shares the rules tagged
+     * with {@link ThreadSafeRule} with the given RuleSets, if
+     * {@code shareThreadSafeRules} is set. Use this to create the RuleSets
+     * for another thread.
+     *
+     * @param ruleSets The RuleSets to copy.
+     * @param shareThreadSafeRules Whether to share thread-safe rules.
+     */
+    public RuleSets(final RuleSets ruleSets, final boolean shareThreadSafeRules) {
         for (final RuleSet rs : ruleSets.ruleSets) {
-            addRuleSet(new RuleSet(rs));
+            addRuleSet(new RuleSet(rs, shareThreadSafeRules));
         }
     }
 
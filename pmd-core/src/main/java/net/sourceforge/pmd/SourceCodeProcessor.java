@@ -10,10 +10,15 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import net.sourceforge.pmd.benchmark.TimeTracker;
 import net.sourceforge.pmd.benchmark.TimedOperation;
 import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.cache.AnalysisCache;
+import net.sourceforge.pmd.cache.RuleAwareAnalysisCache;
+import net.sourceforge.pmd.cache.TimedAnalysisCache;
 import net.sourceforge.pmd.lang.Language;
 import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.LanguageVersionHandler;
@@ -21,6 +26,7 @@ import net.sourceforge.pmd.lang.Parser;
 import net.sourceforge.pmd.lang.VisitorStarter;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.ast.ParseException;
+import net.sourceforge.pmd.lang.ast.xpath.AttributeValueCache;
 import net.sourceforge.pmd.lang.xpath.Initializer;
 
 public class SourceCodeProcessor {
@@ -83,29 +89,50 @@ public class SourceCodeProcessor {
 
         // Coarse check to see if any RuleSet applies to file, will need to do a finer RuleSet specific check later
         if (ruleSets.applies(ctx.getSourceCodeFile())) {
+            final AnalysisCache analysisCache = configuration.getAnalysisCache();
             // Is the cache up to date?
-            if (configuration.getAnalysisCache().isUpToDate(ctx.getSourceCodeFile())) {
-                for (final RuleViolation rv : configuration.getAnalysisCache().getCachedViolations(ctx.getSourceCodeFile())) {
-                    ctx.getReport().addRuleViolation(rv);
-                }
+            if (analysisCache.isUpToDate(ctx.getSourceCodeFile())) {
+                addCachedViolations(analysisCache, ctx);
                 return;
             }
 
+            // Maybe only some rules changed since the file was analyzed
+            final Set<Rule> outdatedRules = analysisCache instanceof RuleAwareAnalysisCache
+                    ? ((RuleAwareAnalysisCache) analysisCache).getOutdatedRules(ctx.getSourceCodeFile(), ruleSets)
+                    : null;
+
             try {
                 ruleSets.start(ctx);
+                ctx.setRulesToApply(outdatedRules);
+                final long start = System.nanoTime();
                 processSource(sourceCode, ruleSets, ctx);
+                if (analysisCache instanceof TimedAnalysisCache) {
+                    ((TimedAnalysisCache) analysisCache).analysisFinished(ctx.getSourceCodeFile(),
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+                if (outdatedRules != null) {
+                    // Replay the violations of the other rules
+                    addCachedViolations(analysisCache, ctx);
+                }
             } catch (ParseException pe) {
-                configuration.getAnalysisCache().analysisFailed(ctx.getSourceCodeFile());
+                analysisCache.analysisFailed(ctx.getSourceCodeFile());
                 throw new PMDException("Error while parsing " + ctx.getSourceCodeFilename(), pe);
             } catch (Exception e) {
-                configuration.getAnalysisCache().analysisFailed(ctx.getSourceCodeFile());
+                analysisCache.analysisFailed(ctx.getSourceCodeFile());
                 throw new PMDException("Error while processing " + ctx.getSourceCodeFilename(), e);
             } finally {
+                ctx.setRulesToApply(null);
                 ruleSets.end(ctx);
             }
         }
     }
 
+    private void addCachedViolations(AnalysisCache analysisCache, RuleContext ctx) {
+        for (final RuleViolation rv : analysisCache.getCachedViolations(ctx.getSourceCodeFile())) {
+            ctx.getReport().addRuleViolation(rv);
+        }
+    }
+
     private Node parse(RuleContext ctx, Reader sourceCode, Parser parser) {
         try (TimedOperation to = TimeTracker.startOperation(TimedOperationCategory.PARSER)) {
             Node rootNode = parser.parse(ctx.getSourceCodeFilename(), sourceCode);
@@ -181,7 +208,17 @@ public class SourceCodeProcessor {
         usesMultifile(rootNode, languageVersionHandler, ruleSets, language);
 
         List<Node> acus = Collections.singletonList(rootNode);
-        ruleSets.apply(acus, ctx, language);
+        final boolean cacheAttributes = AttributeValueCache.isEnabled();
+        if (cacheAttributes) {
+            AttributeValueCache.start();
+        }
+        try {
+            ruleSets.apply(acus, ctx, language);
+        } finally {
+            if (cacheAttributes) {
+                AttributeValueCache.end();
+            }
+        }
     }
 
     private void determineLanguage(RuleContext ctx) {
@@ -16,6 +16,7 @@ public enum TimedOperationCategory {
     RULECHAIN_RULE,
     COLLECT_FILES,
     LOAD_RULES,
+    ANALYSIS_CACHE,
     PARSER,
     QUALIFIED_NAME_RESOLUTION,
     SYMBOL_TABLE,
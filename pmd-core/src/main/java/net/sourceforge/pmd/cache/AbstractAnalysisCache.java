@@ -4,8 +4,9 @@
 
 package net.sourceforge.pmd.cache;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
@@ -18,28 +19,33 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.Adler32;
-import java.util.zip.CheckedInputStream;
-
-import org.apache.commons.io.IOUtils;
 
 import net.sourceforge.pmd.PMDVersion;
 import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleSet;
 import net.sourceforge.pmd.RuleSets;
 import net.sourceforge.pmd.RuleViolation;
+import net.sourceforge.pmd.benchmark.TimeTracker;
+import net.sourceforge.pmd.benchmark.TimedOperation;
+import net.sourceforge.pmd.benchmark.TimedOperationCategory;
 import net.sourceforge.pmd.stat.Metric;
 
 /**
  * Abstract implementation of the analysis cache. Handles all operations, except for persistence.
  */
-public abstract class AbstractAnalysisCache implements AnalysisCache {
+public abstract class AbstractAnalysisCache implements RuleAwareAnalysisCache, TimedAnalysisCache {
 
     protected static final Logger LOG = Logger.getLogger(AbstractAnalysisCache.class.getName());
+    private static final int MAX_LOGGED_ENTRIES = 10;
     protected final String pmdVersion;
     protected final ConcurrentMap<String, AnalysisResult> fileResultsCache;
     protected final ConcurrentMap<String, AnalysisResult> updatedResultsCache;
@@ -47,6 +53,20 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
     protected long auxClassPathChecksum;
     protected long executionClassPathChecksum;
     protected final CachedRuleMapper ruleMapper = new CachedRuleMapper();
+    /* package */ final ClassPathFingerprints classPathFingerprints = new ClassPathFingerprints();
+    /* package */ final TypeChecksums typeChecksums = new TypeChecksums();
+    /* package */ final RuleChecksums ruleChecksums = new RuleChecksums();
+    private ClassLoader typeDependenciesClassLoader;
+    /** The keys of the rules, that were added or modified since the cached results were computed. */
+    private Set<String> outdatedRules = Collections.emptySet();
+    /** Whether the cached violations of modified or removed rules need to be filtered out. */
+    private boolean rulesChanged;
+    /**
+     * Whether some cached results were invalidated, while others are kept.
+     * Results of files, that are not analyzed again, must then be dropped
+     * when persisting, as they may not be valid anymore.
+     */
+    /* package */ boolean partiallyInvalidated;
     
     /**
      * Creates a new empty cache
@@ -67,12 +87,26 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
         final AnalysisResult analysisResult = fileResultsCache.get(sourceFile.getPath());
         
         // is this a known file? has it changed?
-        final boolean result = analysisResult != null
+        final boolean fileUnchanged = analysisResult != null
                 && analysisResult.getFileChecksum() == updatedResult.getFileChecksum();
+        final boolean result = fileUnchanged && outdatedRules.isEmpty();
+
+        if (fileUnchanged) {
+            // The dependencies are the same as the last time, for the rules that didn't change
+            updatedResult.addTypeDependencies(analysisResult.getTypeDependencies());
+            updatedResult.setAnalysisDuration(analysisResult.getAnalysisDuration());
+        }
+        if (result) {
+            TypeDependencyRecorder.stopRecording();
+        } else {
+            TypeDependencyRecorder.startRecording(updatedResult);
+        }
 
         if (LOG.isLoggable(Level.FINE)) {
             if (result) {
                 LOG.fine("Incremental Analysis cache HIT");
+            } else if (fileUnchanged) {
+                LOG.fine("Incremental Analysis cache PARTIAL HIT - rules changed");
             } else {
                 LOG.fine("Incremental Analysis cache MISS - "
                         + (analysisResult != null ? "file changed" : "no previous result found"));
@@ -91,61 +125,225 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
             return Collections.emptyList();
         }
 
-        return analysisResult.getViolations();
+        if (!rulesChanged) {
+            return analysisResult.getViolations();
+        }
+
+        // Drop the violations of rules, that were removed, or that are applied again
+        final List<RuleViolation> violations = new ArrayList<>();
+        for (final RuleViolation rv : analysisResult.getViolations()) {
+            final String ruleKey = rv instanceof CachedRuleViolation
+                    ? ((CachedRuleViolation) rv).getRuleKey() : RuleChecksums.getRuleKey(rv.getRule());
+            if (ruleChecksums.contains(ruleKey) && !outdatedRules.contains(ruleKey)) {
+                violations.add(rv);
+            }
+        }
+        return violations;
+    }
+
+    @Override
+    public Set<Rule> getOutdatedRules(final File sourceFile, final RuleSets ruleSets) {
+        final AnalysisResult analysisResult = fileResultsCache.get(sourceFile.getPath());
+        final AnalysisResult updatedResult = updatedResultsCache.get(sourceFile.getPath());
+        if (analysisResult == null || updatedResult == null
+                || analysisResult.getFileChecksum() != updatedResult.getFileChecksum()) {
+            // The file changed, everything needs to be applied
+            return null;
+        }
+
+        // Rules are looked up on every node, compare them by identity
+        final Set<Rule> rules = Collections.newSetFromMap(new IdentityHashMap<Rule, Boolean>());
+        for (final RuleSet ruleSet : ruleSets.getAllRuleSets()) {
+            for (final Rule rule : ruleSet.getRules()) {
+                if (outdatedRules.contains(RuleChecksums.getRuleKey(rule))) {
+                    rules.add(rule);
+                }
+            }
+        }
+        return rules;
+    }
+
+    @Override
+    public long getAnalysisDuration(final File sourceFile) {
+        final AnalysisResult analysisResult = fileResultsCache.get(sourceFile.getPath());
+        return analysisResult == null ? -1 : analysisResult.getAnalysisDuration();
+    }
+
+    @Override
+    public void analysisFinished(final File sourceFile, final long duration) {
+        // The types looked up after the analysis don't belong to the file
+        TypeDependencyRecorder.stopRecording();
+        final AnalysisResult updatedResult = updatedResultsCache.get(sourceFile.getPath());
+        if (updatedResult != null) {
+            updatedResult.setAnalysisDuration(duration);
+        }
     }
 
     @Override
     public void analysisFailed(final File sourceFile) {
         updatedResultsCache.remove(sourceFile.getPath());
+        TypeDependencyRecorder.stopRecording();
     }
 
     @Override
     public void checkValidity(final RuleSets ruleSets, final ClassLoader auxclassPathClassLoader) {
-        boolean cacheIsValid = true;
-
-        if (ruleSets.getChecksum() != rulesetChecksum) {
-            LOG.info("Analysis cache invalidated, rulesets changed.");
-            cacheIsValid = false;
-        }
-
-        final long currentAuxClassPathChecksum;
-        if (auxclassPathClassLoader instanceof URLClassLoader) {
-            final URLClassLoader urlClassLoader = (URLClassLoader) auxclassPathClassLoader;
-            currentAuxClassPathChecksum = computeClassPathHash(urlClassLoader.getURLs());
-            
-            if (cacheIsValid && currentAuxClassPathChecksum != auxClassPathChecksum) {
-                // Do we even care?
-                for (final Rule r : ruleSets.getAllRules()) {
-                    if (r.isDfa() || r.isTypeResolution()) {
-                        LOG.info("Analysis cache invalidated, auxclasspath changed.");
-                        cacheIsValid = false;
-                        break;
+        try (TimedOperation to = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE)) {
+            boolean cacheIsValid = true;
+
+            // Changed rules only invalidate their own violations
+            final RuleChecksums currentRuleChecksums = new RuleChecksums(ruleSets);
+            final Set<String> changedRules = currentRuleChecksums.getChangedRules(ruleChecksums);
+            final Set<String> removedRules = currentRuleChecksums.getRemovedRules(ruleChecksums);
+
+            final long currentAuxClassPathChecksum;
+            String changedAuxClassPathEntries = null;
+            if (auxclassPathClassLoader instanceof URLClassLoader) {
+                final URLClassLoader urlClassLoader = (URLClassLoader) auxclassPathClassLoader;
+                final int changedBefore = classPathFingerprints.getChangedEntries().size();
+                currentAuxClassPathChecksum = classPathFingerprints.computeClassPathHash(urlClassLoader.getURLs());
+                if (currentAuxClassPathChecksum != auxClassPathChecksum) {
+                    changedAuxClassPathEntries = changedEntriesSince(changedBefore);
+                }
+                typeDependenciesClassLoader = urlClassLoader;
+            } else {
+                currentAuxClassPathChecksum = 0;
+                typeDependenciesClassLoader = null;
+            }
+
+            final int changedBefore = classPathFingerprints.getChangedEntries().size();
+            final long currentExecutionClassPathChecksum = classPathFingerprints
+                    .computeClassPathHash(getClassPathEntries());
+            if (currentExecutionClassPathChecksum != executionClassPathChecksum) {
+                LOG.info("Analysis cache invalidated, execution classpath changed: "
+                        + changedEntriesSince(changedBefore));
+                cacheIsValid = false;
+            }
+
+            if (!cacheIsValid) {
+                // Clear the cache
+                fileResultsCache.clear();
+                typeChecksums.clear();
+                outdatedRules = Collections.emptySet();
+                rulesChanged = false;
+            } else {
+                if (changedAuxClassPathEntries != null) {
+                    invalidateTypeDependents(ruleSets, changedAuxClassPathEntries);
+                }
+
+                outdatedRules = changedRules;
+                rulesChanged = !changedRules.isEmpty() || !removedRules.isEmpty();
+                if (rulesChanged && !fileResultsCache.isEmpty()) {
+                    LOG.info("Analysis cache partially invalidated, rulesets changed: " + changedRules.size()
+                            + " rules added or modified, " + removedRules.size() + " rules removed.");
+                    partiallyInvalidated = true;
+                }
+            }
+
+            // Update the local checksums
+            rulesetChecksum = ruleSets.getChecksum();
+            auxClassPathChecksum = currentAuxClassPathChecksum;
+            executionClassPathChecksum = currentExecutionClassPathChecksum;
+            ruleChecksums.replaceWith(currentRuleChecksums);
+            ruleMapper.initialize(ruleSets);
+        }
+    }
+
+    /**
+     * Invalidates the results depending on types, that changed on the
+     * auxclasspath. Results without any recorded dependency might come from
+     * a language, that doesn't record them, so they are invalidated as well.
+     */
+    private void invalidateTypeDependents(final RuleSets ruleSets, final String changedEntries) {
+        final Set<String> changedTypes = typeDependenciesClassLoader == null
+                ? Collections.<String>emptySet() : typeChecksums.update(typeDependenciesClassLoader);
+
+        // Do we even care?
+        for (final Rule r : ruleSets.getAllRules()) {
+            if (r.isDfa() || r.isTypeResolution()) {
+                int invalidated = 0;
+                for (final Iterator<AnalysisResult> it = fileResultsCache.values().iterator(); it.hasNext();) {
+                    final Set<String> dependencies = it.next().getTypeDependencies();
+                    if (dependencies.isEmpty() || !Collections.disjoint(dependencies, changedTypes)) {
+                        it.remove();
+                        invalidated++;
                     }
                 }
+                partiallyInvalidated |= invalidated > 0;
+
+                LOG.info("Analysis cache invalidated for " + invalidated + " files, auxclasspath changed: "
+                        + changedEntries + ", " + changedTypes.size() + " types changed.");
+                return;
             }
-        } else {
-            currentAuxClassPathChecksum = 0;
         }
-        
-        final long currentExecutionClassPathChecksum = computeClassPathHash(getClassPathEntries());
-        if (currentExecutionClassPathChecksum != executionClassPathChecksum) {
-            LOG.info("Analysis cache invalidated, execution classpath changed.");
-            cacheIsValid = false;
+    }
+
+    private String changedEntriesSince(final int index) {
+        final List<String> changedEntries = classPathFingerprints.getChangedEntries();
+        final int count = changedEntries.size() - index;
+        if (count == 0) {
+            return "entries removed or reordered";
+        }
+        if (count > MAX_LOGGED_ENTRIES) {
+            return changedEntries.subList(index, index + MAX_LOGGED_ENTRIES)
+                    + " and " + (count - MAX_LOGGED_ENTRIES) + " more entries";
+        }
+        return changedEntries.subList(index, changedEntries.size()).toString();
+    }
+
+    /**
+     * Adds the dependencies of the updated results, that are not known yet,
+     * to the type checksums. Must be called before storing the checksums.
+     *
+     * @param removeUnused Whether to remove the types, that no updated result
+     *                     depends on, which changes the indexes of the types.
+     *                     Only possible if all the results are stored again.
+     * @return Whether any type was removed
+     */
+    /* package */ boolean updateTypeChecksums(final boolean removeUnused) {
+        if (typeDependenciesClassLoader == null) {
+            return false;
+        }
+        final Set<String> usedTypes = new HashSet<>();
+        for (final AnalysisResult result : updatedResultsCache.values()) {
+            usedTypes.addAll(result.getTypeDependencies());
+        }
+        // The types of files, that were deleted or don't depend on them anymore
+        final boolean removed = removeUnused && typeChecksums.retainAll(usedTypes);
+        for (final String type : usedTypes) {
+            typeChecksums.getIndex(type, typeDependenciesClassLoader);
+        }
+        return removed;
+    }
+
+    /* package */ void storeTypeDependencies(final DataOutputStream outputStream,
+            final AnalysisResult result) throws IOException {
+        if (typeDependenciesClassLoader == null) {
+            // Not tracked, the checksums can't be computed
+            outputStream.writeInt(0);
+            return;
         }
 
-        if (!cacheIsValid) {
-            // Clear the cache
-            fileResultsCache.clear();
+        final Set<String> dependencies = result.getTypeDependencies();
+        outputStream.writeInt(dependencies.size());
+        for (final String type : dependencies) {
+            outputStream.writeInt(typeChecksums.getIndex(type, typeDependenciesClassLoader));
         }
+    }
 
-        // Update the local checksums
-        rulesetChecksum = ruleSets.getChecksum();
-        auxClassPathChecksum = currentAuxClassPathChecksum;
-        executionClassPathChecksum = currentExecutionClassPathChecksum;
-        ruleMapper.initialize(ruleSets);
+    /* package */ Set<String> loadTypeDependencies(final DataInputStream inputStream) throws IOException {
+        final int count = inputStream.readInt();
+        final Set<String> dependencies = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            final int index = inputStream.readInt();
+            if (index < 0 || index >= typeChecksums.size()) {
+                throw new IOException("Unknown type index " + index);
+            }
+            dependencies.add(typeChecksums.getName(index));
+        }
+        return dependencies;
     }
 
-    private URL[] getClassPathEntries() {
+    /* package */ static URL[] getClassPathEntries() {
         final String classpath = System.getProperty("java.class.path");
         final String[] classpathEntries = classpath.split(File.pathSeparator);
         final List<URL> entries = new ArrayList<>();
@@ -177,25 +375,6 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
         return entries.toArray(new URL[0]);
     }
 
-    private long computeClassPathHash(final URL... classpathEntry) {
-        final Adler32 adler32 = new Adler32();
-        for (final URL url : classpathEntry) {
-            try (CheckedInputStream inputStream = new CheckedInputStream(url.openStream(), adler32)) {
-                // Just read it, the CheckedInputStream will update the checksum on it's own
-                while (IOUtils.skip(inputStream, Long.MAX_VALUE) == Long.MAX_VALUE) {
-                    // just loop
-                }
-            } catch (final FileNotFoundException ignored) {
-                LOG.warning("Auxclasspath entry " + url.toString() + " doesn't exist, ignoring it");
-            } catch (final IOException e) {
-                // Can this even happen?
-                LOG.log(Level.SEVERE, "Incremental analysis can't check auxclasspath contents", e);
-                throw new RuntimeException(e);
-            }
-        }
-        return adler32.getValue();
-    }
-
     @Override
     public void ruleViolationAdded(final RuleViolation ruleViolation) {
         final AnalysisResult analysisResult = updatedResultsCache.get(ruleViolation.getFilename());
@@ -0,0 +1,57 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import java.io.File;
+
+/**
+ * The available formats to store the analysis cache.
+ *
+ * @see net.sourceforge.pmd.PMDConfiguration#setAnalysisCacheLocation(String, AnalysisCacheFormat)
+ */
+public enum AnalysisCacheFormat {
+
+    /**
+     * A single file, that is read completely when loading the cache, and
+     * written completely when persisting it. This is the default.
+     */
+    FILE {
+        @Override
+        public AnalysisCache createCache(File location) {
+            return new FileAnalysisCache(location);
+        }
+    },
+
+    /**
+     * A single indexed file, that is read lazily and only appended to when
+     * persisting the cache. Faster for large code bases with few changes.
+     */
+    INDEXED {
+        @Override
+        public AnalysisCache createCache(File location) {
+            return new IndexedFileAnalysisCache(location);
+        }
+    },
+
+    /**
+     * A directory with one file per analyzed file content, that may be
+     * shared by several concurrently running PMD processes, whose files are
+     * checked out at different paths.
+     */
+    CONTENT_ADDRESSED {
+        @Override
+        public AnalysisCache createCache(File location) {
+            return new ContentAddressedAnalysisCache(location);
+        }
+    };
+
+    /**
+     * Creates a new cache in this format.
+     *
+     * @param location The location of the cache
+     * @return The cache
+     */
+    public abstract AnalysisCache createCache(File location);
+}
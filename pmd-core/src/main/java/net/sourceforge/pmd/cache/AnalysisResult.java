@@ -9,7 +9,10 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.zip.Adler32;
 import java.util.zip.CheckedInputStream;
 
@@ -19,12 +22,15 @@ import net.sourceforge.pmd.RuleViolation;
 
 /**
  * The result of a single file analysis.
- * Includes a checksum of the file and the complete list of violations detected.
+ * Includes a checksum of the file, the complete list of violations detected,
+ * and the types looked up on the auxclasspath during the analysis.
  */
 public class AnalysisResult {
 
     private final long fileChecksum;
     private final List<RuleViolation> violations;
+    private final Set<String> typeDependencies = new HashSet<>();
+    private long analysisDuration = -1;
 
     public AnalysisResult(final long fileChecksum, final List<RuleViolation> violations) {
         this.fileChecksum = fileChecksum;
@@ -67,4 +73,37 @@ public class AnalysisResult {
     public void addViolation(final RuleViolation ruleViolation) {
         this.violations.add(ruleViolation);
     }
+
+    /**
+     * Returns the binary names of the types, that were looked up on the
+     * auxclasspath while analyzing the file.
+     *
+     * @return The types the result depends on
+     * @see TypeDependencyRecorder
+     */
+    public Set<String> getTypeDependencies() {
+        return typeDependencies;
+    }
+
+    public void addTypeDependencies(final Collection<String> binaryNames) {
+        this.typeDependencies.addAll(binaryNames);
+    }
+
+    public void addTypeDependency(final String binaryName) {
+        this.typeDependencies.add(binaryName);
+    }
+
+    /**
+     * Returns how long the analysis of the file took, in milliseconds.
+     *
+     * @return The duration, or -1 if unknown
+     * @see TimedAnalysisCache
+     */
+    public long getAnalysisDuration() {
+        return analysisDuration;
+    }
+
+    public void setAnalysisDuration(final long analysisDuration) {
+        this.analysisDuration = analysisDuration;
+    }
 }
@@ -9,6 +9,7 @@ import java.util.Map;
 
 import net.sourceforge.pmd.Rule;
 import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.lang.rule.RuleReference;
 
 /**
  * A mapper from rule class names to rule instances for cached rules.
@@ -16,6 +17,7 @@ import net.sourceforge.pmd.RuleSets;
 public class CachedRuleMapper {
 
     private final Map<String, Rule> ruleByClassName = new HashMap<>();
+    private final Map<String, Rule> ruleByKey = new HashMap<>();
 
     /**
      * Finds a rule instance for the given rule class name
@@ -26,6 +28,22 @@ public class CachedRuleMapper {
         return ruleByClassName.get(className);
     }
 
+    /**
+     * Finds a rule instance for the given rule key. Unlike the class name, the
+     * key tells apart several rules implemented by the same class.
+     * @param ruleKey The key of the rule that generated the cache entry
+     * @return The requested rule
+     */
+    /* package */ Rule getRuleForKey(final String ruleKey) {
+        final Rule rule = ruleByKey.get(ruleKey);
+        if (rule == null) {
+            // the renderers can't handle violations without rule, fall back to the rule class
+            final int separator = ruleKey.indexOf('/');
+            return getRuleForClass(separator < 0 ? ruleKey : ruleKey.substring(0, separator));
+        }
+        return rule;
+    }
+
     /**
      * Initialize the mapper with the given rulesets.
      * @param rs The rulesets from which to retrieve rules.
@@ -33,6 +51,12 @@ public class CachedRuleMapper {
     public void initialize(final RuleSets rs) {
         for (final Rule r : rs.getAllRules()) {
             ruleByClassName.put(r.getRuleClass(), r);
+            // the violations are reported by the referenced rule
+            Rule reportingRule = r;
+            while (reportingRule instanceof RuleReference) {
+                reportingRule = ((RuleReference) reportingRule).getRule();
+            }
+            ruleByKey.put(RuleChecksums.getRuleKey(r), reportingRule);
         }
     }
 }
@@ -20,7 +20,7 @@ public final class CachedRuleViolation implements RuleViolation {
 
     private final String description;
     private final String fileName;
-    private final String ruleClassName;
+    private final String ruleKey;
     private final int beginLine;
     private final int beginColumn;
     private final int endLine;
@@ -31,13 +31,13 @@ public final class CachedRuleViolation implements RuleViolation {
     private final String variableName;
 
     private CachedRuleViolation(final CachedRuleMapper mapper, final String description,
-            final String fileName, final String ruleClassName, final int beginLine,
+            final String fileName, final String ruleKey, final int beginLine,
             final int beginColumn, final int endLine, final int endColumn, final String packageName,
             final String className, final String methodName, final String variableName) {
         this.mapper = mapper;
         this.description = description;
         this.fileName = fileName;
-        this.ruleClassName = ruleClassName;
+        this.ruleKey = ruleKey;
         this.beginLine = beginLine;
         this.beginColumn = beginColumn;
         this.endLine = endLine;
@@ -51,7 +51,11 @@ public final class CachedRuleViolation implements RuleViolation {
     @Override
     public Rule getRule() {
         // The mapper may be initialized after cache is loaded, so use it lazily
-        return mapper.getRuleForClass(ruleClassName);
+        return mapper.getRuleForKey(ruleKey);
+    }
+
+    /* package */ String getRuleKey() {
+        return ruleKey;
     }
 
     @Override
@@ -121,7 +125,7 @@ public final class CachedRuleViolation implements RuleViolation {
     /* package */ static CachedRuleViolation loadFromStream(final DataInputStream stream,
             final String fileName, final CachedRuleMapper mapper) throws IOException {
         final String description = stream.readUTF();
-        final String ruleClassName = stream.readUTF();
+        final String ruleKey = stream.readUTF();
         final int beginLine = stream.readInt();
         final int beginColumn = stream.readInt();
         final int endLine = stream.readInt();
@@ -131,7 +135,7 @@ public final class CachedRuleViolation implements RuleViolation {
         final String methodName = stream.readUTF();
         final String variableName = stream.readUTF();
 
-        return new CachedRuleViolation(mapper, description, fileName, ruleClassName, beginLine, beginColumn,
+        return new CachedRuleViolation(mapper, description, fileName, ruleKey, beginLine, beginColumn,
                 endLine, endColumn, packageName, className, methodName, variableName);
     }
 
@@ -146,7 +150,7 @@ public final class CachedRuleViolation implements RuleViolation {
     /* package */ static void storeToStream(final DataOutputStream stream,
             final RuleViolation violation) throws IOException {
         stream.writeUTF(getValueOrEmpty(violation.getDescription()));
-        stream.writeUTF(getValueOrEmpty(violation.getRule().getRuleClass()));
+        stream.writeUTF(RuleChecksums.getRuleKey(violation.getRule()));
         stream.writeInt(violation.getBeginLine());
         stream.writeInt(violation.getBeginColumn());
         stream.writeInt(violation.getEndLine());
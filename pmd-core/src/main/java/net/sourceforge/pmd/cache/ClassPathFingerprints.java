@@ -0,0 +1,206 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Adler32;
+import java.util.zip.CheckedInputStream;
+
+import org.apache.commons.io.IOUtils;
+
+import net.sourceforge.pmd.benchmark.TimeTracker;
+import net.sourceforge.pmd.benchmark.TimedOperation;
+import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+
+/**
+ * Fingerprints of classpath entries, used to compute the classpath checksums
+ * of the analysis cache. A fingerprint consists of the size and the
+ * modification time of an entry, and the checksum of its contents. The
+ * contents are only read again, if the size or the modification time
+ * changed since the fingerprints were loaded.
+ *
+ * <p>The entries, that had to be read again, are reported to the timing
+ * report in the {@link TimedOperationCategory#ANALYSIS_CACHE} category.</p>
+ */
+final class ClassPathFingerprints {
+
+    private static final Logger LOG = Logger.getLogger(ClassPathFingerprints.class.getName());
+
+    /**
+     * Entries modified this recently are not trusted to be unchanged when
+     * their modification time is equal, as a later write might not change
+     * the modification time on file systems with a coarse resolution.
+     */
+    private static final long RACY_MODIFICATION_MILLIS = 2000;
+    private static final long UNTRUSTED_MODIFICATION_TIME = Long.MIN_VALUE;
+
+    private final Map<String, Fingerprint> previousFingerprints = new HashMap<>();
+    private final Map<String, Fingerprint> currentFingerprints = new LinkedHashMap<>();
+    private final List<String> changedEntries = new ArrayList<>();
+
+    /**
+     * Loads the fingerprints stored with {@link #store(DataOutputStream)}.
+     *
+     * @param stream The stream from which to load the fingerprints
+     * @throws IOException If the fingerprints can't be read
+     */
+    void load(final DataInputStream stream) throws IOException {
+        final int count = stream.readInt();
+        for (int i = 0; i < count; i++) {
+            final String entry = stream.readUTF();
+            previousFingerprints.put(entry, new Fingerprint(stream.readLong(), stream.readLong(), stream.readLong()));
+        }
+    }
+
+    /**
+     * Stores the fingerprints of the entries, whose checksums have been
+     * computed since loading. If none have been computed, the loaded
+     * fingerprints are stored again.
+     *
+     * @param stream The stream on which to store the fingerprints
+     * @throws IOException If the fingerprints can't be written
+     */
+    void store(final DataOutputStream stream) throws IOException {
+        final Map<String, Fingerprint> fingerprints = currentFingerprints.isEmpty()
+                ? previousFingerprints : currentFingerprints;
+        stream.writeInt(fingerprints.size());
+        for (final Map.Entry<String, Fingerprint> entry : fingerprints.entrySet()) {
+            stream.writeUTF(entry.getKey());
+            stream.writeLong(entry.getValue().size);
+            stream.writeLong(entry.getValue().lastModified);
+            stream.writeLong(entry.getValue().checksum);
+        }
+    }
+
+    /**
+     * Computes the checksum of the contents of the given classpath entries.
+     * Non existing entries are ignored.
+     *
+     * @param classpathEntries The entries
+     * @return The combined checksum of the entries
+     */
+    long computeClassPathHash(final URL... classpathEntries) {
+        final Adler32 adler32 = new Adler32();
+        final ByteBuffer checksumBytes = ByteBuffer.allocate(8);
+        for (final URL url : classpathEntries) {
+            final Fingerprint fingerprint = getFingerprint(url);
+            if (fingerprint != null) {
+                checksumBytes.clear();
+                checksumBytes.putLong(fingerprint.checksum);
+                adler32.update(checksumBytes.array());
+            }
+        }
+        return adler32.getValue();
+    }
+
+    /**
+     * Returns whether any fingerprint differs from the loaded ones. Entries,
+     * that were loaded, but have not been used since, count as changed.
+     *
+     * @return True if the fingerprints need to be stored again
+     */
+    boolean isChanged() {
+        return !changedEntries.isEmpty()
+                || !currentFingerprints.isEmpty() && !currentFingerprints.keySet().equals(previousFingerprints.keySet());
+    }
+
+    /**
+     * Returns the entries, whose contents had to be read, because they were
+     * new or changed.
+     *
+     * @return The changed entries, in the order they have been computed
+     */
+    List<String> getChangedEntries() {
+        return Collections.unmodifiableList(changedEntries);
+    }
+
+    private Fingerprint getFingerprint(final URL url) {
+        final String key = url.toString();
+        final Fingerprint known = currentFingerprints.get(key);
+        if (known != null) {
+            return known;
+        }
+
+        final File file = toFile(url);
+        final long size = file == null ? -1 : file.length();
+        final long lastModified = file == null ? UNTRUSTED_MODIFICATION_TIME : file.lastModified();
+
+        final Fingerprint previous = previousFingerprints.get(key);
+        if (previous != null && previous.lastModified != UNTRUSTED_MODIFICATION_TIME
+                && previous.size == size && previous.lastModified == lastModified) {
+            currentFingerprints.put(key, previous);
+            return previous;
+        }
+
+        final String label = (previous == null ? "New classpath entry " : "Changed classpath entry ") + key;
+        try (TimedOperation to = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, label)) {
+            final long checksum = computeChecksum(url);
+            final boolean racy = System.currentTimeMillis() - lastModified < RACY_MODIFICATION_MILLIS;
+            final Fingerprint fingerprint = new Fingerprint(size, racy ? UNTRUSTED_MODIFICATION_TIME : lastModified,
+                    checksum);
+            currentFingerprints.put(key, fingerprint);
+            changedEntries.add(key);
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.fine(label + " hashed");
+            }
+            return fingerprint;
+        } catch (final FileNotFoundException ignored) {
+            LOG.warning("Auxclasspath entry " + url.toString() + " doesn't exist, ignoring it");
+            return null;
+        } catch (final IOException e) {
+            // Can this even happen?
+            LOG.log(Level.SEVERE, "Incremental analysis can't check auxclasspath contents", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static File toFile(final URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(url.toURI());
+        } catch (final URISyntaxException | IllegalArgumentException ignored) {
+            return null;
+        }
+    }
+
+    private static long computeChecksum(final URL url) throws IOException {
+        try (CheckedInputStream inputStream = new CheckedInputStream(url.openStream(), new Adler32())) {
+            // Just read it, the CheckedInputStream will update the checksum on it's own
+            while (IOUtils.skip(inputStream, Long.MAX_VALUE) == Long.MAX_VALUE) {
+                // just loop
+            }
+            return inputStream.getChecksum().getValue();
+        }
+    }
+
+    private static final class Fingerprint {
+        private final long size;
+        private final long lastModified;
+        private final long checksum;
+
+        Fingerprint(final long size, final long lastModified, final long checksum) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+        }
+    }
+}
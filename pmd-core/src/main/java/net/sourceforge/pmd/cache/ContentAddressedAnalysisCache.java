@@ -0,0 +1,330 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+
+import net.sourceforge.pmd.PMDVersion;
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.RuleViolation;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.LanguageVersionDiscoverer;
+import net.sourceforge.pmd.stat.Metric;
+
+/**
+ * An analysis cache, that stores the results by the content of the analyzed
+ * files instead of their paths. The results can be reused for the same file
+ * checked out at a different path, and the cache directory can be shared by
+ * several PMD processes running concurrently, e.g. by parallel CI jobs.
+ *
+ * <p>Each result is stored in its own file below the cache directory, named
+ * after the SHA-256 hash of the file contents, together with the inputs of
+ * the analysis that depend on the path of the file: its name, its language
+ * version and the rulesets, whose include and exclude patterns match it. The
+ * results are grouped in a directory per configuration, which is identified
+ * by the PMD version, the ruleset checksum and the classpath checksums.
+ * Changing the configuration therefore doesn't remove any results, the
+ * results of other configurations remain available to the processes using
+ * them.</p>
+ *
+ * <p>The directories of the configurations, that haven't been used for
+ * {@link #MAX_UNUSED_DAYS} days, are deleted when persisting. The results of
+ * a configuration in use are never deleted, even if no file has these
+ * contents anymore, so a directory shared by long lived configurations
+ * should be cleaned from time to time, e.g. by deleting it.</p>
+ *
+ * <p>Results are never modified once written: they are written to a
+ * temporary file and atomically renamed, so that concurrent processes never
+ * see partially written results. If two processes analyze the same file,
+ * both write the same result, and the last rename wins.</p>
+ */
+public class ContentAddressedAnalysisCache implements AnalysisCache {
+
+    private static final Logger LOG = Logger.getLogger(ContentAddressedAnalysisCache.class.getName());
+    private static final String ENTRY_EXTENSION = ".result";
+
+    /** The number of days, after which the results of an unused configuration are deleted. */
+    public static final int MAX_UNUSED_DAYS = 30;
+
+    private final File cacheDirectory;
+    private final CachedRuleMapper ruleMapper = new CachedRuleMapper();
+    private LanguageVersionDiscoverer languageVersionDiscoverer = new LanguageVersionDiscoverer();
+
+    /** Entry keys of the files analyzed, by file name. */
+    private final ConcurrentMap<String, String> entryKeys = new ConcurrentHashMap<>();
+    /** Cached violations of the files, that are up to date. */
+    private final ConcurrentMap<String, List<RuleViolation>> cachedViolations = new ConcurrentHashMap<>();
+    /** Violations of the files, that have been analyzed. */
+    private final ConcurrentMap<String, List<RuleViolation>> updatedViolations = new ConcurrentHashMap<>();
+
+    private File configurationDirectory;
+    private RuleSet[] ruleSets = new RuleSet[0];
+
+    /**
+     * Creates a new cache stored in the given directory.
+     * @param cacheDirectory The directory, which may be shared with other PMD processes
+     */
+    public ContentAddressedAnalysisCache(final File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Sets the discoverer of the language versions of the files, which
+     * defaults to the default versions of the languages.
+     * @param languageVersionDiscoverer The discoverer used by the analysis
+     */
+    public void setLanguageVersionDiscoverer(final LanguageVersionDiscoverer languageVersionDiscoverer) {
+        this.languageVersionDiscoverer = languageVersionDiscoverer;
+    }
+
+    @Override
+    public void checkValidity(final RuleSets ruleSets, final ClassLoader auxclassPathClassLoader) {
+        // Results are shared by processes with different classpath locations, fingerprints can't be reused
+        final ClassPathFingerprints fingerprints = new ClassPathFingerprints();
+        long auxClassPathChecksum = 0;
+        if (auxclassPathClassLoader instanceof URLClassLoader) {
+            // Only relevant, if some rule uses the auxclasspath
+            for (final Rule r : ruleSets.getAllRules()) {
+                if (r.isDfa() || r.isTypeResolution()) {
+                    auxClassPathChecksum = fingerprints
+                            .computeClassPathHash(((URLClassLoader) auxclassPathClassLoader).getURLs());
+                    break;
+                }
+            }
+        }
+        final long executionClassPathChecksum = fingerprints
+                .computeClassPathHash(AbstractAnalysisCache.getClassPathEntries());
+
+        final String configuration = PMDVersion.VERSION + '-' + ruleSets.getChecksum() + '-' + auxClassPathChecksum
+                + '-' + executionClassPathChecksum;
+        final MessageDigest digest = newDigest();
+        digest.update(configuration.getBytes(StandardCharsets.UTF_8));
+        configurationDirectory = new File(cacheDirectory, toHex(digest.digest()).substring(0, 16));
+
+        this.ruleSets = ruleSets.getAllRuleSets();
+        ruleMapper.initialize(ruleSets);
+    }
+
+    @Override
+    public boolean isUpToDate(final File sourceFile) {
+        final String fileName = sourceFile.getPath();
+        updatedViolations.put(fileName, Collections.synchronizedList(new ArrayList<RuleViolation>()));
+
+        final String contentHash = computeContentHash(sourceFile);
+        if (contentHash == null || configurationDirectory == null) {
+            return false;
+        }
+        final String entryKey = computeEntryKey(sourceFile, contentHash);
+        entryKeys.put(fileName, entryKey);
+
+        final File entry = entryFile(entryKey);
+        if (!entry.isFile()) {
+            LOG.fine("Incremental Analysis cache MISS - no previous result found");
+            return false;
+        }
+
+        try (DataInputStream inputStream = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(entry.toPath())))) {
+            final int countViolations = inputStream.readInt();
+            final List<RuleViolation> violations = new ArrayList<>(countViolations);
+            for (int i = 0; i < countViolations; i++) {
+                violations.add(CachedRuleViolation.loadFromStream(inputStream, fileName, ruleMapper));
+            }
+            cachedViolations.put(fileName, violations);
+        } catch (final EOFException e) {
+            LOG.warning("Cache entry " + entry.getPath() + " is malformed, will not be used for current analysis");
+            return false;
+        } catch (final IOException e) {
+            LOG.log(Level.WARNING, "Could not load analysis cache entry " + entry.getPath(), e);
+            return false;
+        }
+
+        LOG.fine("Incremental Analysis cache HIT");
+        return true;
+    }
+
+    @Override
+    public List<RuleViolation> getCachedViolations(final File sourceFile) {
+        final List<RuleViolation> violations = cachedViolations.get(sourceFile.getPath());
+        return violations == null ? Collections.<RuleViolation>emptyList() : violations;
+    }
+
+    @Override
+    public void analysisFailed(final File sourceFile) {
+        updatedViolations.remove(sourceFile.getPath());
+    }
+
+    @Override
+    public void ruleViolationAdded(final RuleViolation ruleViolation) {
+        final List<RuleViolation> violations = updatedViolations.get(ruleViolation.getFilename());
+        if (violations != null) {
+            violations.add(ruleViolation);
+        }
+    }
+
+    @Override
+    public void metricAdded(final Metric metric) {
+        // Not interested in metrics
+    }
+
+    @Override
+    public void persist() {
+        if (configurationDirectory == null) {
+            return;
+        }
+
+        // mark the configuration as used, before deleting the unused ones
+        configurationDirectory.mkdirs();
+        configurationDirectory.setLastModified(System.currentTimeMillis());
+        deleteUnusedConfigurations();
+
+        int written = 0;
+        for (final Map.Entry<String, List<RuleViolation>> entry : updatedViolations.entrySet()) {
+            final String entryKey = entryKeys.get(entry.getKey());
+            if (entryKey == null || cachedViolations.containsKey(entry.getKey())) {
+                // unreadable, or already cached
+                continue;
+            }
+
+            try {
+                writeEntry(entryFile(entryKey), entry.getValue());
+                written++;
+            } catch (final IOException e) {
+                LOG.severe("Could not persist analysis cache entry for " + entry.getKey() + ". " + e.getMessage());
+            }
+        }
+
+        LOG.info("Analysis cache updated, " + written + " new results");
+    }
+
+    private void deleteUnusedConfigurations() {
+        final File[] configurations = cacheDirectory.listFiles();
+        if (configurations == null) {
+            return;
+        }
+        final long unusedSince = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(MAX_UNUSED_DAYS);
+        for (final File configuration : configurations) {
+            if (configuration.isDirectory() && !configuration.equals(configurationDirectory)
+                    && configuration.lastModified() < unusedSince) {
+                LOG.fine("Deleting the analysis cache results of unused configuration " + configuration.getName());
+                FileUtils.deleteQuietly(configuration);
+            }
+        }
+    }
+
+    private File entryFile(final String entryKey) {
+        return new File(new File(configurationDirectory, entryKey.substring(0, 2)), entryKey + ENTRY_EXTENSION);
+    }
+
+    /**
+     * Computes the key of the result, from the content hash and the inputs
+     * of the analysis depending on the path of the file. The file name is
+     * part of the key, as some rules compare it with the contents, but not
+     * the directory, so that the result is shared across checkouts.
+     */
+    private String computeEntryKey(final File sourceFile, final String contentHash) {
+        final StringBuilder key = new StringBuilder(contentHash).append('/').append(sourceFile.getName()).append('/');
+        final LanguageVersion languageVersion = languageVersionDiscoverer.getDefaultLanguageVersionForFile(sourceFile);
+        if (languageVersion != null) {
+            key.append(languageVersion.getTerseName());
+        }
+        key.append('/');
+        for (final RuleSet ruleSet : ruleSets) {
+            key.append(ruleSet.applies(sourceFile) ? '1' : '0');
+        }
+        final MessageDigest digest = newDigest();
+        digest.update(key.toString().getBytes(StandardCharsets.UTF_8));
+        return toHex(digest.digest());
+    }
+
+    private void writeEntry(final File entry, final List<RuleViolation> violations) throws IOException {
+        final Path directory = entry.getParentFile().toPath();
+        Files.createDirectories(directory);
+
+        final Path tempFile = Files.createTempFile(directory, entry.getName(), ".tmp");
+        try {
+            try (DataOutputStream outputStream = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                synchronized (violations) {
+                    outputStream.writeInt(violations.size());
+                    for (final RuleViolation rv : violations) {
+                        CachedRuleViolation.storeToStream(outputStream, rv);
+                    }
+                }
+            }
+
+            try {
+                Files.move(tempFile, entry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static String computeContentHash(final File sourceFile) {
+        final MessageDigest digest = newDigest();
+        try (InputStream stream = new DigestInputStream(
+                new BufferedInputStream(Files.newInputStream(sourceFile.toPath())), digest)) {
+            final byte[] buffer = new byte[8192];
+            while (stream.read(buffer) != -1) {
+                // the DigestInputStream updates the digest on it's own
+            }
+        } catch (final IOException ignored) {
+            // We don't really care, if it's unreadable
+            // the analysis will fail and report the error on it's own
+            return null;
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final char[] digits = "0123456789abcdef".toCharArray();
+        final StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes) {
+            sb.append(digits[(b >> 4) & 0xF]).append(digits[b & 0xF]);
+        }
+        return sb.toString();
+    }
+}
@@ -16,6 +16,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import net.sourceforge.pmd.PMDVersion;
 import net.sourceforge.pmd.RuleViolation;
@@ -25,6 +26,13 @@ import net.sourceforge.pmd.RuleViolation;
  */
 public class FileAnalysisCache extends AbstractAnalysisCache {
 
+    /**
+     * The version of the layout of the file, written after the PMD version,
+     * as snapshots of the same PMD version may write different layouts.
+     * Increment it on every change of the layout.
+     */
+    static final int FORMAT_VERSION = 4;
+
     private final File cacheFile;
     
     /**
@@ -50,18 +58,23 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
             ) {
                 final String cacheVersion = inputStream.readUTF();
                 
-                if (PMDVersion.VERSION.equals(cacheVersion)) {
+                if (PMDVersion.VERSION.equals(cacheVersion) && inputStream.readInt() == FORMAT_VERSION) {
                     // Cache seems valid, load the rest
                     
                     // Get checksums
                     rulesetChecksum = inputStream.readLong();
                     auxClassPathChecksum = inputStream.readLong();
                     executionClassPathChecksum = inputStream.readLong();
+                    classPathFingerprints.load(inputStream);
+                    typeChecksums.load(inputStream);
+                    ruleChecksums.load(inputStream);
                     
                     // Cached results
                     while (inputStream.available() > 0) {
                         final String fileName = inputStream.readUTF();
                         final long checksum = inputStream.readLong();
+                        final long duration = inputStream.readLong();
+                        final Set<String> typeDependencies = loadTypeDependencies(inputStream);
                         
                         final int countViolations = inputStream.readInt();
                         final List<RuleViolation> violations = new ArrayList<>(countViolations);
@@ -69,12 +82,15 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
                             violations.add(CachedRuleViolation.loadFromStream(inputStream, fileName, ruleMapper));
                         }
 
-                        fileResultsCache.put(fileName, new AnalysisResult(checksum, violations));
+                        final AnalysisResult result = new AnalysisResult(checksum, violations);
+                        result.addTypeDependencies(typeDependencies);
+                        result.setAnalysisDuration(duration);
+                        fileResultsCache.put(fileName, result);
                     }
 
                     LOG.info("Analysis cache loaded");
                 } else {
-                    LOG.info("Analysis cache invalidated, PMD version changed.");
+                    LOG.info("Analysis cache invalidated, PMD version or cache format changed.");
                 }
             } catch (final EOFException e) {
                 LOG.warning("Cache file " + cacheFile.getPath() + " is malformed, will not be used for current analysis");
@@ -94,21 +110,30 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
             }
         }
 
+        // All the results are written again
+        updateTypeChecksums(true);
+
         try (
             DataOutputStream outputStream = new DataOutputStream(
                 new BufferedOutputStream(new FileOutputStream(cacheFile)))
         ) {
             outputStream.writeUTF(pmdVersion);
+            outputStream.writeInt(FORMAT_VERSION);
             
             outputStream.writeLong(rulesetChecksum);
             outputStream.writeLong(auxClassPathChecksum);
             outputStream.writeLong(executionClassPathChecksum);
+            classPathFingerprints.store(outputStream);
+            typeChecksums.store(outputStream);
+            ruleChecksums.store(outputStream);
             
             for (final Map.Entry<String, AnalysisResult> resultEntry : updatedResultsCache.entrySet()) {
                 final List<RuleViolation> violations = resultEntry.getValue().getViolations();
 
                 outputStream.writeUTF(resultEntry.getKey());
                 outputStream.writeLong(resultEntry.getValue().getFileChecksum());
+                outputStream.writeLong(resultEntry.getValue().getAnalysisDuration());
+                storeTypeDependencies(outputStream, resultEntry.getValue());
                 
                 outputStream.writeInt(violations.size());
                 for (final RuleViolation rv : violations) {
@@ -0,0 +1,525 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.sourceforge.pmd.PMDVersion;
+import net.sourceforge.pmd.RuleViolation;
+
+/**
+ * An analysis cache backed by an indexed, append-only file.
+ *
+ * <p>The file consists of a header with the checksums and the offset of the
+ * trailer, followed by one record per analyzed file, and the trailer. The
+ * trailer holds the classpath fingerprints, the checksums of the types the
+ * files depend on, the checksums of the rules, and the index of the records:
+ * the file names, checksums and analysis durations, with the position and
+ * length of the record of each file. Loading the cache only reads the header
+ * and the trailer into a hash map, the records are read with positional reads
+ * once the violations or type dependencies of a file are requested through
+ * {@link #getCachedViolations(File)}. The file isn't memory mapped, as a mapping
+ * can't be released before the file is truncated or replaced when persisting.</p>
+ *
+ * <p>Persisting the cache appends the records of the files, that changed since
+ * the cache was loaded, followed by a new trailer. Once less than half of the
+ * records are in use by the files of the current analysis, the file is
+ * compacted by rewriting it. It is also rewritten, if some of the cached
+ * results were invalidated, e.g. by a rule change.</p>
+ */
+public class IndexedFileAnalysisCache extends AbstractAnalysisCache {
+
+    /** "PMDINDEX", distinguishes the file from the format of {@link FileAnalysisCache}. */
+    private static final long MAGIC = 0x504D44494E444558L;
+    private static final int FORMAT_VERSION = 7;
+    private static final double MIN_USED_RATIO = 0.5;
+
+    private final File cacheFile;
+    private final Set<String> upToDateFiles = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /** Whether the records of the loaded file can be used. */
+    private boolean loaded;
+    private long checksumsOffset;
+    private long trailerOffsetOffset;
+    private long recordsOffset;
+    private long trailerOffset;
+
+    // guarded by this
+    /** The channel from which the records are read, opened on the first read. */
+    private FileChannel recordsChannel;
+
+    /**
+     * Creates a new cache backed by the given file, and indexes pre-existing data from it.
+     * @param cache The file on which to store analysis cache
+     */
+    public IndexedFileAnalysisCache(final File cache) {
+        super();
+        this.cacheFile = cache;
+
+        loadFromFile(cache);
+    }
+
+    /**
+     * Reads the header and the trailer of the given file.
+     * @param cacheFile The file which backs the analysis cache.
+     */
+    private void loadFromFile(final File cacheFile) {
+        if (!cacheFile.exists()) {
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+            // Unbuffered, so that the position of the channel follows the stream
+            final DataInputStream headerStream = new DataInputStream(Channels.newInputStream(channel));
+            if (headerStream.readLong() != MAGIC || headerStream.readInt() != FORMAT_VERSION) {
+                LOG.info("Analysis cache invalidated, unknown cache format.");
+                return;
+            }
+            final String cacheVersion = headerStream.readUTF();
+            if (!PMDVersion.VERSION.equals(cacheVersion)) {
+                LOG.info("Analysis cache invalidated, PMD version changed.");
+                return;
+            }
+
+            checksumsOffset = channel.position();
+            rulesetChecksum = headerStream.readLong();
+            auxClassPathChecksum = headerStream.readLong();
+            executionClassPathChecksum = headerStream.readLong();
+            trailerOffsetOffset = channel.position();
+            trailerOffset = headerStream.readLong();
+            recordsOffset = channel.position();
+            if (trailerOffset < recordsOffset || trailerOffset > channel.size()) {
+                // Interrupted while persisting
+                LOG.warning("Cache file " + cacheFile.getPath() + " is incomplete, will not be used for current analysis");
+                return;
+            }
+
+            channel.position(trailerOffset);
+            final DataInputStream inputStream = new DataInputStream(
+                    new BufferedInputStream(Channels.newInputStream(channel)));
+            classPathFingerprints.load(inputStream);
+            typeChecksums.load(inputStream);
+            ruleChecksums.load(inputStream);
+
+            final int count = inputStream.readInt();
+            for (int i = 0; i < count; i++) {
+                final String fileName = inputStream.readUTF();
+                final long checksum = inputStream.readLong();
+                final long duration = inputStream.readLong();
+                final long recordOffset = inputStream.readLong();
+                final int recordLength = inputStream.readInt();
+                if (recordOffset < recordsOffset || recordLength < 0
+                        || recordLength > trailerOffset - recordOffset) {
+                    throw new EOFException("Record of " + fileName + " out of bounds");
+                }
+
+                final AnalysisResult result = new IndexedAnalysisResult(checksum, fileName, recordOffset, recordLength);
+                result.setAnalysisDuration(duration);
+                fileResultsCache.put(fileName, result);
+            }
+            loaded = true;
+
+            LOG.info("Analysis cache loaded");
+        } catch (final EOFException e) {
+            fileResultsCache.clear();
+            typeChecksums.clear();
+            ruleChecksums.clear();
+            LOG.warning("Cache file " + cacheFile.getPath() + " is malformed, will not be used for current analysis");
+        } catch (final IOException e) {
+            fileResultsCache.clear();
+            typeChecksums.clear();
+            ruleChecksums.clear();
+            LOG.severe("Could not load analysis cache from file. " + e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isUpToDate(final File sourceFile) {
+        final boolean upToDate = super.isUpToDate(sourceFile);
+        if (upToDate) {
+            upToDateFiles.add(sourceFile.getPath());
+        }
+        return upToDate;
+    }
+
+    @Override
+    public void persist() {
+        // Create directories missing along the way
+        if (!cacheFile.exists()) {
+            final File parentFile = cacheFile.getAbsoluteFile().getParentFile();
+            if (parentFile != null && !parentFile.exists()) {
+                parentFile.mkdirs();
+            }
+        }
+
+        // Records of files, that were not analyzed again, may have been invalidated
+        final boolean rewrite = !loaded || partiallyInvalidated || needsCompaction();
+        // The appended and copied records refer to the types by index, unused types can only be removed
+        // when all the records are written again
+        final boolean typesRemoved = updateTypeChecksums(rewrite);
+
+        try {
+            if (rewrite) {
+                rewrite(typesRemoved);
+            } else {
+                closeRecords();
+                append();
+            }
+
+            LOG.info("Analysis cache updated");
+        } catch (final IOException e) {
+            LOG.severe("Could not persist analysis cache to file. " + e.getMessage());
+        } finally {
+            closeRecords();
+        }
+    }
+
+    /**
+     * Checks whether too many records of the loaded file belong to files, that
+     * changed or were not part of the current analysis.
+     */
+    private boolean needsCompaction() {
+        long usedBytes = 0;
+        for (final String fileName : updatedResultsCache.keySet()) {
+            final AnalysisResult result = fileResultsCache.get(fileName);
+            if (upToDateFiles.contains(fileName) && isUnmodifiedRecord(result)) {
+                usedBytes += ((IndexedAnalysisResult) result).recordLength;
+            }
+        }
+        return usedBytes < MIN_USED_RATIO * (trailerOffset - recordsOffset);
+    }
+
+    /**
+     * Updates the checksums of the loaded file, appends the records of the
+     * files, that were analyzed again, and replaces the trailer.
+     */
+    private void append() throws IOException {
+        // The records of the files, that were not analyzed again, are kept
+        final Map<String, IndexEntry> index = new LinkedHashMap<>();
+        for (final AnalysisResult result : fileResultsCache.values()) {
+            final IndexedAnalysisResult loadedResult = (IndexedAnalysisResult) result;
+            index.put(loadedResult.fileName, new IndexEntry(loadedResult, loadedResult.recordOffset,
+                    loadedResult.recordLength));
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(cacheFile, "rw")) {
+            // Mark the file as incomplete, until the new trailer is written
+            file.seek(trailerOffsetOffset);
+            file.writeLong(-1);
+
+            // Overwrite the old trailer
+            file.seek(trailerOffset);
+            final DataOutputStream outputStream = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(file.getChannel())));
+            long position = trailerOffset;
+            for (final Map.Entry<String, AnalysisResult> resultEntry : updatedResultsCache.entrySet()) {
+                final String fileName = resultEntry.getKey();
+                if (upToDateFiles.contains(fileName)) {
+                    // unchanged, keep the record with the new analysis duration
+                    final IndexedAnalysisResult loadedResult = (IndexedAnalysisResult) fileResultsCache.get(fileName);
+                    index.put(fileName, new IndexEntry(resultEntry.getValue(), loadedResult.recordOffset,
+                            loadedResult.recordLength));
+                } else {
+                    final int length = writeRecord(outputStream, resultEntry.getValue());
+                    index.put(fileName, new IndexEntry(resultEntry.getValue(), position, length));
+                    position += length;
+                }
+            }
+
+            writeTrailer(outputStream, index);
+            outputStream.flush();
+            file.setLength(file.getChannel().position());
+
+            file.seek(checksumsOffset);
+            file.writeLong(rulesetChecksum);
+            file.writeLong(auxClassPathChecksum);
+            file.writeLong(executionClassPathChecksum);
+            file.writeLong(position);
+        }
+    }
+
+    /**
+     * Writes a new file, containing only the records of the current analysis.
+     *
+     * @param typesRemoved Whether the indexes of the types changed, so that
+     *                     the loaded records can't be copied as is
+     */
+    private void rewrite(final boolean typesRemoved) throws IOException {
+        final File tempFile = new File(cacheFile.getAbsoluteFile().getParentFile(), cacheFile.getName() + ".tmp");
+        final Map<IndexedAnalysisResult, Long> copiedResults = new HashMap<>();
+        try (RandomAccessFile file = new RandomAccessFile(tempFile, "rw")) {
+            file.setLength(0);
+            final DataOutputStream outputStream = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(file.getChannel())));
+            outputStream.writeLong(MAGIC);
+            outputStream.writeInt(FORMAT_VERSION);
+            outputStream.writeUTF(pmdVersion);
+
+            outputStream.writeLong(rulesetChecksum);
+            outputStream.writeLong(auxClassPathChecksum);
+            outputStream.writeLong(executionClassPathChecksum);
+            outputStream.writeLong(-1); // trailer offset, written last
+            final long trailerOffsetPosition = outputStream.size() - 8;
+
+            final Map<String, IndexEntry> index = new LinkedHashMap<>();
+            long position = outputStream.size();
+            for (final Map.Entry<String, AnalysisResult> resultEntry : updatedResultsCache.entrySet()) {
+                final AnalysisResult cachedResult = fileResultsCache.get(resultEntry.getKey());
+                final int length;
+                if (!typesRemoved && upToDateFiles.contains(resultEntry.getKey())
+                        && isUnmodifiedRecord(cachedResult)) {
+                    // unchanged, copy the record as is
+                    final byte[] record = ((IndexedAnalysisResult) cachedResult).readRecord();
+                    outputStream.write(record);
+                    length = record.length;
+                    copiedResults.put((IndexedAnalysisResult) cachedResult, position);
+                } else {
+                    length = writeRecord(outputStream, resultEntry.getValue());
+                }
+                index.put(resultEntry.getKey(), new IndexEntry(resultEntry.getValue(), position, length));
+                position += length;
+            }
+
+            writeTrailer(outputStream, index);
+            outputStream.flush();
+
+            file.seek(trailerOffsetPosition);
+            file.writeLong(position);
+        }
+
+        closeRecords();
+        Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        // The loaded results, whose records were not copied, can't be read anymore
+        for (final AnalysisResult result : fileResultsCache.values()) {
+            if (result instanceof IndexedAnalysisResult) {
+                final Long recordOffset = copiedResults.get(result);
+                ((IndexedAnalysisResult) result).recordOffset = recordOffset == null ? -1 : recordOffset;
+            }
+        }
+    }
+
+    private static boolean isUnmodifiedRecord(final AnalysisResult result) {
+        return result instanceof IndexedAnalysisResult && !((IndexedAnalysisResult) result).isModified();
+    }
+
+    private void writeTrailer(final DataOutputStream outputStream, final Map<String, IndexEntry> index)
+            throws IOException {
+        classPathFingerprints.store(outputStream);
+        typeChecksums.store(outputStream);
+        ruleChecksums.store(outputStream);
+
+        outputStream.writeInt(index.size());
+        for (final Map.Entry<String, IndexEntry> entry : index.entrySet()) {
+            outputStream.writeUTF(entry.getKey());
+            outputStream.writeLong(entry.getValue().checksum);
+            outputStream.writeLong(entry.getValue().duration);
+            outputStream.writeLong(entry.getValue().recordOffset);
+            outputStream.writeInt(entry.getValue().recordLength);
+        }
+    }
+
+    /**
+     * Writes the type dependencies and violations of the given result.
+     *
+     * @return The length of the record
+     */
+    private int writeRecord(final DataOutputStream outputStream, final AnalysisResult result) throws IOException {
+        final ByteArrayOutputStream record = new ByteArrayOutputStream();
+        final DataOutputStream recordStream = new DataOutputStream(record);
+        final List<RuleViolation> violations = result.getViolations();
+
+        storeTypeDependencies(recordStream, result);
+        recordStream.writeInt(violations.size());
+        for (final RuleViolation rv : violations) {
+            CachedRuleViolation.storeToStream(recordStream, rv);
+        }
+        recordStream.flush();
+
+        record.writeTo(outputStream);
+        return record.size();
+    }
+
+    /**
+     * Reads a record of the loaded file.
+     */
+    private byte[] readRecord(final long offset, final int length) throws IOException {
+        if (offset < 0) {
+            throw new IOException("The record was dropped when persisting the cache");
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        final FileChannel channel = openRecords();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Cache file " + cacheFile.getPath() + " was truncated");
+            }
+        }
+        return buffer.array();
+    }
+
+    private synchronized FileChannel openRecords() throws IOException {
+        if (recordsChannel == null) {
+            recordsChannel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ);
+        }
+        return recordsChannel;
+    }
+
+    /**
+     * Closes the loaded file, before it is modified or replaced.
+     */
+    private synchronized void closeRecords() {
+        if (recordsChannel != null) {
+            try {
+                recordsChannel.close();
+            } catch (final IOException e) {
+                LOG.warning("Could not close analysis cache file. " + e.getMessage());
+            }
+            recordsChannel = null;
+        }
+    }
+
+    /**
+     * An entry of the index of the records in the trailer.
+     */
+    private static final class IndexEntry {
+        private final long checksum;
+        private final long duration;
+        private final long recordOffset;
+        private final int recordLength;
+
+        IndexEntry(final AnalysisResult result, final long recordOffset, final int recordLength) {
+            this.checksum = result.getFileChecksum();
+            this.duration = result.getAnalysisDuration();
+            this.recordOffset = recordOffset;
+            this.recordLength = recordLength;
+        }
+    }
+
+    /**
+     * An analysis result, whose violations are read from the loaded file
+     * when requested. Once modified, the result holds a copy of its
+     * violations and type dependencies.
+     */
+    private final class IndexedAnalysisResult extends AnalysisResult {
+        private final String fileName;
+        private final int recordLength;
+        /** The position of the record, -1 once it has been dropped from the file. */
+        private long recordOffset;
+        private boolean modified;
+
+        IndexedAnalysisResult(final long fileChecksum, final String fileName, final long recordOffset,
+                final int recordLength) {
+            super(fileChecksum, new ArrayList<RuleViolation>());
+            this.fileName = fileName;
+            this.recordOffset = recordOffset;
+            this.recordLength = recordLength;
+        }
+
+        /**
+         * Returns whether the result differs from its record.
+         */
+        boolean isModified() {
+            return modified;
+        }
+
+        byte[] readRecord() throws IOException {
+            return IndexedFileAnalysisCache.this.readRecord(recordOffset, recordLength);
+        }
+
+        private DataInputStream openRecord() throws IOException {
+            return new DataInputStream(new ByteArrayInputStream(readRecord()));
+        }
+
+        @Override
+        public Set<String> getTypeDependencies() {
+            return modified ? super.getTypeDependencies() : readTypeDependencies();
+        }
+
+        @Override
+        public List<RuleViolation> getViolations() {
+            return modified ? super.getViolations() : readViolations();
+        }
+
+        @Override
+        public void addViolations(final List<RuleViolation> violations) {
+            copyRecord();
+            super.addViolations(violations);
+        }
+
+        @Override
+        public void addViolation(final RuleViolation ruleViolation) {
+            copyRecord();
+            super.addViolation(ruleViolation);
+        }
+
+        @Override
+        public void addTypeDependencies(final Collection<String> binaryNames) {
+            copyRecord();
+            super.addTypeDependencies(binaryNames);
+        }
+
+        @Override
+        public void addTypeDependency(final String binaryName) {
+            copyRecord();
+            super.addTypeDependency(binaryName);
+        }
+
+        private void copyRecord() {
+            if (!modified) {
+                super.addViolations(readViolations());
+                super.addTypeDependencies(readTypeDependencies());
+                modified = true;
+            }
+        }
+
+        private Set<String> readTypeDependencies() {
+            try {
+                return loadTypeDependencies(openRecord());
+            } catch (final IOException e) {
+                throw new IllegalStateException("Could not read analysis cache record for " + fileName, e);
+            }
+        }
+
+        private List<RuleViolation> readViolations() {
+            try {
+                final DataInputStream inputStream = openRecord();
+                final int countDependencies = inputStream.readInt();
+                inputStream.skipBytes(4 * countDependencies);
+                final int countViolations = inputStream.readInt();
+                final List<RuleViolation> violations = new ArrayList<>(countViolations);
+                for (int i = 0; i < countViolations; i++) {
+                    violations.add(CachedRuleViolation.loadFromStream(inputStream, fileName, ruleMapper));
+                }
+                return violations;
+            } catch (final IOException e) {
+                throw new IllegalStateException("Could not read analysis cache record for " + fileName, e);
+            }
+        }
+    }
+}
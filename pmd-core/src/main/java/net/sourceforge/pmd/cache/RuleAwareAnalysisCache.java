@@ -0,0 +1,32 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import java.io.File;
+import java.util.Set;
+
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleSets;
+
+/**
+ * An analysis cache, that keeps track of the violations per rule. When the
+ * rulesets change, the files, that didn't change, only need to be analyzed
+ * by the rules, that were added or modified. The violations of the other
+ * rules are replayed from the cache.
+ */
+public interface RuleAwareAnalysisCache extends AnalysisCache {
+
+    /**
+     * Returns the rules, that need to be applied to a file, which is not up
+     * to date. If the file didn't change since it was analyzed, only the
+     * rules, that changed since, are returned. The violations of the other
+     * rules are returned by {@link #getCachedViolations(File)}.
+     *
+     * @param sourceFile The file, for which {@link #isUpToDate(File)} returned false
+     * @param ruleSets   The rulesets, that will be applied to the file
+     * @return The rules of the given rulesets to apply, or null if all of them need to be applied
+     */
+    Set<Rule> getOutdatedRules(File sourceFile, RuleSets ruleSets);
+}
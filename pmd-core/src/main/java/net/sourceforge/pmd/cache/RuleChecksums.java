@@ -0,0 +1,159 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.lang.rule.RuleReference;
+import net.sourceforge.pmd.properties.PropertyDescriptor;
+
+/**
+ * The checksums of the configuration of the rules used for an analysis, by
+ * rule key. A rule is identified by its class and name, so that several rules
+ * implemented by the same class, e.g. XPath rules, can be told apart. The
+ * checksum covers everything, that changes the violations found by the rule,
+ * including the file patterns of its ruleset.
+ */
+final class RuleChecksums {
+
+    private final Map<String, Long> checksums = new HashMap<>();
+
+    /**
+     * Creates empty checksums.
+     */
+    RuleChecksums() {
+        // to be loaded
+    }
+
+    /**
+     * Computes the checksums of the rules of the given rulesets.
+     *
+     * @param ruleSets The rulesets
+     */
+    RuleChecksums(final RuleSets ruleSets) {
+        for (final RuleSet ruleSet : ruleSets.getAllRuleSets()) {
+            final long ruleSetChecksum = computeChecksum(ruleSet);
+            for (final Rule rule : ruleSet.getRules()) {
+                final String key = getRuleKey(rule);
+                final Long previous = checksums.get(key);
+                final long checksum = computeChecksum(rule) * 31 + ruleSetChecksum;
+                // Rules with the same key are handled as a single one
+                checksums.put(key, previous == null ? checksum : previous * 31 + checksum);
+            }
+        }
+    }
+
+    /**
+     * Returns the key, by which the given rule is identified in the cache.
+     * References are resolved, as the violations are reported by the
+     * referenced rule, which keeps its original name.
+     *
+     * @param rule The rule
+     * @return The key of the rule
+     */
+    static String getRuleKey(final Rule rule) {
+        Rule referencedRule = rule;
+        while (referencedRule instanceof RuleReference) {
+            referencedRule = ((RuleReference) referencedRule).getRule();
+        }
+        return referencedRule.getRuleClass() + '/' + referencedRule.getName();
+    }
+
+    void load(final DataInputStream stream) throws IOException {
+        final int count = stream.readInt();
+        for (int i = 0; i < count; i++) {
+            checksums.put(stream.readUTF(), stream.readLong());
+        }
+    }
+
+    void store(final DataOutputStream stream) throws IOException {
+        stream.writeInt(checksums.size());
+        for (final Map.Entry<String, Long> entry : checksums.entrySet()) {
+            stream.writeUTF(entry.getKey());
+            stream.writeLong(entry.getValue());
+        }
+    }
+
+    boolean contains(final String ruleKey) {
+        return checksums.containsKey(ruleKey);
+    }
+
+    /**
+     * Returns the rules, that are new or whose checksum is different from
+     * the given previous checksums.
+     *
+     * @param previous The previous checksums
+     * @return The keys of the changed rules
+     */
+    Set<String> getChangedRules(final RuleChecksums previous) {
+        final Set<String> changedRules = new HashSet<>();
+        for (final Map.Entry<String, Long> entry : checksums.entrySet()) {
+            if (!entry.getValue().equals(previous.checksums.get(entry.getKey()))) {
+                changedRules.add(entry.getKey());
+            }
+        }
+        return changedRules;
+    }
+
+    /**
+     * Returns the rules of the given previous checksums, that are gone.
+     *
+     * @param previous The previous checksums
+     * @return The keys of the removed rules
+     */
+    Set<String> getRemovedRules(final RuleChecksums previous) {
+        final Set<String> removedRules = new HashSet<>(previous.checksums.keySet());
+        removedRules.removeAll(checksums.keySet());
+        return removedRules;
+    }
+
+    void replaceWith(final RuleChecksums other) {
+        checksums.clear();
+        checksums.putAll(other.checksums);
+    }
+
+    void clear() {
+        checksums.clear();
+    }
+
+    private static long computeChecksum(final RuleSet ruleSet) {
+        return ruleSet.getExcludePatterns().hashCode() * 31L + ruleSet.getIncludePatterns().hashCode();
+    }
+
+    private static long computeChecksum(final Rule rule) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(rule.getRuleClass()).append('\n')
+            .append(rule.getName()).append('\n')
+            .append(rule.getLanguage()).append('\n')
+            .append(rule.getMinimumLanguageVersion()).append('\n')
+            .append(rule.getMaximumLanguageVersion()).append('\n')
+            .append(rule.getMessage()).append('\n');
+
+        // Sort the properties, the order of definition doesn't matter
+        final Map<String, Object> properties = new TreeMap<>();
+        for (final Map.Entry<PropertyDescriptor<?>, Object> entry : rule.getPropertiesByPropertyDescriptor().entrySet()) {
+            properties.put(entry.getKey().name(), entry.getValue());
+        }
+        for (final Map.Entry<String, Object> entry : properties.entrySet()) {
+            sb.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        }
+
+        final CRC32 crc32 = new CRC32();
+        crc32.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+        return crc32.getValue();
+    }
+}
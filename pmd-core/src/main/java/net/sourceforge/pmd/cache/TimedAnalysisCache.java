@@ -0,0 +1,35 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import java.io.File;
+
+/**
+ * An analysis cache, that remembers how long the analysis of each file took.
+ * The durations of the previous run are used to start the analysis of the
+ * most expensive files first.
+ *
+ * @see net.sourceforge.pmd.PMDConfiguration#isLargestFilesFirst()
+ */
+public interface TimedAnalysisCache extends AnalysisCache {
+
+    /**
+     * Returns how long the last analysis of the given file took.
+     *
+     * @param sourceFile The file
+     * @return The duration in milliseconds, or -1 if unknown
+     */
+    long getAnalysisDuration(File sourceFile);
+
+    /**
+     * Records how long the analysis of the given file took. Must be called
+     * after {@link #isUpToDate(File)} returned false for the file, and the
+     * file has been analyzed successfully.
+     *
+     * @param sourceFile The file
+     * @param duration   The duration in milliseconds
+     */
+    void analysisFinished(File sourceFile, long duration);
+}
@@ -0,0 +1,161 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Adler32;
+import java.util.zip.CheckedInputStream;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * The checksums of the class files of the types, that analyzed files depend
+ * on. Each type is identified by its index, so that the results only need to
+ * store the indexes of their dependencies. The indexes remain valid until
+ * the table is cleared, or the types no result depends on anymore are
+ * removed.
+ *
+ * @see TypeDependencyRecorder
+ */
+final class TypeChecksums {
+
+    /** The checksum of types, whose class file can't be found. */
+    static final long MISSING = -1;
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Long> checksums = new ArrayList<>();
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    /**
+     * Loads the checksums stored with {@link #store(DataOutputStream)}.
+     *
+     * @param stream The stream from which to load the checksums
+     * @throws IOException If the checksums can't be read
+     */
+    void load(final DataInputStream stream) throws IOException {
+        final int count = stream.readInt();
+        for (int i = 0; i < count; i++) {
+            add(stream.readUTF(), stream.readLong());
+        }
+    }
+
+    /**
+     * Stores the checksums of all types.
+     *
+     * @param stream The stream on which to store the checksums
+     * @throws IOException If the checksums can't be written
+     */
+    void store(final DataOutputStream stream) throws IOException {
+        stream.writeInt(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            stream.writeUTF(names.get(i));
+            stream.writeLong(checksums.get(i));
+        }
+    }
+
+    int size() {
+        return names.size();
+    }
+
+    String getName(final int index) {
+        return names.get(index);
+    }
+
+    /**
+     * Returns the index of the given type, adding it if it's unknown.
+     *
+     * @param name        The binary name of the type
+     * @param classLoader The class loader used to find the class file of new types
+     * @return The index of the type
+     */
+    int getIndex(final String name, final ClassLoader classLoader) {
+        final Integer index = indexes.get(name);
+        if (index != null) {
+            return index;
+        }
+        return add(name, computeChecksum(name, classLoader));
+    }
+
+    /**
+     * Computes the checksums of all types again.
+     *
+     * @param classLoader The class loader used to find the class files
+     * @return The names of the types, whose checksum changed
+     */
+    Set<String> update(final ClassLoader classLoader) {
+        final Set<String> changedTypes = new HashSet<>();
+        for (int i = 0; i < names.size(); i++) {
+            final long checksum = computeChecksum(names.get(i), classLoader);
+            if (checksum != checksums.get(i)) {
+                checksums.set(i, checksum);
+                changedTypes.add(names.get(i));
+            }
+        }
+        return changedTypes;
+    }
+
+    /**
+     * Removes the types, that are not in the given set. The indexes of the
+     * remaining types change, if any type is removed.
+     *
+     * @param types The binary names of the types to keep
+     * @return Whether any type was removed
+     */
+    boolean retainAll(final Set<String> types) {
+        if (types.containsAll(names)) {
+            return false;
+        }
+        final List<String> oldNames = new ArrayList<>(names);
+        final List<Long> oldChecksums = new ArrayList<>(checksums);
+        clear();
+        for (int i = 0; i < oldNames.size(); i++) {
+            if (types.contains(oldNames.get(i))) {
+                add(oldNames.get(i), oldChecksums.get(i));
+            }
+        }
+        return true;
+    }
+
+    void clear() {
+        names.clear();
+        checksums.clear();
+        indexes.clear();
+    }
+
+    private int add(final String name, final long checksum) {
+        final int index = names.size();
+        names.add(name);
+        checksums.add(checksum);
+        indexes.put(name, index);
+        return index;
+    }
+
+    private static long computeChecksum(final String name, final ClassLoader classLoader) {
+        final InputStream classFile = classLoader.getResourceAsStream(name.replace('.', '/') + ".class");
+        if (classFile == null) {
+            return MISSING;
+        }
+
+        try (CheckedInputStream inputStream = new CheckedInputStream(classFile, new Adler32())) {
+            // Just read it, the CheckedInputStream will update the checksum on it's own
+            while (IOUtils.skip(inputStream, Long.MAX_VALUE) == Long.MAX_VALUE) {
+                // just loop
+            }
+            return inputStream.getChecksum().getValue();
+        } catch (final IOException ignored) {
+            // Treat it as missing, the type can't be loaded either
+            return MISSING;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+/**
+ * Records the types a file depends on while it is being analyzed. Language
+ * modules report the types they look up on the auxclasspath, e.g. during type
+ * resolution. When the auxclasspath changes, the analysis cache then only
+ * invalidates the files depending on a type, that changed.
+ *
+ * <p>The types are recorded for the file, whose analysis is running on the
+ * current thread. Outside of an analysis, or without an analysis cache, the
+ * recorded types are ignored.</p>
+ */
+public final class TypeDependencyRecorder {
+
+    private static final ThreadLocal<AnalysisResult> CURRENT_RESULT = new ThreadLocal<>();
+
+    private TypeDependencyRecorder() {
+        throw new AssertionError("Can't instantiate utility class");
+    }
+
+    /**
+     * Records, that the file being analyzed on the current thread looked up
+     * the given type. Types, that can't be found, must be recorded as well,
+     * as the results depend on their absence.
+     *
+     * @param binaryName The binary name of the type, as passed to {@link ClassLoader#loadClass(String)}
+     */
+    public static void typeLookedUp(final String binaryName) {
+        final AnalysisResult result = CURRENT_RESULT.get();
+        if (result != null && !binaryName.startsWith("java.")) {
+            // java.* types are always loaded by the bootstrap class loader, never from the auxclasspath
+            result.addTypeDependency(binaryName);
+        }
+    }
+
+    /* package */ static void startRecording(final AnalysisResult result) {
+        CURRENT_RESULT.set(result);
+    }
+
+    /* package */ static void stopRecording() {
+        CURRENT_RESULT.remove();
+    }
+}
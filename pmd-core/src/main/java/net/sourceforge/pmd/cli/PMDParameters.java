@@ -11,8 +11,10 @@ import java.util.Properties;
 
 import net.sourceforge.pmd.PMDConfiguration;
 import net.sourceforge.pmd.RulePriority;
+import net.sourceforge.pmd.cache.AnalysisCacheFormat;
 import net.sourceforge.pmd.lang.LanguageRegistry;
 import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.processor.StandardExecutorFactory;
 
 import com.beust.jcommander.IStringConverter;
 import com.beust.jcommander.IValueValidator;
@@ -52,6 +54,10 @@ public class PMDParameters {
             validateWith = PositiveInteger.class)
     private int threads = 1;
 
+    @Parameter(names = "-executor",
+            description = "Sets the executor used to run the analysis when using more than one thread: FIXED_THREAD_POOL (default), WORK_STEALING or VIRTUAL_THREADS (requires Java 21).")
+    private StandardExecutorFactory executor = StandardExecutorFactory.FIXED_THREAD_POOL;
+
     @Parameter(names = { "-benchmark", "-b" },
             description = "Benchmark mode - output a benchmark report upon completion; default to System.err.")
     private boolean benchmark = false;
@@ -103,6 +109,18 @@ public class PMDParameters {
     @Parameter(names = "-cache", description = "Specify the location of the cache file for incremental analysis.")
     private String cacheLocation = null;
 
+    @Parameter(names = "-streaming",
+            description = "Render the report of each file as soon as it has been analyzed, with bounded queues between analysis and rendering. Keeps the memory usage flat for large code bases. Ignored if '-threads 0' is used.")
+    private boolean streaming = false;
+
+    @Parameter(names = "-largest-files-first",
+            description = "Start the analysis with the most expensive files, estimated from their size and from the durations recorded in the analysis cache. The report order doesn't change.")
+    private boolean largestFilesFirst = false;
+
+    @Parameter(names = "-cache-format",
+            description = "Specify the format of the cache for incremental analysis: FILE (default), INDEXED or CONTENT_ADDRESSED. The INDEXED format is loaded lazily and only appended to, which is faster for large code bases. With CONTENT_ADDRESSED, the cache location is a directory, that can be shared by concurrent PMD runs on different checkouts.")
+    private AnalysisCacheFormat cacheFormat = AnalysisCacheFormat.FILE;
+
     @Parameter(names = "-no-cache", description = "Explicitly disable incremental analysis. The '-cache' option is ignored if this switch is present in the command line.")
     private boolean noCache = false;
 
@@ -186,10 +204,13 @@ public class PMDParameters {
         configuration.setShowSuppressedViolations(this.isShowsuppressed());
         configuration.setSourceEncoding(this.getEncoding());
         configuration.setStressTest(this.isStress());
+        configuration.setStreaming(this.isStreaming());
+        configuration.setLargestFilesFirst(this.isLargestFilesFirst());
         configuration.setSuppressMarker(this.getSuppressmarker());
         configuration.setThreads(this.getThreads());
+        configuration.setExecutorFactory(this.getExecutor());
         configuration.setFailOnViolation(this.isFailOnViolation());
-        configuration.setAnalysisCacheLocation(this.cacheLocation);
+        configuration.setAnalysisCacheLocation(this.cacheLocation, this.cacheFormat);
         configuration.setIgnoreIncrementalAnalysis(this.isIgnoreIncrementalAnalysis());
 
         LanguageVersion languageVersion = LanguageRegistry
@@ -236,10 +257,22 @@ public class PMDParameters {
         return threads;
     }
 
+    public StandardExecutorFactory getExecutor() {
+        return executor;
+    }
+
     public boolean isBenchmark() {
         return benchmark;
     }
 
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public boolean isLargestFilesFirst() {
+        return largestFilesFirst;
+    }
+
     public boolean isStress() {
         return stress;
     }
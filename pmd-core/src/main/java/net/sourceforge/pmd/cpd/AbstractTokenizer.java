@@ -30,9 +30,6 @@ public abstract class AbstractTokenizer implements Tokenizer {
     // ruby, python,...) use this
     // symbol for comment line
 
-    private List<String> code;
-    private int lineNumber = 0;
-    private String currentLine;
 
     protected boolean spanMultipleLinesString = true; // Most languages do, so
     // default is true
@@ -42,14 +39,15 @@ public abstract class AbstractTokenizer implements Tokenizer {
 
     @Override
     public void tokenize(SourceCode tokens, Tokens tokenEntries) {
-        code = tokens.getCode();
+        // kept out of the fields, so that several files can be tokenized concurrently
+        Position position = new Position(tokens.getCode());
 
-        for (lineNumber = 0; lineNumber < code.size(); lineNumber++) {
-            currentLine = code.get(lineNumber);
+        for (position.lineNumber = 0; position.lineNumber < position.code.size(); position.lineNumber++) {
+            position.currentLine = position.code.get(position.lineNumber);
             int loc = 0;
-            while (loc < currentLine.length()) {
+            while (loc < position.currentLine.length()) {
                 StringBuilder token = new StringBuilder();
-                loc = getTokenFromLine(token, loc);
+                loc = getTokenFromLine(position, token, loc);
                 if (token.length() > 0 && !isIgnorableString(token.toString())) {
                     if (downcaseString) {
                         token = new StringBuilder(token.toString().toLowerCase(Locale.ROOT));
@@ -58,7 +56,7 @@ public abstract class AbstractTokenizer implements Tokenizer {
                     // if ( CPD.debugEnable ) {
                     // System.out.println("Token added:" + token.toString());
                     // }
-                    tokenEntries.add(new TokenEntry(token.toString(), tokens.getFileName(), lineNumber + 1));
+                    tokenEntries.add(new TokenEntry(token.toString(), tokens.getFileName(), position.lineNumber + 1));
 
                 }
             }
@@ -66,15 +64,15 @@ public abstract class AbstractTokenizer implements Tokenizer {
         tokenEntries.add(TokenEntry.getEOF());
     }
 
-    private int getTokenFromLine(StringBuilder token, int loc) {
-        for (int j = loc; j < currentLine.length(); j++) {
-            char tok = currentLine.charAt(j);
+    private int getTokenFromLine(Position position, StringBuilder token, int loc) {
+        for (int j = loc; j < position.currentLine.length(); j++) {
+            char tok = position.currentLine.charAt(j);
             if (!Character.isWhitespace(tok) && !ignoreCharacter(tok)) {
                 if (isComment(tok)) {
                     if (token.length() > 0) {
                         return j;
                     } else {
-                        return getCommentToken(token, loc);
+                        return getCommentToken(position, token, loc);
                     }
                 } else if (isString(tok)) {
                     if (token.length() > 0) {
@@ -82,7 +80,7 @@ public abstract class AbstractTokenizer implements Tokenizer {
                         // separate token.
                     } else {
                         // we are at the start of a string
-                        return parseString(token, j, tok);
+                        return parseString(position, token, j, tok);
                     }
                 } else {
                     token.append(tok);
@@ -97,12 +95,12 @@ public abstract class AbstractTokenizer implements Tokenizer {
         return loc + 1;
     }
 
-    private int parseString(StringBuilder token, int loc, char stringDelimiter) {
+    private int parseString(Position position, StringBuilder token, int loc, char stringDelimiter) {
         boolean escaped = false;
         boolean done = false;
         char tok = ' '; // this will be replaced.
-        while (loc < currentLine.length() && !done) {
-            tok = currentLine.charAt(loc);
+        while (loc < position.currentLine.length() && !done) {
+            tok = position.currentLine.charAt(loc);
             if (escaped && tok == stringDelimiter) { // Found an escaped string
                 escaped = false;
             } else if (tok == stringDelimiter && token.length() > 0) {
@@ -119,13 +117,13 @@ public abstract class AbstractTokenizer implements Tokenizer {
         }
         // Handling multiple lines string
         if (!done && // ... we didn't find the end of the string
-                loc >= currentLine.length() && // ... we have reach the end of
+                loc >= position.currentLine.length() && // ... we have reach the end of
                 // the line ( the String is
                 // incomplete, for the moment at
                 // least)
                 spanMultipleLinesString && // ... the language allow multiple
                 // line span Strings
-                lineNumber < code.size() - 1 // ... there is still more lines to
+                position.lineNumber < position.code.size() - 1 // ... there is still more lines to
         // parse
         ) {
             // removes last character, if it is the line continuation (e.g.
@@ -135,9 +133,9 @@ public abstract class AbstractTokenizer implements Tokenizer {
                 token.deleteCharAt(token.length() - 1);
             }
             // parsing new line
-            currentLine = code.get(++lineNumber);
+            position.currentLine = position.code.get(++position.lineNumber);
             // Warning : recursive call !
-            loc = parseString(token, 0, stringDelimiter);
+            loc = parseString(position, token, 0, stringDelimiter);
         }
         return loc + 1;
     }
@@ -154,9 +152,9 @@ public abstract class AbstractTokenizer implements Tokenizer {
         return tok == oneLineCommentChar;
     }
 
-    private int getCommentToken(StringBuilder token, int loc) {
-        while (loc < currentLine.length()) {
-            token.append(currentLine.charAt(loc++));
+    private int getCommentToken(Position position, StringBuilder token, int loc) {
+        while (loc < position.currentLine.length()) {
+            token.append(position.currentLine.charAt(loc++));
         }
         return loc;
     }
@@ -164,4 +162,17 @@ public abstract class AbstractTokenizer implements Tokenizer {
     private boolean isIgnorableString(String token) {
         return ignorableStmt.contains(token);
     }
+
+    /**
+     * The current line of the file being tokenized.
+     */
+    private static final class Position {
+        private final List<String> code;
+        private int lineNumber;
+        private String currentLine;
+
+        Position(List<String> code) {
+            this.code = code;
+        }
+    }
 }
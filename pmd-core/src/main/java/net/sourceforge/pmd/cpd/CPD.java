@@ -7,13 +7,23 @@ package net.sourceforge.pmd.cpd;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -36,11 +46,20 @@ public class CPD {
     private MatchAlgorithm matchAlgorithm;
     private Set<String> current = new HashSet<>();
 
+    private CPDIndex index;
+
+    private ExecutorService tokenizerExecutor;
+    /** The files being tokenized concurrently, in the order they were added. */
+    private final Deque<PendingFile> pendingFiles = new ArrayDeque<>();
+
     public CPD(CPDConfiguration theConfiguration) {
         configuration = theConfiguration;
         // before we start any tokenizing (add(File...)), we need to reset the
         // static TokenEntry status
         TokenEntry.clearImages();
+        if (configuration.getCacheLocation() != null) {
+            index = new CPDIndex(new File(configuration.getCacheLocation()), configuration);
+        }
     }
 
     public void setCpdListener(CPDListener cpdListener) {
@@ -48,10 +67,56 @@ public class CPD {
     }
 
     public void go() {
-        matchAlgorithm = new MatchAlgorithm(source, tokens, configuration.getMinimumTileSize(), listener);
+        if (index != null) {
+            addModifiedIndexedFiles();
+        }
+        waitForPendingFiles();
+        final int runTokenCount = tokens.size();
+        if (index != null) {
+            addIndexedFiles();
+            index.persist();
+        }
+        matchAlgorithm = configuration.getMatchEngine().createMatchAlgorithm(source, tokens,
+                configuration.getMinimumTileSize(), listener);
+        matchAlgorithm.setReportedTokenCount(runTokenCount);
         matchAlgorithm.findMatches();
     }
 
+    /**
+     * Adds the files of the index, which haven't been added to this run, but
+     * have been modified since they were tokenized, so that they are
+     * tokenized again.
+     */
+    private void addModifiedIndexedFiles() {
+        try {
+            for (String fileName : index.getCorpusFiles()) {
+                File file = new File(fileName);
+                if (file.isFile() && index.isModified(fileName)) {
+                    add(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Problem while tokenizing the files", e);
+        }
+    }
+
+    /**
+     * Appends the tokens of the remaining files of the index, the corpus, to
+     * the tokens of the files of this run. The deleted files are removed
+     * from the index.
+     */
+    private void addIndexedFiles() {
+        for (String fileName : index.getCorpusFiles()) {
+            Tokens fileTokens = index.isModified(fileName) ? null : index.getTokens(fileName);
+            if (fileTokens == null) {
+                index.remove(fileName);
+                continue;
+            }
+            tokens.addAll(fileTokens);
+            source.put(fileName, configuration.sourceCodeFor(new File(fileName)));
+        }
+    }
+
     public Iterator<Match> getMatches() {
         return matchAlgorithm.matches();
     }
@@ -131,7 +196,12 @@ public class CPD {
     }
 
     private void add(SourceCode sourceCode) throws IOException {
-        if (configuration.isSkipLexicalErrors()) {
+        if (index != null) {
+            index.addRunFile(sourceCode.getFileName());
+        }
+        if (configuration.getThreads() > 0) {
+            addConcurrently(sourceCode);
+        } else if (configuration.isSkipLexicalErrors()) {
             addAndSkipLexicalErrors(sourceCode);
         } else {
             addAndThrowLexicalError(sourceCode);
@@ -139,28 +209,134 @@ public class CPD {
     }
 
     private void addAndThrowLexicalError(SourceCode sourceCode) throws IOException {
-        configuration.tokenizer().tokenize(sourceCode, tokens);
+        if (index == null) {
+            configuration.tokenizer().tokenize(sourceCode, tokens);
+        } else {
+            tokens.addAll(tokenize(sourceCode, configuration.tokenizer()));
+        }
         listener.addedFile(1, new File(sourceCode.getFileName()));
         source.put(sourceCode.getFileName(), sourceCode);
     }
 
     private void addAndSkipLexicalErrors(SourceCode sourceCode) throws IOException {
-        TokenEntry.State savedTokenEntry = new TokenEntry.State(tokens.getTokens());
+        int savedTokenCount = tokens.size();
         try {
             addAndThrowLexicalError(sourceCode);
         } catch (TokenMgrError e) {
             System.err.println("Skipping " + sourceCode.getFileName() + ". Reason: " + e.getMessage());
-            tokens.getTokens().clear();
-            tokens.getTokens().addAll(savedTokenEntry.restore());
+            tokens.truncate(savedTokenCount);
+        }
+    }
+
+    /**
+     * Tokenizes the file on one of the tokenizer threads. The tokens of each
+     * file are buffered, and added to the tokens of CPD in the order, in
+     * which the files were added, so that the result doesn't depend on the
+     * scheduling of the threads.
+     */
+    private void addConcurrently(final SourceCode sourceCode) throws IOException {
+        if (tokenizerExecutor == null) {
+            tokenizerExecutor = Executors.newFixedThreadPool(configuration.getThreads(), new TokenizerThreadFactory());
+        }
+        final Tokenizer tokenizer = configuration.tokenizer();
+        final TokenDictionary dictionary = TokenEntry.getDictionary();
+        Future<Tokens> fileTokens = tokenizerExecutor.submit(new Callable<Tokens>() {
+            @Override
+            public Tokens call() throws IOException {
+                TokenEntry.setDictionary(dictionary);
+                return tokenize(sourceCode, tokenizer);
+            }
+        });
+        pendingFiles.add(new PendingFile(sourceCode, fileTokens));
+        try {
+            addTokenizedFiles(false);
+        } catch (IOException | RuntimeException | Error e) {
+            shutdownTokenizer();
+            throw e;
+        }
+    }
+
+    /**
+     * Tokenizes a single file, reusing its tokens from the index, if its
+     * content is known.
+     */
+    private Tokens tokenize(SourceCode sourceCode, Tokenizer tokenizer) throws IOException {
+        if (index != null) {
+            return index.tokenize(sourceCode, tokenizer);
+        }
+        Tokens fileTokens = new Tokens();
+        tokenizer.tokenize(sourceCode, fileTokens);
+        return fileTokens;
+    }
+
+    /**
+     * Adds the tokens of the pending files, in the order the files were added.
+     *
+     * @param wait If true, waits for all pending files to be tokenized,
+     *             otherwise stops at the first one, which isn't done yet
+     */
+    private void addTokenizedFiles(boolean wait) throws IOException {
+        while (!pendingFiles.isEmpty() && (wait || pendingFiles.peek().tokens.isDone())) {
+            PendingFile file = pendingFiles.poll();
+            SourceCode sourceCode = file.sourceCode;
+            try {
+                tokens.addAll(file.tokens.get());
+                listener.addedFile(1, new File(sourceCode.getFileName()));
+                source.put(sourceCode.getFileName(), sourceCode);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while tokenizing " + sourceCode.getFileName());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof TokenMgrError && configuration.isSkipLexicalErrors()) {
+                    System.err.println("Skipping " + sourceCode.getFileName() + ". Reason: " + cause.getMessage());
+                } else if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                } else {
+                    throw new IOException(cause);
+                }
+            }
+        }
+    }
+
+    private void waitForPendingFiles() {
+        if (tokenizerExecutor == null) {
+            return;
+        }
+        try {
+            addTokenizedFiles(true);
+        } catch (IOException e) {
+            throw new RuntimeException("Problem while tokenizing the files", e);
+        } finally {
+            shutdownTokenizer();
         }
     }
 
+    /**
+     * Stops the tokenizer threads. The files, that are still pending after
+     * a failure, are dropped, a new executor is created for the files added
+     * afterwards.
+     */
+    private void shutdownTokenizer() {
+        for (PendingFile file : pendingFiles) {
+            file.tokens.cancel(true);
+        }
+        pendingFiles.clear();
+        tokenizerExecutor.shutdownNow();
+        tokenizerExecutor = null;
+    }
+
     /**
      * List names/paths of each source to be processed.
      *
      * @return names of sources to be processed
      */
     public List<String> getSourcePaths() {
+        waitForPendingFiles();
         return new ArrayList<>(source.keySet());
     }
 
@@ -170,10 +346,36 @@ public class CPD {
      * @return all Sources to be processed
      */
     public List<SourceCode> getSources() {
+        waitForPendingFiles();
         return new ArrayList<>(source.values());
     }
 
     public static void main(String[] args) {
         CPDCommandLineInterface.main(args);
     }
+
+    private static class PendingFile {
+        private final SourceCode sourceCode;
+        private final Future<Tokens> tokens;
+
+        PendingFile(SourceCode sourceCode, Future<Tokens> tokens) {
+            this.sourceCode = sourceCode;
+            this.tokens = tokens;
+        }
+    }
+
+    /**
+     * Creates daemon threads, so that the JVM can exit, if the files are
+     * added but CPD is never run.
+     */
+    private static class TokenizerThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "CPD Tokenizer " + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
@@ -28,6 +28,7 @@ import net.sourceforge.pmd.util.FileUtil;
 import com.beust.jcommander.IStringConverter;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.converters.FileConverter;
+import com.beust.jcommander.validators.PositiveInteger;
 
 /**
  *
@@ -61,6 +62,11 @@ public class CPDConfiguration extends AbstractConfiguration {
             description = "Ignore multiple copies of files of the same name and length in comparison", required = false)
     private boolean skipDuplicates;
 
+    @Parameter(names = "--match-engine",
+            description = "Algorithm used to find the duplicates: HASH or SUFFIX_ARRAY. Both report the same duplicates, SUFFIX_ARRAY needs less memory for large code bases. Default value is HASH",
+            required = false)
+    private MatchEngine matchEngine = MatchEngine.HASH;
+
     @Parameter(names = "--format", description = "Report format. Default value is " + DEFAULT_RENDERER,
             required = false)
     private String rendererName;
@@ -91,6 +97,16 @@ public class CPDConfiguration extends AbstractConfiguration {
     @Parameter(names = "--ignore-usings", description = "Ignore using directives in C#", required = false)
     private boolean ignoreUsings;
 
+    @Parameter(names = "--threads",
+            description = "Sets the number of threads used to tokenize the files. With 0, the files are tokenized one after another on the main thread. Default value is 0",
+            validateWith = PositiveInteger.class, required = false)
+    private int threads = 0;
+
+    @Parameter(names = "--cache",
+            description = "Specify the location of the index file for incremental CPD. Only the files, that changed since the index was written, are tokenized again.",
+            required = false)
+    private String cacheLocation;
+
     @Parameter(names = "--skip-lexical-errors",
             description = "Skip files which can't be tokenized due to invalid characters instead of aborting CPD",
             required = false)
@@ -294,6 +310,42 @@ public class CPDConfiguration extends AbstractConfiguration {
         this.minimumTileSize = minimumTileSize;
     }
 
+    public MatchEngine getMatchEngine() {
+        return matchEngine;
+    }
+
+    public void setMatchEngine(MatchEngine matchEngine) {
+        this.matchEngine = matchEngine;
+    }
+
+    /**
+     * Returns the number of threads, that tokenize the files. If it is 0, the
+     * files are tokenized on the thread adding them to CPD.
+     *
+     * @return The number of threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the location of the index file, that keeps the tokens of the
+     * files between runs.
+     *
+     * @return The location of the index file, or null if CPD isn't incremental
+     */
+    public String getCacheLocation() {
+        return cacheLocation;
+    }
+
+    public void setCacheLocation(String cacheLocation) {
+        this.cacheLocation = cacheLocation;
+    }
+
     public boolean isSkipDuplicates() {
         return skipDuplicates;
     }
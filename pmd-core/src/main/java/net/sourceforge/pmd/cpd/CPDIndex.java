@@ -0,0 +1,437 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import net.sourceforge.pmd.PMDVersion;
+
+/**
+ * An index of the tokens of the files analyzed by the previous CPD runs,
+ * backed by a regular file. The tokens are stored by the SHA-256 hash of the
+ * content of the files, so that a file, whose content is known, isn't
+ * tokenized again, even if it has been renamed or copied.
+ *
+ * <p>The files of the index, that aren't added to the current run, form the
+ * corpus: their tokens are taken from the index without reading the files,
+ * and their duplicates with the files of the run are reported. A run on the
+ * changed files only thus finds their duplicates in the whole code base.
+ * Corpus files, that have been deleted since, are removed. Corpus files,
+ * whose size or modification time changed, are tokenized again like the
+ * files of the run.</p>
+ *
+ * <p>The images keep their identifiers between runs: the dictionary of the
+ * run is restored from the index, before any file is tokenized. The rolling
+ * hashes are not stored: the match algorithms compute them in a single pass
+ * over the identifiers.</p>
+ */
+final class CPDIndex {
+
+    private static final Logger LOG = Logger.getLogger(CPDIndex.class.getName());
+    private static final int FORMAT_VERSION = 2;
+
+    private final File indexFile;
+    private final long configurationChecksum;
+
+    /** The tokens, by the hash of the content they have been read from. */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    /** The files of the index, by name. */
+    private final Map<String, FileEntry> files = new ConcurrentHashMap<>();
+    /** The names of the files added to this run. */
+    private final Set<String> runFiles = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Creates a new index backed by the given file, and attempts to load
+     * pre-existing data from it. This restores the images of the previous
+     * runs, so it must be called before any file is tokenized.
+     *
+     * @param indexFile     The file on which to store the index
+     * @param configuration The configuration of the run, the index is only
+     *                      used if the tokenizer options didn't change
+     */
+    CPDIndex(File indexFile, CPDConfiguration configuration) {
+        this.indexFile = indexFile;
+        this.configurationChecksum = computeChecksum(configuration);
+        loadFromFile();
+    }
+
+    private void loadFromFile() {
+        if (!indexFile.exists()) {
+            return;
+        }
+        try (DataInputStream inputStream = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (inputStream.readInt() != FORMAT_VERSION || !PMDVersion.VERSION.equals(inputStream.readUTF())) {
+                LOG.info("CPD index invalidated, PMD version changed.");
+                return;
+            }
+            if (inputStream.readLong() != configurationChecksum) {
+                LOG.info("CPD index invalidated, tokenizer options changed.");
+                return;
+            }
+
+            final String[] images = new String[inputStream.readInt() + 1];
+            for (int i = 1; i < images.length; i++) {
+                // 0 for the identifiers not in use, else the length + 1
+                final int length = readVarInt(inputStream);
+                if (length > 0) {
+                    final byte[] image = new byte[length - 1];
+                    inputStream.readFully(image);
+                    images[i] = new String(image, StandardCharsets.UTF_8);
+                }
+            }
+
+            final Map<String, Entry> loadedEntries = new HashMap<>();
+            final int entryCount = inputStream.readInt();
+            for (int i = 0; i < entryCount; i++) {
+                final String contentHash = inputStream.readUTF();
+                final int tokenCount = inputStream.readInt();
+                final byte[] data = new byte[inputStream.readInt()];
+                inputStream.readFully(data);
+                loadedEntries.put(contentHash, new Entry(tokenCount, data));
+            }
+
+            final Map<String, FileEntry> loadedFiles = new HashMap<>();
+            final int fileCount = inputStream.readInt();
+            for (int i = 0; i < fileCount; i++) {
+                final String fileName = inputStream.readUTF();
+                final String contentHash = inputStream.readUTF();
+                final long length = inputStream.readLong();
+                final long lastModified = inputStream.readLong();
+                if (loadedEntries.containsKey(contentHash)) {
+                    loadedFiles.put(fileName, new FileEntry(contentHash, length, lastModified));
+                }
+            }
+
+            TokenEntry.getDictionary().restore(images);
+            entries.putAll(loadedEntries);
+            files.putAll(loadedFiles);
+            LOG.info("CPD index loaded");
+        } catch (final EOFException e) {
+            LOG.warning("CPD index file " + indexFile.getPath() + " is malformed, will not be used for current run");
+        } catch (final IOException e) {
+            LOG.severe("Could not load CPD index from file. " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the tokens of a file of this run. They are taken from the
+     * index, if the content of the file is known, otherwise the file is
+     * tokenized, and its tokens are added to the index.
+     *
+     * @param sourceCode The file
+     * @param tokenizer  The tokenizer to use, if the content isn't known
+     * @return The tokens of the file, ending with an EOF marker
+     * @throws IOException If the file can't be read
+     */
+    Tokens tokenize(SourceCode sourceCode, Tokenizer tokenizer) throws IOException {
+        final String fileName = sourceCode.getFileName();
+        addRunFile(fileName);
+        // taken before the file is read, so that a concurrent change is seen by the next run
+        final File file = new File(fileName);
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+
+        final String contentHash = computeContentHash(sourceCode);
+        final Entry entry = entries.get(contentHash);
+        Tokens tokens = entry == null ? null : entry.decode(fileName);
+        if (tokens == null) {
+            // dropped from the index, if the tokenizer fails
+            files.remove(fileName);
+            tokens = new Tokens();
+            tokenizer.tokenize(sourceCode, tokens);
+            entries.put(contentHash, Entry.encode(tokens));
+        }
+        files.put(fileName, new FileEntry(contentHash, length, lastModified));
+        return tokens;
+    }
+
+    /**
+     * Records a file, which has been added to this run, so that it isn't
+     * taken from the corpus. This is done before the file is tokenized,
+     * as it may be tokenized concurrently.
+     *
+     * @param fileName The name of the file
+     */
+    void addRunFile(String fileName) {
+        runFiles.add(fileName);
+    }
+
+    /**
+     * Returns the names of the files of the index, which haven't been added
+     * to this run.
+     *
+     * @return The names of the files, sorted
+     */
+    List<String> getCorpusFiles() {
+        final List<String> corpus = new ArrayList<>();
+        for (final String fileName : files.keySet()) {
+            if (!runFiles.contains(fileName)) {
+                corpus.add(fileName);
+            }
+        }
+        Collections.sort(corpus);
+        return corpus;
+    }
+
+    /**
+     * Returns whether the given file of the index has been modified or
+     * deleted since it has been tokenized. Only its size and modification
+     * time are compared, the file isn't read.
+     *
+     * @param fileName The name of the file
+     * @return Whether the stored tokens of the file are outdated
+     */
+    boolean isModified(String fileName) {
+        final FileEntry entry = files.get(fileName);
+        final File file = new File(fileName);
+        return entry == null || !file.isFile() || file.length() != entry.length
+                || file.lastModified() != entry.lastModified;
+    }
+
+    /**
+     * Returns the stored tokens of a file of the corpus.
+     *
+     * @param fileName The name of the file
+     * @return The tokens of the file, ending with an EOF marker, or null if
+     *         the file isn't in the index
+     */
+    Tokens getTokens(String fileName) {
+        final FileEntry file = files.get(fileName);
+        final Entry entry = file == null ? null : entries.get(file.contentHash);
+        final Tokens tokens = entry == null ? null : entry.decode(fileName);
+        if (tokens == null) {
+            files.remove(fileName);
+        }
+        return tokens;
+    }
+
+    /**
+     * Removes a file from the index, e.g. because it has been deleted.
+     *
+     * @param fileName The name of the file
+     */
+    void remove(String fileName) {
+        files.remove(fileName);
+    }
+
+    /**
+     * Replaces the index file with the tokens of the files of the index, i.e.
+     * the files of this run and the remaining files of the corpus.
+     */
+    void persist() {
+        // Create directories missing along the way
+        if (!indexFile.exists()) {
+            final File parentFile = indexFile.getAbsoluteFile().getParentFile();
+            if (parentFile != null && !parentFile.exists()) {
+                parentFile.mkdirs();
+            }
+        }
+
+        try (DataOutputStream outputStream = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+            outputStream.writeInt(FORMAT_VERSION);
+            outputStream.writeUTF(PMDVersion.VERSION);
+            outputStream.writeLong(configurationChecksum);
+
+            final String[] images = TokenEntry.getDictionary().getImages();
+            outputStream.writeInt(images.length - 1);
+            for (int i = 1; i < images.length; i++) {
+                if (images[i] == null) {
+                    writeVarInt(outputStream, 0);
+                } else {
+                    final byte[] image = images[i].getBytes(StandardCharsets.UTF_8);
+                    writeVarInt(outputStream, image.length + 1);
+                    outputStream.write(image);
+                }
+            }
+
+            // the tokens of contents, that no file has anymore, are dropped
+            final Set<String> contentHashes = new HashSet<>();
+            for (final FileEntry file : files.values()) {
+                contentHashes.add(file.contentHash);
+            }
+            outputStream.writeInt(contentHashes.size());
+            for (final String contentHash : contentHashes) {
+                final Entry entry = entries.get(contentHash);
+                outputStream.writeUTF(contentHash);
+                outputStream.writeInt(entry.tokenCount);
+                outputStream.writeInt(entry.data.length);
+                outputStream.write(entry.data);
+            }
+
+            outputStream.writeInt(files.size());
+            for (final Map.Entry<String, FileEntry> file : files.entrySet()) {
+                outputStream.writeUTF(file.getKey());
+                outputStream.writeUTF(file.getValue().contentHash);
+                outputStream.writeLong(file.getValue().length);
+                outputStream.writeLong(file.getValue().lastModified);
+            }
+
+            LOG.info("CPD index updated");
+        } catch (final IOException e) {
+            LOG.severe("Could not persist CPD index to file. " + e.getMessage());
+        }
+    }
+
+    /**
+     * Computes the SHA-256 hash of the content of the given source code.
+     *
+     * @param sourceCode The source code
+     * @return The hash, as hex string
+     */
+    static String computeContentHash(SourceCode sourceCode) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+        final byte[] hash = digest.digest(sourceCode.getCodeBuffer().toString().getBytes(StandardCharsets.UTF_8));
+        final char[] digits = "0123456789abcdef".toCharArray();
+        final StringBuilder sb = new StringBuilder(hash.length * 2);
+        for (final byte b : hash) {
+            sb.append(digits[(b >> 4) & 0xF]).append(digits[b & 0xF]);
+        }
+        return sb.toString();
+    }
+
+    private static long computeChecksum(CPDConfiguration configuration) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(configuration.getLanguage() == null ? null : configuration.getLanguage().getTerseName())
+            .append('\n').append(configuration.isIgnoreLiterals())
+            .append('\n').append(configuration.isIgnoreIdentifiers())
+            .append('\n').append(configuration.isIgnoreAnnotations())
+            .append('\n').append(configuration.isIgnoreUsings())
+            .append('\n').append(configuration.isNoSkipBlocks())
+            .append('\n').append(configuration.getSkipBlocksPattern())
+            .append('\n').append(configuration.getSourceEncoding());
+        final CRC32 crc32 = new CRC32();
+        crc32.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+        return crc32.getValue();
+    }
+
+    private static void writeVarInt(DataOutput output, int value) throws IOException {
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            output.writeByte(remaining & 0x7F | 0x80);
+            remaining >>>= 7;
+        }
+        output.writeByte(remaining);
+    }
+
+    private static int readVarInt(DataInput input) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = input.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+
+    private static int encodeZigZag(int value) {
+        return value << 1 ^ value >> 31;
+    }
+
+    private static int decodeZigZag(int value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    /**
+     * The tokens of a content.
+     */
+    private static final class Entry {
+        private final int tokenCount;
+        /** The identifiers and line deltas of the tokens, as variable length integers. */
+        private final byte[] data;
+
+        Entry(int tokenCount, byte[] data) {
+            this.tokenCount = tokenCount;
+            this.data = data;
+        }
+
+        static Entry encode(Tokens tokens) {
+            final ByteArrayOutputStream data = new ByteArrayOutputStream(tokens.size() * 2);
+            try (DataOutputStream output = new DataOutputStream(data)) {
+                int line = 0;
+                for (int i = 0; i < tokens.size(); i++) {
+                    writeVarInt(output, tokens.getIdentifier(i));
+                    writeVarInt(output, encodeZigZag(tokens.getBeginLine(i) - line));
+                    line = tokens.getBeginLine(i);
+                }
+            } catch (IOException e) {
+                // can't happen, the data is written to memory
+                throw new IllegalStateException(e);
+            }
+            return new Entry(tokens.size(), data.toByteArray());
+        }
+
+        /**
+         * Returns the tokens, for the given file.
+         *
+         * @return The tokens, or null if the entry is malformed
+         */
+        Tokens decode(String fileName) {
+            final Tokens tokens = new Tokens();
+            try {
+                final DataInput input = new DataInputStream(new ByteArrayInputStream(data));
+                int line = 0;
+                for (int i = 0; i < tokenCount; i++) {
+                    final int identifier = readVarInt(input);
+                    line += decodeZigZag(readVarInt(input));
+                    tokens.add(identifier, fileName, line);
+                }
+            } catch (IOException | RuntimeException e) {
+                LOG.warning("CPD index entry of " + fileName + " is malformed, tokenizing the file again");
+                return null;
+            }
+            return tokens;
+        }
+    }
+
+    /**
+     * The state of a file of the index, when it has been tokenized.
+     */
+    private static final class FileEntry {
+        private final String contentHash;
+        private final long length;
+        private final long lastModified;
+
+        FileEntry(String contentHash, long length, long lastModified) {
+            this.contentHash = contentHash;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -4,6 +4,8 @@
 
 package net.sourceforge.pmd.cpd;
 
+import java.io.IOException;
+
 public class Mark implements Comparable<Mark> {
     private TokenEntry token;
     private int lineCount;
@@ -41,6 +43,17 @@ public class Mark implements Comparable<Mark> {
         return this.code.getSlice(getBeginLine(), getEndLine());
     }
 
+    /**
+     * Appends the duplicated code to the given output, reading only the
+     * lines of this mark from the source code.
+     *
+     * @param out The output
+     * @throws IOException If the output could not be written to
+     */
+    public void appendSourceCodeSlice(Appendable out) throws IOException {
+        this.code.appendSlice(out, getBeginLine(), getEndLine());
+    }
+
     public void setSourceCode(SourceCode code) {
         this.code = code;
     }
@@ -4,6 +4,7 @@
 
 package net.sourceforge.pmd.cpd;
 
+import java.io.IOException;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.Set;
@@ -77,6 +78,17 @@ public class Match implements Comparable<Match>, Iterable<Mark> {
         return this.getMark(0).getSourceCodeSlice();
     }
 
+    /**
+     * Appends the duplicated code to the given output.
+     *
+     * @param out The output
+     * @throws IOException If the output could not be written to
+     * @see Mark#appendSourceCodeSlice(Appendable)
+     */
+    public void appendSourceCodeSlice(Appendable out) throws IOException {
+        this.getMark(0).appendSourceCodeSlice(out);
+    }
+
     @Override
     public Iterator<Mark> iterator() {
         return markSet.iterator();
@@ -5,8 +5,7 @@
 package net.sourceforge.pmd.cpd;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -20,9 +19,10 @@ public class MatchAlgorithm {
     private List<Match> matches;
     private Map<String, SourceCode> source;
     private Tokens tokens;
-    private List<TokenEntry> code;
     private CPDListener cpdListener;
     private int min;
+    /** The number of leading tokens, whose duplicates are reported. */
+    private int reportedTokenCount = Integer.MAX_VALUE;
 
     public MatchAlgorithm(Map<String, SourceCode> sourceCode, Tokens tokens, int min) {
         this(sourceCode, tokens, min, new CPDNullListener());
@@ -31,7 +31,6 @@ public class MatchAlgorithm {
     public MatchAlgorithm(Map<String, SourceCode> sourceCode, Tokens tokens, int min, CPDListener listener) {
         this.source = sourceCode;
         this.tokens = tokens;
-        this.code = tokens.getTokens();
         this.min = min;
         this.cpdListener = listener;
         for (int i = 0; i < min; i++) {
@@ -48,31 +47,33 @@ public class MatchAlgorithm {
     }
 
     public TokenEntry tokenAt(int offset, TokenEntry m) {
-        return code.get(offset + m.getIndex());
+        return tokens.getTokens().get(offset + m.getIndex());
+    }
+
+    Tokens getTokens() {
+        return tokens;
     }
 
     public int getMinimumTileSize() {
         return this.min;
     }
 
-    public void findMatches() {
-        cpdListener.phaseUpdate(CPDListener.HASH);
-        Map<TokenEntry, Object> markGroups = hash();
+    /**
+     * Only reports the duplicates involving the given number of leading
+     * tokens. The following tokens, e.g. those of the files of the
+     * {@link CPDIndex}, are only searched for duplicates of them.
+     *
+     * @param count The number of leading tokens
+     */
+    void setReportedTokenCount(int count) {
+        this.reportedTokenCount = count;
+    }
 
-        cpdListener.phaseUpdate(CPDListener.MATCH);
-        MatchCollector matchCollector = new MatchCollector(this);
-        for (Iterator<Object> i = markGroups.values().iterator(); i.hasNext();) {
-            Object o = i.next();
-            if (o instanceof List) {
-                @SuppressWarnings("unchecked")
-                List<TokenEntry> l = (List<TokenEntry>) o;
-                Collections.reverse(l);
-                matchCollector.collect(l);
-            }
-            i.remove();
+    public void findMatches() {
+        matches = collectMatches();
+        if (reportedTokenCount < tokens.size()) {
+            matches = retainReportedMatches(matches);
         }
-        cpdListener.phaseUpdate(CPDListener.GROUPING);
-        matches = matchCollector.getMatches();
 
         for (Match match : matches) {
             for (Mark mark : match) {
@@ -87,43 +88,122 @@ public class MatchAlgorithm {
         cpdListener.phaseUpdate(CPDListener.DONE);
     }
 
-    @SuppressWarnings("PMD.JumbledIncrementer")
-    private Map<TokenEntry, Object> hash() {
-        Map<TokenEntry, Object> markGroups = new HashMap<>(tokens.size());
-        for (int i = code.size() - 1; i >= 0; i--) {
-            TokenEntry token = code.get(i);
-            if (token != TokenEntry.EOF) {
-                int last = tokenAt(min, token).getIdentifier();
-                lastHash = MOD * lastHash + token.getIdentifier() - lastMod * last;
-                token.setHashCode(lastHash);
-                Object o = markGroups.get(token);
-
-                // Note that this insertion method is worthwhile since the vast
-                // majority
-                // markGroup keys will have only one value.
-                if (o == null) {
-                    markGroups.put(token, token);
-                } else if (o instanceof TokenEntry) {
-                    List<TokenEntry> l = new ArrayList<>();
-                    l.add((TokenEntry) o);
-                    l.add(token);
-                    markGroups.put(token, l);
-                } else {
-                    @SuppressWarnings("unchecked")
-                    List<TokenEntry> l = (List<TokenEntry>) o;
-                    l.add(token);
+    /**
+     * Finds the matches between the tokens, reporting the hash, match and
+     * grouping phases to the listener.
+     *
+     * @return The matches, sorted by their natural order
+     */
+    protected List<Match> collectMatches() {
+        cpdListener.phaseUpdate(CPDListener.HASH);
+        List<List<TokenEntry>> markGroups = hash();
+
+        cpdListener.phaseUpdate(CPDListener.MATCH);
+        MatchCollector matchCollector = new MatchCollector(this);
+        for (int i = 0; i < markGroups.size(); i++) {
+            matchCollector.collect(markGroups.get(i));
+            markGroups.set(i, null);
+        }
+        cpdListener.phaseUpdate(CPDListener.GROUPING);
+        return matchCollector.getMatches();
+    }
+
+    private List<Match> retainReportedMatches(List<Match> allMatches) {
+        List<Match> reported = new ArrayList<>();
+        for (Match match : allMatches) {
+            for (Mark mark : match) {
+                if (mark.getToken().getIndex() < reportedTokenCount) {
+                    reported.add(match);
+                    break;
                 }
+            }
+        }
+        return reported;
+    }
+
+    protected CPDListener getListener() {
+        return cpdListener;
+    }
+
+    /**
+     * Groups the tokens by the hash of the tile starting at them. The hashes
+     * are packed with the positions of the tokens into a primitive array,
+     * which is sorted, so that {@link TokenEntry} instances are only created
+     * for the tokens, whose hash is shared with other tokens.
+     *
+     * @return The groups with several tokens, each sorted by position
+     */
+    @SuppressWarnings("PMD.JumbledIncrementer")
+    private List<List<TokenEntry>> hash() {
+        long[] marks = new long[tokens.size()];
+        int count = 0;
+        for (int i = tokens.size() - 1; i >= 0; i--) {
+            if (!tokens.isEOF(i)) {
+                int last = tokens.getIdentifier(i + min);
+                lastHash = MOD * lastHash + tokens.getIdentifier(i) - lastMod * last;
+                marks[count++] = (long) lastHash << 32 | i;
             } else {
                 lastHash = 0;
                 for (int end = Math.max(0, i - min + 1); i > end; i--) {
-                    token = code.get(i - 1);
-                    lastHash = MOD * lastHash + token.getIdentifier();
-                    if (token == TokenEntry.EOF) {
+                    lastHash = MOD * lastHash + tokens.getIdentifier(i - 1);
+                    if (tokens.isEOF(i - 1)) {
                         break;
                     }
                 }
             }
         }
+        if (reportedTokenCount < tokens.size()) {
+            count = retainReportedHashes(marks, count);
+        }
+        Arrays.sort(marks, 0, count);
+
+        List<List<TokenEntry>> markGroups = new ArrayList<>();
+        List<TokenEntry> code = tokens.getTokens();
+        int start = 0;
+        while (start < count) {
+            int hash = (int) (marks[start] >> 32);
+            int end = start + 1;
+            while (end < count && (int) (marks[end] >> 32) == hash) {
+                end++;
+            }
+            // the vast majority of the tokens don't start a duplicate
+            if (end - start > 1) {
+                List<TokenEntry> group = new ArrayList<>(end - start);
+                for (int j = start; j < end; j++) {
+                    TokenEntry token = code.get((int) marks[j]);
+                    token.setHashCode(hash);
+                    group.add(token);
+                }
+                markGroups.add(group);
+            }
+            start = end;
+        }
         return markGroups;
     }
+
+    /**
+     * Drops the marks, whose hash doesn't occur among the reported tokens,
+     * as they can't start a reported duplicate. This spares sorting and
+     * matching the tiles, which only occur among the other tokens.
+     *
+     * @return The number of retained marks
+     */
+    private int retainReportedHashes(long[] marks, int count) {
+        int[] reportedHashes = new int[count];
+        int reported = 0;
+        for (int i = 0; i < count; i++) {
+            if ((int) marks[i] < reportedTokenCount) {
+                reportedHashes[reported++] = (int) (marks[i] >> 32);
+            }
+        }
+        Arrays.sort(reportedHashes, 0, reported);
+
+        int retained = 0;
+        for (int i = 0; i < count; i++) {
+            if (Arrays.binarySearch(reportedHashes, 0, reported, (int) (marks[i] >> 32)) >= 0) {
+                marks[retained++] = marks[i];
+            }
+        }
+        return retained;
+    }
 }
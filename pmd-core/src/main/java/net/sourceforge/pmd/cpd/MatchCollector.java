@@ -86,18 +86,20 @@ public class MatchCollector {
         if (mark1.getIndex() == 0) {
             return false;
         }
-        return !matchEnded(ma.tokenAt(-1, mark1), ma.tokenAt(-1, mark2));
+        return !matchEnded(mark1.getIndex() - 1, mark2.getIndex() - 1);
     }
 
     private int countDuplicateTokens(TokenEntry mark1, TokenEntry mark2) {
         int index = 0;
-        while (!matchEnded(ma.tokenAt(index, mark1), ma.tokenAt(index, mark2))) {
+        while (!matchEnded(mark1.getIndex() + index, mark2.getIndex() + index)) {
             index++;
         }
         return index;
     }
 
-    private boolean matchEnded(TokenEntry token1, TokenEntry token2) {
-        return token1.getIdentifier() != token2.getIdentifier() || token1 == TokenEntry.EOF || token2 == TokenEntry.EOF;
+    private boolean matchEnded(int index1, int index2) {
+        Tokens tokens = ma.getTokens();
+        return tokens.getIdentifier(index1) != tokens.getIdentifier(index2) || tokens.isEOF(index1)
+                || tokens.isEOF(index2);
     }
 }
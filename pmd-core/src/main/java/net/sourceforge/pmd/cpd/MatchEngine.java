@@ -0,0 +1,26 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import java.util.Map;
+
+/**
+ * The algorithms available to find the duplicates among the tokens. They all
+ * report the same matches.
+ */
+public enum MatchEngine {
+    /** Hashes every window of tokens, see {@link MatchAlgorithm}. */
+    HASH,
+    /** Uses a suffix array of the tokens, see {@link SuffixArrayMatchAlgorithm}. */
+    SUFFIX_ARRAY;
+
+    MatchAlgorithm createMatchAlgorithm(Map<String, SourceCode> source, Tokens tokens, int minimumTileSize,
+            CPDListener listener) {
+        if (this == SUFFIX_ARRAY) {
+            return new SuffixArrayMatchAlgorithm(source, tokens, minimumTileSize, listener);
+        }
+        return new MatchAlgorithm(source, tokens, minimumTileSize, listener);
+    }
+}
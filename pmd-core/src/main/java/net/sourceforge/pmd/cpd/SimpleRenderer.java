@@ -46,9 +46,8 @@ public class SimpleRenderer implements Renderer, CPDRenderer {
 
         writer.append(PMD.EOL); // add a line to separate the source from the desc above
 
-        String source = match.getSourceCodeSlice();
-
         if (trimLeadingWhitespace) {
+            String source = match.getSourceCodeSlice();
             String[] lines = source.split('[' + PMD.EOL + ']');
             int trimDepth = StringUtil.maxCommonLeadingWhitespaceForAll(lines);
             if (trimDepth > 0) {
@@ -60,7 +59,8 @@ public class SimpleRenderer implements Renderer, CPDRenderer {
             return;
         }
 
-        writer.append(source).append(PMD.EOL);
+        match.appendSourceCodeSlice(writer);
+        writer.append(PMD.EOL);
     }
 
     @Override
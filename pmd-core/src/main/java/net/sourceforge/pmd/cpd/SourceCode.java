@@ -7,11 +7,13 @@ package net.sourceforge.pmd.cpd;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
 import java.lang.ref.SoftReference;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import org.apache.commons.io.ByteOrderMark;
@@ -67,7 +69,7 @@ public class SourceCode {
 
         protected List<String> load(int startLine, int endLine) {
             try (BufferedReader reader = new BufferedReader(getReader())) {
-                int linesToRead = endLine - startLine;
+                int linesToRead = endLine - startLine + 1;
                 List<String> lines = new ArrayList<>(linesToRead);
 
                 // Skip lines until we reach the start point
@@ -89,6 +91,60 @@ public class SourceCode {
                 throw new RuntimeException("Problem while reading " + getFileName() + ":" + e.getMessage());
             }
         }
+
+        /**
+         * Appends the lines between the given lines (inclusive) to the given
+         * output, separated by {@link PMD#EOL}. The lines are taken from the
+         * cached code, if it's still available. Otherwise they are read one
+         * by one from the source, without loading the whole file.
+         *
+         * @param out       The output
+         * @param startLine The first line, 1-based
+         * @param endLine   The last line, 1-based
+         * @throws IOException If the output could not be written to
+         */
+        public void appendCodeSlice(Appendable out, int startLine, int endLine) throws IOException {
+            List<String> c = null;
+            if (code != null) {
+                c = code.get();
+            }
+            if (c != null) {
+                appendLines(out, c.subList(startLine - 1, Math.min(endLine, c.size())).iterator());
+                return;
+            }
+
+            final BufferedReader reader;
+            try {
+                reader = new BufferedReader(getReader());
+            } catch (Exception e) {
+                throw new RuntimeException("Problem while reading " + getFileName() + ":" + e.getMessage());
+            }
+            try {
+                for (int i = 1; i < startLine; i++) {
+                    if (reader.readLine() == null) {
+                        return;
+                    }
+                }
+                String currentLine;
+                for (int i = startLine; i <= endLine && (currentLine = reader.readLine()) != null; i++) {
+                    if (i > startLine) {
+                        out.append(PMD.EOL);
+                    }
+                    out.append(currentLine);
+                }
+            } finally {
+                reader.close();
+            }
+        }
+
+        private static void appendLines(Appendable out, Iterator<String> lines) throws IOException {
+            while (lines.hasNext()) {
+                out.append(lines.next());
+                if (lines.hasNext()) {
+                    out.append(PMD.EOL);
+                }
+            }
+        }
     }
 
     public static class FileCodeLoader extends CodeLoader {
@@ -195,18 +251,28 @@ public class SourceCode {
     }
 
     public String getSlice(int startLine, int endLine) {
-        List<String> lines = cl.getCodeSlice(startLine, endLine);
-
         StringBuilder sb = new StringBuilder();
-        for (String line : lines) {
-            if (sb.length() != 0) {
-                sb.append(PMD.EOL);
-            }
-            sb.append(line);
+        try {
+            appendSlice(sb, startLine, endLine);
+        } catch (IOException ignored) {
+            // Not really possible with a StringBuilder
         }
         return sb.toString();
     }
 
+    /**
+     * Appends the lines between the given lines (inclusive) to the given
+     * output, without building the whole slice in memory.
+     *
+     * @param out       The output
+     * @param startLine The first line, 1-based
+     * @param endLine   The last line, 1-based
+     * @throws IOException If the output could not be written to
+     */
+    public void appendSlice(Appendable out, int startLine, int endLine) throws IOException {
+        cl.appendCodeSlice(out, startLine, endLine);
+    }
+
     public String getFileName() {
         return cl.getFileName();
     }
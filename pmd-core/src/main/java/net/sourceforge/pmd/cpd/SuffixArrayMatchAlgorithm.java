@@ -0,0 +1,710 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A match algorithm, that finds the duplicates using a suffix array of the
+ * token identifiers instead of hashing every window of tokens. It only needs
+ * a few int arrays of the size of the token count, and doesn't compare all
+ * occurrences of a duplicated sequence pairwise. It reports the same matches
+ * as {@link MatchAlgorithm}.
+ *
+ * <p>Suffixes sharing a prefix of at least the minimum tile size form the
+ * groups of candidate marks. Within a group, the longest common prefix of two
+ * suffixes is the token count of their duplicate. The tree of the lcp
+ * intervals of the suffix array gives each node the pairs of suffixes, that
+ * have exactly its lcp value in common: those in different child intervals.
+ * A pair is reported, if the tokens preceding both suffixes differ, and if
+ * the duplicates don't overlap.</p>
+ *
+ * <p>{@link MatchCollector} groups the reported pairs of the same token count
+ * into matches in the order of their indexes: a mark joins the match of its
+ * first partner, or starts a new one with it. The first partner of a mark is
+ * its smallest partner below, and if there is none, its smallest partner
+ * above, which is found for each mark without enumerating the pairs.</p>
+ */
+public class SuffixArrayMatchAlgorithm extends MatchAlgorithm {
+
+    private static final int MOD = 37;
+    private static final int NO_CHILD = -1;
+    private static final int NO_CONTEXT = Integer.MIN_VALUE;
+
+    private final Tokens tokens;
+    private final int min;
+
+    private int[] text;
+    private int[] suffixArray;
+    private List<Match> matches;
+
+    public SuffixArrayMatchAlgorithm(Map<String, SourceCode> sourceCode, Tokens tokens, int min) {
+        this(sourceCode, tokens, min, new CPDNullListener());
+    }
+
+    public SuffixArrayMatchAlgorithm(Map<String, SourceCode> sourceCode, Tokens tokens, int min,
+            CPDListener listener) {
+        super(sourceCode, tokens, min, listener);
+        this.tokens = tokens;
+        this.min = min;
+    }
+
+    @Override
+    protected List<Match> collectMatches() {
+        getListener().phaseUpdate(CPDListener.HASH);
+        text = toText(tokens);
+        suffixArray = buildSuffixArray(text);
+        final int[] lcp = buildLcpArray(text, suffixArray);
+
+        getListener().phaseUpdate(CPDListener.MATCH);
+        matches = new ArrayList<>();
+        traverseLcpIntervals(lcp);
+
+        getListener().phaseUpdate(CPDListener.GROUPING);
+        final List<Match> result = matches;
+        Collections.sort(result);
+        text = null;
+        suffixArray = null;
+        matches = null;
+        return result;
+    }
+
+    /**
+     * Maps the tokens to their identifiers. Each EOF marker gets a distinct
+     * identifier, so that no common prefix spans over the end of a file.
+     */
+    private static int[] toText(Tokens tokens) {
+        final int[] text = new int[tokens.size()];
+        int maxIdentifier = 0;
+        for (int i = 0; i < text.length; i++) {
+            text[i] = tokens.getIdentifier(i);
+            maxIdentifier = Math.max(maxIdentifier, text[i]);
+        }
+
+        int nextEof = maxIdentifier + 1;
+        for (int i = 0; i < text.length; i++) {
+            if (tokens.isEOF(i)) {
+                text[i] = nextEof++;
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Sorts the suffixes of the given text by prefix doubling, using counting
+     * sorts on the ranks of the previous round. The text must end with a
+     * unique value, e.g. an EOF marker.
+     *
+     * @param text The non-negative identifiers of the tokens
+     * @return The start indexes of the suffixes in lexicographic order
+     */
+    static int[] buildSuffixArray(int[] text) {
+        final int n = text.length;
+        int alphabetSize = 0;
+        for (int value : text) {
+            alphabetSize = Math.max(alphabetSize, value + 1);
+        }
+
+        int[] suffixArray = new int[n];
+        int[] rank = new int[n];
+        int[] buffer = new int[n];
+        final int[] count = new int[Math.max(alphabetSize, n) + 1];
+
+        // Sort by the first token
+        for (int i = 0; i < n; i++) {
+            count[text[i]]++;
+        }
+        for (int i = 1; i < alphabetSize; i++) {
+            count[i] += count[i - 1];
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            suffixArray[--count[text[i]]] = i;
+        }
+        System.arraycopy(text, 0, rank, 0, n);
+        int classes = alphabetSize;
+
+        for (int k = 1; classes < n; k <<= 1) {
+            // Order by the rank of the second half, suffixes shorter than k first
+            int p = 0;
+            for (int i = Math.max(0, n - k); i < n; i++) {
+                buffer[p++] = i;
+            }
+            for (int j = 0; j < n; j++) {
+                if (suffixArray[j] >= k) {
+                    buffer[p++] = suffixArray[j] - k;
+                }
+            }
+
+            // Stable sort by the rank of the first half
+            Arrays.fill(count, 0, classes, 0);
+            for (int i = 0; i < n; i++) {
+                count[rank[i]]++;
+            }
+            for (int i = 1; i < classes; i++) {
+                count[i] += count[i - 1];
+            }
+            for (int j = n - 1; j >= 0; j--) {
+                suffixArray[--count[rank[buffer[j]]]] = buffer[j];
+            }
+
+            // Compute the ranks of the doubled prefixes
+            buffer[suffixArray[0]] = 0;
+            classes = 1;
+            for (int j = 1; j < n; j++) {
+                final int current = suffixArray[j];
+                final int previous = suffixArray[j - 1];
+                if (rank[current] != rank[previous] || secondRank(rank, current, k) != secondRank(rank, previous, k)) {
+                    classes++;
+                }
+                buffer[current] = classes - 1;
+            }
+            final int[] swap = rank;
+            rank = buffer;
+            buffer = swap;
+        }
+        return suffixArray;
+    }
+
+    private static int secondRank(int[] rank, int index, int k) {
+        return index + k < rank.length ? rank[index + k] : -1;
+    }
+
+    /**
+     * Computes the length of the longest common prefix of each suffix and the
+     * one before it in the suffix array, using Kasai's algorithm.
+     *
+     * @return The lcp array, whose first element is 0
+     */
+    static int[] buildLcpArray(int[] text, int[] suffixArray) {
+        final int n = text.length;
+        final int[] rank = new int[n];
+        for (int i = 0; i < n; i++) {
+            rank[suffixArray[i]] = i;
+        }
+
+        final int[] lcp = new int[n];
+        int h = 0;
+        for (int i = 0; i < n; i++) {
+            if (rank[i] > 0) {
+                final int j = suffixArray[rank[i] - 1];
+                while (i + h < n && j + h < n && text[i + h] == text[j + h]) {
+                    h++;
+                }
+                lcp[rank[i]] = h;
+                if (h > 0) {
+                    h--;
+                }
+            } else {
+                h = 0;
+            }
+        }
+        return lcp;
+    }
+
+    /**
+     * Visits the lcp intervals bottom up, collecting the matches of the
+     * intervals whose lcp is at least the minimum tile size.
+     */
+    private void traverseLcpIntervals(int[] lcp) {
+        final int n = suffixArray.length;
+        final Deque<Interval> stack = new ArrayDeque<>();
+        stack.push(new Interval(0, 0));
+
+        for (int i = 1; i <= n; i++) {
+            final int currentLcp = i < n ? lcp[i] : 0;
+            int lb = i - 1;
+            Interval lastInterval = null;
+            while (currentLcp < stack.peek().lcp) {
+                lastInterval = stack.pop();
+                lastInterval.rb = i - 1;
+                lastInterval.subtree = process(lastInterval);
+                lb = lastInterval.lb;
+                if (currentLcp <= stack.peek().lcp) {
+                    stack.peek().addChild(lastInterval);
+                    lastInterval = null;
+                }
+            }
+            if (currentLcp > stack.peek().lcp) {
+                final Interval interval = new Interval(currentLcp, lb);
+                if (lastInterval != null) {
+                    interval.addChild(lastInterval);
+                }
+                stack.push(interval);
+            }
+        }
+    }
+
+    private Subtree process(Interval interval) {
+        if (interval.lcp < min) {
+            // not a duplicate, but its children might have been
+            interval.children = null;
+            return null;
+        }
+
+        final List<Subtree> children = new ArrayList<>();
+        int next = 0;
+        for (int r = interval.lb; r <= interval.rb; r++) {
+            final Interval child = interval.children == null || next >= interval.children.size() ? null
+                    : interval.children.get(next);
+            if (child != null && child.lb == r) {
+                children.add(child.subtree);
+                r = child.rb;
+                next++;
+            } else {
+                children.add(new Subtree(suffixArray[r], leftContext(suffixArray[r])));
+            }
+        }
+        interval.children = null;
+
+        final Candidates smallest = Candidates.of(children, true);
+        final Candidates largest = Candidates.of(children, false);
+        collectMatches(interval.lcp, children, smallest, largest);
+        return Subtree.merge(children, smallest, largest);
+    }
+
+    /**
+     * Identifies the token preceding the given index. Tokens at the start of
+     * a file have no predecessor, their identifier is unique.
+     */
+    private int leftContext(int index) {
+        // EOF markers have unique identifiers
+        return index == 0 ? -1 : text[index - 1];
+    }
+
+    /**
+     * Collects the matches of the given token count between the children of
+     * an lcp interval.
+     */
+    private void collectMatches(int tokenCount, List<Subtree> children, Candidates smallest, Candidates largest) {
+        final IntList positions = new IntList();
+        final IntList childIndexes = new IntList();
+        final IntList contexts = new IntList();
+        final IntList lowestPartners = new IntList();
+
+        // Find the marks having a partner
+        for (int c = 0; c < children.size(); c++) {
+            final Subtree child = children.get(c);
+            if (child.positions == null) {
+                addIfMatched(child.min1, c, child.minContext1, tokenCount, smallest, largest,
+                        positions, childIndexes, contexts, lowestPartners);
+                continue;
+            }
+            for (int slot = 0; slot < child.positions.capacity(); slot++) {
+                final IntList list = child.positions.positionsAt(slot);
+                if (list == null) {
+                    continue;
+                }
+                final int context = child.positions.contextAt(slot);
+                if (smallest.firstPosition(0, c, context) < 0) {
+                    // all others have the same left context, or are in the same child
+                    continue;
+                }
+                for (int i = 0; i < list.size(); i++) {
+                    addIfMatched(list.get(i), c, context, tokenCount, smallest, largest,
+                            positions, childIndexes, contexts, lowestPartners);
+                }
+            }
+        }
+        if (positions.size() == 0) {
+            return;
+        }
+
+        // Sort them by index
+        final int m = positions.size();
+        final long[] order = new long[m];
+        for (int i = 0; i < m; i++) {
+            order[i] = (long) positions.get(i) << 32 | i;
+        }
+        Arrays.sort(order);
+        final int[] sortedPositions = new int[m];
+        final int[] sortedChildren = new int[m];
+        final int[] sortedContexts = new int[m];
+        final int[] sortedLowestPartners = new int[m];
+        for (int i = 0; i < m; i++) {
+            final int index = (int) order[i];
+            sortedPositions[i] = positions.get(index);
+            sortedChildren[i] = childIndexes.get(index);
+            sortedContexts[i] = contexts.get(index);
+            sortedLowestPartners[i] = lowestPartners.get(index);
+        }
+
+        // Group them the way MatchCollector does
+        final Candidates above = new Candidates(sortedPositions, sortedChildren, sortedContexts);
+        final int[] matchIds = new int[m];
+        final List<IntList> members = new ArrayList<>();
+        for (int i = 0; i < m; i++) {
+            final int owner;
+            if (sortedLowestPartners[i] >= 0) {
+                owner = matchIds[Arrays.binarySearch(sortedPositions, sortedLowestPartners[i])];
+            } else {
+                final int from = lowerBound(sortedPositions, sortedPositions[i] + tokenCount);
+                final int partner = above.first(from, sortedChildren[i], sortedContexts[i]);
+                if (sortedLowestPartners[partner] == sortedPositions[i]) {
+                    owner = members.size();
+                    members.add(new IntList(2));
+                } else {
+                    owner = matchIds[Arrays.binarySearch(sortedPositions, sortedLowestPartners[partner])];
+                }
+            }
+            matchIds[i] = owner;
+            members.get(owner).add(sortedPositions[i]);
+        }
+
+        for (IntList marks : members) {
+            final Match match = new Match(tokenCount, markToken(marks.get(0)), markToken(marks.get(1)));
+            for (int i = 2; i < marks.size(); i++) {
+                match.addTokenEntry(markToken(marks.get(i)));
+            }
+            matches.add(match);
+        }
+    }
+
+    private static void addIfMatched(int position, int child, int context, int tokenCount, Candidates smallest,
+            Candidates largest, IntList positions, IntList childIndexes, IntList contexts,
+            IntList lowestPartners) {
+        // the smallest, resp. largest position in another child with another left context
+        final int lowest = smallest.firstPosition(0, child, context);
+        if (lowest < 0) {
+            return;
+        }
+        final boolean hasPartnerBelow = lowest <= position - tokenCount;
+        if (hasPartnerBelow || largest.firstPosition(0, child, context) >= position + tokenCount) {
+            positions.add(position);
+            childIndexes.add(child);
+            contexts.add(context);
+            lowestPartners.add(hasPartnerBelow ? lowest : -1);
+        }
+    }
+
+    private static int lowerBound(int[] sorted, int value) {
+        final int index = Arrays.binarySearch(sorted, value);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private TokenEntry markToken(int position) {
+        final TokenEntry token = tokens.getTokens().get(position);
+        // The same hash as computed by MatchAlgorithm, used by TokenEntry#equals
+        int hash = 0;
+        for (int k = min - 1; k >= 0; k--) {
+            hash = MOD * hash + tokens.getIdentifier(position + k);
+        }
+        token.setHashCode(hash);
+        return token;
+    }
+
+    /**
+     * An lcp interval of the suffix array.
+     */
+    private static final class Interval {
+        private final int lcp;
+        private final int lb;
+        private int rb;
+        private List<Interval> children;
+        private Subtree subtree;
+
+        Interval(int lcp, int lb) {
+            this.lcp = lcp;
+            this.lb = lb;
+        }
+
+        void addChild(Interval child) {
+            if (child.subtree == null) {
+                // not a duplicate
+                return;
+            }
+            if (children == null) {
+                children = new ArrayList<>();
+            }
+            children.add(child);
+        }
+    }
+
+    /**
+     * The suffixes of an lcp interval, by left context, along with the
+     * smallest and largest of them.
+     */
+    private static final class Subtree {
+        private int size;
+        private int min1;
+        private int minContext1;
+        private int min2 = -1;
+        private int minContext2;
+        private int max1;
+        private int maxContext1;
+        private int max2 = -1;
+        private int maxContext2;
+        /** The positions by left context, null for a single position. */
+        private PositionsByContext positions;
+
+        Subtree() {
+            // merged
+        }
+
+        Subtree(int position, int context) {
+            size = 1;
+            min1 = position;
+            minContext1 = context;
+            max1 = position;
+            maxContext1 = context;
+        }
+
+        static Subtree merge(List<Subtree> children, Candidates smallest, Candidates largest) {
+            final Subtree result = new Subtree();
+            Subtree largestChild = null;
+            for (Subtree child : children) {
+                result.size += child.size;
+                if (child.positions != null && (largestChild == null || child.size > largestChild.size)) {
+                    largestChild = child;
+                }
+            }
+
+            result.positions = largestChild == null ? new PositionsByContext() : largestChild.positions;
+            for (Subtree child : children) {
+                if (child == largestChild) {
+                    continue;
+                }
+                if (child.positions == null) {
+                    result.positions.add(child.minContext1, child.min1);
+                } else {
+                    for (int slot = 0; slot < child.positions.capacity(); slot++) {
+                        final IntList list = child.positions.positionsAt(slot);
+                        if (list != null) {
+                            result.positions.addAll(child.positions.contextAt(slot), list);
+                        }
+                    }
+                }
+            }
+
+            result.min1 = smallest.firstPosition(0, NO_CHILD, NO_CONTEXT);
+            result.minContext1 = smallest.firstContext(0, NO_CHILD, NO_CONTEXT);
+            result.min2 = smallest.firstPosition(0, NO_CHILD, result.minContext1);
+            result.minContext2 = smallest.firstContext(0, NO_CHILD, result.minContext1);
+            result.max1 = largest.firstPosition(0, NO_CHILD, NO_CONTEXT);
+            result.maxContext1 = largest.firstContext(0, NO_CHILD, NO_CONTEXT);
+            result.max2 = largest.firstPosition(0, NO_CHILD, result.maxContext1);
+            result.maxContext2 = largest.firstContext(0, NO_CHILD, result.maxContext1);
+            return result;
+        }
+
+    }
+
+    /**
+     * The positions of a subtree by left context. An open addressing hash
+     * table, so that the contexts are not boxed. The slots are iterated from
+     * 0 to {@link #capacity()}, empty slots have no positions.
+     */
+    private static final class PositionsByContext {
+        private int[] contexts = new int[8];
+        private IntList[] positions = new IntList[8];
+        private int size;
+
+        int capacity() {
+            return positions.length;
+        }
+
+        int contextAt(int slot) {
+            return contexts[slot];
+        }
+
+        IntList positionsAt(int slot) {
+            return positions[slot];
+        }
+
+        void add(int context, int position) {
+            final int slot = slot(context);
+            IntList list = positions[slot];
+            if (list == null) {
+                list = new IntList(2);
+                put(slot, context, list);
+            }
+            list.add(position);
+        }
+
+        /**
+         * Adds the given positions, the list is taken over if the context
+         * is not known yet.
+         */
+        void addAll(int context, IntList list) {
+            final int slot = slot(context);
+            if (positions[slot] == null) {
+                put(slot, context, list);
+            } else {
+                positions[slot].addAll(list);
+            }
+        }
+
+        private int slot(int context) {
+            final int mask = positions.length - 1;
+            int slot = mix(context) & mask;
+            while (positions[slot] != null && contexts[slot] != context) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void put(int slot, int context, IntList list) {
+            contexts[slot] = context;
+            positions[slot] = list;
+            if (++size * 2 > positions.length) {
+                final int[] oldContexts = contexts;
+                final IntList[] oldPositions = positions;
+                contexts = new int[oldPositions.length * 2];
+                positions = new IntList[oldPositions.length * 2];
+                for (int i = 0; i < oldPositions.length; i++) {
+                    if (oldPositions[i] != null) {
+                        final int newSlot = slot(oldContexts[i]);
+                        contexts[newSlot] = oldContexts[i];
+                        positions[newSlot] = oldPositions[i];
+                    }
+                }
+            }
+        }
+
+        private static int mix(int context) {
+            final int hash = context * 0x9E3779B9;
+            return hash ^ hash >>> 16;
+        }
+    }
+
+    /**
+     * Elements with a position, a child and a left context, in a given order.
+     * Finds the first element of a suffix of that order, that is neither in
+     * an excluded child, nor has an excluded left context, in constant time.
+     *
+     * <p>For each suffix, it keeps the first element, the first two elements
+     * in another child with different contexts, the first two elements with
+     * another context in different children, and the first element with both
+     * another child and another context. Excluding a child and a context, the
+     * first remaining element is always one of them.</p>
+     */
+    private static final class Candidates {
+        private static final int FIRST = 0;
+        private static final int OTHER_CHILD = 1;
+        private static final int OTHER_CHILD_2 = 2;
+        private static final int OTHER_CONTEXT = 3;
+        private static final int OTHER_CONTEXT_2 = 4;
+        private static final int OTHER_BOTH = 5;
+        private static final int SIZE = 6;
+
+        private final int[] positions;
+        private final int[] children;
+        private final int[] contexts;
+        private final int[] table;
+
+        Candidates(int[] positions, int[] children, int[] contexts) {
+            this.positions = positions;
+            this.children = children;
+            this.contexts = contexts;
+            final int n = positions.length;
+            table = new int[(n + 1) * SIZE];
+            Arrays.fill(table, n * SIZE, table.length, -1);
+            for (int i = n - 1; i >= 0; i--) {
+                final int base = i * SIZE;
+                final int next = base + SIZE;
+                table[base + FIRST] = i;
+                final int otherChild = lookup(next, children[i], NO_CONTEXT);
+                table[base + OTHER_CHILD] = otherChild;
+                table[base + OTHER_CHILD_2] = otherChild < 0 ? -1 : lookup(next, children[i], contexts[otherChild]);
+                final int otherContext = lookup(next, NO_CHILD, contexts[i]);
+                table[base + OTHER_CONTEXT] = otherContext;
+                table[base + OTHER_CONTEXT_2] = otherContext < 0 ? -1
+                        : lookup(next, children[otherContext], contexts[i]);
+                table[base + OTHER_BOTH] = lookup(next, children[i], contexts[i]);
+            }
+        }
+
+        /**
+         * Collects the smallest, resp. largest two positions with different
+         * contexts of each child.
+         */
+        static Candidates of(List<Subtree> subtrees, boolean smallest) {
+            final IntList positions = new IntList();
+            final IntList children = new IntList();
+            final IntList contexts = new IntList();
+            for (int c = 0; c < subtrees.size(); c++) {
+                final Subtree subtree = subtrees.get(c);
+                positions.add(smallest ? subtree.min1 : subtree.max1);
+                children.add(c);
+                contexts.add(smallest ? subtree.minContext1 : subtree.maxContext1);
+                final int second = smallest ? subtree.min2 : subtree.max2;
+                if (second >= 0) {
+                    positions.add(second);
+                    children.add(c);
+                    contexts.add(smallest ? subtree.minContext2 : subtree.maxContext2);
+                }
+            }
+
+            final int n = positions.size();
+            final long[] order = new long[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = (long) positions.get(i) << 32 | i;
+            }
+            Arrays.sort(order);
+            final int[] sortedPositions = new int[n];
+            final int[] sortedChildren = new int[n];
+            final int[] sortedContexts = new int[n];
+            for (int i = 0; i < n; i++) {
+                final int index = (int) order[smallest ? i : n - 1 - i];
+                sortedPositions[i] = positions.get(index);
+                sortedChildren[i] = children.get(index);
+                sortedContexts[i] = contexts.get(index);
+            }
+            return new Candidates(sortedPositions, sortedChildren, sortedContexts);
+        }
+
+        /**
+         * Returns the index of the first element starting at the given index,
+         * that is neither in the excluded child nor has the excluded context.
+         *
+         * @return The index of the element, or -1 if there is none
+         */
+        int first(int from, int excludedChild, int excludedContext) {
+            return lookup(from * SIZE, excludedChild, excludedContext);
+        }
+
+        int firstPosition(int from, int excludedChild, int excludedContext) {
+            final int index = first(from, excludedChild, excludedContext);
+            return index < 0 ? -1 : positions[index];
+        }
+
+        int firstContext(int from, int excludedChild, int excludedContext) {
+            final int index = first(from, excludedChild, excludedContext);
+            return index < 0 ? NO_CONTEXT : contexts[index];
+        }
+
+        private int lookup(int base, int excludedChild, int excludedContext) {
+            final int first = table[base + FIRST];
+            if (first < 0) {
+                return -1;
+            }
+            final boolean childAllowed = children[first] != excludedChild;
+            final boolean contextAllowed = contexts[first] != excludedContext;
+            if (childAllowed && contextAllowed) {
+                return first;
+            }
+            if (contextAllowed) {
+                final int otherChild = table[base + OTHER_CHILD];
+                if (otherChild < 0 || contexts[otherChild] != excludedContext) {
+                    return otherChild;
+                }
+                return table[base + OTHER_CHILD_2];
+            }
+            if (childAllowed) {
+                final int otherContext = table[base + OTHER_CONTEXT];
+                if (otherContext < 0 || children[otherContext] != excludedChild) {
+                    return otherContext;
+                }
+                return table[base + OTHER_CONTEXT_2];
+            }
+            return table[base + OTHER_BOTH];
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Interns the images of the tokens, giving equal images the same identifier.
+ * It is thread-safe, so that several threads tokenizing the files of the
+ * same CPD run can share it. The identifiers start at 1, 0 is used by the
+ * EOF marker.
+ */
+final class TokenDictionary {
+
+    private final ConcurrentMap<String, Integer> identifiers = new ConcurrentHashMap<>();
+    private final AtomicInteger lastIdentifier = new AtomicInteger();
+
+    int intern(String image) {
+        Integer identifier = identifiers.get(image);
+        if (identifier == null) {
+            final Integer newIdentifier = lastIdentifier.incrementAndGet();
+            identifier = identifiers.putIfAbsent(image, newIdentifier);
+            if (identifier == null) {
+                identifier = newIdentifier;
+            }
+        }
+        return identifier;
+    }
+
+    /**
+     * Restores the images of a previous run, so that they keep their
+     * identifiers. The dictionary must still be empty.
+     *
+     * @param images The images by identifier, as returned by {@link #getImages()}
+     */
+    void restore(String[] images) {
+        if (!identifiers.isEmpty()) {
+            throw new IllegalStateException("Images have already been interned");
+        }
+        for (int i = 1; i < images.length; i++) {
+            if (images[i] != null) {
+                identifiers.put(images[i], i);
+            }
+        }
+        lastIdentifier.set(Math.max(0, images.length - 1));
+    }
+
+    /**
+     * Returns the images by identifier. Identifiers, that are not in use,
+     * have a null image.
+     */
+    String[] getImages() {
+        final String[] images = new String[lastIdentifier.get() + 1];
+        for (Map.Entry<String, Integer> e : identifiers.entrySet()) {
+            images[e.getValue()] = e.getKey();
+        }
+        return images;
+    }
+
+    /**
+     * Returns the image with the given identifier. This is slow, and meant
+     * for debugging only.
+     */
+    String getImage(int identifier) {
+        for (Map.Entry<String, Integer> e : identifiers.entrySet()) {
+            if (e.getValue().intValue() == identifier) {
+                return e.getKey();
+            }
+        }
+        return null;
+    }
+}
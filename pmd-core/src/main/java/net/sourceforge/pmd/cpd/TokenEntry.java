@@ -5,9 +5,7 @@
 package net.sourceforge.pmd.cpd;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class TokenEntry implements Comparable<TokenEntry> {
@@ -20,10 +18,10 @@ public class TokenEntry implements Comparable<TokenEntry> {
     private int identifier;
     private int hashCode;
 
-    private static final ThreadLocal<Map<String, Integer>> TOKENS = new ThreadLocal<Map<String, Integer>>() {
+    private static final ThreadLocal<TokenDictionary> TOKENS = new ThreadLocal<TokenDictionary>() {
         @Override
-        protected Map<String, Integer> initialValue() {
-            return new HashMap<>();
+        protected TokenDictionary initialValue() {
+            return new TokenDictionary();
         }
     };
     private static final ThreadLocal<AtomicInteger> TOKEN_COUNT = new ThreadLocal<AtomicInteger>() {
@@ -51,38 +49,78 @@ public class TokenEntry implements Comparable<TokenEntry> {
         this.index = TOKEN_COUNT.get().getAndIncrement();
     }
 
+    /**
+     * Creates a token entry for a token stored in {@link Tokens}, whose image
+     * has already been interned.
+     */
+    TokenEntry(int identifier, String tokenSrcID, int beginLine, int index) {
+        this.identifier = identifier;
+        this.tokenSrcID = tokenSrcID;
+        this.beginLine = beginLine;
+        this.index = index;
+    }
+
     public static TokenEntry getEOF() {
         TOKEN_COUNT.get().getAndIncrement();
         return EOF;
     }
 
     public static void clearImages() {
-        TOKENS.get().clear();
         TOKENS.remove();
         TOKEN_COUNT.remove();
     }
 
+    /**
+     * Returns the dictionary used by the current thread to intern the images.
+     */
+    static TokenDictionary getDictionary() {
+        return TOKENS.get();
+    }
+
+    /**
+     * Makes the current thread intern the images with the given dictionary,
+     * e.g. one obtained from another thread with {@link #getDictionary()}.
+     */
+    static void setDictionary(TokenDictionary dictionary) {
+        TOKENS.set(dictionary);
+    }
+
     /**
      * Helper class to preserve and restore the current state of the token
      * entries.
+     *
+     * @deprecated The tokens are no longer stored as a list of entries, so
+     *     the state copies all of them. Use {@link #restore(Tokens)}, which
+     *     only removes the tokens added since the state has been taken.
      */
+    @Deprecated
     public static class State {
         private int tokenCount;
-        private Map<String, Integer> tokens;
+        private int size;
         private List<TokenEntry> entries;
 
         public State(List<TokenEntry> entries) {
             this.tokenCount = TokenEntry.TOKEN_COUNT.get().intValue();
-            this.tokens = new HashMap<>(TokenEntry.TOKENS.get());
+            this.size = entries.size();
             this.entries = new ArrayList<>(entries);
         }
 
         public List<TokenEntry> restore() {
             TokenEntry.TOKEN_COUNT.get().set(tokenCount);
-            TOKENS.get().clear();
-            TOKENS.get().putAll(tokens);
+            // the images are shared, unused ones do no harm
             return entries;
         }
+
+        /**
+         * Restores the given tokens, the state has been taken from, by
+         * removing the tokens added since.
+         *
+         * @param tokens The tokens, whose {@link Tokens#getTokens()} were passed to the constructor
+         */
+        public void restore(Tokens tokens) {
+            TokenEntry.TOKEN_COUNT.get().set(tokenCount);
+            tokens.truncate(size);
+        }
     }
 
     public String getTokenSrcID() {
@@ -129,20 +167,11 @@ public class TokenEntry implements Comparable<TokenEntry> {
         if (this == EOF) {
             return "EOF";
         }
-        for (Map.Entry<String, Integer> e : TOKENS.get().entrySet()) {
-            if (e.getValue().intValue() == identifier) {
-                return e.getKey();
-            }
-        }
-        return "--unkown--";
+        String image = TOKENS.get().getImage(identifier);
+        return image == null ? "--unkown--" : image;
     }
 
     final void setImage(String image) {
-        Integer i = TOKENS.get().get(image);
-        if (i == null) {
-            i = TOKENS.get().size() + 1;
-            TOKENS.get().put(image, i);
-        }
-        this.identifier = i.intValue();
+        this.identifier = TOKENS.get().intern(image);
     }
 }
@@ -4,40 +4,214 @@
 
 package net.sourceforge.pmd.cpd;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * The tokens of all the files of a CPD run. They are stored by column in
+ * primitive arrays: the identifier of the image, the line and the file of
+ * each token, so that a token takes 12 bytes. {@link TokenEntry} instances
+ * are only created, when they are accessed through {@link #getTokens()}.
+ *
+ * <p>The tokens are stored by value: changing a {@link TokenEntry} after it
+ * has been added doesn't change the stored token. Tokenizers, that change a
+ * token they already added, must replace it with {@link #set(int, TokenEntry)}.</p>
+ */
 public class Tokens {
 
-    private List<TokenEntry> tokens = new ArrayList<>();
+    private static final int EOF_FILE = -1;
+
+    private int[] identifiers = new int[1024];
+    private int[] beginLines = new int[1024];
+    private int[] files = new int[1024];
+    private int size;
+
+    private final List<String> fileNames = new ArrayList<>();
+    private final Map<String, Integer> fileIds = new HashMap<>();
+    private final List<TokenEntry> entries = new TokenEntries();
 
     public void add(TokenEntry tokenEntry) {
-        this.tokens.add(tokenEntry);
+        ensureCapacity(size + 1);
+        store(size++, tokenEntry);
+    }
+
+    /**
+     * Adds a token, whose image has already been interned.
+     *
+     * @param identifier The identifier of the image, 0 for the EOF marker
+     * @param fileName   The file of the token
+     * @param beginLine  The line of the token
+     */
+    void add(int identifier, String fileName, int beginLine) {
+        ensureCapacity(size + 1);
+        identifiers[size] = identifier;
+        beginLines[size] = beginLine;
+        files[size] = identifier == 0 ? EOF_FILE : getFileId(fileName);
+        size++;
+    }
+
+    /**
+     * Appends the tokens of the given instance, e.g. the tokens of a single
+     * file, that has been tokenized separately.
+     */
+    void addAll(Tokens other) {
+        ensureCapacity(size + other.size);
+        System.arraycopy(other.identifiers, 0, identifiers, size, other.size);
+        System.arraycopy(other.beginLines, 0, beginLines, size, other.size);
+        for (int i = 0; i < other.size; i++) {
+            final int file = other.files[i];
+            files[size + i] = file == EOF_FILE ? EOF_FILE : getFileId(other.fileNames.get(file));
+        }
+        size += other.size;
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > identifiers.length) {
+            final int capacity = Math.max(minCapacity, identifiers.length * 2);
+            identifiers = Arrays.copyOf(identifiers, capacity);
+            beginLines = Arrays.copyOf(beginLines, capacity);
+            files = Arrays.copyOf(files, capacity);
+        }
+    }
+
+    /**
+     * Replaces the token at the given position.
+     *
+     * @param index      The position of the token
+     * @param tokenEntry The new token
+     */
+    public void set(int index, TokenEntry tokenEntry) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        store(index, tokenEntry);
+    }
+
+    private void store(int index, TokenEntry tokenEntry) {
+        if (tokenEntry == TokenEntry.EOF) {
+            identifiers[index] = 0;
+            beginLines[index] = 0;
+            files[index] = EOF_FILE;
+        } else {
+            identifiers[index] = tokenEntry.getIdentifier();
+            beginLines[index] = tokenEntry.getBeginLine();
+            files[index] = getFileId(tokenEntry.getTokenSrcID());
+        }
+    }
+
+    private int getFileId(String fileName) {
+        // consecutive tokens are mostly from the same file
+        final int last = fileNames.size() - 1;
+        if (last >= 0 && fileNames.get(last).equals(fileName)) {
+            return last;
+        }
+        Integer id = fileIds.get(fileName);
+        if (id == null) {
+            id = fileNames.size();
+            fileNames.add(fileName);
+            fileIds.put(fileName, id);
+        }
+        return id;
     }
 
     public Iterator<TokenEntry> iterator() {
-        return tokens.iterator();
+        return entries.iterator();
     }
 
     private TokenEntry get(int index) {
-        return tokens.get(index);
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        if (files[index] == EOF_FILE) {
+            return TokenEntry.EOF;
+        }
+        return new TokenEntry(identifiers[index], fileNames.get(files[index]), beginLines[index], index);
     }
 
     public int size() {
-        return tokens.size();
+        return size;
     }
 
     public int getLineCount(TokenEntry mark, Match match) {
-        TokenEntry endTok = get(mark.getIndex() + match.getTokenCount() - 1);
-        if (endTok == TokenEntry.EOF) {
-            endTok = get(mark.getIndex() + match.getTokenCount() - 2);
+        int end = mark.getIndex() + match.getTokenCount() - 1;
+        if (isEOF(end)) {
+            end--;
         }
-        return endTok.getBeginLine() - mark.getBeginLine() + 1;
+        return getBeginLine(end) - mark.getBeginLine() + 1;
     }
 
+    /**
+     * Returns the tokens. The list is backed by this instance, and creates a
+     * new {@link TokenEntry} on each access, except for the EOF marker.
+     * Changes of the returned entries are not stored: use {@link #set(int, TokenEntry)}
+     * instead. The list only supports appending tokens, and removing the last
+     * tokens, e.g. with {@link List#clear()}.
+     *
+     * @return A view of the tokens
+     */
     public List<TokenEntry> getTokens() {
-        return tokens;
+        return entries;
     }
 
+    int getIdentifier(int index) {
+        return identifiers[index];
+    }
+
+    int getBeginLine(int index) {
+        return beginLines[index];
+    }
+
+    boolean isEOF(int index) {
+        return files[index] == EOF_FILE;
+    }
+
+    /**
+     * Removes the tokens from the given index onwards.
+     */
+    void truncate(int newSize) {
+        if (newSize > size) {
+            throw new IndexOutOfBoundsException("Index " + newSize + ", size " + size);
+        }
+        size = newSize;
+    }
+
+    /**
+     * A view of the tokens as {@link TokenEntry} instances, to which tokens
+     * can be appended, and from which the last tokens can be removed.
+     */
+    private class TokenEntries extends AbstractList<TokenEntry> {
+
+        @Override
+        public TokenEntry get(int index) {
+            return Tokens.this.get(index);
+        }
+
+        @Override
+        public void add(int index, TokenEntry element) {
+            if (index != size) {
+                throw new UnsupportedOperationException("Tokens can only be appended");
+            }
+            modCount++;
+            Tokens.this.add(element);
+        }
+
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            if (toIndex != size) {
+                throw new UnsupportedOperationException("Only the last tokens can be removed");
+            }
+            modCount++;
+            truncate(fromIndex);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
 }
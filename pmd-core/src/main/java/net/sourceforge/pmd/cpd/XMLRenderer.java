@@ -8,20 +8,10 @@ import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.Iterator;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
+import net.sourceforge.pmd.PMD;
 import net.sourceforge.pmd.cpd.renderer.CPDRenderer;
+import net.sourceforge.pmd.util.StringUtil;
 
 /**
  * @author Philippe T'Seyen - original implementation
@@ -62,30 +52,6 @@ public final class XMLRenderer implements Renderer, CPDRenderer {
         return this.encoding;
     }
 
-    private Document createDocument() {
-        try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder parser = factory.newDocumentBuilder();
-            return parser.newDocument();
-        } catch (ParserConfigurationException e) {
-            throw new IllegalStateException(e);
-        }
-    }
-
-    private void dumpDocToWriter(Document doc, Writer writer) {
-        try {
-            TransformerFactory tf = TransformerFactory.newInstance();
-            Transformer transformer = tf.newTransformer();
-            transformer.setOutputProperty(OutputKeys.METHOD, "xml");
-            transformer.setOutputProperty(OutputKeys.ENCODING, encoding);
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            transformer.setOutputProperty(OutputKeys.CDATA_SECTION_ELEMENTS, "codefragment");
-            transformer.transform(new DOMSource(doc), new StreamResult(writer));
-        } catch (TransformerException e) {
-            throw new IllegalStateException(e);
-        }
-    }
-
     @Override
     public String render(Iterator<Match> matches) {
         StringWriter writer = new StringWriter();
@@ -97,48 +63,82 @@ public final class XMLRenderer implements Renderer, CPDRenderer {
         return writer.toString();
     }
     
+    /**
+     * Writes the matches one by one to the writer, without building the
+     * whole report in memory. The code fragments are read from the source
+     * code while writing.
+     */
     @Override
     public void render(Iterator<Match> matches, Writer writer) throws IOException {
-        Document doc = createDocument();
-        Element root = doc.createElement("pmd-cpd");
-        doc.appendChild(root);
+        writer.append("<?xml version=\"1.0\" encoding=\"").append(encoding).append("\"?>").append(PMD.EOL);
+        if (!matches.hasNext()) {
+            writer.append("<pmd-cpd/>");
+            writer.flush();
+            return;
+        }
 
-        Match match;
+        writer.append("<pmd-cpd>").append(PMD.EOL);
         while (matches.hasNext()) {
-            match = matches.next();
-            root.appendChild(addCodeSnippet(doc,
-                    addFilesToDuplicationElement(doc, createDuplicationElement(doc, match), match), match));
+            renderOn(writer, matches.next());
         }
-        dumpDocToWriter(doc, writer);
+        writer.append("</pmd-cpd>");
         writer.flush();
     }
 
-    private Element addFilesToDuplicationElement(Document doc, Element duplication, Match match) {
-        Mark mark;
+    private void renderOn(Writer writer, Match match) throws IOException {
+        final boolean useUTF8 = "utf-8".equalsIgnoreCase(encoding) || "utf8".equalsIgnoreCase(encoding);
+        final StringBuilder buf = new StringBuilder(200);
+        buf.append("    <duplication lines=\"").append(match.getLineCount())
+            .append("\" tokens=\"").append(match.getTokenCount()).append("\">").append(PMD.EOL);
         for (Iterator<Mark> iterator = match.iterator(); iterator.hasNext();) {
-            mark = iterator.next();
-            Element file = doc.createElement("file");
-            file.setAttribute("line", String.valueOf(mark.getBeginLine()));
-            file.setAttribute("path", mark.getFilename());
-            duplication.appendChild(file);
+            Mark mark = iterator.next();
+            buf.append("        <file line=\"").append(mark.getBeginLine()).append("\" path=\"");
+            StringUtil.appendXmlEscaped(buf, mark.getFilename(), useUTF8);
+            buf.append("\"/>").append(PMD.EOL);
         }
-        return duplication;
+        buf.append("        <codefragment><![CDATA[");
+        writer.append(buf);
+
+        match.appendSourceCodeSlice(new CDataWriter(writer));
+
+        writer.append("]]></codefragment>").append(PMD.EOL);
+        writer.append("    </duplication>").append(PMD.EOL);
     }
 
-    private Element addCodeSnippet(Document doc, Element duplication, Match match) {
-        String codeSnipet = match.getSourceCodeSlice();
-        if (codeSnipet != null) {
-            Element codefragment = doc.createElement("codefragment");
-            codefragment.appendChild(doc.createCDATASection(codeSnipet));
-            duplication.appendChild(codefragment);
+    /**
+     * Writes the content of a CDATA section, splitting it where the content
+     * contains the end marker {@code ]]>}.
+     */
+    private static final class CDataWriter implements Appendable {
+
+        private final Writer writer;
+        private int closingBrackets;
+
+        CDataWriter(Writer writer) {
+            this.writer = writer;
         }
-        return duplication;
-    }
 
-    private Element createDuplicationElement(Document doc, Match match) {
-        Element duplication = doc.createElement("duplication");
-        duplication.setAttribute("lines", String.valueOf(match.getLineCount()));
-        duplication.setAttribute("tokens", String.valueOf(match.getTokenCount()));
-        return duplication;
+        @Override
+        public Appendable append(CharSequence csq) throws IOException {
+            return append(csq, 0, csq.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) throws IOException {
+            for (int i = start; i < end; i++) {
+                append(csq.charAt(i));
+            }
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException {
+            if (c == '>' && closingBrackets >= 2) {
+                writer.write("]]><![CDATA[");
+            }
+            closingBrackets = c == ']' ? closingBrackets + 1 : 0;
+            writer.write(c);
+            return this;
+        }
     }
 }
@@ -16,8 +16,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Scanner;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,7 +30,13 @@ public class DocumentFile implements Document, Closeable {
 
     private static final Logger LOG = Logger.getLogger(DocumentFile.class.getName());
 
-    private List<Integer> lineToOffset = new ArrayList<>();
+    /**
+     * The offsets of the beginnings of the lines, only the first {@link #lineCount} are used.
+     * This includes the empty line after a line separator at the end of the file.
+     */
+    private int[] lineOffsets;
+    private int lineCount;
+    private int contentLength;
 
     private final Path filePath;
     private final BufferedReader reader;
@@ -43,34 +49,30 @@ public class DocumentFile implements Document, Closeable {
         reader = Files.newBufferedReader(requireNonNull(file).toPath(), requireNonNull(charset));
         writer = Files.newBufferedWriter(temporaryPath, charset);
         this.filePath = file.toPath();
-        mapLinesToOffsets();
-    }
-
-    private void mapLinesToOffsets() throws IOException {
-        try (Scanner scanner = new Scanner(filePath)) {
-            int currentGlobalOffset = 0;
-
-            while (scanner.hasNextLine()) {
-                lineToOffset.add(currentGlobalOffset);
-                currentGlobalOffset += getLineLengthWithLineSeparator(scanner);
-            }
-        }
+        mapLinesToOffsets(new String(Files.readAllBytes(filePath), charset));
     }
 
     /**
-     * Sums the line length without the line separation and the characters which matched the line separation pattern
-     * @param scanner the scanner from which to read the line's length
-     * @return the length of the line with the line separator.
+     * Indexes the lines in a single pass. Like {@link java.util.Scanner#nextLine()}, the lines are
+     * separated by {@code \r\n}, {@code \n}, {@code \r}, U+2028, U+2029 or U+0085.
      */
-    private int getLineLengthWithLineSeparator(final Scanner scanner) {
-        int lineLength = scanner.nextLine().length();
-        final String lineSeparationMatch = scanner.match().group(1);
-
-        if (lineSeparationMatch != null) {
-            lineLength += lineSeparationMatch.length();
+    private void mapLinesToOffsets(final CharSequence content) {
+        contentLength = content.length();
+        lineOffsets = new int[contentLength / 32 + 2];
+        lineCount = 1;
+
+        for (int i = 0; i < contentLength; i++) {
+            final char c = content.charAt(i);
+            if (c == '\r' && i + 1 < contentLength && content.charAt(i + 1) == '\n') {
+                i++;
+            } else if (c != '\n' && c != '\r' && c != '\u2028' && c != '\u2029' && c != '\u0085') {
+                continue;
+            }
+            if (lineCount == lineOffsets.length) {
+                lineOffsets = Arrays.copyOf(lineOffsets, lineCount * 2);
+            }
+            lineOffsets[lineCount++] = i + 1;
         }
-
-        return lineLength;
     }
 
     @Override
@@ -89,7 +91,10 @@ public class DocumentFile implements Document, Closeable {
     }
 
     private int mapToOffset(final int line, final int column) {
-        return lineToOffset.get(line) + column;
+        if (line < 0 || line >= lineCount) {
+            throw new IndexOutOfBoundsException("Line " + line + " not in " + filePath);
+        }
+        return lineOffsets[line] + column;
     }
 
     /**
@@ -157,14 +162,22 @@ public class DocumentFile implements Document, Closeable {
     }
 
     private void writeUntilEOF() throws IOException {
-        String line;
+        final char[] buffer = new char[8192];
+        int read;
 
-        while ((line = reader.readLine()) != null) {
-            writer.write(line);
+        // copy the rest as is, readLine would drop the line separators
+        while ((read = reader.read(buffer)) != -1) {
+            writer.write(buffer, 0, read);
         }
     }
 
     /* package-private */ List<Integer> getLineToOffset() {
+        // like Scanner, there's no line after a line separator at the end of the file
+        final int lines = lineOffsets[lineCount - 1] == contentLength ? lineCount - 1 : lineCount;
+        final List<Integer> lineToOffset = new ArrayList<>(lines);
+        for (int line = 0; line < lines; line++) {
+            lineToOffset.add(lineOffsets[line]);
+        }
         return lineToOffset;
     }
 }
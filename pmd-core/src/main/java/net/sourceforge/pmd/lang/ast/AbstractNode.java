@@ -20,9 +20,11 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 import net.sourceforge.pmd.PMDVersion;
+import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.lang.ast.xpath.Attribute;
 import net.sourceforge.pmd.lang.ast.xpath.AttributeAxisIterator;
 import net.sourceforge.pmd.lang.ast.xpath.DocumentNavigator;
+import net.sourceforge.pmd.lang.ast.xpath.saxon.ElementNode;
 import net.sourceforge.pmd.lang.dfa.DataFlowNode;
 
 
@@ -46,6 +48,8 @@ public abstract class AbstractNode implements Node {
     protected int endColumn;
     private DataFlowNode dataFlowNode;
     private Object userData;
+    private ElementNode saxonElementNode;
+    private int attributeCacheIndex = -1;
     protected GenericToken firstToken;
     protected GenericToken lastToken;
 
@@ -445,6 +449,50 @@ public abstract class AbstractNode implements Node {
         this.userData = userData;
     }
 
+    /**
+     * Returns the Saxon node wrapping this node, if it has already been
+     * created. This is used by the XPath 2.0 support, see
+     * {@link net.sourceforge.pmd.lang.ast.xpath.saxon.DocumentNode}.
+     *
+     * @return The Saxon node, or null
+     */
+    @InternalApi
+    public ElementNode getSaxonElementNode() {
+        return saxonElementNode;
+    }
+
+    /**
+     * Sets the Saxon node wrapping this node.
+     *
+     * @param elementNode The Saxon node
+     */
+    @InternalApi
+    public void setSaxonElementNode(ElementNode elementNode) {
+        this.saxonElementNode = elementNode;
+    }
+
+    /**
+     * Returns the index of this node in the attribute value cache of the
+     * file being analyzed, see
+     * {@link net.sourceforge.pmd.lang.ast.xpath.AttributeValueCache}.
+     *
+     * @return The index, or -1 if none has been assigned
+     */
+    @InternalApi
+    public int getAttributeCacheIndex() {
+        return attributeCacheIndex;
+    }
+
+    /**
+     * Sets the index of this node in the attribute value cache.
+     *
+     * @param index The index
+     */
+    @InternalApi
+    public void setAttributeCacheIndex(int index) {
+        this.attributeCacheIndex = index;
+    }
+
     public GenericToken jjtGetFirstToken() {
         return firstToken;
     }
@@ -0,0 +1,153 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.ast;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An index of the nodes of an AST by node type, which is built by the parser
+ * while it constructs the tree. This spares the rule chain a walk of the
+ * whole AST to find the nodes, that the rules are interested in.
+ *
+ * <p>The node types are identified by integer ids, usually the node ids of
+ * the parser (see {@link Node#jjtGetId()}). The names of the types, as
+ * returned by {@link Node#getXPathNodeName()}, are only needed to resolve the
+ * ids once. The nodes of a type are returned in document order, i.e. in the
+ * order a depth first walk of the AST would visit them, although the parser
+ * usually completes the inner nodes first.</p>
+ */
+public class NodeTypeIndex {
+
+    private static final Node[] NO_NODES = new Node[0];
+    private static final int[] NO_ORDERS = new int[0];
+
+    private final String[] typeNames;
+    private final Node[][] nodes;
+    private final int[][] orders;
+    private final int[] sizes;
+    private final boolean[] unsorted;
+    private int openedNodes;
+
+    /**
+     * Creates an empty index.
+     *
+     * @param typeNames The names of the node types, by id
+     */
+    public NodeTypeIndex(String[] typeNames) {
+        this.typeNames = typeNames;
+        this.nodes = new Node[typeNames.length][];
+        this.orders = new int[typeNames.length][];
+        this.sizes = new int[typeNames.length];
+        this.unsorted = new boolean[typeNames.length];
+        Arrays.fill(nodes, NO_NODES);
+        Arrays.fill(orders, NO_ORDERS);
+    }
+
+    /**
+     * Returns the id of the node type with the given name.
+     *
+     * @param typeName The name of the node type
+     * @return The id, or -1 if there's no such node type
+     */
+    public int getTypeId(String typeName) {
+        return getTypeId(typeNames, typeName);
+    }
+
+    /**
+     * Returns the id of the node type with the given name.
+     *
+     * @param typeNames The names of the node types, by id
+     * @param typeName  The name of the node type
+     * @return The id, or -1 if there's no such node type
+     */
+    public static int getTypeId(String[] typeNames, String typeName) {
+        for (int i = 0; i < typeNames.length; i++) {
+            if (typeNames[i].equals(typeName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the names of the node types, by id.
+     */
+    public String[] getTypeNames() {
+        return typeNames;
+    }
+
+    /**
+     * Notifies the index, that the parser opened a node. Nodes are opened in
+     * document order.
+     *
+     * @return The position of the node in document order, to pass to
+     *         {@link #add(int, int, Node)} when the node is completed
+     */
+    public int nodeOpened() {
+        return openedNodes++;
+    }
+
+    /**
+     * Adds a completed node.
+     *
+     * @param typeId The id of the node type
+     * @param order  The position of the node in document order, as returned
+     *               by {@link #nodeOpened()}
+     * @param node   The node
+     */
+    public void add(int typeId, int order, Node node) {
+        final int size = sizes[typeId];
+        if (size == nodes[typeId].length) {
+            final int capacity = Math.max(8, size * 2);
+            nodes[typeId] = Arrays.copyOf(nodes[typeId], capacity);
+            orders[typeId] = Arrays.copyOf(orders[typeId], capacity);
+        }
+        if (size > 0 && orders[typeId][size - 1] > order) {
+            // an enclosing node of the same type is completed after its inner nodes
+            unsorted[typeId] = true;
+        }
+        nodes[typeId][size] = node;
+        orders[typeId][size] = order;
+        sizes[typeId] = size + 1;
+    }
+
+    /**
+     * Returns the nodes of the given type in document order.
+     *
+     * @param typeId The id of the node type
+     * @return The nodes, an unmodifiable list
+     */
+    public List<Node> getNodes(int typeId) {
+        if (typeId < 0 || typeId >= sizes.length || sizes[typeId] == 0) {
+            return Collections.emptyList();
+        }
+        if (unsorted[typeId]) {
+            sort(typeId);
+        }
+        return Collections.unmodifiableList(Arrays.asList(nodes[typeId]).subList(0, sizes[typeId]));
+    }
+
+    private void sort(int typeId) {
+        final int size = sizes[typeId];
+        final long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = (long) orders[typeId][i] << 32 | i;
+        }
+        Arrays.sort(keys);
+
+        final Node[] sortedNodes = new Node[size];
+        final int[] sortedOrders = new int[size];
+        for (int i = 0; i < size; i++) {
+            final int position = (int) keys[i];
+            sortedNodes[i] = nodes[typeId][position];
+            sortedOrders[i] = orders[typeId][position];
+        }
+        nodes[typeId] = sortedNodes;
+        orders[typeId] = sortedOrders;
+        unsorted[typeId] = false;
+    }
+}
@@ -16,31 +16,56 @@ import java.util.Arrays;
  */
 public class SourceCodePositioner {
 
+    /** The offsets of the beginnings of the lines, only the first {@link #lineCount} are used. */
     private int[] lineOffsets;
+    /** The number of lines, including the empty lines at the end. */
+    private int lineCount;
+    /** The number of lines, excluding the empty lines at the end. */
+    private int lastLine;
     private int sourceCodeLength;
 
     public SourceCodePositioner(String sourceCode) {
+        this((CharSequence) sourceCode);
+    }
+
+    /**
+     * Indexes the lines of the source code in a single pass, without copying
+     * it. The lines are separated by {@code \n}.
+     *
+     * @param sourceCode The source code
+     */
+    public SourceCodePositioner(CharSequence sourceCode) {
         analyzeLineOffsets(sourceCode);
     }
 
-    private void analyzeLineOffsets(String sourceCode) {
-        String[] lines = sourceCode.split("\n");
+    private void analyzeLineOffsets(CharSequence sourceCode) {
         sourceCodeLength = sourceCode.length();
+        lineOffsets = new int[sourceCodeLength / 32 + 2];
+        lineCount = 1;
 
-        int startOffset = 0;
-        int lineNumber = 0;
-
-        lineOffsets = new int[lines.length];
+        int lastContentOffset = -1;
+        for (int i = 0; i < sourceCodeLength; i++) {
+            if (sourceCode.charAt(i) == '\n') {
+                if (lineCount == lineOffsets.length) {
+                    lineOffsets = Arrays.copyOf(lineOffsets, lineCount * 2);
+                }
+                lineOffsets[lineCount++] = i + 1;
+            } else {
+                lastContentOffset = i;
+            }
+        }
 
-        for (String line : lines) {
-            lineOffsets[lineNumber] = startOffset;
-            lineNumber++;
-            startOffset += line.length() + 1; // +1 for the "\n" character
+        // like String.split, the empty lines at the end don't count
+        lastLine = lineCount;
+        if (sourceCodeLength > 0) {
+            while (lastLine > 0 && lineOffsets[lastLine - 1] > lastContentOffset) {
+                lastLine--;
+            }
         }
     }
 
     public int lineNumberFromOffset(int offset) {
-        int search = Arrays.binarySearch(lineOffsets, offset);
+        int search = Arrays.binarySearch(lineOffsets, 0, lastLine, offset);
         int lineNumber;
         if (search >= 0) {
             lineNumber = search;
@@ -56,7 +81,7 @@ public class SourceCodePositioner {
 
     public int columnFromOffset(int lineNumber, int offset) {
         int lineIndex = lineNumber - 1;
-        if (lineIndex < 0 || lineIndex >= lineOffsets.length) {
+        if (lineIndex < 0 || lineIndex >= lastLine) {
             // no line number found...
             return 0;
         }
@@ -64,8 +89,26 @@ public class SourceCodePositioner {
         return columnOffset + 1; // 1-based column offsets
     }
 
+    /**
+     * Returns the offset of the position at the given line and column, the
+     * reverse of {@link #lineNumberFromOffset(int)} and
+     * {@link #columnFromOffset(int, int)}. Unlike these, this takes the
+     * empty lines at the end of the source code into account.
+     *
+     * @param lineNumber The line number, 1-based
+     * @param column     The column, 1-based
+     *
+     * @return The offset, or -1 if there's no such line
+     */
+    public int offsetFromLineColumn(int lineNumber, int column) {
+        if (lineNumber < 1 || lineNumber > lineCount) {
+            return -1;
+        }
+        return lineOffsets[lineNumber - 1] + column - 1;
+    }
+
     public int getLastLine() {
-        return lineOffsets.length;
+        return lastLine;
     }
 
     public int getLastLineColumn() {
@@ -4,6 +4,7 @@
 
 package net.sourceforge.pmd.lang.ast.xpath;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.concurrent.ConcurrentHashMap;
@@ -31,6 +32,8 @@ public class Attribute {
     private Node parent;
     private String name;
     private Method method;
+    private MethodHandle handle;
+    private int accessorId = -1;
     private Object value;
     private String stringValue;
 
@@ -42,6 +45,19 @@ public class Attribute {
     }
 
 
+    /**
+     * Creates a new attribute belonging to the given node using its accessor,
+     * which is invoked through the given method handle, if not null. The
+     * handle must be of type {@code (Object)Object}. The id of the accessor
+     * identifies the value in the {@link AttributeValueCache}.
+     */
+    Attribute(Node parent, String name, Method m, MethodHandle handle, int accessorId) {
+        this(parent, name, m);
+        this.handle = handle;
+        this.accessorId = accessorId;
+    }
+
+
     /** Creates a new attribute belonging to the given node using its string value. */
     public Attribute(Node parent, String name, String value) {
         this.parent = parent;
@@ -71,6 +87,19 @@ public class Attribute {
         }
 
         // this lazy loading reduces calls to Method.invoke() by about 90%
+        if (handle != null) {
+            final AttributeValueCache cache = AttributeValueCache.getCurrent();
+            if (cache == null) {
+                value = invokeHandle();
+            } else {
+                value = cache.get(parent, accessorId);
+                if (value == AttributeValueCache.NOT_CACHED) {
+                    value = invokeHandle();
+                    cache.put(parent, accessorId, value);
+                }
+            }
+            return value;
+        }
         try {
             value = method.invoke(parent, EMPTY_OBJ_ARRAY);
             return value;
@@ -80,6 +109,19 @@ public class Attribute {
         return null;
     }
 
+    @SuppressWarnings("PMD.AvoidCatchingThrowable")
+    private Object invokeHandle() {
+        try {
+            return (Object) handle.invokeExact((Object) parent);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable t) {
+            // an exception thrown by the accessor, like Method.invoke would report it
+            new InvocationTargetException(t).printStackTrace();
+        }
+        return null;
+    }
+
     public String getStringValue() {
         if (stringValue != null) {
             return stringValue;
@@ -4,16 +4,24 @@
 
 package net.sourceforge.pmd.lang.ast.xpath;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import net.sourceforge.pmd.lang.ast.AbstractNode;
 import net.sourceforge.pmd.lang.ast.Node;
 
 
@@ -22,17 +30,31 @@ import net.sourceforge.pmd.lang.ast.Node;
  * attributes. This is the default way the attributes of a node
  * are made accessible to XPath rules, and defines an important
  * piece of PMD's XPath support.
+ *
+ * <p>The accessors are looked up once per node class, and are
+ * invoked through method handles. The values of the attributes
+ * are only computed when they are read.</p>
  */
 public class AttributeAxisIterator implements Iterator<Attribute> {
 
     /** Caches the precomputed attribute accessors of a given class. */
     private static final ConcurrentMap<Class<?>, MethodWrapper[]> METHOD_CACHE = new ConcurrentHashMap<>();
+    /**
+     * Caches the precomputed attribute accessors of a given class by name,
+     * {@link #CUSTOM_ATTRIBUTES} if the class enumerates its own attributes.
+     */
+    private static final ConcurrentMap<Class<?>, Map<String, MethodWrapper[]>> NAMED_METHOD_CACHE = new ConcurrentHashMap<>();
+    private static final Map<String, MethodWrapper[]> CUSTOM_ATTRIBUTES = new HashMap<>();
+    private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class);
+    /** Generates the ids of the accessors, used as keys by the {@link AttributeValueCache}. */
+    private static final AtomicInteger ACCESSOR_IDS = new AtomicInteger();
 
     /* Constants used to determine which methods are accessors */
     private static final Set<Class<?>> CONSIDERED_RETURN_TYPES
             = new HashSet<>(Arrays.<Class<?>>asList(Integer.TYPE, Boolean.TYPE, Double.TYPE, String.class, Long.TYPE, Character.TYPE, Float.TYPE));
     private static final Set<String> FILTERED_OUT_NAMES
-            = new HashSet<>(Arrays.asList("toString", "getClass", "getXPathNodeName", "getTypeNameNode", "hashCode", "getImportedNameNode", "getScope"));
+            = new HashSet<>(Arrays.asList("toString", "getClass", "getXPathNodeName", "getTypeNameNode", "hashCode", "getImportedNameNode", "getScope",
+                    "getAttributeCacheIndex"));
 
     /* Iteration variables */
     private Attribute currObj;
@@ -73,6 +95,11 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
      * @param method The method to test
      */
     protected boolean isAttributeAccessor(Method method) {
+        return isDefaultAttributeAccessor(method);
+    }
+
+
+    private static boolean isDefaultAttributeAccessor(Method method) {
         String methodName = method.getName();
 
         return CONSIDERED_RETURN_TYPES.contains(method.getReturnType())
@@ -82,6 +109,99 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
     }
 
 
+    /**
+     * Returns the attributes of the given node with the given name. This is
+     * equivalent to filtering {@link Node#getXPathAttributesIterator()} by
+     * name, but only the matching attributes are created, unless the node
+     * enumerates its own attributes. Several accessors may map to the same
+     * attribute name.
+     *
+     * @param node The node
+     * @param name The name of the attributes
+     *
+     * @return An iterator over the attributes with that name
+     */
+    public static Iterator<Attribute> getAttributesByName(Node node, String name) {
+        final Map<String, MethodWrapper[]> accessors = getNamedAccessors(node.getClass());
+        if (accessors == CUSTOM_ATTRIBUTES) {
+            final List<Attribute> attributes = new ArrayList<>(1);
+            final Iterator<Attribute> iterator = node.getXPathAttributesIterator();
+            while (iterator.hasNext()) {
+                final Attribute attribute = iterator.next();
+                if (name.equals(attribute.getName())) {
+                    attributes.add(attribute);
+                }
+            }
+            return attributes.iterator();
+        }
+
+        final MethodWrapper[] wrappers = accessors.get(name);
+        if (wrappers == null) {
+            return Collections.<Attribute>emptyList().iterator();
+        } else if (wrappers.length == 1) {
+            return Collections.singletonList(wrappers[0].createAttribute(node)).iterator();
+        }
+        final List<Attribute> attributes = new ArrayList<>(wrappers.length);
+        for (MethodWrapper wrapper : wrappers) {
+            attributes.add(wrapper.createAttribute(node));
+        }
+        return attributes.iterator();
+    }
+
+
+    private static Map<String, MethodWrapper[]> getNamedAccessors(Class<? extends Node> nodeClass) {
+        Map<String, MethodWrapper[]> accessors = NAMED_METHOD_CACHE.get(nodeClass);
+        if (accessors != null) {
+            return accessors;
+        }
+
+        if (overridesAttributesIterator(nodeClass)) {
+            accessors = CUSTOM_ATTRIBUTES;
+        } else {
+            final Map<String, List<MethodWrapper>> grouped = new HashMap<>();
+            for (MethodWrapper wrapper : getMethodWrappers(nodeClass)) {
+                List<MethodWrapper> wrappers = grouped.get(wrapper.name);
+                if (wrappers == null) {
+                    wrappers = new ArrayList<>(1);
+                    grouped.put(wrapper.name, wrappers);
+                }
+                wrappers.add(wrapper);
+            }
+            accessors = new HashMap<>();
+            for (Map.Entry<String, List<MethodWrapper>> entry : grouped.entrySet()) {
+                accessors.put(entry.getKey(), entry.getValue().toArray(new MethodWrapper[0]));
+            }
+        }
+        NAMED_METHOD_CACHE.putIfAbsent(nodeClass, accessors);
+        return NAMED_METHOD_CACHE.get(nodeClass);
+    }
+
+
+    private static boolean overridesAttributesIterator(Class<?> nodeClass) {
+        try {
+            return nodeClass.getMethod("getXPathAttributesIterator").getDeclaringClass() != AbstractNode.class;
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
+    }
+
+
+    private static MethodWrapper[] getMethodWrappers(Class<? extends Node> nodeClass) {
+        MethodWrapper[] wrappers = METHOD_CACHE.get(nodeClass);
+        if (wrappers == null) {
+            List<MethodWrapper> postFilter = new ArrayList<>();
+            for (Method element : nodeClass.getMethods()) {
+                if (isDefaultAttributeAccessor(element)) {
+                    postFilter.add(new MethodWrapper(element));
+                }
+            }
+            METHOD_CACHE.putIfAbsent(nodeClass, postFilter.toArray(new MethodWrapper[0]));
+            wrappers = METHOD_CACHE.get(nodeClass);
+        }
+        return wrappers;
+    }
+
+
     @Override
     public Attribute next() {
         if (!hasNext()) {
@@ -109,8 +229,7 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
         if (methodWrappers == null || position == methodWrappers.length) {
             return null;
         }
-        MethodWrapper m = methodWrappers[position++];
-        return new Attribute(node, m.name, m.method);
+        return methodWrappers[position++].createAttribute(node);
     }
 
 
@@ -118,16 +237,31 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
      * Associates an attribute accessor with the XPath-accessible
      * name of the attribute. This is used to avoid recomputing
      * the name of the attribute for each attribute (it's only done
-     * once and put inside the {@link #METHOD_CACHE}).
+     * once and put inside the {@link #METHOD_CACHE}). The method
+     * handle is null, if the accessor can't be unreflected, in which
+     * case it's invoked reflectively.
      */
     private static class MethodWrapper {
         public Method method;
         public String name;
+        public MethodHandle handle;
+        public int id;
 
 
         MethodWrapper(Method m) {
             this.method = m;
+            this.id = ACCESSOR_IDS.getAndIncrement();
             this.name = truncateMethodName(m.getName());
+            try {
+                this.handle = MethodHandles.publicLookup().unreflect(m).asType(ACCESSOR_TYPE);
+            } catch (IllegalAccessException e) {
+                this.handle = null;
+            }
+        }
+
+
+        Attribute createAttribute(Node node) {
+            return new Attribute(node, name, method, handle, id);
         }
 
 
@@ -0,0 +1,169 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.ast.xpath;
+
+import java.util.Arrays;
+
+import net.sourceforge.pmd.lang.ast.AbstractNode;
+import net.sourceforge.pmd.lang.ast.Node;
+
+/**
+ * Memoizes the values of the XPath attributes of the nodes of the file being
+ * analyzed, so that an attribute read by the queries of several rules is only
+ * computed once. The values are keyed by the node and the id of the attribute
+ * accessor, and are stored in a table indexed by primitive keys. The nodes are
+ * numbered in the order they are first seen, see
+ * {@link AbstractNode#getAttributeCacheIndex()}.
+ *
+ * <p>The cache is opt-in, with the system property {@value #ENABLED_PROPERTY}.
+ * It's bound to the current thread for the time the rules are applied to a
+ * file, with {@link #start()} and {@link #end()}. The attributes of nodes, that
+ * don't extend {@link AbstractNode}, are not cached.</p>
+ */
+public final class AttributeValueCache {
+
+    /**
+     * The system property, which enables the cache, when set to {@code true}.
+     */
+    public static final String ENABLED_PROPERTY = "net.sourceforge.pmd.xpath.cacheAttributes";
+
+    /** Returned by {@link #get(Node, int)}, if the value is not cached. */
+    static final Object NOT_CACHED = new Object();
+
+    private static final Object NULL_VALUE = new Object();
+    private static final ThreadLocal<AttributeValueCache> CURRENT = new ThreadLocal<>();
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** The nodes by index, to recognize the nodes numbered by another cache. */
+    private AbstractNode[] nodes = new AbstractNode[INITIAL_CAPACITY];
+    private int nodeCount;
+
+    /** The keys of the table, 0 for empty slots. */
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int size;
+
+    private AttributeValueCache() {
+        // use start()
+    }
+
+    /**
+     * Returns whether the cache is enabled.
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY);
+    }
+
+    /**
+     * Starts caching the attribute values on the current thread, until
+     * {@link #end()} is called.
+     */
+    public static void start() {
+        CURRENT.set(new AttributeValueCache());
+    }
+
+    /**
+     * Discards the cached values of the current thread.
+     */
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Returns the cache of the current thread, or null if there's none.
+     */
+    static AttributeValueCache getCurrent() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Returns the cached value of the attribute of the node, or
+     * {@link #NOT_CACHED}.
+     */
+    Object get(Node node, int accessorId) {
+        if (!(node instanceof AbstractNode)) {
+            return NOT_CACHED;
+        }
+        final AbstractNode abstractNode = (AbstractNode) node;
+        final int nodeIndex = abstractNode.getAttributeCacheIndex();
+        if (nodeIndex < 0 || nodeIndex >= nodeCount || nodes[nodeIndex] != abstractNode) {
+            return NOT_CACHED;
+        }
+
+        final long key = key(nodeIndex, accessorId);
+        final int mask = keys.length - 1;
+        for (int slot = slot(key, mask); keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                final Object value = values[slot];
+                return value == NULL_VALUE ? null : value;
+            }
+        }
+        return NOT_CACHED;
+    }
+
+    /**
+     * Caches the value of the attribute of the node.
+     */
+    void put(Node node, int accessorId, Object value) {
+        if (!(node instanceof AbstractNode)) {
+            return;
+        }
+        if (size * 4 >= keys.length * 3) {
+            rehash(keys.length * 2);
+        }
+        final long key = key(getNodeIndex((AbstractNode) node), accessorId);
+        final int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == 0) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value == null ? NULL_VALUE : value;
+    }
+
+    private int getNodeIndex(AbstractNode node) {
+        final int nodeIndex = node.getAttributeCacheIndex();
+        if (nodeIndex >= 0 && nodeIndex < nodeCount && nodes[nodeIndex] == node) {
+            return nodeIndex;
+        }
+        if (nodeCount == nodes.length) {
+            nodes = Arrays.copyOf(nodes, nodes.length * 2);
+        }
+        nodes[nodeCount] = node;
+        node.setAttributeCacheIndex(nodeCount);
+        return nodeCount++;
+    }
+
+    private void rehash(int capacity) {
+        final long[] oldKeys = keys;
+        final Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        final int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slot(oldKeys[i], mask);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static long key(int nodeIndex, int accessorId) {
+        // never 0, which marks the empty slots
+        return ((long) (nodeIndex + 1) << 32) | (accessorId & 0xFFFFFFFFL);
+    }
+
+    private static int slot(long key, int mask) {
+        final long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -6,8 +6,10 @@ package net.sourceforge.pmd.lang.ast.xpath;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import org.jaxen.DefaultNavigator;
+import org.jaxen.NamedAccessNavigator;
 import org.jaxen.XPath;
 import org.jaxen.util.SingleObjectIterator;
 
@@ -17,7 +19,7 @@ import net.sourceforge.pmd.lang.ast.RootNode;
 /**
  * @author daniels
  */
-public class DocumentNavigator extends DefaultNavigator {
+public class DocumentNavigator extends DefaultNavigator implements NamedAccessNavigator {
 
     private static final Iterator<Node> EMPTY_ITERATOR = new ArrayList<Node>().iterator();
 
@@ -138,6 +140,40 @@ public class DocumentNavigator extends DefaultNavigator {
         return ((Node) arg0).getXPathAttributesIterator();
     }
 
+    /**
+     * Get an iterator over the attributes of this node with the given name.
+     * Only the matching attributes are created, see
+     * {@link AttributeAxisIterator#getAttributesByName(Node, String)}.
+     */
+    @Override
+    public Iterator<Attribute> getAttributeAxisIterator(Object contextNode, String localName, String namespacePrefix,
+            String namespaceURI) {
+        if (!(contextNode instanceof Node) || namespaceURI != null && !namespaceURI.isEmpty()) {
+            return new ArrayList<Attribute>().iterator();
+        }
+        return AttributeAxisIterator.getAttributesByName((Node) contextNode, localName);
+    }
+
+    /**
+     * Get an iterator over the children of this node with the given name.
+     */
+    @Override
+    public Iterator<Node> getChildAxisIterator(Object contextNode, String localName, String namespacePrefix,
+            String namespaceURI) {
+        if (!(contextNode instanceof Node) || namespaceURI != null && !namespaceURI.isEmpty()) {
+            return EMPTY_ITERATOR;
+        }
+        final Node node = (Node) contextNode;
+        final List<Node> children = new ArrayList<>();
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            final Node child = node.jjtGetChild(i);
+            if (localName.equals(child.getXPathNodeName())) {
+                children.add(child);
+            }
+        }
+        return children.iterator();
+    }
+
     /**
      * Get an iterator over all of this node's children.
      *
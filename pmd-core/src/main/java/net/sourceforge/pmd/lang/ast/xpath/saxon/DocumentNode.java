@@ -8,6 +8,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
+import net.sourceforge.pmd.lang.ast.AbstractNode;
 import net.sourceforge.pmd.lang.ast.Node;
 
 import net.sf.saxon.om.Axis;
@@ -19,7 +20,11 @@ import net.sf.saxon.om.SingleNodeIterator;
 import net.sf.saxon.type.Type;
 
 /**
- * A Saxon OM Document node for an AST Node.
+ * A Saxon OM Document node for an AST Node. The {@link ElementNode}s
+ * wrapping the nodes of the AST are created lazily, when they are first
+ * navigated to, and are stored on the AST nodes. The document node itself is
+ * stored with the wrapper of the root node, so that it is built once per AST
+ * and shared by all the XPath rules applied to it.
  */
 public class DocumentNode extends AbstractNodeInfo implements DocumentInfo {
 
@@ -29,10 +34,19 @@ public class DocumentNode extends AbstractNodeInfo implements DocumentInfo {
     protected final ElementNode rootNode;
 
     /**
-     * Mapping from AST Node to corresponding ElementNode.
+     * Mapping from AST Node to corresponding ElementNode, for the nodes,
+     * which aren't {@link AbstractNode}s. The ElementNodes of the other
+     * nodes are stored on the nodes.
+     *
+     * @deprecated Use {@link #getElementNode(Node)}, the mapping is
+     *     usually empty
      */
+    @Deprecated
     public final Map<Node, ElementNode> nodeToElementNode = new HashMap<>();
 
+    /** The number of ElementNodes created so far, see {@link ElementNode#id}. */
+    private int elementNodeCount;
+
     /**
      * Construct a DocumentNode, with the given AST Node serving as the root
      * ElementNode.
@@ -43,7 +57,65 @@ public class DocumentNode extends AbstractNodeInfo implements DocumentInfo {
      * @see ElementNode
      */
     public DocumentNode(Node node) {
-        this.rootNode = new ElementNode(this, new IdGenerator(), null, node, -1);
+        this.rootNode = new ElementNode(this, null, node, -1);
+    }
+
+    /**
+     * Returns the DocumentNode for the AST with the given root node. It is
+     * only created once per AST.
+     *
+     * @param root The root node of the AST
+     *
+     * @return The DocumentNode
+     */
+    public static DocumentNode getDocumentNode(Node root) {
+        final ElementNode rootElementNode = getStoredElementNode(root);
+        if (rootElementNode != null && rootElementNode.parent == null) {
+            return rootElementNode.document;
+        }
+        return new DocumentNode(root);
+    }
+
+    /**
+     * Returns the ElementNode wrapping the given node of the AST. It is
+     * created on first use, along with the ElementNodes of its ancestors.
+     *
+     * @param node A node of the AST
+     *
+     * @return The ElementNode
+     */
+    public ElementNode getElementNode(Node node) {
+        final ElementNode elementNode = node instanceof AbstractNode
+                ? getStoredElementNode(node) : nodeToElementNode.get(node);
+        if (elementNode != null && elementNode.document == this) {
+            return elementNode;
+        }
+        if (node == rootNode.node) {
+            return rootNode;
+        }
+        return new ElementNode(this, getElementNode(node.jjtGetParent()), node, node.jjtGetChildIndex());
+    }
+
+    /**
+     * Returns the id of the next ElementNode created.
+     */
+    int nextElementNodeId() {
+        return elementNodeCount++;
+    }
+
+    /**
+     * Stores the newly created ElementNode of a node.
+     */
+    void register(Node node, ElementNode elementNode) {
+        if (node instanceof AbstractNode) {
+            ((AbstractNode) node).setSaxonElementNode(elementNode);
+        } else {
+            nodeToElementNode.put(node, elementNode);
+        }
+    }
+
+    private static ElementNode getStoredElementNode(Node node) {
+        return node instanceof AbstractNode ? ((AbstractNode) node).getSaxonElementNode() : null;
     }
 
     @Override
@@ -17,33 +17,75 @@ import net.sf.saxon.om.SingleNodeIterator;
 import net.sf.saxon.type.Type;
 
 /**
- * A Saxon OM Element type node for an AST Node.
+ * A Saxon OM Element type node for an AST Node. The ElementNodes of the
+ * children are only created, when they are navigated to.
  */
 public class ElementNode extends AbstractNodeInfo {
 
     protected final DocumentNode document;
     protected final ElementNode parent;
     protected final Node node;
+    /**
+     * @deprecated The ids are assigned in the order the ElementNodes are
+     *     created, which isn't the document order, and aren't used anymore
+     */
+    @Deprecated
     protected final int id;
     protected final int siblingPosition;
-    protected final NodeInfo[] children;
+    /**
+     * The ElementNodes of the children, null until they are navigated to.
+     *
+     * @deprecated Use {@link #getChildren()}, which creates them
+     */
+    @Deprecated
+    protected NodeInfo[] children;
+
+    /**
+     * Creates the ElementNode of an AST node. The ElementNodes of the
+     * children are created lazily.
+     *
+     * @param document        The document node of the AST
+     * @param parent          The ElementNode of the parent, null for the root node
+     * @param node            The AST node
+     * @param siblingPosition The index of the node in its parent
+     */
+    public ElementNode(DocumentNode document, ElementNode parent, Node node, int siblingPosition) {
+        this(document, parent, node, siblingPosition, document.nextElementNodeId());
+    }
 
+    /**
+     * @deprecated The ids aren't used anymore, use {@link #ElementNode(DocumentNode, ElementNode, Node, int)}
+     */
+    @Deprecated
     public ElementNode(DocumentNode document, IdGenerator idGenerator, ElementNode parent, Node node,
             int siblingPosition) {
+        this(document, parent, node, siblingPosition, idGenerator.getNextId());
+    }
+
+    private ElementNode(DocumentNode document, ElementNode parent, Node node, int siblingPosition, int id) {
         this.document = document;
         this.parent = parent;
         this.node = node;
-        this.id = idGenerator.getNextId();
+        this.id = id;
         this.siblingPosition = siblingPosition;
-        if (node.jjtGetNumChildren() > 0) {
-            this.children = new NodeInfo[node.jjtGetNumChildren()];
+        document.register(node, this);
+    }
+
+    /**
+     * Returns the ElementNodes of the children, which are created on the
+     * first call.
+     *
+     * @return The ElementNodes of the children
+     */
+    protected NodeInfo[] getChildren() {
+        if (children == null) {
+            children = new NodeInfo[node.jjtGetNumChildren()];
             for (int i = 0; i < children.length; i++) {
-                children[i] = new ElementNode(document, idGenerator, this, node.jjtGetChild(i), i);
+                final Node child = node.jjtGetChild(i);
+                children[i] = document.getElementNode(child);
             }
-        } else {
-            this.children = null;
         }
-        document.nodeToElementNode.put(node, this);
+        return children;
     }
 
     @Override
@@ -68,7 +110,7 @@ public class ElementNode extends AbstractNodeInfo {
 
     @Override
     public boolean hasChildNodes() {
-        return children != null;
+        return node.jjtGetNumChildren() > 0;
     }
 
     @Override
@@ -98,7 +140,39 @@ public class ElementNode extends AbstractNodeInfo {
 
     @Override
     public int compareOrder(NodeInfo other) {
-        return Integer.signum(this.node.jjtGetId() - ((ElementNode) other).node.jjtGetId());
+        if (!(other instanceof ElementNode)) {
+            // the document node comes first
+            return 1;
+        }
+        ElementNode thisAncestor = this;
+        ElementNode otherAncestor = (ElementNode) other;
+        int thisDepth = getDepth();
+        int otherDepth = otherAncestor.getDepth();
+        while (thisDepth > otherDepth) {
+            thisAncestor = thisAncestor.parent;
+            thisDepth--;
+        }
+        while (otherDepth > thisDepth) {
+            otherAncestor = otherAncestor.parent;
+            otherDepth--;
+        }
+        if (thisAncestor == otherAncestor) {
+            // an ancestor comes before its descendants
+            return Integer.signum(getDepth() - ((ElementNode) other).getDepth());
+        }
+        while (thisAncestor.parent != otherAncestor.parent) {
+            thisAncestor = thisAncestor.parent;
+            otherAncestor = otherAncestor.parent;
+        }
+        return Integer.signum(thisAncestor.siblingPosition - otherAncestor.siblingPosition);
+    }
+
+    private int getDepth() {
+        int depth = 0;
+        for (ElementNode ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+            depth++;
+        }
+        return depth;
     }
 
     @SuppressWarnings("PMD.MissingBreakInSwitch")
@@ -112,10 +186,10 @@ public class ElementNode extends AbstractNodeInfo {
         case Axis.ATTRIBUTE:
             return new AttributeAxisIterator(this);
         case Axis.CHILD:
-            if (children == null) {
+            if (!hasChildNodes()) {
                 return EmptyIterator.getInstance();
             } else {
-                return new NodeArrayIterator(children);
+                return new NodeArrayIterator(getChildren());
             }
         case Axis.DESCENDANT:
             return new Navigator.DescendantEnumeration(this, false, true);
@@ -124,10 +198,11 @@ public class ElementNode extends AbstractNodeInfo {
         case Axis.FOLLOWING:
             return new Navigator.FollowingEnumeration(this);
         case Axis.FOLLOWING_SIBLING:
-            if (parent == null || siblingPosition == parent.children.length - 1) {
+            if (parent == null || siblingPosition == parent.node.jjtGetNumChildren() - 1) {
                 return EmptyIterator.getInstance();
             } else {
-                return new NodeArrayIterator(parent.children, siblingPosition + 1, parent.children.length);
+                final NodeInfo[] siblings = parent.getChildren();
+                return new NodeArrayIterator(siblings, siblingPosition + 1, siblings.length);
             }
         case Axis.NAMESPACE:
             return super.iterateAxis(axisNumber);
@@ -139,7 +214,7 @@ public class ElementNode extends AbstractNodeInfo {
             if (parent == null || siblingPosition == 0) {
                 return EmptyIterator.getInstance();
             } else {
-                return new NodeArrayIterator(parent.children, 0, siblingPosition);
+                return new NodeArrayIterator(parent.getChildren(), 0, siblingPosition);
             }
         case Axis.SELF:
             return SingleNodeIterator.makeIterator(this);
@@ -6,7 +6,10 @@ package net.sourceforge.pmd.lang.ast.xpath.saxon;
 
 /**
  * This class is used to generate unique IDs for nodes.
+ *
+ * @deprecated The {@link ElementNode}s don't use ids anymore
  */
+@Deprecated
 public class IdGenerator {
     private int id;
 
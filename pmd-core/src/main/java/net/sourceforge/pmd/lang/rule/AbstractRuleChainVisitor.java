@@ -7,6 +7,7 @@ package net.sourceforge.pmd.lang.rule;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -20,6 +21,7 @@ import net.sourceforge.pmd.benchmark.TimeTracker;
 import net.sourceforge.pmd.benchmark.TimedOperation;
 import net.sourceforge.pmd.benchmark.TimedOperationCategory;
 import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.ast.NodeTypeIndex;
 
 /**
  * This is a base class for RuleChainVisitor implementations which extracts
@@ -38,6 +40,18 @@ public abstract class AbstractRuleChainVisitor implements RuleChainVisitor {
      */
     protected Map<String, List<Node>> nodeNameToNodes;
 
+    /**
+     * The names of the node types of the language, by id, or null if the
+     * parser doesn't index the nodes.
+     */
+    private String[] nodeTypeNames;
+
+    /**
+     * This is a mapping from rules to the ids of the node types they visit,
+     * in the order of {@link Rule#getRuleChainVisits()}.
+     */
+    private Map<Rule, int[]> ruleToNodeTypeIds;
+
     /**
      * @see RuleChainVisitor#add(RuleSet, Rule)
      */
@@ -58,10 +72,13 @@ public abstract class AbstractRuleChainVisitor implements RuleChainVisitor {
         initialize();
         clear();
 
-        // Perform a visitation of the AST to index nodes which need visiting by
-        // type
-        try (TimedOperation to = TimeTracker.startOperation(TimedOperationCategory.RULECHAIN_VISIT)) {
-            indexNodes(nodes, ctx);
+        // Use the node indexes built by the parser, or perform a visitation
+        // of the AST to index nodes which need visiting by type
+        final List<NodeTypeIndex> indexes = getNodeTypeIndexes(nodes);
+        if (indexes == null) {
+            try (TimedOperation to = TimeTracker.startOperation(TimedOperationCategory.RULECHAIN_VISIT)) {
+                indexNodes(nodes, ctx);
+            }
         }
 
         // For each RuleSet, only if this source file applies
@@ -75,22 +92,21 @@ public abstract class AbstractRuleChainVisitor implements RuleChainVisitor {
                 // For each rule, allow it to visit the nodes it desires
                 for (Rule rule : entry.getValue()) {
                     int visits = 0;
-                    if (!RuleSet.applies(rule, ctx.getLanguageVersion())) {
+                    if (!ctx.shouldApply(rule) || !RuleSet.applies(rule, ctx.getLanguageVersion())) {
                         continue;
                     }
                     try (TimedOperation rcto = TimeTracker.startOperation(TimedOperationCategory.RULECHAIN_RULE, rule.getName())) {
-                        final List<String> nodeNames = rule.getRuleChainVisits();
-                        for (int j = 0; j < nodeNames.size(); j++) {
-                            List<Node> ns = nodeNameToNodes.get(nodeNames.get(j));
-                            for (Node node : ns) {
-                                // Visit with underlying Rule, not the RuleReference
-                                Rule actualRule = rule;
-                                while (actualRule instanceof RuleReference) {
-                                    actualRule = ((RuleReference) actualRule).getRule();
+                        if (indexes != null) {
+                            for (int typeId : ruleToNodeTypeIds.get(rule)) {
+                                for (NodeTypeIndex index : indexes) {
+                                    visits += visitNodes(rule, index.getNodes(typeId), ctx);
                                 }
-                                visit(actualRule, node, ctx);
                             }
-                            visits += ns.size();
+                        } else {
+                            final List<String> nodeNames = rule.getRuleChainVisits();
+                            for (int j = 0; j < nodeNames.size(); j++) {
+                                visits += visitNodes(rule, nodeNameToNodes.get(nodeNames.get(j)), ctx);
+                            }
                         }
                         rcto.close(visits);
                     }
@@ -99,6 +115,37 @@ public abstract class AbstractRuleChainVisitor implements RuleChainVisitor {
         }
     }
 
+    private int visitNodes(Rule rule, List<Node> nodes, RuleContext ctx) {
+        // Visit with underlying Rule, not the RuleReference
+        Rule actualRule = rule;
+        while (actualRule instanceof RuleReference) {
+            actualRule = ((RuleReference) actualRule).getRule();
+        }
+        for (Node node : nodes) {
+            visit(actualRule, node, ctx);
+        }
+        return nodes.size();
+    }
+
+    /**
+     * Returns the node indexes of the given ASTs, or null if one of them has
+     * not been indexed by the parser.
+     */
+    private List<NodeTypeIndex> getNodeTypeIndexes(List<Node> nodes) {
+        if (nodeTypeNames == null) {
+            return null;
+        }
+        final List<NodeTypeIndex> indexes = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            final NodeTypeIndex index = getNodeTypeIndex(node);
+            if (index == null || index.getTypeNames() != nodeTypeNames) {
+                return null;
+            }
+            indexes.add(index);
+        }
+        return indexes;
+    }
+
     /**
      * Visit the given rule to the given node.
      */
@@ -109,6 +156,30 @@ public abstract class AbstractRuleChainVisitor implements RuleChainVisitor {
      */
     protected abstract void indexNodes(List<Node> nodes, RuleContext ctx);
 
+    /**
+     * Returns the names of the node types of the language, by id, if the
+     * parser of the language builds a {@link NodeTypeIndex} of the AST. The
+     * node types visited by the rules are resolved to ids once, during
+     * {@link #initialize()}.
+     *
+     * @return The names of the node types, or null if the nodes are not
+     *         indexed by the parser
+     */
+    protected String[] getNodeTypeNames() {
+        return null;
+    }
+
+    /**
+     * Returns the node index built by the parser for the given AST.
+     *
+     * @param rootNode The root node of the AST
+     * @return The index, or null if the AST has not been indexed, in which
+     *         case {@link #indexNodes(List, RuleContext)} is used
+     */
+    protected NodeTypeIndex getNodeTypeIndex(Node rootNode) {
+        return null;
+    }
+
     /**
      * Index a single node for visitation by rules.
      */
@@ -160,6 +231,23 @@ public abstract class AbstractRuleChainVisitor implements RuleChainVisitor {
             List<Node> nodes = new ArrayList<>(100);
             nodeNameToNodes.put(s, nodes);
         }
+
+        // Resolve the node types visited by each rule to the ids used by
+        // the node indexes of the parser
+        nodeTypeNames = getNodeTypeNames();
+        if (nodeTypeNames != null) {
+            ruleToNodeTypeIds = new IdentityHashMap<>();
+            for (List<Rule> rules : ruleSetRules.values()) {
+                for (Rule rule : rules) {
+                    final List<String> nodeNames = rule.getRuleChainVisits();
+                    final int[] typeIds = new int[nodeNames.size()];
+                    for (int j = 0; j < typeIds.length; j++) {
+                        typeIds[j] = NodeTypeIndex.getTypeId(nodeTypeNames, nodeNames.get(j));
+                    }
+                    ruleToNodeTypeIds.put(rule, typeIds);
+                }
+            }
+        }
     }
 
     /**
@@ -0,0 +1,20 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule;
+
+/**
+ * This is a tag interface to indicate that a Rule implementation keeps no
+ * state in its fields while applying it, apart from its properties. A single
+ * instance of such a Rule is shared by all threads analyzing files
+ * concurrently, instead of creating a copy per thread.
+ *
+ * <p>If a {@link RuleReference} refers to a Rule with this tag, the reference
+ * is shared as well.</p>
+ *
+ * <p>Rules, which initialize state lazily while being applied, like
+ * {@link XPathRule} does with its query, must not be tagged.</p>
+ */
+public interface ThreadSafeRule {
+}
@@ -17,6 +17,7 @@ import org.apache.commons.lang3.StringUtils;
 
 import net.sourceforge.pmd.RuleContext;
 import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.rule.xpath.CompiledXPathRuleQuery;
 import net.sourceforge.pmd.lang.rule.xpath.JaxenXPathRuleQuery;
 import net.sourceforge.pmd.lang.rule.xpath.SaxonXPathRuleQuery;
 import net.sourceforge.pmd.lang.rule.xpath.XPathRuleQuery;
@@ -140,7 +141,13 @@ public class XPathRule extends AbstractRule {
     }
 
     private void initRuleQueryBasedOnVersion(final String version) {
-        xpathRuleQuery = XPATH_1_0.equals(version) ? new JaxenXPathRuleQuery() : new SaxonXPathRuleQuery();
+        if (XPATH_1_0.equals(version)) {
+            // compiled if possible, interpreted by Jaxen otherwise
+            xpathRuleQuery = CompiledXPathRuleQuery.isEnabled()
+                    ? new CompiledXPathRuleQuery(new JaxenXPathRuleQuery()) : new JaxenXPathRuleQuery();
+        } else {
+            xpathRuleQuery = new SaxonXPathRuleQuery();
+        }
     }
 
     @Override
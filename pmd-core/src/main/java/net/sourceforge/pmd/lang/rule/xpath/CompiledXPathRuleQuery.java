@@ -0,0 +1,172 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.xpath;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.ast.xpath.DocumentNavigator;
+import net.sourceforge.pmd.lang.rule.xpath.XPathExpressionCompiler.Path;
+import net.sourceforge.pmd.lang.rule.xpath.XPathExpressionCompiler.UnsupportedExpressionException;
+import net.sourceforge.pmd.properties.PropertyDescriptor;
+
+/**
+ * An XPath 1.0 rule query, which is compiled into Java objects evaluating
+ * the query directly on the nodes, instead of being interpreted by Jaxen.
+ * Only the rule chain queries using the common subset of XPath described in
+ * {@link XPathExpressionCompiler} are compiled, like
+ * {@code //MethodDeclaration[@Public='true' and not(./Block)]}. The other
+ * queries, and the queries applied to languages with a custom navigator, are
+ * evaluated by the fallback query.
+ *
+ * <p>The compilation can be disabled with the system property
+ * {@value #COMPILE_PROPERTY}.</p>
+ */
+public class CompiledXPathRuleQuery extends AbstractXPathRuleQuery {
+
+    /**
+     * The system property, which disables the compilation of the queries,
+     * when set to {@code false}.
+     */
+    public static final String COMPILE_PROPERTY = "net.sourceforge.pmd.xpath.compile";
+
+    private static final Logger LOG = Logger.getLogger(CompiledXPathRuleQuery.class.getName());
+
+    private final XPathRuleQuery fallback;
+
+    private boolean initialized;
+    /** The compiled paths by node name, null if the query couldn't be compiled. */
+    private Map<String, List<Path>> compiledPaths;
+
+    private LanguageVersion checkedLanguageVersion;
+    private boolean defaultNavigator;
+
+    /**
+     * Creates a new query.
+     *
+     * @param fallback The query evaluating the queries, that aren't compiled
+     */
+    public CompiledXPathRuleQuery(XPathRuleQuery fallback) {
+        this.fallback = fallback;
+    }
+
+    /**
+     * Returns whether the compilation of the queries is enabled.
+     */
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty(COMPILE_PROPERTY, "true"));
+    }
+
+    @Override
+    public boolean isSupportedVersion(String version) {
+        return XPATH_1_0.equals(version);
+    }
+
+    @Override
+    public void setXPath(String xpath) {
+        super.setXPath(xpath);
+        fallback.setXPath(xpath);
+    }
+
+    @Override
+    public void setVersion(String version) throws UnsupportedOperationException {
+        super.setVersion(version);
+        fallback.setVersion(version);
+    }
+
+    @Override
+    public void setProperties(Map<PropertyDescriptor<?>, Object> properties) {
+        super.setProperties(properties);
+        fallback.setProperties(properties);
+    }
+
+    /**
+     * Returns whether the query has been compiled.
+     */
+    boolean isCompiled() {
+        initialize();
+        return compiledPaths != null;
+    }
+
+    @Override
+    public List<String> getRuleChainVisits() {
+        initialize();
+        return compiledPaths != null ? super.getRuleChainVisits() : fallback.getRuleChainVisits();
+    }
+
+    @Override
+    public List<Node> evaluate(Node node, RuleContext data) {
+        initialize();
+        if (compiledPaths == null || !usesDefaultNavigator(data.getLanguageVersion())) {
+            return fallback.evaluate(node, data);
+        }
+
+        final List<Path> paths = compiledPaths.get(node.getXPathNodeName());
+        if (paths == null) {
+            // not applied by the rule chain
+            return fallback.evaluate(node, data);
+        }
+        final List<Node> results = new ArrayList<>();
+        for (Path path : paths) {
+            for (Object result : path.evaluate(node)) {
+                if (result instanceof Node) {
+                    results.add((Node) result);
+                }
+            }
+        }
+        return results;
+    }
+
+    private boolean usesDefaultNavigator(LanguageVersion languageVersion) {
+        if (languageVersion != checkedLanguageVersion) {
+            final Object navigator = languageVersion.getLanguageVersionHandler().getXPathHandler().getNavigator();
+            defaultNavigator = navigator != null && navigator.getClass() == DocumentNavigator.class;
+            checkedLanguageVersion = languageVersion;
+        }
+        return defaultNavigator;
+    }
+
+    private void initialize() {
+        if (initialized) {
+            return;
+        }
+        initialized = true;
+        try {
+            compiledPaths = new XPathExpressionCompiler(getVariables()).compileRuleChainQuery(xpath);
+            ruleChainVisits.addAll(compiledPaths.keySet());
+        } catch (UnsupportedExpressionException e) {
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.log(Level.FINE, "Unable to compile XPath: " + xpath + ", " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the values of the properties of the rule, like they are bound
+     * to the variables of the query by {@link JaxenXPathRuleQuery}.
+     */
+    private Map<String, String> getVariables() {
+        if (properties == null || properties.size() <= 1) {
+            return Collections.emptyMap();
+        }
+        final Map<String, String> variables = new HashMap<>();
+        for (Entry<PropertyDescriptor<?>, Object> e : properties.entrySet()) {
+            final String propName = e.getKey().name();
+            if (!"xpath".equals(propName) && e.getValue() != null) {
+                variables.put(propName, e.getValue().toString());
+            }
+        }
+        return variables;
+    }
+}
@@ -5,7 +5,6 @@
 package net.sourceforge.pmd.lang.rule.xpath;
 
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
@@ -43,16 +42,6 @@ import net.sf.saxon.value.UntypedAtomicValue;
  */
 public class SaxonXPathRuleQuery extends AbstractXPathRuleQuery {
 
-    private static final int MAX_CACHE_SIZE = 20;
-    private static final Map<Node, DocumentNode> CACHE = new LinkedHashMap<Node, DocumentNode>(MAX_CACHE_SIZE) {
-        private static final long serialVersionUID = -7653916493967142443L;
-
-
-        protected boolean removeEldestEntry(final Map.Entry<Node, DocumentNode> eldest) {
-            return size() > MAX_CACHE_SIZE;
-        }
-    };
-
     /**
      * Representation of an XPath query, created at {@link #initializeXPathExpression()} using {@link #xpath}.
      */
@@ -76,10 +65,11 @@ public class SaxonXPathRuleQuery extends AbstractXPathRuleQuery {
         initializeXPathExpression();
 
         try {
-            final DocumentNode documentNode = getDocumentNodeForRootNode(node);
+            // The Saxon tree is shared by all the rules applied to the AST
+            final DocumentNode documentNode = DocumentNode.getDocumentNode(getRootNode(node));
 
             // Map AST Node -> Saxon Node
-            final ElementNode rootElementNode = documentNode.nodeToElementNode.get(node);
+            final ElementNode rootElementNode = documentNode.getElementNode(node);
 
             final XPathDynamicContext xpathDynamicContext = createDynamicContext(rootElementNode);
             final List<ElementNode> nodes = xpathExpression.evaluate(xpathDynamicContext);
@@ -141,28 +131,6 @@ public class SaxonXPathRuleQuery extends AbstractXPathRuleQuery {
         }
     }
 
-    /**
-     * Gets the DocumentNode representation for the whole AST in which the node is, that is, if the node is not the root
-     * of the AST, then the AST is traversed all the way up until the root node is found. If the DocumentNode was
-     * cached because this method was previously called, then a new DocumentNode will not be instanced.
-     *
-     * @param node the node from which the root node will be looked for.
-     * @return the DocumentNode representing the whole AST
-     */
-    private DocumentNode getDocumentNodeForRootNode(final Node node) {
-        final Node root = getRootNode(node);
-
-        DocumentNode documentNode;
-        synchronized (CACHE) {
-            documentNode = CACHE.get(root);
-            if (documentNode == null) {
-                documentNode = new DocumentNode(root);
-                CACHE.put(root, documentNode);
-            }
-        }
-        return documentNode;
-    }
-
     /**
      * Traverse the AST until the root node is found.
      *
@@ -0,0 +1,669 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.xpath;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jaxen.BaseXPath;
+import org.jaxen.FunctionCallException;
+import org.jaxen.JaxenException;
+import org.jaxen.Navigator;
+import org.jaxen.expr.AllNodeStep;
+import org.jaxen.expr.BinaryExpr;
+import org.jaxen.expr.EqualityExpr;
+import org.jaxen.expr.Expr;
+import org.jaxen.expr.FunctionCallExpr;
+import org.jaxen.expr.LiteralExpr;
+import org.jaxen.expr.LocationPath;
+import org.jaxen.expr.LogicalExpr;
+import org.jaxen.expr.NameStep;
+import org.jaxen.expr.NumberExpr;
+import org.jaxen.expr.Predicate;
+import org.jaxen.expr.RelationalExpr;
+import org.jaxen.expr.Step;
+import org.jaxen.expr.UnionExpr;
+import org.jaxen.expr.VariableReferenceExpr;
+import org.jaxen.function.BooleanFunction;
+import org.jaxen.function.ContainsFunction;
+import org.jaxen.function.NumberFunction;
+import org.jaxen.function.StartsWithFunction;
+import org.jaxen.function.StringFunction;
+import org.jaxen.function.StringLengthFunction;
+import org.jaxen.function.ext.EndsWithFunction;
+import org.jaxen.saxpath.Axis;
+
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.ast.xpath.Attribute;
+import net.sourceforge.pmd.lang.ast.xpath.AttributeAxisIterator;
+import net.sourceforge.pmd.lang.ast.xpath.DocumentNavigator;
+
+/**
+ * Compiles XPath 1.0 queries into trees of Java objects, which evaluate the
+ * query directly on the nodes of the AST, without the indirections of Jaxen.
+ * Only a common subset of XPath is supported:
+ * <ul>
+ * <li>relative location paths along the child, descendant, self, parent,
+ * ancestor and sibling axes, with name tests, ending with an optional
+ * attribute step;</li>
+ * <li>predicates, which are not positional;</li>
+ * <li>{@code and}, {@code or}, equality and relational comparisons;</li>
+ * <li>string and number literals, and the variables bound to the properties
+ * of the rule;</li>
+ * <li>the functions {@code not}, {@code boolean}, {@code true},
+ * {@code false}, {@code count}, {@code string}, {@code string-length},
+ * {@code contains}, {@code starts-with} and {@code ends-with}.</li>
+ * </ul>
+ *
+ * <p>Values are represented like Jaxen does, and converted with the Jaxen
+ * functions, so that the compiled queries return the same nodes.</p>
+ */
+final class XPathExpressionCompiler {
+
+    private static final Navigator NAVIGATOR = new DocumentNavigator();
+
+    private final Map<String, String> variables;
+
+    /**
+     * Creates a new compiler.
+     *
+     * @param variables The values of the variables, by name
+     */
+    XPathExpressionCompiler(Map<String, String> variables) {
+        this.variables = variables;
+    }
+
+    /**
+     * Compiles a query of the form {@code //A[...]/... | //B[...]/...}, that
+     * the rule chain applies to the nodes named A and B.
+     *
+     * @param xpath The query
+     *
+     * @return The compiled paths, relative to the visited nodes, by node name
+     *
+     * @throws UnsupportedExpressionException If the query isn't of that form,
+     *                                        or uses an unsupported expression
+     */
+    Map<String, List<Path>> compileRuleChainQuery(String xpath) throws UnsupportedExpressionException {
+        final Expr rootExpr;
+        try {
+            rootExpr = new BaseXPath(xpath, null).getRootExpr();
+        } catch (JaxenException e) {
+            throw new UnsupportedExpressionException(e.getMessage());
+        }
+        final Map<String, List<Path>> paths = new LinkedHashMap<>();
+        compileRuleChainExpr(rootExpr, paths);
+        return paths;
+    }
+
+    private void compileRuleChainExpr(Expr expr, Map<String, List<Path>> paths) throws UnsupportedExpressionException {
+        if (expr instanceof UnionExpr) {
+            compileRuleChainExpr(((UnionExpr) expr).getLHS(), paths);
+            compileRuleChainExpr(((UnionExpr) expr).getRHS(), paths);
+            return;
+        }
+        if (!(expr instanceof LocationPath) || !((LocationPath) expr).isAbsolute()) {
+            throw new UnsupportedExpressionException("Not a rule chain query: " + expr.getText());
+        }
+
+        final List<?> steps = ((LocationPath) expr).getSteps();
+        if (steps.size() < 2 || !(steps.get(0) instanceof AllNodeStep)
+                || ((Step) steps.get(0)).getAxis() != Axis.DESCENDANT_OR_SELF
+                || !((Step) steps.get(0)).getPredicates().isEmpty()
+                || !(steps.get(1) instanceof NameStep) || ((Step) steps.get(1)).getAxis() != Axis.CHILD) {
+            throw new UnsupportedExpressionException("Not a rule chain query: " + expr.getText());
+        }
+        final String nodeName = getNodeName((NameStep) steps.get(1));
+        if (nodeName == null) {
+            throw new UnsupportedExpressionException("Not a rule chain query: " + expr.getText());
+        }
+
+        // the predicates of //A apply to the visited node A itself
+        final List<CompiledStep> compiledSteps = new ArrayList<>();
+        compiledSteps.add(new ElementStep(Axis.SELF, null, compilePredicates((Step) steps.get(1))));
+        compileSteps(steps.subList(2, steps.size()), compiledSteps);
+
+        List<Path> pathsForNode = paths.get(nodeName);
+        if (pathsForNode == null) {
+            pathsForNode = new ArrayList<>();
+            paths.put(nodeName, pathsForNode);
+        }
+        pathsForNode.add(new Path(compiledSteps));
+    }
+
+    private static String getNodeName(NameStep step) throws UnsupportedExpressionException {
+        if (step.getPrefix() != null && !step.getPrefix().isEmpty()) {
+            throw new UnsupportedExpressionException("Unsupported namespace prefix: " + step.getText());
+        }
+        return "*".equals(step.getLocalName()) ? null : step.getLocalName();
+    }
+
+    private void compileSteps(List<?> steps, List<CompiledStep> compiledSteps) throws UnsupportedExpressionException {
+        for (int i = 0; i < steps.size(); i++) {
+            final Step step = (Step) steps.get(i);
+            final Step nextStep = i + 1 < steps.size() ? (Step) steps.get(i + 1) : null;
+            final int axis = step.getAxis();
+
+            if (axis == Axis.ATTRIBUTE) {
+                if (nextStep != null || !(step instanceof NameStep) || !step.getPredicates().isEmpty()) {
+                    throw new UnsupportedExpressionException("Unsupported attribute step: " + step.getText());
+                }
+                compiledSteps.add(new AttributeStep(getNodeName((NameStep) step)));
+            } else if (!isSupportedAxis(axis)) {
+                throw new UnsupportedExpressionException("Unsupported axis: " + step.getText());
+            } else if (step instanceof AllNodeStep && axis == Axis.DESCENDANT_OR_SELF && step.getPredicates().isEmpty()
+                    && nextStep instanceof NameStep && nextStep.getAxis() == Axis.CHILD) {
+                // the abbreviation "//A", with non positional predicates
+                compiledSteps.add(new ElementStep(Axis.DESCENDANT, getNodeName((NameStep) nextStep),
+                        compilePredicates(nextStep)));
+                i++;
+            } else if (step instanceof AllNodeStep) {
+                compiledSteps.add(new ElementStep(axis, null, compilePredicates(step)));
+            } else if (step instanceof NameStep) {
+                compiledSteps.add(new ElementStep(axis, getNodeName((NameStep) step), compilePredicates(step)));
+            } else {
+                throw new UnsupportedExpressionException("Unsupported node test: " + step.getText());
+            }
+        }
+    }
+
+    private static boolean isSupportedAxis(int axis) {
+        switch (axis) {
+        case Axis.CHILD:
+        case Axis.DESCENDANT:
+        case Axis.DESCENDANT_OR_SELF:
+        case Axis.SELF:
+        case Axis.PARENT:
+        case Axis.ANCESTOR:
+        case Axis.ANCESTOR_OR_SELF:
+        case Axis.FOLLOWING_SIBLING:
+        case Axis.PRECEDING_SIBLING:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private CompiledExpr[] compilePredicates(Step step) throws UnsupportedExpressionException {
+        final List<?> predicates = step.getPredicates();
+        final CompiledExpr[] compiled = new CompiledExpr[predicates.size()];
+        for (int i = 0; i < compiled.length; i++) {
+            compiled[i] = compile(((Predicate) predicates.get(i)).getExpr());
+            if (compiled[i].type == ValueType.NUMBER) {
+                throw new UnsupportedExpressionException("Unsupported positional predicate: " + step.getText());
+            }
+        }
+        return compiled;
+    }
+
+    private CompiledExpr compile(Expr expr) throws UnsupportedExpressionException {
+        if (expr instanceof LocationPath && !((LocationPath) expr).isAbsolute()) {
+            final List<CompiledStep> steps = new ArrayList<>();
+            compileSteps(((LocationPath) expr).getSteps(), steps);
+            return new Path(steps);
+        } else if (expr instanceof LogicalExpr) {
+            final BinaryExpr binaryExpr = (BinaryExpr) expr;
+            return new Logical("and".equals(binaryExpr.getOperator()), compile(binaryExpr.getLHS()),
+                    compile(binaryExpr.getRHS()));
+        } else if (expr instanceof EqualityExpr || expr instanceof RelationalExpr) {
+            final BinaryExpr binaryExpr = (BinaryExpr) expr;
+            return new Comparison(binaryExpr.getOperator(), compile(binaryExpr.getLHS()), compile(binaryExpr.getRHS()));
+        } else if (expr instanceof LiteralExpr) {
+            return new Literal(ValueType.STRING, ((LiteralExpr) expr).getLiteral());
+        } else if (expr instanceof NumberExpr) {
+            return new Literal(ValueType.NUMBER, ((NumberExpr) expr).getNumber().doubleValue());
+        } else if (expr instanceof VariableReferenceExpr) {
+            final VariableReferenceExpr variable = (VariableReferenceExpr) expr;
+            final String value = variables.get(variable.getVariableName());
+            if (variable.getPrefix() != null && !variable.getPrefix().isEmpty() || value == null) {
+                throw new UnsupportedExpressionException("Unsupported variable: " + expr.getText());
+            }
+            return new Literal(ValueType.STRING, value);
+        } else if (expr instanceof FunctionCallExpr) {
+            return compileFunctionCall((FunctionCallExpr) expr);
+        }
+        throw new UnsupportedExpressionException("Unsupported expression: " + expr.getText());
+    }
+
+    private CompiledExpr compileFunctionCall(FunctionCallExpr expr) throws UnsupportedExpressionException {
+        if (expr.getPrefix() != null && !expr.getPrefix().isEmpty()) {
+            throw new UnsupportedExpressionException("Unsupported function: " + expr.getText());
+        }
+        final List<?> parameters = expr.getParameters();
+        final CompiledExpr[] arguments = new CompiledExpr[parameters.size()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = compile((Expr) parameters.get(i));
+        }
+
+        final Function function = Function.get(expr.getFunctionName(), arguments.length);
+        if (function == null) {
+            throw new UnsupportedExpressionException("Unsupported function: " + expr.getText());
+        }
+        if (function == Function.COUNT && arguments[0].type != ValueType.NODE_SET) {
+            throw new UnsupportedExpressionException("count() requires a node set: " + expr.getText());
+        }
+        return new FunctionCall(function, arguments);
+    }
+
+    /**
+     * Adds the attributes of the given node with the given name, or all
+     * attributes if the name is null.
+     */
+    private static void addAttributes(Node node, String name, List<Object> result) {
+        final Iterator<Attribute> attributes = name == null ? node.getXPathAttributesIterator()
+                : AttributeAxisIterator.getAttributesByName(node, name);
+        while (attributes.hasNext()) {
+            result.add(attributes.next());
+        }
+    }
+
+    private static boolean toBoolean(Object value) {
+        return BooleanFunction.evaluate(value, NAVIGATOR);
+    }
+
+    /**
+     * Thrown when a query uses an expression, which isn't supported by the
+     * compiler.
+     */
+    static class UnsupportedExpressionException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedExpressionException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * The static types of the values of the expressions. Node sets are
+     * represented as lists of nodes and attributes.
+     */
+    private enum ValueType {
+        NODE_SET, BOOLEAN, NUMBER, STRING
+    }
+
+    /**
+     * A compiled expression.
+     */
+    abstract static class CompiledExpr {
+
+        private final ValueType type;
+
+        CompiledExpr(ValueType type) {
+            this.type = type;
+        }
+
+        /**
+         * Evaluates the expression.
+         *
+         * @param context The context node
+         *
+         * @return A list of nodes or attributes, a boolean, a double or a string
+         */
+        abstract Object evaluate(Node context);
+    }
+
+    /**
+     * A relative location path.
+     */
+    static final class Path extends CompiledExpr {
+
+        private final CompiledStep[] steps;
+
+        Path(List<CompiledStep> steps) {
+            super(ValueType.NODE_SET);
+            this.steps = steps.toArray(new CompiledStep[0]);
+        }
+
+        @Override
+        List<Object> evaluate(Node context) {
+            List<Object> nodes = Collections.<Object>singletonList(context);
+            for (CompiledStep step : steps) {
+                if (nodes.isEmpty()) {
+                    break;
+                }
+                nodes = step.select(nodes);
+            }
+            return nodes;
+        }
+    }
+
+    private abstract static class CompiledStep {
+
+        /**
+         * Selects the nodes or attributes reachable from the given nodes.
+         */
+        abstract List<Object> select(List<Object> contextNodes);
+    }
+
+    private static final class ElementStep extends CompiledStep {
+
+        private final int axis;
+        /** The name of the selected nodes, null for any name. */
+        private final String name;
+        private final CompiledExpr[] predicates;
+
+        ElementStep(int axis, String name, CompiledExpr[] predicates) {
+            this.axis = axis;
+            this.name = name;
+            this.predicates = predicates;
+        }
+
+        @Override
+        List<Object> select(List<Object> contextNodes) {
+            final List<Object> result = new ArrayList<>();
+            // the nodes reached from different context nodes may overlap
+            final Set<Node> selected = contextNodes.size() > 1 && axis != Axis.CHILD && axis != Axis.SELF
+                    ? Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>()) : null;
+            for (Object contextNode : contextNodes) {
+                selectFrom((Node) contextNode, result, selected);
+            }
+            return result;
+        }
+
+        private void selectFrom(Node node, List<Object> result, Set<Node> selected) {
+            switch (axis) {
+            case Axis.SELF:
+                accept(node, result, selected);
+                break;
+            case Axis.CHILD:
+                for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+                    accept(node.jjtGetChild(i), result, selected);
+                }
+                break;
+            case Axis.DESCENDANT_OR_SELF:
+                accept(node, result, selected);
+                selectDescendants(node, result, selected);
+                break;
+            case Axis.DESCENDANT:
+                selectDescendants(node, result, selected);
+                break;
+            case Axis.PARENT:
+                if (node.jjtGetParent() != null) {
+                    accept(node.jjtGetParent(), result, selected);
+                }
+                break;
+            case Axis.ANCESTOR_OR_SELF:
+                accept(node, result, selected);
+                selectAncestors(node, result, selected);
+                break;
+            case Axis.ANCESTOR:
+                selectAncestors(node, result, selected);
+                break;
+            case Axis.FOLLOWING_SIBLING:
+                if (node.jjtGetParent() != null) {
+                    final Node parent = node.jjtGetParent();
+                    for (int i = node.jjtGetChildIndex() + 1; i < parent.jjtGetNumChildren(); i++) {
+                        accept(parent.jjtGetChild(i), result, selected);
+                    }
+                }
+                break;
+            case Axis.PRECEDING_SIBLING:
+                if (node.jjtGetParent() != null) {
+                    final Node parent = node.jjtGetParent();
+                    for (int i = node.jjtGetChildIndex() - 1; i >= 0; i--) {
+                        accept(parent.jjtGetChild(i), result, selected);
+                    }
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unsupported axis " + axis);
+            }
+        }
+
+        private void selectDescendants(Node node, List<Object> result, Set<Node> selected) {
+            for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+                final Node child = node.jjtGetChild(i);
+                accept(child, result, selected);
+                selectDescendants(child, result, selected);
+            }
+        }
+
+        private void selectAncestors(Node node, List<Object> result, Set<Node> selected) {
+            for (Node ancestor = node.jjtGetParent(); ancestor != null; ancestor = ancestor.jjtGetParent()) {
+                accept(ancestor, result, selected);
+            }
+        }
+
+        private void accept(Node node, List<Object> result, Set<Node> selected) {
+            if (name != null && !name.equals(node.getXPathNodeName())) {
+                return;
+            }
+            for (CompiledExpr predicate : predicates) {
+                if (!toBoolean(predicate.evaluate(node))) {
+                    return;
+                }
+            }
+            if (selected == null || selected.add(node)) {
+                result.add(node);
+            }
+        }
+    }
+
+    private static final class AttributeStep extends CompiledStep {
+
+        /** The name of the selected attributes, null for any name. */
+        private final String name;
+
+        AttributeStep(String name) {
+            this.name = name;
+        }
+
+        @Override
+        List<Object> select(List<Object> contextNodes) {
+            final List<Object> result = new ArrayList<>();
+            for (Object contextNode : contextNodes) {
+                addAttributes((Node) contextNode, name, result);
+            }
+            return result;
+        }
+    }
+
+    private static final class Literal extends CompiledExpr {
+
+        private final Object value;
+
+        Literal(ValueType type, Object value) {
+            super(type);
+            this.value = value;
+        }
+
+        @Override
+        Object evaluate(Node context) {
+            return value;
+        }
+    }
+
+    private static final class Logical extends CompiledExpr {
+
+        private final boolean and;
+        private final CompiledExpr lhs;
+        private final CompiledExpr rhs;
+
+        Logical(boolean and, CompiledExpr lhs, CompiledExpr rhs) {
+            super(ValueType.BOOLEAN);
+            this.and = and;
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        Object evaluate(Node context) {
+            final boolean left = toBoolean(lhs.evaluate(context));
+            if (and != left) {
+                // short circuit
+                return left;
+            }
+            return toBoolean(rhs.evaluate(context));
+        }
+    }
+
+    /**
+     * Compares two values with the semantics of Jaxen: node sets are
+     * compared item by item, booleans take precedence over numbers, and
+     * numbers over strings.
+     */
+    private static final class Comparison extends CompiledExpr {
+
+        private final String operator;
+        private final boolean equality;
+        private final CompiledExpr lhs;
+        private final CompiledExpr rhs;
+
+        Comparison(String operator, CompiledExpr lhs, CompiledExpr rhs) {
+            super(ValueType.BOOLEAN);
+            this.operator = operator;
+            this.equality = "=".equals(operator) || "!=".equals(operator);
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        Object evaluate(Node context) {
+            final Object left = lhs.evaluate(context);
+            final Object right = rhs.evaluate(context);
+            final boolean leftIsSet = left instanceof List;
+            final boolean rightIsSet = right instanceof List;
+
+            if (equality && leftIsSet && right instanceof Boolean) {
+                return compareValues(!((List<?>) left).isEmpty(), right);
+            } else if (equality && rightIsSet && left instanceof Boolean) {
+                return compareValues(left, !((List<?>) right).isEmpty());
+            } else if (leftIsSet || rightIsSet) {
+                final List<?> leftItems = leftIsSet ? (List<?>) left : Collections.singletonList(left);
+                final List<?> rightItems = rightIsSet ? (List<?>) right : Collections.singletonList(right);
+                for (Object leftItem : leftItems) {
+                    for (Object rightItem : rightItems) {
+                        if (compareValues(leftItem, rightItem)) {
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            }
+            return compareValues(left, right);
+        }
+
+        private boolean compareValues(Object left, Object right) {
+            if (!equality) {
+                return compareNumbers(NumberFunction.evaluate(left, NAVIGATOR), NumberFunction.evaluate(right, NAVIGATOR));
+            } else if (left instanceof Boolean || right instanceof Boolean) {
+                return compareObjects(BooleanFunction.evaluate(left, NAVIGATOR), BooleanFunction.evaluate(right, NAVIGATOR));
+            } else if (left instanceof Double || right instanceof Double) {
+                return compareNumbers(NumberFunction.evaluate(left, NAVIGATOR), NumberFunction.evaluate(right, NAVIGATOR));
+            }
+            return compareObjects(StringFunction.evaluate(left, NAVIGATOR), StringFunction.evaluate(right, NAVIGATOR));
+        }
+
+        private boolean compareObjects(Object left, Object right) {
+            return "=".equals(operator) == left.equals(right);
+        }
+
+        private boolean compareNumbers(double left, double right) {
+            switch (operator) {
+            case "=":
+                return left == right;
+            case "!=":
+                return left != right;
+            case "<":
+                return left < right;
+            case "<=":
+                return left <= right;
+            case ">":
+                return left > right;
+            case ">=":
+                return left >= right;
+            default:
+                throw new IllegalStateException("Unsupported operator " + operator);
+            }
+        }
+    }
+
+    /**
+     * The supported functions.
+     */
+    private enum Function {
+        NOT("not", 1, ValueType.BOOLEAN),
+        BOOLEAN("boolean", 1, ValueType.BOOLEAN),
+        TRUE("true", 0, ValueType.BOOLEAN),
+        FALSE("false", 0, ValueType.BOOLEAN),
+        COUNT("count", 1, ValueType.NUMBER),
+        STRING("string", 1, ValueType.STRING),
+        STRING_LENGTH("string-length", 1, ValueType.NUMBER),
+        CONTAINS("contains", 2, ValueType.BOOLEAN),
+        STARTS_WITH("starts-with", 2, ValueType.BOOLEAN),
+        ENDS_WITH("ends-with", 2, ValueType.BOOLEAN);
+
+        private final String name;
+        private final int arity;
+        private final ValueType type;
+
+        Function(String name, int arity, ValueType type) {
+            this.name = name;
+            this.arity = arity;
+            this.type = type;
+        }
+
+        static Function get(String name, int arity) {
+            for (Function function : values()) {
+                if (function.name.equals(name) && function.arity == arity) {
+                    return function;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class FunctionCall extends CompiledExpr {
+
+        private final Function function;
+        private final CompiledExpr[] arguments;
+
+        FunctionCall(Function function, CompiledExpr[] arguments) {
+            super(function.type);
+            this.function = function;
+            this.arguments = arguments;
+        }
+
+        @Override
+        Object evaluate(Node context) {
+            switch (function) {
+            case NOT:
+                return !toBoolean(arguments[0].evaluate(context));
+            case BOOLEAN:
+                return toBoolean(arguments[0].evaluate(context));
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case COUNT:
+                return (double) ((List<?>) arguments[0].evaluate(context)).size();
+            case STRING:
+                return StringFunction.evaluate(arguments[0].evaluate(context), NAVIGATOR);
+            case STRING_LENGTH:
+                try {
+                    return StringLengthFunction.evaluate(arguments[0].evaluate(context), NAVIGATOR);
+                } catch (FunctionCallException e) {
+                    // an unpaired surrogate, like Jaxen
+                    throw new IllegalArgumentException(e);
+                }
+            case CONTAINS:
+                return ContainsFunction.evaluate(arguments[0].evaluate(context), arguments[1].evaluate(context), NAVIGATOR);
+            case STARTS_WITH:
+                return StartsWithFunction.evaluate(arguments[0].evaluate(context), arguments[1].evaluate(context), NAVIGATOR);
+            case ENDS_WITH:
+                return EndsWithFunction.evaluate(arguments[0].evaluate(context), arguments[1].evaluate(context), NAVIGATOR);
+            default:
+                throw new IllegalStateException("Unsupported function " + function);
+            }
+        }
+    }
+}
@@ -5,6 +5,7 @@
 package net.sourceforge.pmd.processor;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -24,6 +25,7 @@ import net.sourceforge.pmd.benchmark.TimedOperation;
 import net.sourceforge.pmd.benchmark.TimedOperationCategory;
 import net.sourceforge.pmd.renderers.Renderer;
 import net.sourceforge.pmd.util.datasource.DataSource;
+import net.sourceforge.pmd.util.datasource.ZipDataSource;
 
 /**
  * @author Romain Pelisse &lt;belaran@gmail.com&gt;
@@ -35,6 +37,9 @@ public abstract class AbstractPMDProcessor {
     
     protected final PMDConfiguration configuration;
 
+    /** Restores the order of the file reports, null if the files are analyzed in order. */
+    private ReportReorderBuffer reorderBuffer;
+
     public AbstractPMDProcessor(PMDConfiguration configuration) {
         this.configuration = configuration;
     }
@@ -50,6 +55,25 @@ public abstract class AbstractPMDProcessor {
         }
     }
 
+    /**
+     * Renders the report of the file at the given position of the analyzed
+     * files. If the files are not analyzed in order, the report is only
+     * rendered once the reports of all previous files have been rendered.
+     *
+     * @param renderers The renderers
+     * @param position  The position of the file, see {@link PmdRunnable#getPosition()}
+     * @param report    The report of the file
+     */
+    protected void renderFileReport(final List<Renderer> renderers, final int position, final Report report) {
+        if (reorderBuffer == null) {
+            renderReports(renderers, report);
+            return;
+        }
+        for (Report ready : reorderBuffer.add(position, report)) {
+            renderReports(renderers, ready);
+        }
+    }
+
     protected String filenameFrom(DataSource dataSource) {
         return dataSource.getNiceFileName(configuration.isReportShortNames(), configuration.getInputPaths());
     }
@@ -57,8 +81,8 @@ public abstract class AbstractPMDProcessor {
     /**
      * Create instances for each rule defined in the ruleset(s) in the
      * configuration. Please note, that the returned instances <strong>must
-     * not</strong> be used by different threads. Each thread must create its
-     * own copy of the rules.
+     * not</strong> be used by different threads concurrently. Each file being
+     * analyzed needs its own copy of the rules.
      *
      * @param factory The factory used to create the configured rule sets
      * @param report The base report on which to report any configuration errors
@@ -101,18 +125,71 @@ public abstract class AbstractPMDProcessor {
         RuleSets rs = createRuleSets(ruleSetFactory, ctx.getReport());
         configuration.getAnalysisCache().checkValidity(rs, configuration.getClassLoader());
         SourceCodeProcessor processor = new SourceCodeProcessor(configuration);
+        RuleSetsPool ruleSetsPool = new RuleSetsPool(rs, ctx, Math.max(1, configuration.getThreads()),
+                configuration.getSourceEncoding());
+
+        // render base report first - general errors. These are all known
+        // before the analysis starts, so processors may render file reports
+        // while files are still being submitted.
+        renderReports(renderers, ctx.getReport());
 
+        final List<String> fileNames = new ArrayList<>(files.size());
         for (DataSource dataSource : files) {
-            String niceFileName = filenameFrom(dataSource);
+            fileNames.add(filenameFrom(dataSource));
+        }
 
-            runAnalysis(new PmdRunnable(dataSource, niceFileName, renderers, ctx, rs, processor));
+        // the reports are rendered in the order of the files in any case
+        int[] order = null;
+        if (configuration.isLargestFilesFirst()) {
+            order = FileSchedule.largestFirst(files, fileNames, configuration.getAnalysisCache());
+            reorderBuffer = new ReportReorderBuffer();
         }
 
-        // render base report first - general errors
-        renderReports(renderers, ctx.getReport());
-        
-        // then add analysis results per file
-        collectReports(renderers);
+        final ArchiveEntryReader archiveReader = createArchiveReader(files, order);
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                final int position = order == null ? i : order[i];
+                runAnalysis(new PmdRunnable(files.get(position), fileNames.get(position), renderers, ruleSetsPool,
+                        processor, position, archiveReader));
+            }
+
+            // then add the remaining analysis results per file
+            collectReports(renderers);
+        } finally {
+            if (archiveReader != null) {
+                archiveReader.close();
+            }
+        }
+        if (reorderBuffer != null) {
+            for (Report report : reorderBuffer.drain()) {
+                renderReports(renderers, report);
+            }
+        }
+    }
+
+    /**
+     * Creates the reader, which decompresses the entries of archives ahead
+     * of the workers, in the order the files are analyzed. Returns null, if
+     * the files are analyzed on the calling thread, or if there are no
+     * archive entries.
+     */
+    private ArchiveEntryReader createArchiveReader(List<DataSource> files, int[] order) {
+        if (configuration.getThreads() <= 0 || configuration.getSourceEncoding() == null) {
+            return null;
+        }
+        final List<ZipDataSource> entries = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            final DataSource dataSource = files.get(order == null ? i : order[i]);
+            if (dataSource instanceof ZipDataSource) {
+                entries.add((ZipDataSource) dataSource);
+            }
+        }
+        if (entries.isEmpty()) {
+            return null;
+        }
+        final ArchiveEntryReader archiveReader = new ArchiveEntryReader(entries, 2 * configuration.getThreads());
+        archiveReader.start();
+        return archiveReader;
     }
 
     protected abstract void runAnalysis(PmdRunnable runnable);
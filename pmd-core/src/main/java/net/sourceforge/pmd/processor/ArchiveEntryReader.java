@@ -0,0 +1,244 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.processor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+
+import net.sourceforge.pmd.util.datasource.ZipDataSource;
+
+/**
+ * Decompresses the entries of archives on a single thread, in the order in
+ * which their files are analyzed, into a bounded queue of buffers taken by
+ * the workers. The reads of a zip file are serialized on a lock shared by
+ * all instances opened on the same file, so the workers don't read the
+ * entries themselves, but only decode them.
+ *
+ * <p>An entry is read by the worker itself, if the reader can't provide it:
+ * if the queue is full with entries of files, which are not analyzed yet,
+ * because the executor runs the files out of order, or after the reader has
+ * been closed. Each entry must be taken or skipped by the worker analyzing
+ * it, so that the reader doesn't wait for it.</p>
+ */
+class ArchiveEntryReader {
+
+    private static final Logger LOG = Logger.getLogger(ArchiveEntryReader.class.getName());
+
+    private final List<ZipDataSource> entries;
+    private final int capacity;
+    private final Thread thread;
+
+    // guarded by this
+    /** The read entries, not yet taken, with their content or the read error. */
+    private final Map<ZipDataSource, Object> queue = new IdentityHashMap<>();
+    /** The entries taken or skipped by the workers, which aren't read anymore. */
+    private final Set<ZipDataSource> claimed = Collections.newSetFromMap(new IdentityHashMap<ZipDataSource, Boolean>());
+    /** The buffers given back by the workers. */
+    private final Deque<byte[]> idleBuffers = new ArrayDeque<>();
+    /** The entry being read, null if none. */
+    private ZipDataSource reading;
+    /** Whether the reader waits for the workers to take entries. */
+    private boolean full;
+    private boolean done;
+
+    /**
+     * Creates a new reader.
+     *
+     * @param entries  The entries in the order, in which their files are analyzed
+     * @param capacity The maximum number of entries read ahead, must be positive
+     */
+    ArchiveEntryReader(List<ZipDataSource> entries, int capacity) {
+        this.entries = entries;
+        this.capacity = capacity;
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readEntries();
+            }
+        }, "PMD archive reader");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts reading the entries.
+     */
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Stops reading the entries. The entries, which are still taken, are
+     * read by the workers themselves.
+     */
+    void close() {
+        synchronized (this) {
+            done = true;
+            queue.clear();
+            idleBuffers.clear();
+            notifyAll();
+        }
+        thread.interrupt();
+    }
+
+    /**
+     * Takes the content of the given entry, waiting until it has been read.
+     * The buffer should be given back with {@link #recycle(ByteBuffer)}, once
+     * it has been decoded.
+     *
+     * @param source The entry
+     *
+     * @return The content of the entry, or null if the entry isn't read by
+     *     this reader, and must be read by the caller
+     * @throws IOException If the entry can't be read
+     */
+    synchronized ByteBuffer take(ZipDataSource source) throws IOException {
+        while (true) {
+            final Object content = queue.remove(source);
+            if (content != null) {
+                claimed.add(source);
+                full = false;
+                notifyAll();
+                if (content instanceof IOException) {
+                    throw (IOException) content;
+                }
+                return (ByteBuffer) content;
+            }
+            if (claimed.contains(source) || source != reading && (full || done)) {
+                // the reader won't provide the entry
+                claimed.add(source);
+                return null;
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for " + source.getNiceFileName(false, null));
+            }
+        }
+    }
+
+    /**
+     * Drops the given entry, if it hasn't been taken, e.g. because the
+     * analysis of its file failed before reading it.
+     *
+     * @param source The entry
+     */
+    synchronized void skip(ZipDataSource source) {
+        if (claimed.add(source) && queue.remove(source) != null) {
+            full = false;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Gives back a buffer returned by {@link #take(ZipDataSource)}, to read
+     * another entry into it.
+     *
+     * @param buffer The buffer, which isn't used anymore
+     */
+    synchronized void recycle(ByteBuffer buffer) {
+        if (!done && idleBuffers.size() < capacity && buffer.capacity() <= SourceBuffer.MAX_RETAINED_CAPACITY) {
+            idleBuffers.push(buffer.array());
+        }
+    }
+
+    private void readEntries() {
+        try {
+            for (ZipDataSource source : entries) {
+                synchronized (this) {
+                    while (queue.size() >= capacity && !done) {
+                        full = true;
+                        notifyAll();
+                        wait();
+                    }
+                    full = false;
+                    if (done) {
+                        return;
+                    }
+                    if (claimed.contains(source)) {
+                        continue;
+                    }
+                    reading = source;
+                }
+
+                Object content;
+                try {
+                    content = read(source);
+                } catch (IOException e) {
+                    content = e;
+                }
+
+                synchronized (this) {
+                    reading = null;
+                    if (!done && !claimed.contains(source)) {
+                        queue.put(source, content);
+                    }
+                    notifyAll();
+                }
+            }
+        } catch (InterruptedException e) {
+            LOG.log(Level.FINE, "Archive reader interrupted", e);
+        } finally {
+            synchronized (this) {
+                done = true;
+                reading = null;
+                notifyAll();
+            }
+        }
+    }
+
+    private ByteBuffer read(ZipDataSource source) throws IOException {
+        final ZipEntry entry = source.getZipEntry();
+        if (entry.getSize() > Integer.MAX_VALUE) {
+            throw new IOException("Entry too large: " + entry.getSize());
+        }
+        byte[] buffer = obtainBuffer((int) Math.max(entry.getSize(), 0));
+        int length = 0;
+        try (InputStream stream = source.getZipFile().getInputStream(entry)) {
+            while (true) {
+                if (length == buffer.length) {
+                    // the size isn't always known, and may be wrong
+                    final int next = stream.read();
+                    if (next < 0) {
+                        break;
+                    }
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2 + 1);
+                    buffer[length++] = (byte) next;
+                }
+                final int read = stream.read(buffer, length, buffer.length - length);
+                if (read < 0) {
+                    break;
+                }
+                length += read;
+            }
+        }
+        return ByteBuffer.wrap(buffer, 0, length);
+    }
+
+    private synchronized byte[] obtainBuffer(int size) {
+        for (Iterator<byte[]> iterator = idleBuffers.iterator(); iterator.hasNext();) {
+            final byte[] buffer = iterator.next();
+            if (buffer.length >= size) {
+                iterator.remove();
+                return buffer;
+            }
+        }
+        return new byte[size];
+    }
+}
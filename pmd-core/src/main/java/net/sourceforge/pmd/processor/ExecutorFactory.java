@@ -0,0 +1,30 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.processor;
+
+import java.util.concurrent.ExecutorService;
+
+import net.sourceforge.pmd.PMDConfiguration;
+
+/**
+ * Creates the executor, on which the multi threaded processors run the
+ * analysis of the files. The executor may use any number of threads: the
+ * number of files analyzed concurrently is additionally bounded by the
+ * number of rule set copies, which is {@link PMDConfiguration#getThreads()}.
+ *
+ * @see StandardExecutorFactory
+ * @see PMDConfiguration#setExecutorFactory(ExecutorFactory)
+ */
+public interface ExecutorFactory {
+
+    /**
+     * Creates a new executor. The processor shuts it down, once all files
+     * have been analyzed.
+     *
+     * @param threads The configured number of threads, always positive
+     * @return A new executor
+     */
+    ExecutorService newExecutor(int threads);
+}
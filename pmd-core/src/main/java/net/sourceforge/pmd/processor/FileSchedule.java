@@ -0,0 +1,100 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.processor;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import net.sourceforge.pmd.cache.AnalysisCache;
+import net.sourceforge.pmd.cache.TimedAnalysisCache;
+import net.sourceforge.pmd.util.datasource.DataSource;
+import net.sourceforge.pmd.util.datasource.FileDataSource;
+import net.sourceforge.pmd.util.datasource.ZipDataSource;
+
+/**
+ * Orders the files to analyze by their estimated cost, the most expensive
+ * first. The cost of a file is the duration of its last analysis, if known
+ * by the analysis cache. Otherwise it's estimated from the size of the file,
+ * using the average duration per byte of the files with a known duration,
+ * or just the size, if no duration is known at all. Files of the same cost
+ * keep their order.
+ *
+ * @see net.sourceforge.pmd.PMDConfiguration#isLargestFilesFirst()
+ */
+final class FileSchedule {
+
+    private FileSchedule() {
+        // utility class
+    }
+
+    /**
+     * Returns the order, in which the given files should be analyzed.
+     *
+     * @param files     The files
+     * @param fileNames The names of the files, under which they are analyzed
+     * @param cache     The analysis cache
+     * @return The indexes of the files, the most expensive first
+     */
+    static int[] largestFirst(List<DataSource> files, List<String> fileNames, AnalysisCache cache) {
+        final int count = files.size();
+        final long[] sizes = new long[count];
+        final long[] durations = new long[count];
+        Arrays.fill(durations, -1);
+
+        long knownDurations = 0;
+        long knownSizes = 0;
+        for (int i = 0; i < count; i++) {
+            sizes[i] = getSize(files.get(i));
+            if (cache instanceof TimedAnalysisCache) {
+                durations[i] = ((TimedAnalysisCache) cache).getAnalysisDuration(new File(fileNames.get(i)));
+            }
+            if (durations[i] >= 0 && sizes[i] > 0) {
+                knownDurations += durations[i];
+                knownSizes += sizes[i];
+            }
+        }
+
+        final double[] costs = new double[count];
+        final double durationPerByte = knownSizes > 0 ? (double) knownDurations / knownSizes : 0;
+        for (int i = 0; i < count; i++) {
+            if (knownSizes == 0) {
+                costs[i] = sizes[i];
+            } else if (durations[i] >= 0) {
+                costs[i] = durations[i];
+            } else {
+                costs[i] = sizes[i] * durationPerByte;
+            }
+        }
+
+        final Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        // stable, files of the same cost stay in their order
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer left, Integer right) {
+                return Double.compare(costs[right], costs[left]);
+            }
+        });
+
+        final int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = order[i];
+        }
+        return result;
+    }
+
+    private static long getSize(DataSource dataSource) {
+        if (dataSource instanceof FileDataSource) {
+            return ((FileDataSource) dataSource).getSize();
+        } else if (dataSource instanceof ZipDataSource) {
+            return ((ZipDataSource) dataSource).getSize();
+        }
+        return -1;
+    }
+}
@@ -18,6 +18,7 @@ import net.sourceforge.pmd.renderers.Renderer;
 public final class MonoThreadProcessor extends AbstractPMDProcessor {
 
     private final List<Report> reports = new ArrayList<>();
+    private final List<Integer> positions = new ArrayList<>();
     
     public MonoThreadProcessor(PMDConfiguration configuration) {
         super(configuration);
@@ -27,15 +28,13 @@ public final class MonoThreadProcessor extends AbstractPMDProcessor {
     protected void runAnalysis(PmdRunnable runnable) {
         // single thread execution, run analysis on same thread
         reports.add(runnable.call());
+        positions.add(runnable.getPosition());
     }
 
     @Override
     protected void collectReports(List<Renderer> renderers) {
-        for (Report r : reports) {
-            super.renderReports(renderers, r);
+        for (int i = 0; i < reports.size(); i++) {
+            super.renderFileReport(renderers, positions.get(i), reports.get(i));
         }
-
-        // Since this thread may run PMD again, clean up the runnable
-        PmdRunnable.reset();
     }
 }
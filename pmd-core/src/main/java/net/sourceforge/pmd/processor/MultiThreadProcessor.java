@@ -4,12 +4,14 @@
 
 package net.sourceforge.pmd.processor;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import net.sourceforge.pmd.PMDConfiguration;
 import net.sourceforge.pmd.Report;
@@ -23,18 +25,21 @@ public class MultiThreadProcessor extends AbstractPMDProcessor {
     private final ExecutorService executor;
     private final CompletionService<Report> completionService;
 
+    /** The positions of the files of the submitted tasks. */
+    private final Map<Future<Report>, Integer> positions = new HashMap<>();
+
     private long submittedTasks = 0L;
 
     public MultiThreadProcessor(final PMDConfiguration configuration) {
         super(configuration);
 
-        executor = Executors.newFixedThreadPool(configuration.getThreads(), new PmdThreadFactory());
+        executor = configuration.getExecutorFactory().newExecutor(configuration.getThreads());
         completionService = new ExecutorCompletionService<>(executor);
     }
 
     @Override
     protected void runAnalysis(PmdRunnable runnable) {
-        completionService.submit(runnable);
+        positions.put(completionService.submit(runnable), runnable.getPosition());
         submittedTasks++;
     }
 
@@ -42,8 +47,8 @@ public class MultiThreadProcessor extends AbstractPMDProcessor {
     protected void collectReports(List<Renderer> renderers) {
         try {
             for (int i = 0; i < submittedTasks; i++) {
-                final Report report = completionService.take().get();
-                super.renderReports(renderers, report);
+                final Future<Report> finished = completionService.take();
+                super.renderFileReport(renderers, positions.remove(finished), finished.get());
             }
         } catch (final InterruptedException ie) {
             Thread.currentThread().interrupt();
@@ -7,6 +7,8 @@ package net.sourceforge.pmd.processor;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.logging.Level;
@@ -20,32 +22,93 @@ import net.sourceforge.pmd.SourceCodeProcessor;
 import net.sourceforge.pmd.benchmark.TimeTracker;
 import net.sourceforge.pmd.renderers.Renderer;
 import net.sourceforge.pmd.util.datasource.DataSource;
+import net.sourceforge.pmd.util.datasource.FileDataSource;
+import net.sourceforge.pmd.util.datasource.ZipDataSource;
 
 public class PmdRunnable implements Callable<Report> {
 
     private static final Logger LOG = Logger.getLogger(PmdRunnable.class.getName());
 
-    private static final ThreadLocal<ThreadContext> LOCAL_THREAD_CONTEXT = new ThreadLocal<>();
+    /** The copy of the rule sets of the current thread, used by the deprecated constructor. */
+    private static final ThreadLocal<RuleSetsPool> LOCAL_RULE_SETS_POOL = new ThreadLocal<>();
 
     private final DataSource dataSource;
     private final String fileName;
     private final List<Renderer> renderers;
+    /** The pool of copies, null to use the copy of the current thread. */
+    private final RuleSetsPool ruleSetsPool;
     private final RuleContext ruleContext;
     private final RuleSets ruleSets;
     private final SourceCodeProcessor sourceCodeProcessor;
-
+    private final int position;
+    /** Reads the entries of archives ahead, may be null. */
+    private final ArchiveEntryReader archiveReader;
+
+    /**
+     * Creates a runnable, which uses the copy of the rule sets of the thread
+     * running it. The copy is reused by the following runnables of the thread,
+     * created with the same rule sets and rule context, until {@link #reset()}.
+     *
+     * @deprecated The processors share a bounded pool of copies between all
+     *     runnables instead.
+     */
+    @Deprecated
     public PmdRunnable(DataSource dataSource, String fileName, List<Renderer> renderers,
             RuleContext ruleContext, RuleSets ruleSets, SourceCodeProcessor sourceCodeProcessor) {
-        this.ruleSets = ruleSets;
         this.dataSource = dataSource;
         this.fileName = fileName;
         this.renderers = renderers;
+        this.ruleSetsPool = null;
         this.ruleContext = ruleContext;
+        this.ruleSets = ruleSets;
         this.sourceCodeProcessor = sourceCodeProcessor;
+        this.position = 0;
+        this.archiveReader = null;
     }
 
+    PmdRunnable(DataSource dataSource, String fileName, List<Renderer> renderers,
+            RuleSetsPool ruleSetsPool, SourceCodeProcessor sourceCodeProcessor, int position,
+            ArchiveEntryReader archiveReader) {
+        this.dataSource = dataSource;
+        this.fileName = fileName;
+        this.renderers = renderers;
+        this.ruleSetsPool = ruleSetsPool;
+        this.ruleContext = null;
+        this.ruleSets = null;
+        this.sourceCodeProcessor = sourceCodeProcessor;
+        this.position = position;
+        this.archiveReader = archiveReader;
+    }
+
+    /**
+     * Returns the position of the file in the list of analyzed files, which
+     * is the order, in which the reports are rendered.
+     */
+    int getPosition() {
+        return position;
+    }
+
+    /**
+     * Used to clean up the rule sets copy of the current thread.
+     *
+     * @deprecated Only the runnables created with the deprecated constructor
+     *     use a copy bound to their thread.
+     */
+    @Deprecated
     public static void reset() {
-        LOCAL_THREAD_CONTEXT.remove();
+        LOCAL_RULE_SETS_POOL.remove();
+    }
+
+    /**
+     * Returns the pool of the copy of the rule sets of the current thread.
+     */
+    private RuleSetsPool getLocalRuleSetsPool() {
+        RuleSetsPool pool = LOCAL_RULE_SETS_POOL.get();
+        if (pool == null || !pool.isPoolOf(ruleSets, ruleContext)) {
+            pool = new RuleSetsPool(ruleSets, ruleContext, 1);
+            LOCAL_RULE_SETS_POOL.set(pool);
+        }
+        return pool;
     }
 
     private void addError(Report report, Exception e, String errorMessage) {
@@ -54,14 +117,47 @@ public class PmdRunnable implements Callable<Report> {
         report.addError(new Report.ProcessingError(e, fileName));
     }
 
+    /**
+     * Reads an entry of an archive, taking it from the archive reader, if
+     * it has read the entry ahead.
+     */
+    private Reader read(SourceBuffer sourceBuffer, ZipDataSource zipDataSource) throws IOException {
+        if (archiveReader != null) {
+            final ByteBuffer content = archiveReader.take(zipDataSource);
+            if (content != null) {
+                final Reader reader = sourceBuffer.read(content);
+                archiveReader.recycle(content);
+                return reader;
+            }
+        }
+        return sourceBuffer.read(zipDataSource.getZipFile(), zipDataSource.getZipEntry());
+    }
+
     @Override
     public Report call() {
+        try {
+            return analyze();
+        } finally {
+            if (archiveReader != null && dataSource instanceof ZipDataSource) {
+                // the entry may not have been taken, if the analysis failed
+                archiveReader.skip((ZipDataSource) dataSource);
+            }
+        }
+    }
+
+    private Report analyze() {
         TimeTracker.initThread();
-        
-        ThreadContext tc = LOCAL_THREAD_CONTEXT.get();
-        if (tc == null) {
-            tc = new ThreadContext(new RuleSets(ruleSets), new RuleContext(ruleContext));
-            LOCAL_THREAD_CONTEXT.set(tc);
+
+        final RuleSetsPool pool = ruleSetsPool != null ? ruleSetsPool : getLocalRuleSetsPool();
+        final RuleSetsPool.Copy tc;
+        try {
+            tc = pool.acquire();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            Report report = new Report();
+            addError(report, ie, "Interrupted before processing " + fileName);
+            TimeTracker.finishThread();
+            return report;
         }
 
         Report report = Report.createReport(tc.ruleContext, fileName);
@@ -73,29 +169,31 @@ public class PmdRunnable implements Callable<Report> {
             r.startFileAnalysis(dataSource);
         }
 
-        try (InputStream stream = new BufferedInputStream(dataSource.getInputStream())) {
+        try {
             tc.ruleContext.setLanguageVersion(null);
-            sourceCodeProcessor.processSourceCode(stream, tc.ruleSets, tc.ruleContext);
+            if (tc.sourceBuffer != null && dataSource instanceof FileDataSource) {
+                Reader reader = tc.sourceBuffer.read(((FileDataSource) dataSource).getFile());
+                sourceCodeProcessor.processSourceCode(reader, tc.ruleSets, tc.ruleContext);
+            } else if (tc.sourceBuffer != null && dataSource instanceof ZipDataSource) {
+                Reader reader = read(tc.sourceBuffer, (ZipDataSource) dataSource);
+                sourceCodeProcessor.processSourceCode(reader, tc.ruleSets, tc.ruleContext);
+            } else {
+                try (InputStream stream = new BufferedInputStream(dataSource.getInputStream())) {
+                    sourceCodeProcessor.processSourceCode(stream, tc.ruleSets, tc.ruleContext);
+                }
+            }
         } catch (PMDException pmde) {
             addError(report, pmde, "Error while processing file: " + fileName);
         } catch (IOException ioe) {
             addError(report, ioe, "IOException during processing of " + fileName);
         } catch (RuntimeException re) {
             addError(report, re, "RuntimeException during processing of " + fileName);
+        } finally {
+            pool.release(tc);
         }
 
         TimeTracker.finishThread();
         
         return report;
     }
-
-    private static class ThreadContext {
-        /* default */ final RuleSets ruleSets;
-        /* default */ final RuleContext ruleContext;
-
-        ThreadContext(RuleSets ruleSets, RuleContext ruleContext) {
-            this.ruleSets = ruleSets;
-            this.ruleContext = ruleContext;
-        }
-    }
 }
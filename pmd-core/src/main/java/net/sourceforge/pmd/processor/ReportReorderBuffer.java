@@ -0,0 +1,62 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.processor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import net.sourceforge.pmd.Report;
+
+/**
+ * Puts the reports of the analyzed files back in the order of the files,
+ * when the files are not analyzed in that order. The reports, that are
+ * finished before the reports of all previous files, are kept until these
+ * are finished as well.
+ */
+final class ReportReorderBuffer {
+
+    /** The finished reports, that can't be rendered yet, by position. */
+    private final SortedMap<Integer, Report> pending = new TreeMap<>();
+    /** The position of the next report to render. */
+    private int next;
+
+    /**
+     * Adds the report of the file at the given position.
+     *
+     * @param position The position of the file
+     * @param report   The report
+     * @return The reports, that can be rendered now, in order
+     */
+    List<Report> add(int position, Report report) {
+        if (position != next) {
+            pending.put(position, report);
+            return Collections.emptyList();
+        }
+
+        final List<Report> ready = new ArrayList<>();
+        ready.add(report);
+        next++;
+        while (!pending.isEmpty() && pending.firstKey() == next) {
+            ready.add(pending.remove(next));
+            next++;
+        }
+        return ready;
+    }
+
+    /**
+     * Removes the remaining reports, e.g. if the reports of some files are
+     * missing, because the analysis has been interrupted.
+     *
+     * @return The remaining reports, in order
+     */
+    List<Report> drain() {
+        final List<Report> remaining = new ArrayList<>(pending.values());
+        pending.clear();
+        return remaining;
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.processor;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSets;
+
+/**
+ * A bounded pool of copies of the rule sets. Rules are usually not
+ * thread-safe, so each file being analyzed needs a copy on its own. Only the
+ * rules tagged with {@link net.sourceforge.pmd.lang.rule.ThreadSafeRule} are
+ * shared by all copies. The copies are created lazily, at most one per
+ * concurrently analyzed file, and are reused for the following files. If all
+ * copies are in use, {@link #acquire()} blocks until one is released. This
+ * also bounds the number of concurrently analyzed files, independently of the
+ * number of threads the executor uses.
+ *
+ * <p>Each copy also owns the {@link SourceBuffer} used to load the files, so
+ * that the buffers are reused without being bound to threads.</p>
+ */
+class RuleSetsPool {
+
+    private final RuleSets ruleSets;
+    private final RuleContext ruleContext;
+    private final int maxCopies;
+    private final Charset sourceEncoding;
+    private final AtomicInteger createdCopies = new AtomicInteger();
+    private final BlockingQueue<Copy> idleCopies;
+
+    /**
+     * Creates a new pool.
+     *
+     * @param ruleSets    The rule sets to copy
+     * @param ruleContext The rule context to copy, which provides the listeners
+     * @param maxCopies   The maximum number of copies, must be positive
+     */
+    RuleSetsPool(RuleSets ruleSets, RuleContext ruleContext, int maxCopies) {
+        this(ruleSets, ruleContext, maxCopies, null);
+    }
+
+    /**
+     * Creates a new pool, whose copies load the files with a source buffer.
+     *
+     * @param ruleSets       The rule sets to copy
+     * @param ruleContext    The rule context to copy, which provides the listeners
+     * @param maxCopies      The maximum number of copies, must be positive
+     * @param sourceEncoding The encoding of the source files, null to not use source buffers
+     */
+    RuleSetsPool(RuleSets ruleSets, RuleContext ruleContext, int maxCopies, Charset sourceEncoding) {
+        this.ruleSets = ruleSets;
+        this.ruleContext = ruleContext;
+        this.maxCopies = maxCopies;
+        this.sourceEncoding = sourceEncoding;
+        this.idleCopies = new ArrayBlockingQueue<>(maxCopies);
+    }
+
+    /**
+     * Returns whether this pool holds copies of the given rule sets and rule context.
+     */
+    boolean isPoolOf(RuleSets ruleSets, RuleContext ruleContext) {
+        return this.ruleSets == ruleSets && this.ruleContext == ruleContext;
+    }
+
+    /**
+     * Takes a copy out of the pool, creating it if needed. Waits if all
+     * copies are in use.
+     *
+     * @return A copy, which must be given back with {@link #release(Copy)}
+     * @throws InterruptedException If interrupted while waiting
+     */
+    Copy acquire() throws InterruptedException {
+        Copy copy = idleCopies.poll();
+        if (copy != null) {
+            return copy;
+        }
+
+        if (createdCopies.incrementAndGet() <= maxCopies) {
+            return new Copy(new RuleSets(ruleSets, true), new RuleContext(ruleContext),
+                    sourceEncoding == null ? null : new SourceBuffer(sourceEncoding));
+        }
+        createdCopies.decrementAndGet();
+
+        return idleCopies.take();
+    }
+
+    /**
+     * Gives a copy back to the pool.
+     *
+     * @param copy A copy obtained with {@link #acquire()}
+     */
+    void release(Copy copy) {
+        idleCopies.offer(copy);
+    }
+
+    static class Copy {
+        /* default */ final RuleSets ruleSets;
+        /* default */ final RuleContext ruleContext;
+        /** The buffer loading the files, may be null. */
+        /* default */ final SourceBuffer sourceBuffer;
+
+        Copy(RuleSets ruleSets, RuleContext ruleContext, SourceBuffer sourceBuffer) {
+            this.ruleSets = ruleSets;
+            this.ruleContext = ruleContext;
+            this.sourceBuffer = sourceBuffer;
+        }
+    }
+}
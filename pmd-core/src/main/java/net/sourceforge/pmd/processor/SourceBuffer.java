@@ -0,0 +1,233 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Loads the source files of one worker, reusing its buffers from file to
+ * file. The file is read with a channel, or memory mapped if it's large, and
+ * decoded once into a char buffer, which the parser reads through a
+ * {@link Reader} view. This avoids the copies made by buffered streams and
+ * stream decoders, and the allocation of new buffers for each file.
+ *
+ * <p>Entries of archives are usually decompressed by the {@link ArchiveEntryReader},
+ * and only decoded here.</p>
+ *
+ * <p>Malformed input is replaced, like {@link java.io.InputStreamReader}
+ * does. The buffers of very large files are not retained. A buffer is not
+ * thread-safe, and the reader returned by the read methods is only valid
+ * until the next call.</p>
+ */
+class SourceBuffer {
+
+    /** The minimum size of the files, which are memory mapped. */
+    static final long MAPPING_THRESHOLD = 1024 * 1024;
+
+    private static final int INITIAL_CAPACITY = 8 * 1024;
+    static final int MAX_RETAINED_CAPACITY = 4 * 1024 * 1024;
+
+    private final CharsetDecoder decoder;
+    private ByteBuffer bytes = ByteBuffer.allocate(INITIAL_CAPACITY);
+    private CharBuffer chars = CharBuffer.allocate(INITIAL_CAPACITY);
+
+    /**
+     * Creates a new buffer.
+     *
+     * @param charset The encoding of the source files
+     */
+    SourceBuffer(Charset charset) {
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Reads and decodes the file.
+     *
+     * @param file The file
+     *
+     * @return A reader of the decoded file, valid until the next call
+     * @throws IOException If the file can't be read
+     */
+    Reader read(File file) throws IOException {
+        final ByteBuffer input;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large: " + file);
+            } else if (size >= MAPPING_THRESHOLD) {
+                input = channel.map(MapMode.READ_ONLY, 0, size);
+            } else {
+                input = readFully(channel, (int) size);
+            }
+        }
+        return new CharBufferReader(decode(input));
+    }
+
+    /**
+     * Reads and decodes an entry of an archive.
+     *
+     * @param zipFile  The archive
+     * @param zipEntry The entry of the archive
+     *
+     * @return A reader of the decoded entry, valid until the next call
+     * @throws IOException If the entry can't be read
+     */
+    Reader read(ZipFile zipFile, ZipEntry zipEntry) throws IOException {
+        try (InputStream stream = zipFile.getInputStream(zipEntry)) {
+            return new CharBufferReader(decode(readFully(stream, zipEntry.getSize())));
+        }
+    }
+
+    /**
+     * Decodes the content of a file, which has been read already.
+     *
+     * @param content The content, which is consumed
+     *
+     * @return A reader of the decoded content, valid until the next call
+     */
+    Reader read(ByteBuffer content) {
+        return new CharBufferReader(decode(content));
+    }
+
+    private ByteBuffer readFully(InputStream stream, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Entry too large: " + size);
+        }
+        ByteBuffer buffer = bytes.capacity() >= size ? bytes : ByteBuffer.allocate((int) size);
+        int length = 0;
+        while (true) {
+            if (length == buffer.capacity()) {
+                // the size isn't always known, and may be wrong
+                final int next = stream.read();
+                if (next < 0) {
+                    break;
+                }
+                final ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() * 2 + 1);
+                System.arraycopy(buffer.array(), 0, grown.array(), 0, length);
+                grown.array()[length++] = (byte) next;
+                buffer = grown;
+            }
+            final int read = stream.read(buffer.array(), length, buffer.capacity() - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        buffer.clear().limit(length);
+        if (buffer.capacity() <= MAX_RETAINED_CAPACITY) {
+            bytes = buffer;
+        }
+        return buffer;
+    }
+
+    private ByteBuffer readFully(FileChannel channel, int size) throws IOException {
+        ByteBuffer buffer = bytes.capacity() >= size ? bytes : ByteBuffer.allocate(size);
+        buffer.clear().limit(size);
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            // the file may shrink while being read
+        }
+        buffer.flip();
+        if (buffer.capacity() <= MAX_RETAINED_CAPACITY) {
+            bytes = buffer;
+        }
+        return buffer;
+    }
+
+    private CharBuffer decode(ByteBuffer input) {
+        // the usual encodings decode at most one char per byte
+        final int expected = input.remaining() + 1;
+        CharBuffer output = chars.capacity() >= expected ? chars : CharBuffer.allocate(expected);
+        output.clear();
+        decoder.reset();
+        while (true) {
+            CoderResult result = decoder.decode(input, output, true);
+            if (result.isUnderflow()) {
+                result = decoder.flush(output);
+            }
+            if (result.isUnderflow()) {
+                break;
+            } else if (result.isOverflow()) {
+                output = grow(output);
+            } else {
+                // can't happen with the REPLACE actions
+                throw new IllegalStateException(result.toString());
+            }
+        }
+        output.flip();
+        if (output.capacity() <= MAX_RETAINED_CAPACITY) {
+            chars = output;
+        }
+        return output;
+    }
+
+    private static CharBuffer grow(CharBuffer buffer) {
+        final CharBuffer grown = CharBuffer.allocate(buffer.capacity() * 2 + 16);
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+
+    /**
+     * A reader, which copies the chars out of the buffer in bulk.
+     */
+    private static class CharBufferReader extends Reader {
+        private final CharBuffer buffer;
+
+        CharBufferReader(CharBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() : -1;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int count = Math.min(len, buffer.remaining());
+            buffer.get(cbuf, off, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            final int count = (int) Math.min(Math.max(n, 0), buffer.remaining());
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public boolean ready() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            // nothing to release
+        }
+    }
+}
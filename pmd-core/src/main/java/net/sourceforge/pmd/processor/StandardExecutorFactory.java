@@ -0,0 +1,75 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.processor;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The executors, that PMD provides out of the box.
+ */
+public enum StandardExecutorFactory implements ExecutorFactory {
+
+    /**
+     * A fixed pool with one thread per configured thread. This is the
+     * default.
+     */
+    FIXED_THREAD_POOL {
+        @Override
+        public ExecutorService newExecutor(int threads) {
+            return Executors.newFixedThreadPool(threads, new PmdThreadFactory());
+        }
+    },
+
+    /**
+     * A work-stealing fork-join pool with the configured parallelism.
+     */
+    WORK_STEALING {
+        @Override
+        public ExecutorService newExecutor(int threads) {
+            return new ForkJoinPool(threads, new PmdForkJoinWorkerThreadFactory(), null, true);
+        }
+    },
+
+    /**
+     * One virtual thread per file. Virtual threads are only available on
+     * Java 21 and later, on older runtimes a {@link #WORK_STEALING} pool is
+     * used instead.
+     */
+    VIRTUAL_THREADS {
+        @Override
+        public ExecutorService newExecutor(int threads) {
+            try {
+                Method factoryMethod = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factoryMethod.invoke(null);
+            } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+                LOG.log(Level.WARNING, "Virtual threads are not supported by this Java runtime, using "
+                        + WORK_STEALING + " instead");
+                return WORK_STEALING.newExecutor(threads);
+            }
+        }
+    };
+
+    private static final Logger LOG = Logger.getLogger(StandardExecutorFactory.class.getName());
+
+    private static class PmdForkJoinWorkerThreadFactory implements ForkJoinWorkerThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("PmdThread " + counter.incrementAndGet());
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.processor;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+
+import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSetFactory;
+import net.sourceforge.pmd.renderers.Renderer;
+import net.sourceforge.pmd.util.datasource.DataSource;
+
+/**
+ * Multi threaded processor, that renders the report of each file as soon as
+ * the file has been analyzed.
+ *
+ * <p>Unlike {@link MultiThreadProcessor}, the files are not submitted all at
+ * once. The processor works as a bounded pipeline: at most
+ * {@link PMDConfiguration#getAnalysisQueueSize()} files wait for a free
+ * worker thread, and at most {@link PMDConfiguration#getReportQueueSize()}
+ * finished reports wait for the renderers. If one of the stages is full, the
+ * previous stage blocks. The memory used therefore doesn't depend on the
+ * number of analyzed files. This doesn't hold if the largest files are
+ * analyzed first, see {@link PMDConfiguration#isLargestFilesFirst()}: the
+ * reports then also wait for the reports of the files before them.</p>
+ *
+ * <p>The renderers are only ever called from the thread, that calls
+ * {@link #processFiles(RuleSetFactory, List, RuleContext, List)}.</p>
+ */
+public class StreamingProcessor extends AbstractPMDProcessor {
+    private final ExecutorService executor;
+
+    /** Permits for files, that are submitted but not analyzed yet. */
+    private final Semaphore analysisPermits;
+
+    /** Analyzed files, that wait to be rendered. */
+    private final BlockingQueue<StreamingTask> finishedReports;
+
+    private List<Renderer> renderers;
+    private long submittedTasks = 0L;
+    private long renderedTasks = 0L;
+
+    public StreamingProcessor(final PMDConfiguration configuration) {
+        super(configuration);
+
+        executor = configuration.getExecutorFactory().newExecutor(configuration.getThreads());
+        analysisPermits = new Semaphore(configuration.getThreads() + configuration.getAnalysisQueueSize());
+        finishedReports = new ArrayBlockingQueue<>(configuration.getReportQueueSize());
+    }
+
+    @Override
+    public void processFiles(RuleSetFactory ruleSetFactory, List<DataSource> files, RuleContext ctx,
+            List<Renderer> renderers) {
+        // file reports are rendered while the files are still submitted
+        this.renderers = renderers;
+        super.processFiles(ruleSetFactory, files, ctx, renderers);
+    }
+
+    @Override
+    protected void runAnalysis(PmdRunnable runnable) {
+        if (executor.isShutdown()) {
+            // interrupted, remaining files are skipped
+            return;
+        }
+
+        try {
+            // render whatever is ready, so that the workers don't block
+            StreamingTask finished = finishedReports.poll();
+            while (finished != null) {
+                renderNext(finished);
+                finished = finishedReports.poll();
+            }
+
+            // if the analysis queue is full, wait for the next report
+            while (!analysisPermits.tryAcquire()) {
+                renderNext(finishedReports.take());
+            }
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+            return;
+        }
+
+        executor.execute(new StreamingTask(runnable));
+        submittedTasks++;
+    }
+
+    @Override
+    protected void collectReports(List<Renderer> renderers) {
+        try {
+            while (renderedTasks < submittedTasks) {
+                renderNext(finishedReports.take());
+            }
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void renderNext(StreamingTask finished) throws InterruptedException {
+        renderedTasks++;
+        try {
+            super.renderFileReport(renderers, finished.position, finished.task.get());
+        } catch (final ExecutionException ee) {
+            executor.shutdownNow();
+            final Throwable t = ee.getCause();
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            } else if (t instanceof Error) {
+                throw (Error) t;
+            } else {
+                throw new IllegalStateException("PmdRunnable exception", t);
+            }
+        }
+    }
+
+    /**
+     * Runs the analysis of one file on a worker thread and hands the
+     * result over to the render stage.
+     */
+    private final class StreamingTask implements Runnable {
+        private final FutureTask<Report> task;
+        private final int position;
+
+        StreamingTask(PmdRunnable runnable) {
+            this.task = new FutureTask<>(runnable);
+            this.position = runnable.getPosition();
+        }
+
+        @Override
+        public void run() {
+            task.run();
+            analysisPermits.release();
+            try {
+                finishedReports.put(this);
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
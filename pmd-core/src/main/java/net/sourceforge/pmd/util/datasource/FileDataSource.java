@@ -38,6 +38,24 @@ public class FileDataSource implements DataSource {
         return glomName(shortNames, inputFileName, file);
     }
 
+    /**
+     * Returns the file read by this data source.
+     *
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the size of the file in bytes.
+     *
+     * @return the size, or 0 if the file doesn't exist
+     */
+    public long getSize() {
+        return file.length();
+    }
+
     private String glomName(boolean shortNames, String inputFileName, File file) {
         if (shortNames) {
             if (inputFileName != null) {
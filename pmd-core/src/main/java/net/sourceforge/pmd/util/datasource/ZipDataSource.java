@@ -37,4 +37,31 @@ public class ZipDataSource implements DataSource {
         // FIXME: this could probably be done better
         return zipFile.getName() + ":" + zipEntry.getName();
     }
+
+    /**
+     * Returns the archive containing the entry.
+     *
+     * @return the zip file
+     */
+    public ZipFile getZipFile() {
+        return zipFile;
+    }
+
+    /**
+     * Returns the entry read by this data source.
+     *
+     * @return the zip entry
+     */
+    public ZipEntry getZipEntry() {
+        return zipEntry;
+    }
+
+    /**
+     * Returns the uncompressed size of the entry in bytes.
+     *
+     * @return the size, or -1 if unknown
+     */
+    public long getSize() {
+        return zipEntry.getSize();
+    }
 }
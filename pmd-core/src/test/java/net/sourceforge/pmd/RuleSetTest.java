@@ -9,11 +9,13 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -31,6 +33,7 @@ import net.sourceforge.pmd.lang.ast.DummyNode;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.rule.MockRule;
 import net.sourceforge.pmd.lang.rule.RuleReference;
+import net.sourceforge.pmd.lang.rule.ThreadSafeRule;
 import net.sourceforge.pmd.util.CollectionUtil;
 
 public class RuleSetTest {
@@ -476,6 +479,35 @@ public class RuleSetTest {
         assertNotSame(rule, ruleSet2.getRuleByName("FooRule1"));
     }
 
+    @Test
+    public void copyConstructorSharesThreadSafeRules() {
+        Rule rule = new FooRule();
+        rule.setName("FooRule1");
+        Rule threadSafeRule = new ThreadSafeFooRule();
+        threadSafeRule.setName("FooRule2");
+        RuleReference threadSafeReference = new RuleReference();
+        threadSafeReference.setRule(new ThreadSafeFooRule());
+        threadSafeReference.setName("FooRule3");
+        RuleSet ruleSet1 = createRuleSetBuilder("RuleSet1")
+                .addRule(rule)
+                .addRule(threadSafeRule)
+                .addRule(threadSafeReference)
+                .build();
+
+        RuleSet ruleSet2 = new RuleSet(ruleSet1, true);
+        assertEquals(ruleSet1, ruleSet2);
+        assertNotSame(rule, ruleSet2.getRuleByName("FooRule1"));
+        assertSame(threadSafeRule, ruleSet2.getRuleByName("FooRule2"));
+        assertSame(threadSafeReference, ruleSet2.getRuleByName("FooRule3"));
+
+        RuleSet ruleSet3 = new RuleSet(ruleSet1);
+        assertNotSame(threadSafeRule, ruleSet3.getRuleByName("FooRule2"));
+        assertNotSame(threadSafeReference, ruleSet3.getRuleByName("FooRule3"));
+    }
+
+    public static class ThreadSafeFooRule extends FooRule implements ThreadSafeRule {
+    }
+
     private void verifyRuleSet(RuleSet ruleset, int size, Set<RuleViolation> values) {
 
         RuleContext context = new RuleContext();
@@ -534,6 +566,33 @@ public class RuleSetTest {
         assertTrue("Should be a RuntimeException", errors.get(0).getError() instanceof RuntimeException);
     }
 
+    @Test
+    public void onlyRulesToApplyShouldBeApplied() {
+        final List<String> appliedRules = new ArrayList<>();
+        Rule skippedRule = new MockRule("skipped", "desc", "msg", "rulesetname") {
+            @Override
+            public void apply(List<? extends Node> nodes, RuleContext ctx) {
+                appliedRules.add(getName());
+            }
+        };
+        Rule appliedRule = new MockRule("applied", "desc", "msg", "rulesetname") {
+            @Override
+            public void apply(List<? extends Node> nodes, RuleContext ctx) {
+                appliedRules.add(getName());
+            }
+        };
+        RuleSet ruleset = createRuleSetBuilder("onlyRulesToApplyShouldBeApplied")
+                .addRule(skippedRule)
+                .addRule(appliedRule)
+                .build();
+        RuleContext context = new RuleContext();
+        context.setLanguageVersion(LanguageRegistry.getLanguage(DummyLanguageModule.NAME).getDefaultVersion());
+        context.setRulesToApply(Collections.singleton(appliedRule));
+        ruleset.apply(makeCompilationUnits(), context);
+
+        assertEquals(Collections.singletonList("applied"), appliedRules);
+    }
+
     @Test(expected = RuntimeException.class)
     public void ruleExceptionShouldBeThrownIfNotIgnored() {
         RuleSet ruleset = createRuleSetBuilder("ruleExceptionShouldBeReported")
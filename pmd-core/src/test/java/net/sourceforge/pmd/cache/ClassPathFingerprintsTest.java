@@ -0,0 +1,116 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ClassPathFingerprintsTest {
+
+    private static final long OLD_TIMESTAMP = 1_000_000_000_000L;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testUnchangedEntriesAreNotHashedAgain() throws IOException {
+        final URL first = newEntry("first.jar", "some text");
+        final URL second = newEntry("second.jar", "some other text");
+
+        final ClassPathFingerprints fingerprints = new ClassPathFingerprints();
+        final long checksum = fingerprints.computeClassPathHash(first, second);
+        assertEquals(2, fingerprints.getChangedEntries().size());
+
+        final ClassPathFingerprints reloaded = reload(fingerprints);
+        assertEquals(checksum, reloaded.computeClassPathHash(first, second));
+        assertTrue("Unchanged entries were hashed again", reloaded.getChangedEntries().isEmpty());
+        assertFalse(reloaded.isChanged());
+    }
+
+    @Test
+    public void testChangedEntryIsHashedAgain() throws IOException {
+        final URL first = newEntry("first.jar", "some text");
+        final URL second = newEntry("second.jar", "some other text");
+
+        final ClassPathFingerprints fingerprints = new ClassPathFingerprints();
+        final long checksum = fingerprints.computeClassPathHash(first, second);
+
+        final File secondFile = new File(second.getFile());
+        Files.write(secondFile.toPath(), "some changed text".getBytes());
+        secondFile.setLastModified(OLD_TIMESTAMP + 1000);
+
+        final ClassPathFingerprints reloaded = reload(fingerprints);
+        assertNotEquals(checksum, reloaded.computeClassPathHash(first, second));
+        assertEquals(Collections.singletonList(second.toString()), reloaded.getChangedEntries());
+        assertTrue(reloaded.isChanged());
+    }
+
+    @Test
+    public void testRecentlyModifiedEntryIsHashedAgain() throws IOException {
+        final URL entry = newEntry("recent.jar", "some text");
+        new File(entry.getFile()).setLastModified(System.currentTimeMillis());
+
+        final ClassPathFingerprints fingerprints = new ClassPathFingerprints();
+        fingerprints.computeClassPathHash(entry);
+
+        final ClassPathFingerprints reloaded = reload(fingerprints);
+        reloaded.computeClassPathHash(entry);
+        assertEquals(Collections.singletonList(entry.toString()), reloaded.getChangedEntries());
+    }
+
+    @Test
+    public void testRemovedEntryChangesFingerprints() throws IOException {
+        final URL first = newEntry("first.jar", "some text");
+        final URL second = newEntry("second.jar", "some other text");
+
+        final ClassPathFingerprints fingerprints = new ClassPathFingerprints();
+        fingerprints.computeClassPathHash(first, second);
+
+        final ClassPathFingerprints reloaded = reload(fingerprints);
+        reloaded.computeClassPathHash(first);
+        assertTrue(reloaded.getChangedEntries().isEmpty());
+        assertTrue(reloaded.isChanged());
+    }
+
+    @Test
+    public void testNonExistingEntriesAreIgnored() throws IOException {
+        final URL missing = new File(tempFolder.getRoot(), "missing.jar").toURI().toURL();
+
+        assertEquals(new ClassPathFingerprints().computeClassPathHash(),
+                new ClassPathFingerprints().computeClassPathHash(missing));
+    }
+
+    private URL newEntry(final String name, final String contents) throws IOException {
+        final File file = tempFolder.newFile(name);
+        Files.write(file.toPath(), contents.getBytes());
+        file.setLastModified(OLD_TIMESTAMP);
+        return file.toURI().toURL();
+    }
+
+    private static ClassPathFingerprints reload(final ClassPathFingerprints fingerprints) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        fingerprints.store(new DataOutputStream(bytes));
+
+        final ClassPathFingerprints reloaded = new ClassPathFingerprints();
+        reloaded.load(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        return reloaded;
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.RuleViolation;
+
+public class ContentAddressedAnalysisCacheTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File cacheDirectory;
+    private RuleSets ruleSets;
+    private ClassLoader classLoader;
+
+    @Before
+    public void setUp() throws IOException {
+        cacheDirectory = tempFolder.newFolder("shared-cache");
+        ruleSets = mock(RuleSets.class);
+        when(ruleSets.getAllRuleSets()).thenReturn(new RuleSet[0]);
+        classLoader = mock(ClassLoader.class);
+    }
+
+    @Test
+    public void testUnknownFileIsNotUpToDate() throws IOException {
+        final ContentAddressedAnalysisCache cache = new ContentAddressedAnalysisCache(cacheDirectory);
+        cache.checkValidity(ruleSets, classLoader);
+        assertFalse("Cache believes an unknown file is up to date", cache.isUpToDate(newSourceFile("a", "class A {}")));
+    }
+
+    @Test
+    public void testResultsAreSharedAcrossCheckouts() throws IOException {
+        final File sourceFile = newSourceFile("checkout1", "class A {}");
+        final File sameContentFile = newSourceFile("checkout2", "class A {}");
+
+        final ContentAddressedAnalysisCache cache = new ContentAddressedAnalysisCache(cacheDirectory);
+        cache.checkValidity(ruleSets, classLoader);
+        assertFalse(cache.isUpToDate(sourceFile));
+        cache.ruleViolationAdded(mockViolation(sourceFile));
+        cache.persist();
+
+        final ContentAddressedAnalysisCache otherCache = new ContentAddressedAnalysisCache(cacheDirectory);
+        otherCache.checkValidity(ruleSets, classLoader);
+        assertTrue("Cache believes a file with known contents is not up to date",
+                otherCache.isUpToDate(sameContentFile));
+
+        final List<RuleViolation> cachedViolations = otherCache.getCachedViolations(sameContentFile);
+        assertEquals("Cached rule violations count mismatch", 1, cachedViolations.size());
+        assertEquals(sameContentFile.getPath(), cachedViolations.get(0).getFilename());
+    }
+
+    @Test
+    public void testFileIsNotUpToDateWhenEdited() throws IOException {
+        final File sourceFile = newSourceFile("a", "class A {}");
+        analyze(sourceFile);
+
+        Files.write(Paths.get(sourceFile.getAbsolutePath()), "class B {}".getBytes());
+
+        final ContentAddressedAnalysisCache cache = new ContentAddressedAnalysisCache(cacheDirectory);
+        cache.checkValidity(ruleSets, classLoader);
+        assertFalse("Cache believes a known, changed file is up to date", cache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testRulesetChangeDoesNotReuseResults() throws IOException {
+        final File sourceFile = newSourceFile("a", "class A {}");
+        analyze(sourceFile);
+
+        final ContentAddressedAnalysisCache cache = new ContentAddressedAnalysisCache(cacheDirectory);
+        when(ruleSets.getChecksum()).thenReturn(1L);
+        cache.checkValidity(ruleSets, classLoader);
+        assertFalse("Cache believes unmodified file is up to date after ruleset changed",
+                cache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testFailedAnalysisIsNotCached() throws IOException {
+        final File sourceFile = newSourceFile("a", "class A {}");
+
+        final ContentAddressedAnalysisCache cache = new ContentAddressedAnalysisCache(cacheDirectory);
+        cache.checkValidity(ruleSets, classLoader);
+        cache.isUpToDate(sourceFile);
+        cache.analysisFailed(sourceFile);
+        cache.persist();
+
+        final ContentAddressedAnalysisCache reloadedCache = new ContentAddressedAnalysisCache(cacheDirectory);
+        reloadedCache.checkValidity(ruleSets, classLoader);
+        assertFalse("Cache believes a file, whose analysis failed, is up to date",
+                reloadedCache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testResultsAreNotSharedWhenOtherRulesetsApply() throws IOException {
+        final File sourceFile = newSourceFile("src", "class A {}");
+        final File excludedFile = newSourceFile("generated", "class A {}");
+        final RuleSet ruleSet = mock(RuleSet.class);
+        when(ruleSet.applies(sourceFile)).thenReturn(true);
+        when(ruleSets.getAllRuleSets()).thenReturn(new RuleSet[] {ruleSet});
+        analyze(sourceFile);
+
+        final ContentAddressedAnalysisCache cache = new ContentAddressedAnalysisCache(cacheDirectory);
+        cache.checkValidity(ruleSets, classLoader);
+        assertFalse("Cache reuses the result of a file, to which other rulesets apply",
+                cache.isUpToDate(excludedFile));
+        assertTrue(cache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testResultsAreNotSharedByFilesWithOtherNames() throws IOException {
+        final File sourceFile = newSourceFile("a", "class A {}");
+        analyze(sourceFile);
+
+        final File renamedFile = new File(sourceFile.getParentFile(), "Source.txt");
+        assertTrue(sourceFile.renameTo(renamedFile));
+
+        final ContentAddressedAnalysisCache cache = new ContentAddressedAnalysisCache(cacheDirectory);
+        cache.checkValidity(ruleSets, classLoader);
+        assertFalse("Cache reuses the result of a file with another name", cache.isUpToDate(renamedFile));
+    }
+
+    @Test
+    public void testUnusedConfigurationsAreDeleted() throws IOException {
+        final File unused = new File(cacheDirectory, "0123456789abcdef");
+        final File recent = new File(cacheDirectory, "fedcba9876543210");
+        assertTrue(new File(unused, "00").mkdirs());
+        assertTrue(recent.mkdirs());
+        unused.setLastModified(System.currentTimeMillis()
+                - TimeUnit.DAYS.toMillis(ContentAddressedAnalysisCache.MAX_UNUSED_DAYS + 1));
+
+        analyze(newSourceFile("a", "class A {}"));
+
+        assertFalse("Results of an unused configuration are kept", unused.exists());
+        assertTrue(recent.exists());
+        // the recent one, and the one in use
+        assertEquals(2, cacheDirectory.list().length);
+    }
+
+    private void analyze(final File sourceFile) {
+        final ContentAddressedAnalysisCache cache = new ContentAddressedAnalysisCache(cacheDirectory);
+        cache.checkValidity(ruleSets, classLoader);
+        cache.isUpToDate(sourceFile);
+        cache.persist();
+    }
+
+    private File newSourceFile(final String directory, final String contents) throws IOException {
+        final File dir = new File(tempFolder.getRoot(), directory);
+        dir.mkdirs();
+        final File sourceFile = new File(dir, "Source.java");
+        Files.write(sourceFile.toPath(), contents.getBytes());
+        return sourceFile;
+    }
+
+    private RuleViolation mockViolation(final File sourceFile) {
+        final RuleViolation rv = mock(RuleViolation.class);
+        when(rv.getFilename()).thenReturn(sourceFile.getPath());
+        final net.sourceforge.pmd.Rule rule = mock(net.sourceforge.pmd.Rule.class, Mockito.RETURNS_SMART_NULLS);
+        when(rv.getRule()).thenReturn(rule);
+        return rv;
+    }
+}
@@ -7,6 +7,8 @@ package net.sourceforge.pmd.cache;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -16,10 +18,13 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -28,8 +33,13 @@ import org.junit.contrib.java.lang.system.RestoreSystemProperties;
 import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
 
+import net.sourceforge.pmd.PMDVersion;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.RuleSetFactory;
 import net.sourceforge.pmd.RuleSets;
 import net.sourceforge.pmd.RuleViolation;
+import net.sourceforge.pmd.lang.rule.MockRule;
+import net.sourceforge.pmd.lang.rule.RuleReference;
 
 public class FileAnalysisCacheTest {
     
@@ -111,9 +121,26 @@ public class FileAnalysisCacheTest {
         assertEquals("Cached rule violations count mismatch", 1, cachedViolations.size());
     }
 
+    @Test
+    public void testStorePersistsAnalysisDurations() {
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        assertEquals(-1, cache.getAnalysisDuration(sourceFile));
+        cache.isUpToDate(sourceFile);
+        cache.analysisFinished(sourceFile, 42);
+        cache.persist();
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        assertEquals(42, reloadedCache.getAnalysisDuration(sourceFile));
+
+        // kept for files, that are not analyzed again
+        reloadedCache.isUpToDate(sourceFile);
+        reloadedCache.persist();
+        assertEquals(42, new FileAnalysisCache(newCacheFile).getAnalysisDuration(sourceFile));
+    }
+
     @Test
     public void testCacheValidityWithNoChanges() {
-        final RuleSets rs = mock(RuleSets.class);
+        final RuleSets rs = mockRuleSets();
         final ClassLoader cl = mock(ClassLoader.class);
 
         setupCacheWithFiles(newCacheFile, rs, cl, sourceFile);
@@ -125,22 +152,120 @@ public class FileAnalysisCacheTest {
     }
 
     @Test
-    public void testRulesetChangeInvalidatesCache() {
-        final RuleSets rs = mock(RuleSets.class);
+    public void testOtherCacheFormatInvalidatesCache() throws IOException {
+        final RuleSets rs = mockRuleSets();
         final ClassLoader cl = mock(ClassLoader.class);
-        
+
         setupCacheWithFiles(newCacheFile, rs, cl, sourceFile);
-        
+
+        // the format version follows the PMD version
+        final byte[] contents = Files.readAllBytes(newCacheFile.toPath());
+        final int formatOffset = 2 + PMDVersion.VERSION.getBytes(StandardCharsets.UTF_8).length;
+        ByteBuffer.wrap(contents).putInt(formatOffset, FileAnalysisCache.FORMAT_VERSION - 1);
+        Files.write(newCacheFile.toPath(), contents);
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(rs, cl);
+        assertFalse("Cache believes unmodified file is up to date after the cache format changed",
+                reloadedCache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testRulesetChangeInvalidatesChangedRulesOnly() {
+        final MockRule unchangedRule = new MockRule("Unchanged", "", "message", "ruleset");
+        final MockRule changedRule = new MockRule("Changed", "", "message", "ruleset");
+        final ClassLoader cl = mock(ClassLoader.class);
+
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        cache.checkValidity(ruleSetsOf(unchangedRule, changedRule), cl);
+        cache.isUpToDate(sourceFile);
+        cache.ruleViolationAdded(mockViolation(sourceFile, unchangedRule));
+        cache.ruleViolationAdded(mockViolation(sourceFile, changedRule));
+        cache.persist();
+
+        final MockRule modifiedRule = new MockRule("Changed", "", "modified message", "ruleset");
+        final MockRule addedRule = new MockRule("Added", "", "message", "ruleset");
+        final RuleSets rs = ruleSetsOf(unchangedRule, modifiedRule, addedRule);
         final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
-        when(rs.getChecksum()).thenReturn(1L);
         reloadedCache.checkValidity(rs, cl);
         assertFalse("Cache believes unmodified file is up to date after ruleset changed",
                 reloadedCache.isUpToDate(sourceFile));
+
+        final Set<net.sourceforge.pmd.Rule> outdatedRules = reloadedCache.getOutdatedRules(sourceFile, rs);
+        assertEquals("Only the modified and added rules need to be applied", 2, outdatedRules.size());
+        assertTrue(outdatedRules.contains(modifiedRule));
+        assertTrue(outdatedRules.contains(addedRule));
+
+        final List<RuleViolation> cachedViolations = reloadedCache.getCachedViolations(sourceFile);
+        assertEquals("Violations of the modified rule are replayed", 1, cachedViolations.size());
+        assertSame(unchangedRule, cachedViolations.get(0).getRule());
+    }
+
+    @Test
+    public void testRemovedRuleViolationsAreNotReplayed() {
+        final MockRule keptRule = new MockRule("Kept", "", "message", "ruleset");
+        final MockRule removedRule = new MockRule("Removed", "", "message", "ruleset");
+        final ClassLoader cl = mock(ClassLoader.class);
+
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        cache.checkValidity(ruleSetsOf(keptRule, removedRule), cl);
+        cache.isUpToDate(sourceFile);
+        cache.ruleViolationAdded(mockViolation(sourceFile, keptRule));
+        cache.ruleViolationAdded(mockViolation(sourceFile, removedRule));
+        cache.persist();
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(ruleSetsOf(keptRule), cl);
+        assertTrue("Cache believes unmodified file is not up to date after a rule was removed",
+                reloadedCache.isUpToDate(sourceFile));
+
+        final List<RuleViolation> cachedViolations = reloadedCache.getCachedViolations(sourceFile);
+        assertEquals("Violations of the removed rule are replayed", 1, cachedViolations.size());
+        assertSame(keptRule, cachedViolations.get(0).getRule());
+    }
+
+    @Test
+    public void testViolationsOfRenamedRuleReferencesAreReplayed() {
+        // like <rule ref="ruleset.xml/Original" name="Renamed"/>, the violations are reported by the referenced rule
+        final MockRule referencedRule = new MockRule("Original", "", "message", "ruleset");
+        final RuleReference reference = new RuleReference();
+        reference.setRule(referencedRule);
+        reference.setName("Renamed");
+        final ClassLoader cl = mock(ClassLoader.class);
+
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        cache.checkValidity(ruleSetsOf(reference), cl);
+        cache.isUpToDate(sourceFile);
+        cache.ruleViolationAdded(mockViolation(sourceFile, referencedRule));
+        cache.persist();
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(ruleSetsOf(reference, new MockRule("Added", "", "message", "ruleset")), cl);
+        assertFalse(reloadedCache.isUpToDate(sourceFile));
+
+        final List<RuleViolation> cachedViolations = reloadedCache.getCachedViolations(sourceFile);
+        assertEquals("Violations of the rule reference are not replayed", 1, cachedViolations.size());
+        assertSame(referencedRule, cachedViolations.get(0).getRule());
+    }
+
+    @Test
+    public void testEditedFileAppliesAllRulesAfterRulesetChange() throws IOException {
+        final ClassLoader cl = mock(ClassLoader.class);
+        setupCacheWithFiles(newCacheFile, ruleSetsOf(new MockRule("A", "", "message", "ruleset")), cl, sourceFile);
+
+        Files.write(Paths.get(sourceFile.getAbsolutePath()), "some text".getBytes());
+
+        final RuleSets rs = ruleSetsOf(new MockRule("B", "", "message", "ruleset"));
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(rs, cl);
+        assertFalse(reloadedCache.isUpToDate(sourceFile));
+        assertNull("Cache restricts the rules applied to an edited file",
+                reloadedCache.getOutdatedRules(sourceFile, rs));
     }
     
     @Test
     public void testAuxClasspathNonExistingAuxclasspathEntriesIgnored() throws MalformedURLException, IOException {
-        final RuleSets rs = mock(RuleSets.class);
+        final RuleSets rs = mockRuleSets();
         final URLClassLoader cl = mock(URLClassLoader.class);
         when(cl.getURLs()).thenReturn(new URL[] { new File(tempFolder.getRoot(), "non-existing-dir").toURI().toURL(), });
         
@@ -155,7 +280,7 @@ public class FileAnalysisCacheTest {
     
     @Test
     public void testAuxClasspathChangeWithoutDFAorTypeResolutionDoesNotInvalidatesCache() throws MalformedURLException, IOException {
-        final RuleSets rs = mock(RuleSets.class);
+        final RuleSets rs = mockRuleSets();
         final URLClassLoader cl = mock(URLClassLoader.class);
         when(cl.getURLs()).thenReturn(new URL[] { });
         
@@ -170,7 +295,7 @@ public class FileAnalysisCacheTest {
 
     @Test
     public void testAuxClasspathChangeInvalidatesCache() throws MalformedURLException, IOException {
-        final RuleSets rs = mock(RuleSets.class);
+        final RuleSets rs = mockRuleSets();
         final URLClassLoader cl = mock(URLClassLoader.class);
         when(cl.getURLs()).thenReturn(new URL[] { });
         
@@ -193,7 +318,7 @@ public class FileAnalysisCacheTest {
     
     @Test
     public void testAuxClasspathJarContentsChangeInvalidatesCache() throws MalformedURLException, IOException {
-        final RuleSets rs = mock(RuleSets.class);
+        final RuleSets rs = mockRuleSets();
         final URLClassLoader cl = mock(URLClassLoader.class);
         
         final File classpathFile = tempFolder.newFile();
@@ -214,9 +339,126 @@ public class FileAnalysisCacheTest {
                 reloadedCache.isUpToDate(sourceFile));
     }
 
+    @Test
+    public void testAuxClasspathChangeKeepsFilesWithUnchangedDependencies() throws IOException {
+        final File classpathDir = tempFolder.newFolder();
+        final File fooClass = writeClassFile(classpathDir, "Foo", "foo");
+        final File otherSourceFile = tempFolder.newFile("Other.java");
+        final RuleSets rs = mockRuleSetsUsingTypeResolution();
+
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        try (URLClassLoader cl = new URLClassLoader(new URL[] { classpathDir.toURI().toURL() }, null)) {
+            cache.checkValidity(rs, cl);
+            cache.isUpToDate(sourceFile);
+            TypeDependencyRecorder.typeLookedUp("Bar");
+            cache.isUpToDate(otherSourceFile);
+            TypeDependencyRecorder.typeLookedUp("Foo");
+            cache.persist();
+        }
+
+        // Add Bar, change Foo
+        writeClassFile(classpathDir, "Bar", "bar");
+        Files.write(fooClass.toPath(), "changed foo".getBytes());
+        final File otherClasspathDir = tempFolder.newFolder();
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        try (URLClassLoader cl = new URLClassLoader(new URL[] { classpathDir.toURI().toURL(),
+            otherClasspathDir.toURI().toURL(), }, null)) {
+            reloadedCache.checkValidity(rs, cl);
+        }
+        assertFalse("Cache believes file is up to date after a missing dependency was added",
+                reloadedCache.isUpToDate(sourceFile));
+        assertFalse("Cache believes file is up to date after a dependency changed",
+                reloadedCache.isUpToDate(otherSourceFile));
+    }
+
+    @Test
+    public void testAuxClasspathChangeInvalidatesOnlyDependentFiles() throws IOException {
+        final File classpathDir = tempFolder.newFolder();
+        writeClassFile(classpathDir, "Foo", "foo");
+        final File otherSourceFile = tempFolder.newFile("Other.java");
+        final RuleSets rs = mockRuleSetsUsingTypeResolution();
+
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        try (URLClassLoader cl = new URLClassLoader(new URL[] { classpathDir.toURI().toURL() }, null)) {
+            cache.checkValidity(rs, cl);
+            cache.isUpToDate(sourceFile);
+            TypeDependencyRecorder.typeLookedUp("Foo");
+            cache.isUpToDate(otherSourceFile);
+            TypeDependencyRecorder.typeLookedUp("Bar");
+            cache.persist();
+        }
+
+        // A new entry, which doesn't provide any type the files depend on
+        final File otherClasspathDir = tempFolder.newFolder();
+        writeClassFile(otherClasspathDir, "Baz", "baz");
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        try (URLClassLoader cl = new URLClassLoader(new URL[] { classpathDir.toURI().toURL(),
+            otherClasspathDir.toURI().toURL(), }, null)) {
+            reloadedCache.checkValidity(rs, cl);
+        }
+        assertTrue("Cache believes file is not up to date although its dependencies didn't change",
+                reloadedCache.isUpToDate(sourceFile));
+        assertTrue("Cache believes file is not up to date although its missing dependency is still missing",
+                reloadedCache.isUpToDate(otherSourceFile));
+    }
+
+    @Test
+    public void testTypesLookedUpAfterAnalysisAreNotRecorded() throws IOException {
+        final File classpathDir = tempFolder.newFolder();
+        writeClassFile(classpathDir, "Foo", "foo");
+        final RuleSets rs = mockRuleSetsUsingTypeResolution();
+
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        try (URLClassLoader cl = new URLClassLoader(new URL[] { classpathDir.toURI().toURL() }, null)) {
+            cache.checkValidity(rs, cl);
+            cache.isUpToDate(sourceFile);
+            cache.analysisFinished(sourceFile, 1);
+            TypeDependencyRecorder.typeLookedUp("Foo");
+            cache.persist();
+        }
+
+        writeClassFile(classpathDir, "Foo", "changed foo");
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        try (URLClassLoader cl = new URLClassLoader(new URL[] { classpathDir.toURI().toURL() }, null)) {
+            reloadedCache.checkValidity(rs, cl);
+        }
+        assertTrue("Cache records the types looked up after the analysis of a file",
+                reloadedCache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testUnusedTypeChecksumsAreRemoved() throws IOException {
+        final File classpathDir = tempFolder.newFolder();
+        writeClassFile(classpathDir, "Foo", "foo");
+        final RuleSets rs = mockRuleSetsUsingTypeResolution();
+
+        try (URLClassLoader cl = new URLClassLoader(new URL[] { classpathDir.toURI().toURL() }, null)) {
+            final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+            cache.checkValidity(rs, cl);
+            cache.isUpToDate(sourceFile);
+            TypeDependencyRecorder.typeLookedUp("Foo");
+            cache.analysisFinished(sourceFile, 1);
+            cache.persist();
+            assertEquals(1, cache.typeChecksums.size());
+
+            // The file doesn't depend on Foo anymore
+            Files.write(Paths.get(sourceFile.getAbsolutePath()), "some text".getBytes());
+            final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+            reloadedCache.checkValidity(rs, cl);
+            assertFalse(reloadedCache.isUpToDate(sourceFile));
+            reloadedCache.analysisFinished(sourceFile, 1);
+            reloadedCache.persist();
+            assertEquals("Cache keeps the checksums of types no file depends on",
+                    0, reloadedCache.typeChecksums.size());
+        }
+    }
+
     @Test
     public void testClasspathChangeInvalidatesCache() throws MalformedURLException, IOException {
-        final RuleSets rs = mock(RuleSets.class);
+        final RuleSets rs = mockRuleSets();
         final ClassLoader cl = mock(ClassLoader.class);
         
         final File classpathFile = tempFolder.newFile();
@@ -235,7 +477,7 @@ public class FileAnalysisCacheTest {
     
     @Test
     public void testClasspathContentsChangeInvalidatesCache() throws MalformedURLException, IOException {
-        final RuleSets rs = mock(RuleSets.class);
+        final RuleSets rs = mockRuleSets();
         final ClassLoader cl = mock(ClassLoader.class);
         
         final File classpathFile = tempFolder.newFile();
@@ -264,7 +506,7 @@ public class FileAnalysisCacheTest {
 
     @Test
     public void testFileIsUpToDate() throws IOException {
-        setupCacheWithFiles(newCacheFile, mock(RuleSets.class), mock(ClassLoader.class), sourceFile);
+        setupCacheWithFiles(newCacheFile, mockRuleSets(), mock(ClassLoader.class), sourceFile);
         
         final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
         assertTrue("Cache believes a known, unchanged file is not up to date",
@@ -273,7 +515,7 @@ public class FileAnalysisCacheTest {
     
     @Test
     public void testFileIsNotUpToDateWhenEdited() throws IOException {
-        setupCacheWithFiles(newCacheFile, mock(RuleSets.class), mock(ClassLoader.class), sourceFile);
+        setupCacheWithFiles(newCacheFile, mockRuleSets(), mock(ClassLoader.class), sourceFile);
         
         // Edit the file
         Files.write(Paths.get(sourceFile.getAbsolutePath()), "some text".getBytes());
@@ -283,6 +525,42 @@ public class FileAnalysisCacheTest {
                 cache.isUpToDate(sourceFile));
     }
 
+    private RuleSets mockRuleSets() {
+        final RuleSets rs = mock(RuleSets.class);
+        when(rs.getAllRuleSets()).thenReturn(new RuleSet[0]);
+        return rs;
+    }
+
+    private RuleSets ruleSetsOf(final net.sourceforge.pmd.Rule... rules) {
+        final RuleSets rs = new RuleSets();
+        final RuleSetFactory factory = new RuleSetFactory();
+        for (final net.sourceforge.pmd.Rule r : rules) {
+            rs.addRuleSet(factory.createSingleRuleRuleSet(r));
+        }
+        return rs;
+    }
+
+    private RuleViolation mockViolation(final File file, final net.sourceforge.pmd.Rule rule) {
+        final RuleViolation rv = mock(RuleViolation.class);
+        when(rv.getFilename()).thenReturn(file.getPath());
+        when(rv.getRule()).thenReturn(rule);
+        return rv;
+    }
+
+    private RuleSets mockRuleSetsUsingTypeResolution() {
+        final RuleSets rs = mockRuleSets();
+        final net.sourceforge.pmd.Rule r = mock(net.sourceforge.pmd.Rule.class);
+        when(r.isTypeResolution()).thenReturn(true);
+        when(rs.getAllRules()).thenReturn(Collections.singleton(r));
+        return rs;
+    }
+
+    private File writeClassFile(final File classpathDir, final String name, final String contents) throws IOException {
+        final File classFile = new File(classpathDir, name + ".class");
+        Files.write(classFile.toPath(), contents.getBytes());
+        return classFile;
+    }
+
     private void setupCacheWithFiles(final File cacheFile, final RuleSets ruleSets,
             final ClassLoader classLoader, final File... files) {
         // Setup a cache file with an entry for an empty Source.java with no violations
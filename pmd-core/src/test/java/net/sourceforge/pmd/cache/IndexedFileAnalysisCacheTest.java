@@ -0,0 +1,277 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import net.sourceforge.pmd.PMDVersion;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.RuleSetFactory;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.RuleViolation;
+import net.sourceforge.pmd.lang.rule.MockRule;
+
+public class IndexedFileAnalysisCacheTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File cacheFile;
+    private RuleSets ruleSets;
+    private ClassLoader classLoader;
+
+    @Before
+    public void setUp() {
+        cacheFile = new File(tempFolder.getRoot(), "pmd-analysis.cache");
+        ruleSets = mock(RuleSets.class);
+        when(ruleSets.getAllRuleSets()).thenReturn(new RuleSet[0]);
+        classLoader = mock(ClassLoader.class);
+    }
+
+    @Test
+    public void testLoadFromOldFormatShouldntThrow() throws IOException {
+        final File oldCacheFile = tempFolder.newFile();
+        new FileAnalysisCache(oldCacheFile).persist();
+
+        final IndexedFileAnalysisCache cache = new IndexedFileAnalysisCache(oldCacheFile);
+        assertFalse("Cache believes an unknown file is up to date", cache.isUpToDate(tempFolder.newFile()));
+    }
+
+    @Test
+    public void testLoadFromDirectoryShouldntThrow() {
+        new IndexedFileAnalysisCache(tempFolder.getRoot());
+    }
+
+    @Test
+    public void testStorePersistsFilesWithViolations() throws IOException {
+        final File sourceFile = tempFolder.newFile("Source.java");
+        final IndexedFileAnalysisCache cache = new IndexedFileAnalysisCache(cacheFile);
+        cache.checkValidity(ruleSets, classLoader);
+        cache.isUpToDate(sourceFile);
+        cache.ruleViolationAdded(mockViolation(sourceFile));
+        cache.persist();
+
+        final IndexedFileAnalysisCache reloadedCache = new IndexedFileAnalysisCache(cacheFile);
+        reloadedCache.checkValidity(ruleSets, classLoader);
+        assertTrue("Cache believes unmodified file with violations is not up to date",
+                reloadedCache.isUpToDate(sourceFile));
+
+        final List<RuleViolation> cachedViolations = reloadedCache.getCachedViolations(sourceFile);
+        assertEquals("Cached rule violations count mismatch", 1, cachedViolations.size());
+        assertEquals(sourceFile.getPath(), cachedViolations.get(0).getFilename());
+    }
+
+    @Test
+    public void testPersistAppendsChangedFilesOnly() throws IOException {
+        final File unchangedFile = tempFolder.newFile("Unchanged.java");
+        final File changedFile = tempFolder.newFile("Changed.java");
+        Files.write(Paths.get(unchangedFile.getAbsolutePath()), "some text".getBytes());
+
+        runAnalysis(unchangedFile, changedFile);
+        final long initialLength = cacheFile.length();
+
+        Files.write(Paths.get(changedFile.getAbsolutePath()), "some changed text".getBytes());
+        final IndexedFileAnalysisCache cache = runAnalysis(unchangedFile, changedFile);
+
+        assertTrue("The unchanged file was not a cache hit", cache.isUpToDate(unchangedFile));
+        assertTrue("The cache file was rewritten instead of appended to", cacheFile.length() > initialLength);
+
+        final IndexedFileAnalysisCache reloadedCache = new IndexedFileAnalysisCache(cacheFile);
+        reloadedCache.checkValidity(ruleSets, classLoader);
+        assertTrue("Cache believes unmodified file is not up to date", reloadedCache.isUpToDate(unchangedFile));
+        assertTrue("Cache believes appended file is not up to date", reloadedCache.isUpToDate(changedFile));
+        assertEquals(1, reloadedCache.getCachedViolations(unchangedFile).size());
+        assertEquals(1, reloadedCache.getCachedViolations(changedFile).size());
+    }
+
+    @Test
+    public void testPersistCompactsWhenMostRecordsAreStale() throws IOException {
+        final File sourceFile = tempFolder.newFile("Source.java");
+        final IndexedFileAnalysisCache initialCache = runAnalysis(sourceFile);
+
+        for (int i = 0; i < 5; i++) {
+            Files.write(Paths.get(sourceFile.getAbsolutePath()), ("some text " + i).getBytes());
+            runAnalysis(sourceFile);
+        }
+
+        // a new cache file only contains the single record
+        final File compactedFile = cacheFile;
+        cacheFile = new File(tempFolder.getRoot(), "new-analysis.cache");
+        runAnalysis(sourceFile);
+        assertEquals("The cache file was not compacted", cacheFile.length(), compactedFile.length());
+        assertFalse(initialCache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testPersistsTypeDependencies() throws IOException {
+        final File sourceFile = tempFolder.newFile("Source.java");
+        final File otherFile = tempFolder.newFile("Other.java");
+        final URLClassLoader auxClassLoader = new URLClassLoader(new URL[0], null);
+        runAnalysis(sourceFile);
+
+        // appends the record of the other file
+        final IndexedFileAnalysisCache cache = new IndexedFileAnalysisCache(cacheFile);
+        cache.checkValidity(ruleSets, auxClassLoader);
+        assertTrue(cache.isUpToDate(sourceFile));
+        assertFalse(cache.isUpToDate(otherFile));
+        TypeDependencyRecorder.typeLookedUp("Foo");
+        TypeDependencyRecorder.typeLookedUp("java.lang.String");
+        cache.persist();
+
+        final IndexedFileAnalysisCache reloadedCache = new IndexedFileAnalysisCache(cacheFile);
+        assertEquals(Collections.singleton("Foo"),
+                reloadedCache.fileResultsCache.get(otherFile.getPath()).getTypeDependencies());
+        assertTrue(reloadedCache.fileResultsCache.get(sourceFile.getPath()).getTypeDependencies().isEmpty());
+    }
+
+    @Test
+    public void testCompactionRemovesUnusedTypes() throws IOException {
+        final File sourceFile = tempFolder.newFile("Source.java");
+        final File removedFile = tempFolder.newFile("Removed.java");
+        final URLClassLoader auxClassLoader = new URLClassLoader(new URL[0], null);
+
+        final IndexedFileAnalysisCache cache = new IndexedFileAnalysisCache(cacheFile);
+        cache.checkValidity(ruleSets, auxClassLoader);
+        cache.isUpToDate(removedFile);
+        TypeDependencyRecorder.typeLookedUp("Bar");
+        TypeDependencyRecorder.typeLookedUp("Baz");
+        cache.analysisFinished(removedFile, 1);
+        cache.isUpToDate(sourceFile);
+        TypeDependencyRecorder.typeLookedUp("Foo");
+        cache.analysisFinished(sourceFile, 1);
+        cache.persist();
+
+        // most of the file belongs to the removed file, the record of the other file is rewritten
+        final IndexedFileAnalysisCache compactedCache = new IndexedFileAnalysisCache(cacheFile);
+        compactedCache.checkValidity(ruleSets, auxClassLoader);
+        assertTrue(compactedCache.isUpToDate(sourceFile));
+        compactedCache.persist();
+
+        final IndexedFileAnalysisCache reloadedCache = new IndexedFileAnalysisCache(cacheFile);
+        assertEquals(1, reloadedCache.typeChecksums.size());
+        assertEquals(Collections.singleton("Foo"),
+                reloadedCache.fileResultsCache.get(sourceFile.getPath()).getTypeDependencies());
+    }
+
+    @Test
+    public void testRulesetChangeInvalidatesCache() throws IOException {
+        final File sourceFile = tempFolder.newFile("Source.java");
+        final File otherFile = tempFolder.newFile("Other.java");
+        ruleSets = ruleSetsOf(new MockRule("Kept", "", "message", "ruleset"));
+        runAnalysis(sourceFile, otherFile);
+
+        final MockRule addedRule = new MockRule("Added", "", "message", "ruleset");
+        ruleSets = ruleSetsOf(new MockRule("Kept", "", "message", "ruleset"), addedRule);
+        final IndexedFileAnalysisCache cache = new IndexedFileAnalysisCache(cacheFile);
+        cache.checkValidity(ruleSets, classLoader);
+        assertFalse("Cache believes unmodified file is up to date after ruleset changed",
+                cache.isUpToDate(sourceFile));
+        assertEquals(Collections.singleton(addedRule), cache.getOutdatedRules(sourceFile, ruleSets));
+        cache.persist();
+
+        // the other file was not analyzed with the added rule, its record must be gone
+        final IndexedFileAnalysisCache reloadedCache = new IndexedFileAnalysisCache(cacheFile);
+        reloadedCache.checkValidity(ruleSets, classLoader);
+        assertTrue("Cache believes reanalyzed file is not up to date", reloadedCache.isUpToDate(sourceFile));
+        assertFalse("Cache kept the result of a file not analyzed with the current rules",
+                reloadedCache.isUpToDate(otherFile));
+    }
+
+    @Test
+    public void testLoadedResultsAreCopiedOnWrite() throws IOException {
+        final File sourceFile = tempFolder.newFile("Source.java");
+        final File otherFile = tempFolder.newFile("Other.java");
+        runAnalysis(sourceFile);
+
+        final IndexedFileAnalysisCache cache = new IndexedFileAnalysisCache(cacheFile);
+        cache.checkValidity(ruleSets, classLoader);
+        assertTrue(cache.isUpToDate(sourceFile));
+        final AnalysisResult loadedResult = cache.fileResultsCache.get(sourceFile.getPath());
+        loadedResult.addTypeDependency("Foo");
+        loadedResult.addViolation(mockViolation(sourceFile));
+        assertEquals(Collections.singleton("Foo"), loadedResult.getTypeDependencies());
+        assertEquals(2, loadedResult.getViolations().size());
+
+        // the file is replaced while the cache is loaded
+        Files.write(Paths.get(sourceFile.getAbsolutePath()), "some changed text".getBytes());
+        cache.isUpToDate(otherFile);
+        cache.persist();
+        assertTrue(new IndexedFileAnalysisCache(cacheFile).fileResultsCache.containsKey(otherFile.getPath()));
+    }
+
+    @Test
+    public void testRecordsAreReadOnDemand() throws IOException {
+        final File sourceFile = tempFolder.newFile("Source.java");
+        final File otherFile = tempFolder.newFile("Other.java");
+        runAnalysis(sourceFile, otherFile);
+
+        final IndexedFileAnalysisCache cache = new IndexedFileAnalysisCache(cacheFile);
+        cache.checkValidity(ruleSets, classLoader);
+        assertTrue(cache.isUpToDate(sourceFile));
+
+        // the loaded index still refers to the records, which are only read now
+        try (RandomAccessFile file = new RandomAccessFile(cacheFile, "rw")) {
+            final long trailerOffsetPosition = 8 + 4 + 2 + PMDVersion.VERSION.length() + 3 * 8;
+            file.seek(trailerOffsetPosition);
+            final long trailerOffset = file.readLong();
+            file.write(new byte[(int) (trailerOffset - file.getFilePointer())]);
+        }
+        assertTrue(cache.getCachedViolations(sourceFile).isEmpty());
+        assertTrue(cache.isUpToDate(otherFile));
+        assertTrue(cache.getCachedViolations(otherFile).isEmpty());
+    }
+
+    private RuleSets ruleSetsOf(final net.sourceforge.pmd.Rule... rules) {
+        final RuleSets rs = new RuleSets();
+        for (final net.sourceforge.pmd.Rule r : rules) {
+            rs.addRuleSet(new RuleSetFactory().createSingleRuleRuleSet(r));
+        }
+        return rs;
+    }
+
+    private IndexedFileAnalysisCache runAnalysis(final File... files) {
+        final IndexedFileAnalysisCache cache = new IndexedFileAnalysisCache(cacheFile);
+        cache.checkValidity(ruleSets, classLoader);
+        for (final File f : files) {
+            if (cache.isUpToDate(f)) {
+                for (final RuleViolation rv : cache.getCachedViolations(f)) {
+                    cache.ruleViolationAdded(rv);
+                }
+            } else {
+                cache.ruleViolationAdded(mockViolation(f));
+            }
+        }
+        cache.persist();
+        return cache;
+    }
+
+    private RuleViolation mockViolation(final File sourceFile) {
+        final RuleViolation rv = mock(RuleViolation.class);
+        when(rv.getFilename()).thenReturn(sourceFile.getPath());
+        final net.sourceforge.pmd.Rule rule = mock(net.sourceforge.pmd.Rule.class, Mockito.RETURNS_SMART_NULLS);
+        when(rv.getRule()).thenReturn(rule);
+        return rv;
+    }
+}
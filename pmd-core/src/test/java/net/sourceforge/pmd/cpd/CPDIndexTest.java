@@ -0,0 +1,227 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CPDIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File sources;
+    private File indexFile;
+    private CountingTokenizer tokenizer;
+
+    @Before
+    public void setUp() throws IOException {
+        sources = folder.newFolder("src");
+        indexFile = new File(folder.getRoot(), "cpd/index.bin");
+        tokenizer = new CountingTokenizer();
+        Random random = new Random(7);
+        for (int i = 0; i < 10; i++) {
+            writeFile(i, random);
+        }
+    }
+
+    @Test
+    public void testUnchangedFilesAreNotTokenizedAgain() throws Exception {
+        String expected = findDuplicates(null, 0);
+        assertFalse(expected.isEmpty());
+        assertEquals(10, tokenizer.count);
+
+        tokenizer.count = 0;
+        assertEquals(expected, findDuplicates(indexFile, 0));
+        assertEquals(10, tokenizer.count);
+        assertTrue(indexFile.exists());
+
+        tokenizer.count = 0;
+        assertEquals(expected, findDuplicates(indexFile, 0));
+        assertEquals(0, tokenizer.count);
+
+        writeFile(3, new Random(11));
+        tokenizer.count = 0;
+        expected = findDuplicates(null, 0);
+        tokenizer.count = 0;
+        assertEquals(expected, findDuplicates(indexFile, 2));
+        assertEquals(1, tokenizer.count);
+    }
+
+    @Test
+    public void testChangedOptionsInvalidateIndex() throws Exception {
+        findDuplicates(indexFile, 0);
+        tokenizer.count = 0;
+
+        CPDConfiguration configuration = createConfiguration(indexFile, 0);
+        configuration.setIgnoreLiterals(true);
+        CPD cpd = new CPD(configuration);
+        cpd.addAllInDirectory(sources);
+        cpd.go();
+        assertEquals(10, tokenizer.count);
+    }
+
+    @Test
+    public void testDeletedFilesAreRemoved() throws Exception {
+        findDuplicates(indexFile, 0);
+        assertTrue(new File(sources, "File9.txt").delete());
+        String expected = findDuplicates(null, 0);
+        tokenizer.count = 0;
+        assertEquals(expected, findDuplicates(indexFile, 0));
+        assertEquals(0, tokenizer.count);
+    }
+
+    @Test
+    public void testChangedFilesAreMatchedAgainstIndex() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            writeUniqueFile(i, "");
+        }
+        // duplicates among the files of the index
+        writeUniqueFile(1, block(2));
+        writeUniqueFile(2, block(2));
+        findDuplicates(indexFile, 0);
+
+        writeUniqueFile(3, block(7));
+        writeUniqueFile(7, block(7));
+        File changedFile = new File(sources, "File3.txt");
+        tokenizer.count = 0;
+        assertEquals("20 File3.txt:5-5 File7.txt:5-5\n", findDuplicates(indexFile, 0, changedFile));
+        // File7 has been modified as well, according to its size
+        assertEquals(2, tokenizer.count);
+
+        tokenizer.count = 0;
+        assertEquals("20 File3.txt:5-5 File7.txt:5-5\n", findDuplicates(indexFile, 2, changedFile));
+        assertEquals(0, tokenizer.count);
+        // the other files are kept in the index
+        assertEquals("20 File1.txt:5-5 File2.txt:5-5\n",
+                findDuplicates(indexFile, 0, new File(sources, "File1.txt")));
+        assertEquals(0, tokenizer.count);
+    }
+
+    @Test
+    public void testTokensAreKeyedByContent() throws Exception {
+        findDuplicates(indexFile, 0);
+        File file = new File(sources, "File4.txt");
+        assertTrue(file.renameTo(new File(sources, "Renamed.txt")));
+        String expected = findDuplicates(null, 0);
+
+        tokenizer.count = 0;
+        assertEquals(expected, findDuplicates(indexFile, 0));
+        assertEquals(0, tokenizer.count);
+    }
+
+    @Test
+    public void testDeletedFilesAreRemovedFromCorpus() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            writeUniqueFile(i, i == 1 || i == 2 ? block(2) : "");
+        }
+        findDuplicates(indexFile, 0);
+        assertTrue(new File(sources, "File2.txt").delete());
+
+        tokenizer.count = 0;
+        assertEquals("", findDuplicates(indexFile, 0, new File(sources, "File1.txt")));
+        assertEquals(0, tokenizer.count);
+    }
+
+    private void writeUniqueFile(int index, String block) throws IOException {
+        StringBuilder code = new StringBuilder();
+        for (int line = 0; line < 8; line++) {
+            if (line == 4) {
+                code.append(block);
+            } else {
+                for (int word = 0; word < 5; word++) {
+                    code.append("f").append(index).append("l").append(line).append("w").append(word).append(' ');
+                }
+            }
+            code.append('\n');
+        }
+        FileUtils.writeStringToFile(new File(sources, "File" + index + ".txt"), code.toString(),
+                StandardCharsets.UTF_8);
+    }
+
+    private static String block(int index) {
+        StringBuilder block = new StringBuilder();
+        for (int word = 0; word < 20; word++) {
+            block.append("b").append(index).append("w").append(word).append(' ');
+        }
+        return block.toString();
+    }
+
+    private void writeFile(int index, Random random) throws IOException {
+        StringBuilder code = new StringBuilder();
+        for (int line = 0; line < 40; line++) {
+            for (int word = 0; word < 5; word++) {
+                code.append((char) ('a' + random.nextInt(2))).append(' ');
+            }
+            code.append('\n');
+        }
+        FileUtils.writeStringToFile(new File(sources, "File" + index + ".txt"), code.toString(),
+                StandardCharsets.UTF_8);
+    }
+
+    private CPDConfiguration createConfiguration(File index, int threads) {
+        CPDConfiguration configuration = new CPDConfiguration();
+        configuration.setLanguage(new AbstractLanguage("Counting", "counting", tokenizer, ".txt") {
+        });
+        configuration.setMinimumTileSize(15);
+        configuration.setThreads(threads);
+        configuration.setCacheLocation(index == null ? null : index.getPath());
+        configuration.postContruct();
+        return configuration;
+    }
+
+    private String findDuplicates(File index, int threads) throws IOException {
+        return findDuplicates(index, threads, sources);
+    }
+
+    /**
+     * Finds the duplicates of the given files, or of the files of the given directory.
+     */
+    private String findDuplicates(File index, int threads, File files) throws IOException {
+        CPD cpd = new CPD(createConfiguration(index, threads));
+        if (files.isDirectory()) {
+            cpd.addAllInDirectory(files);
+        } else {
+            cpd.add(files);
+        }
+        cpd.go();
+
+        StringBuilder result = new StringBuilder();
+        for (Iterator<Match> matches = cpd.getMatches(); matches.hasNext();) {
+            Match match = matches.next();
+            result.append(match.getTokenCount());
+            for (Mark mark : match) {
+                result.append(' ').append(new File(mark.getFilename()).getName()).append(':')
+                        .append(mark.getBeginLine()).append('-').append(mark.getEndLine());
+            }
+            result.append('\n');
+        }
+        return result.toString();
+    }
+
+    private static class CountingTokenizer implements Tokenizer {
+        private final Tokenizer delegate = new AnyTokenizer();
+        private volatile int count;
+
+        @Override
+        public synchronized void tokenize(SourceCode sourceCode, Tokens tokenEntries) throws IOException {
+            count++;
+            delegate.tokenize(sourceCode, tokenEntries);
+        }
+    }
+}
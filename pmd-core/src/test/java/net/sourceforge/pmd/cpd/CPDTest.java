@@ -5,11 +5,18 @@
 package net.sourceforge.pmd.cpd;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Random;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.SystemUtils;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 /**
  * Unit test for {@link CPD}
@@ -26,6 +33,9 @@ public class CPDTest {
         }
     }
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private CPD cpd;
 
     private boolean canTestSymLinks = false;
@@ -120,6 +130,96 @@ public class CPDTest {
         listener.verify();
     }
 
+    /**
+     * Tokenizing the files concurrently must find the same duplicates, in
+     * the same order.
+     *
+     * @throws Exception
+     *             any error
+     */
+    @Test
+    public void testConcurrentTokenization() throws Exception {
+        File dir = folder.newFolder();
+        Random random = new Random(1);
+        for (int i = 0; i < 30; i++) {
+            StringBuilder code = new StringBuilder();
+            for (int line = 0; line < 50; line++) {
+                for (int word = 0; word < 5; word++) {
+                    code.append((char) ('a' + random.nextInt(2))).append(' ');
+                }
+                code.append('\n');
+            }
+            FileUtils.writeStringToFile(new File(dir, "File" + i + ".java"), code.toString(), StandardCharsets.UTF_8);
+        }
+
+        String expected = findDuplicates(dir, 0);
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(expected, findDuplicates(dir, 4));
+    }
+
+    @Test
+    public void testTokenizerThreadsStopAfterFailure() throws Exception {
+        CPDConfiguration configuration = new CPDConfiguration();
+        configuration.setThreads(2);
+        configuration.setLanguage(new AbstractLanguage("Failing", "failing", new Tokenizer() {
+            @Override
+            public void tokenize(SourceCode sourceCode, Tokens tokenEntries) {
+                throw new IllegalStateException("Broken tokenizer");
+            }
+        }, "java") { });
+        configuration.postContruct();
+        CPD cpd = new CPD(configuration);
+        try {
+            // the other files are still pending, when the first failure is reported
+            for (int i = 0; i < 3; i++) {
+                cpd.add(folder.newFile("Broken" + i + ".java"));
+            }
+            cpd.go();
+            Assert.fail("The failure of the tokenizer was not reported");
+        } catch (IllegalStateException expected) {
+            // reported either while adding, or while waiting for the file
+        }
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (hasTokenizerThreads()) {
+            Assert.assertTrue("The tokenizer threads were not stopped", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static boolean hasTokenizerThreads() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("CPD Tokenizer")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String findDuplicates(File dir, int threads) throws IOException {
+        CPDConfiguration configuration = new CPDConfiguration();
+        configuration.setMinimumTileSize(15);
+        configuration.setThreads(threads);
+        configuration.postContruct();
+        CPD cpd = new CPD(configuration);
+        NoFileAssertListener listener = new NoFileAssertListener(30);
+        cpd.setCpdListener(listener);
+        cpd.addAllInDirectory(dir);
+        cpd.go();
+        listener.verify();
+
+        StringBuilder result = new StringBuilder();
+        for (Iterator<Match> matches = cpd.getMatches(); matches.hasNext();) {
+            Match match = matches.next();
+            result.append(match.getTokenCount());
+            for (Mark mark : match) {
+                result.append(' ').append(mark.getFilename()).append(':').append(mark.getBeginLine());
+            }
+            result.append('\n');
+        }
+        return result.toString();
+    }
+
     /**
      * Simple listener that fails, if to many files were added and not skipped.
      */
@@ -37,6 +37,19 @@ public class SourceCodeTest {
         assertEquals("Line 1" + PMD.EOL + "Line 2", sourceCode.getSlice(1, 2));
     }
 
+    @Test
+    public void testSliceWithoutLoadedCode() throws Exception {
+        SourceCode sourceCode = new SourceCode(new SourceCode.StringCodeLoader(SAMPLE_CODE, "Foo.java"));
+
+        assertEquals("Line 2", sourceCode.getSlice(2, 2));
+        assertEquals("Line 2" + PMD.EOL + "Line 3", sourceCode.getSlice(2, 3));
+        assertEquals("Line 4", sourceCode.getSlice(4, 6));
+
+        StringBuilder sb = new StringBuilder();
+        sourceCode.appendSlice(sb, 1, 2);
+        assertEquals("Line 1" + PMD.EOL + "Line 2", sb.toString());
+    }
+
     @Test
     public void testEncodingDetectionFromBOM() throws Exception {
         FileCodeLoader loader = new SourceCode.FileCodeLoader(new File(BASE_RESOURCE_PATH + "file_with_utf8_bom.java"),
@@ -0,0 +1,133 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class SuffixArrayMatchAlgorithmTest {
+
+    @After
+    public void clearImages() {
+        TokenEntry.clearImages();
+    }
+
+    @Test
+    public void testSuffixArray() {
+        // banana$
+        int[] text = { 2, 1, 3, 1, 3, 1, 0 };
+        int[] suffixArray = SuffixArrayMatchAlgorithm.buildSuffixArray(text);
+        assertArrayEquals(new int[] { 6, 5, 3, 1, 0, 4, 2 }, suffixArray);
+        assertArrayEquals(new int[] { 0, 0, 1, 3, 0, 0, 2 },
+                SuffixArrayMatchAlgorithm.buildLcpArray(text, suffixArray));
+    }
+
+    @Test
+    public void testSimple() {
+        String[] sampleCode = { "a b c d e f", "x a b c d e f y" };
+        assertSameMatches(sampleCode, 3);
+
+        List<Match> matches = findMatches(new SuffixArrayMatchAlgorithm(codeMap(sampleCode), tokenize(sampleCode), 3));
+        assertEquals(1, matches.size());
+        assertEquals(6, matches.get(0).getTokenCount());
+        assertEquals(2, matches.get(0).getMarkCount());
+        assertEquals(0, matches.get(0).getFirstMark().getToken().getIndex());
+        assertEquals(8, matches.get(0).getSecondMark().getToken().getIndex());
+    }
+
+    @Test
+    public void testPeriodic() {
+        assertSameMatches(new String[] { "a a a a a a a a a a a a a a a a a a a a" }, 2);
+        assertSameMatches(new String[] { "a b a b a b a b a b a b a b a b a b a" }, 3);
+        assertSameMatches(new String[] { "a b c a b c a b c a b c", "a b c a b c a b", "c a b c a b c" }, 3);
+    }
+
+    @Test
+    public void testRandomCode() {
+        Random random = new Random(42);
+        for (int round = 0; round < 300; round++) {
+            int fileCount = 1 + random.nextInt(4);
+            int alphabetSize = 1 + random.nextInt(4);
+            String[] sampleCode = new String[fileCount];
+            for (int f = 0; f < fileCount; f++) {
+                StringBuilder sb = new StringBuilder();
+                int length = 1 + random.nextInt(60);
+                for (int i = 0; i < length; i++) {
+                    sb.append((char) ('a' + random.nextInt(alphabetSize))).append(' ');
+                }
+                sampleCode[f] = sb.toString();
+            }
+            assertSameMatches(sampleCode, 1 + random.nextInt(6));
+        }
+    }
+
+    private static void assertSameMatches(String[] sampleCode, int minimumTileSize) {
+        List<Match> expected = findMatches(
+                new MatchAlgorithm(codeMap(sampleCode), tokenize(sampleCode), minimumTileSize));
+        List<Match> actual = findMatches(
+                new SuffixArrayMatchAlgorithm(codeMap(sampleCode), tokenize(sampleCode), minimumTileSize));
+        assertEquals(describe(expected), describe(actual));
+    }
+
+    private static List<Match> findMatches(MatchAlgorithm matchAlgorithm) {
+        matchAlgorithm.findMatches();
+        List<Match> matches = new ArrayList<>();
+        for (Iterator<Match> i = matchAlgorithm.matches(); i.hasNext();) {
+            matches.add(i.next());
+        }
+        return matches;
+    }
+
+    private static String describe(List<Match> matches) {
+        StringBuilder sb = new StringBuilder();
+        for (Match match : matches) {
+            sb.append(match.getTokenCount()).append(':');
+            for (Mark mark : match) {
+                sb.append(' ').append(mark.getToken().getIndex()).append('/').append(mark.getToken().hashCode())
+                        .append('/').append(mark.getLineCount());
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static Map<String, SourceCode> codeMap(String[] sampleCode) {
+        Map<String, SourceCode> codeMap = new HashMap<>();
+        for (int i = 0; i < sampleCode.length; i++) {
+            codeMap.put(fileName(i), new SourceCode(new SourceCode.StringCodeLoader(sampleCode[i], fileName(i))));
+        }
+        return codeMap;
+    }
+
+    /**
+     * Creates one token per word, with one line per token.
+     */
+    private static Tokens tokenize(String[] sampleCode) {
+        TokenEntry.clearImages();
+        Tokens tokens = new Tokens();
+        for (int i = 0; i < sampleCode.length; i++) {
+            int line = 1;
+            for (String word : sampleCode[i].trim().split(" ")) {
+                tokens.add(new TokenEntry(word, fileName(i), line++));
+            }
+            tokens.add(TokenEntry.getEOF());
+        }
+        return tokens;
+    }
+
+    private static String fileName(int index) {
+        return "Foo" + index + ".java";
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TokensTest {
+
+    @After
+    public void clearImages() {
+        TokenEntry.clearImages();
+    }
+
+    @Test
+    public void testTokensAreStoredByColumn() {
+        Tokens tokens = new Tokens();
+        for (int i = 0; i < 3000; i++) {
+            tokens.add(new TokenEntry(i % 2 == 0 ? "a" : "b", "Foo" + i / 1000 + ".java", i + 1));
+        }
+        tokens.add(TokenEntry.getEOF());
+
+        assertEquals(3001, tokens.size());
+        List<TokenEntry> entries = tokens.getTokens();
+        TokenEntry token = entries.get(1500);
+        assertEquals(1500, token.getIndex());
+        assertEquals(1501, token.getBeginLine());
+        assertEquals("Foo1.java", token.getTokenSrcID());
+        assertEquals("a", token.toString());
+        assertEquals(entries.get(0).getIdentifier(), token.getIdentifier());
+        assertNotEquals(entries.get(1).getIdentifier(), token.getIdentifier());
+        assertSame(TokenEntry.EOF, entries.get(3000));
+    }
+
+    @Test
+    public void testSetAndTruncate() {
+        Tokens tokens = new Tokens();
+        tokens.add(new TokenEntry("a", "Foo.java", 1));
+        tokens.add(new TokenEntry("b", "Foo.java", 2));
+        tokens.add(TokenEntry.getEOF());
+
+        TokenEntry token = tokens.getTokens().get(1);
+        token.setImage("c");
+        assertEquals("the tokens are stored by value", "b", tokens.getTokens().get(1).toString());
+        tokens.set(1, token);
+        assertEquals("c", tokens.getTokens().get(1).toString());
+
+        tokens.truncate(1);
+        assertEquals(1, tokens.size());
+        tokens.add(new TokenEntry("d", "Bar.java", 5));
+        assertEquals("Bar.java", tokens.getTokens().get(1).getTokenSrcID());
+        assertEquals(5, tokens.getTokens().get(1).getBeginLine());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testRestoreState() {
+        Tokens tokens = new Tokens();
+        tokens.add(new TokenEntry("a", "Foo.java", 1));
+        tokens.add(TokenEntry.getEOF());
+        TokenEntry.State state = new TokenEntry.State(tokens.getTokens());
+        tokens.add(new TokenEntry("b", "Bar.java", 1));
+        tokens.add(new TokenEntry("c", "Bar.java", 2));
+
+        state.restore(tokens);
+        assertEquals(2, tokens.size());
+        assertSame(TokenEntry.EOF, tokens.getTokens().get(1));
+
+        // the way the state used to be restored
+        tokens.add(new TokenEntry("b", "Bar.java", 1));
+        tokens.getTokens().clear();
+        tokens.getTokens().addAll(state.restore());
+        assertEquals(2, tokens.size());
+        assertEquals("a", tokens.getTokens().get(0).toString());
+        assertEquals("Foo.java", tokens.getTokens().get(0).getTokenSrcID());
+        assertSame(TokenEntry.EOF, tokens.getTokens().get(1));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testOnlyLastTokensCanBeRemoved() {
+        Tokens tokens = new Tokens();
+        tokens.add(new TokenEntry("a", "Foo.java", 1));
+        tokens.add(new TokenEntry("b", "Foo.java", 1));
+        tokens.getTokens().remove(0);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testTokenViewIsReadOnly() {
+        Tokens tokens = new Tokens();
+        tokens.add(new TokenEntry("a", "Foo.java", 1));
+        tokens.getTokens().set(0, new TokenEntry("b", "Foo.java", 1));
+    }
+}
@@ -142,6 +142,22 @@ public class XMLRendererTest {
         assertTrue(report.contains(espaceChar));
     }
 
+    @Test
+    public void testRendererCodeFragmentWithCDataEnd() throws Exception {
+        CPDRenderer renderer = new XMLRenderer();
+        List<Match> list = new ArrayList<>();
+        String codeFragment = "int[][] a = b[c[0]]> 0;";
+        Mark mark1 = createMark("public", "/var/Foo.java", 1, 1, codeFragment);
+        Mark mark2 = createMark("public", "/var/Foo.java", 5, 1, codeFragment);
+        list.add(new Match(75, mark1, mark2));
+
+        StringWriter sw = new StringWriter();
+        renderer.render(list.iterator(), sw);
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(sw.toString().getBytes(ENCODING)));
+        assertEquals(codeFragment, doc.getElementsByTagName("codefragment").item(0).getTextContent());
+    }
+
     private Mark createMark(String image, String tokenSrcID, int beginLine, int lineCount, String code) {
         Mark result = new Mark(new TokenEntry(image, tokenSrcID, beginLine));
 
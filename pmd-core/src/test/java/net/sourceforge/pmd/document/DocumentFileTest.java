@@ -263,6 +263,40 @@ public class DocumentFileTest {
         }
     }
 
+    @Test
+    public void lineToOffsetMappingWithCarriageReturnShouldSucceed() throws IOException {
+        final String code = "public static int main(String[] args) {" + "\r"
+                + "int var;" + "\r"
+                + "}" + "\r";
+        writeContentToTemporaryFile(code);
+
+        final List<Integer> expectedLineToOffset = new ArrayList<>();
+        expectedLineToOffset.add(0);
+        expectedLineToOffset.add(40);
+        expectedLineToOffset.add(49);
+
+        try (DocumentFile documentFile = new DocumentFile(temporaryFile, StandardCharsets.UTF_8)) {
+            assertEquals(expectedLineToOffset, documentFile.getLineToOffset());
+        }
+    }
+
+    @Test
+    public void replaceWithCarriageReturnShouldSucceed() throws IOException {
+        final String code = "int main(String[] args) {" + "\r"
+                + "int var;" + "\r"
+                + "}" + "\r";
+        writeContentToTemporaryFile(code);
+
+        try (DocumentFile documentFile = new DocumentFile(temporaryFile, StandardCharsets.UTF_8)) {
+            documentFile.replace(new RegionByLineImp(1, 1, 4, 7), "foo");
+        }
+
+        try (FileInputStream stream = new FileInputStream(temporaryFile)) {
+            final String actualContent = new String(readAllBytes(stream));
+            assertEquals("int main(String[] args) {" + "\r" + "int foo;" + "\r" + "}" + "\r", actualContent);
+        }
+    }
+
     private void writeContentToTemporaryFile(final String content) throws IOException {
         try (BufferedWriter writer = Files.newBufferedWriter(temporaryFile.toPath(), StandardCharsets.UTF_8)) {
             writer.write(content);
@@ -0,0 +1,52 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.ast;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class NodeTypeIndexTest {
+
+    private static final String[] TYPE_NAMES = {"Root", "Expression", "Literal"};
+
+    @Test
+    public void testTypeIds() {
+        NodeTypeIndex index = new NodeTypeIndex(TYPE_NAMES);
+        assertEquals(0, index.getTypeId("Root"));
+        assertEquals(2, index.getTypeId("Literal"));
+        assertEquals(-1, index.getTypeId("Statement"));
+        assertTrue(index.getNodes(-1).isEmpty());
+        assertTrue(index.getNodes(1).isEmpty());
+    }
+
+    @Test
+    public void testDocumentOrder() {
+        // Root(Expression(Expression(Literal), Literal)), completed bottom up
+        NodeTypeIndex index = new NodeTypeIndex(TYPE_NAMES);
+        Node root = new DummyNode(0);
+        Node outer = new DummyNode(1);
+        Node inner = new DummyNode(1);
+        Node first = new DummyNode(2);
+        Node second = new DummyNode(2);
+
+        int rootOrder = index.nodeOpened();
+        int outerOrder = index.nodeOpened();
+        int innerOrder = index.nodeOpened();
+        int firstOrder = index.nodeOpened();
+        index.add(2, firstOrder, first);
+        index.add(1, innerOrder, inner);
+        index.add(2, index.nodeOpened(), second);
+        index.add(1, outerOrder, outer);
+        index.add(0, rootOrder, root);
+
+        assertEquals(Arrays.asList(root), index.getNodes(0));
+        assertEquals(Arrays.asList(outer, inner), index.getNodes(1));
+        assertEquals(Arrays.asList(first, second), index.getNodes(2));
+    }
+}
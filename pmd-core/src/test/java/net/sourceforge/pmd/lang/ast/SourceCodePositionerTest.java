@@ -40,4 +40,31 @@ public class SourceCodePositionerTest {
         assertEquals(5, positioner.lineNumberFromOffset(offset));
         assertEquals(3, positioner.columnFromOffset(5, offset));
     }
+
+    @Test
+    public void testLastLine() {
+        // the empty lines at the end don't count, like with String.split
+        assertEquals(5, new SourceCodePositioner(SOURCE_CODE).getLastLine());
+        assertEquals(5, new SourceCodePositioner(SOURCE_CODE + "\n\n").getLastLine());
+        assertEquals(1, new SourceCodePositioner("").getLastLine());
+        assertEquals(0, new SourceCodePositioner("\n").getLastLine());
+
+        SourceCodePositioner positioner = new SourceCodePositioner(SOURCE_CODE);
+        assertEquals(3, positioner.getLastLineColumn());
+        assertEquals(0, positioner.columnFromOffset(6, SOURCE_CODE.length()));
+    }
+
+    @Test
+    public void testOffsetFromLineColumn() {
+        SourceCodePositioner positioner = new SourceCodePositioner(new StringBuilder(SOURCE_CODE + "\n"));
+
+        for (int offset = 0; offset < SOURCE_CODE.length(); offset++) {
+            int line = positioner.lineNumberFromOffset(offset);
+            assertEquals(offset, positioner.offsetFromLineColumn(line, positioner.columnFromOffset(line, offset)));
+        }
+        assertEquals(SOURCE_CODE.indexOf('j'), positioner.offsetFromLineColumn(4, 1));
+        assertEquals(SOURCE_CODE.length() + 1, positioner.offsetFromLineColumn(6, 1));
+        assertEquals(-1, positioner.offsetFromLineColumn(7, 1));
+        assertEquals(-1, positioner.offsetFromLineColumn(0, 1));
+    }
 }
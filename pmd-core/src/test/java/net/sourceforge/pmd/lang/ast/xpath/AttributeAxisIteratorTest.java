@@ -6,9 +6,12 @@ package net.sourceforge.pmd.lang.ast.xpath;
 
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 import org.hamcrest.collection.IsMapContaining;
@@ -52,6 +55,20 @@ public class AttributeAxisIteratorTest {
         assertTrue(atts.containsKey("EndLine"));
     }
 
+    @Test
+    public void testAttributesByName() {
+        DummyNode dummyNode = new DummyNode(1);
+        dummyNode.testingOnlySetBeginLine(42);
+
+        Iterator<Attribute> it = AttributeAxisIterator.getAttributesByName(dummyNode, "BeginLine");
+        assertTrue(it.hasNext());
+        Attribute attribute = it.next();
+        assertEquals("BeginLine", attribute.getName());
+        assertEquals(42, attribute.getValue());
+        assertFalse(it.hasNext());
+
+        assertFalse(AttributeAxisIterator.getAttributesByName(dummyNode, "Unknown").hasNext());
+    }
 
     private Map<String, Attribute> toMap(AttributeAxisIterator it) {
         Map<String, Attribute> atts = new HashMap<>();
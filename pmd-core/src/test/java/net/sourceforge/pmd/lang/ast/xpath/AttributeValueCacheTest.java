@@ -0,0 +1,65 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.ast.xpath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Test;
+
+import net.sourceforge.pmd.lang.ast.DummyNode;
+
+public class AttributeValueCacheTest {
+
+    @After
+    public void tearDown() {
+        AttributeValueCache.end();
+    }
+
+    @Test
+    public void testValuesCachedUntilEnd() {
+        DummyNode node = new DummyNode(1);
+        node.testingOnlySetBeginLine(1);
+
+        AttributeValueCache.start();
+        assertEquals(1, getValue(node, "BeginLine"));
+        assertNull(getValue(node, "Image"));
+        node.testingOnlySetBeginLine(2);
+        node.setImage("foo");
+        assertEquals(1, getValue(node, "BeginLine"));
+        assertNull(getValue(node, "Image"));
+
+        AttributeValueCache.end();
+        assertEquals(2, getValue(node, "BeginLine"));
+        assertEquals("foo", getValue(node, "Image"));
+    }
+
+    @Test
+    public void testManyNodes() {
+        DummyNode[] nodes = new DummyNode[5000];
+        AttributeValueCache.start();
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new DummyNode(1);
+            nodes[i].testingOnlySetBeginLine(i);
+            nodes[i].testingOnlySetBeginColumn(i + 1);
+            assertEquals(i, getValue(nodes[i], "BeginLine"));
+            assertEquals(i + 1, getValue(nodes[i], "BeginColumn"));
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            assertEquals(i, getValue(nodes[i], "BeginLine"));
+            assertEquals(i + 1, getValue(nodes[i], "BeginColumn"));
+        }
+
+        // a new cache doesn't reuse the values of the previous one
+        AttributeValueCache.start();
+        nodes[3].testingOnlySetBeginLine(42);
+        assertEquals(42, getValue(nodes[3], "BeginLine"));
+    }
+
+    private static Object getValue(DummyNode node, String name) {
+        return AttributeAxisIterator.getAttributesByName(node, name).next().getValue();
+    }
+}
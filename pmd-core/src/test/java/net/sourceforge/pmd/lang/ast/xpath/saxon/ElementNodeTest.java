@@ -0,0 +1,100 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.ast.xpath.saxon;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import net.sourceforge.pmd.lang.ast.DummyNode;
+
+import net.sf.saxon.om.Axis;
+import net.sf.saxon.om.AxisIterator;
+import net.sf.saxon.om.NodeInfo;
+
+public class ElementNodeTest {
+
+    @Test
+    public void testLazyCreation() {
+        DummyNode root = node(0);
+        DummyNode a = node(1);
+        DummyNode b = node(2);
+        DummyNode c = node(3);
+        DummyNode d = node(4);
+        addChildren(root, a, d);
+        addChildren(a, b, c);
+
+        DocumentNode document = DocumentNode.getDocumentNode(root);
+        assertSame(document, DocumentNode.getDocumentNode(root));
+        assertNull(a.getSaxonElementNode());
+
+        ElementNode elementNode = document.getElementNode(c);
+        assertSame(elementNode, c.getSaxonElementNode());
+        assertSame(a.getSaxonElementNode(), elementNode.getParent());
+        assertSame(root.getSaxonElementNode(), elementNode.getParent().getParent());
+        assertNull(b.getSaxonElementNode());
+        assertNull(d.getSaxonElementNode());
+
+        AxisIterator children = root.getSaxonElementNode().iterateAxis(Axis.CHILD);
+        assertSame(a.getSaxonElementNode(), children.next());
+        assertSame(d.getSaxonElementNode(), children.next());
+        assertNotNull(d.getSaxonElementNode());
+        assertNull(b.getSaxonElementNode());
+    }
+
+    @Test
+    public void testCompareOrder() {
+        DummyNode root = node(0);
+        DummyNode a = node(0);
+        DummyNode b = node(0);
+        DummyNode c = node(0);
+        DummyNode d = node(0);
+        addChildren(root, a, d);
+        addChildren(a, b, c);
+
+        DocumentNode document = DocumentNode.getDocumentNode(root);
+        NodeInfo[] inDocumentOrder = {document.getElementNode(root), document.getElementNode(a),
+            document.getElementNode(b), document.getElementNode(c), document.getElementNode(d), };
+        for (int i = 0; i < inDocumentOrder.length; i++) {
+            for (int j = 0; j < inDocumentOrder.length; j++) {
+                assertEquals(Integer.signum(i - j), inDocumentOrder[i].compareOrder(inDocumentOrder[j]));
+            }
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void testDeprecatedFieldsArePopulated() {
+        DummyNode root = node(0);
+        DummyNode a = node(0);
+        DummyNode b = node(0);
+        addChildren(root, a, b);
+
+        DocumentNode document = DocumentNode.getDocumentNode(root);
+        ElementNode rootNode = document.getElementNode(root);
+        assertNull(rootNode.children);
+        NodeInfo[] children = rootNode.getChildren();
+        assertSame(children, rootNode.children);
+        assertSame(a.getSaxonElementNode(), children[0]);
+        assertSame(b.getSaxonElementNode(), children[1]);
+        assertEquals(0, rootNode.id);
+        assertEquals(1, a.getSaxonElementNode().id);
+        assertEquals(2, b.getSaxonElementNode().id);
+    }
+
+    private static DummyNode node(int id) {
+        return new DummyNode(id);
+    }
+
+    private static void addChildren(DummyNode parent, DummyNode... children) {
+        for (int i = 0; i < children.length; i++) {
+            parent.jjtAddChild(children[i], i);
+            children[i].jjtSetParent(parent);
+        }
+    }
+}
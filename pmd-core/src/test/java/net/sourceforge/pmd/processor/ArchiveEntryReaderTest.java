@@ -0,0 +1,127 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.sourceforge.pmd.util.datasource.ZipDataSource;
+
+public class ArchiveEntryReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ZipFile zipFile;
+    private List<ZipDataSource> entries;
+
+    @Before
+    public void setUp() throws IOException {
+        File archive = folder.newFile("sources.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archive))) {
+            for (int i = 0; i < 10; i++) {
+                out.putNextEntry(new ZipEntry("Foo" + i + ".java"));
+                out.write(("class Foo" + i + " {}").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        zipFile = new ZipFile(archive);
+        entries = new ArrayList<>();
+        for (Enumeration<? extends ZipEntry> e = zipFile.entries(); e.hasMoreElements();) {
+            entries.add(new ZipDataSource(zipFile, e.nextElement()));
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        zipFile.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testEntriesAreTakenConcurrently() throws Exception {
+        final ArchiveEntryReader reader = new ArchiveEntryReader(entries, 2);
+        reader.start();
+        try {
+            final List<String> contents = Collections.synchronizedList(new ArrayList<String>());
+            List<Thread> workers = new ArrayList<>();
+            for (int w = 0; w < 2; w++) {
+                final int first = w;
+                Thread worker = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = first; i < entries.size(); i += 2) {
+                            try {
+                                ByteBuffer content = reader.take(entries.get(i));
+                                if (content == null) {
+                                    // the worker got ahead of the reader
+                                    contents.add(IOUtils.toString(entries.get(i).getInputStream(),
+                                            StandardCharsets.UTF_8));
+                                } else {
+                                    contents.add(decode(content));
+                                    reader.recycle(content);
+                                }
+                            } catch (IOException e) {
+                                contents.add(e.toString());
+                            }
+                        }
+                    }
+                });
+                worker.start();
+                workers.add(worker);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+
+            Collections.sort(contents);
+            assertEquals(10, contents.size());
+            for (int i = 0; i < 10; i++) {
+                assertEquals("class Foo" + i + " {}", contents.get(i));
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testEntriesTakenOutOfOrderAreReadByCaller() throws Exception {
+        ArchiveEntryReader reader = new ArchiveEntryReader(entries, 2);
+        reader.start();
+        try {
+            // the queue is filled with the first entries, which aren't taken
+            assertNull(reader.take(entries.get(9)));
+            reader.skip(entries.get(0));
+            assertEquals("class Foo1 {}", decode(reader.take(entries.get(1))));
+            assertEquals("class Foo2 {}", decode(reader.take(entries.get(2))));
+        } finally {
+            reader.close();
+        }
+        // after closing, the entries are read by the callers
+        assertNull(reader.take(entries.get(3)));
+    }
+
+    private static String decode(ByteBuffer content) {
+        return StandardCharsets.UTF_8.decode(content).toString();
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.processor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.cache.NoopAnalysisCache;
+import net.sourceforge.pmd.cache.TimedAnalysisCache;
+import net.sourceforge.pmd.util.datasource.DataSource;
+import net.sourceforge.pmd.util.datasource.FileDataSource;
+
+public class FileScheduleTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testOrderedBySize() throws IOException {
+        List<DataSource> files = createFiles(10, 300, 20, 300);
+        assertArrayEquals(new int[] {1, 3, 2, 0}, FileSchedule.largestFirst(files, names(files),
+                new NoopAnalysisCache()));
+    }
+
+    @Test
+    public void testOrderedByKnownDurations() throws IOException {
+        List<DataSource> files = createFiles(100, 100, 200, 400);
+        List<String> names = names(files);
+        DurationCache cache = new DurationCache();
+        cache.durations.put(names.get(0), 50L);
+        cache.durations.put(names.get(2), 20L);
+
+        // 50ms for file 0, 20ms for file 2, file 3 is estimated to 70/300 ms per byte,
+        // which is more than the 70/300*100 ms estimated for file 1
+        assertArrayEquals(new int[] {3, 0, 1, 2}, FileSchedule.largestFirst(files, names, cache));
+    }
+
+    @Test
+    public void testReorderBuffer() {
+        ReportReorderBuffer buffer = new ReportReorderBuffer();
+        Report[] reports = {new Report(), new Report(), new Report(), new Report()};
+
+        assertEquals(0, buffer.add(2, reports[2]).size());
+        assertEquals(0, buffer.add(1, reports[1]).size());
+        assertEquals(Arrays.asList(reports[0], reports[1], reports[2]), buffer.add(0, reports[0]));
+        assertEquals(Arrays.asList(reports[3]), buffer.add(3, reports[3]));
+        assertEquals(0, buffer.drain().size());
+    }
+
+    private List<DataSource> createFiles(int... sizes) throws IOException {
+        List<DataSource> files = new ArrayList<>();
+        for (int i = 0; i < sizes.length; i++) {
+            File file = folder.newFile("file" + i + ".dummy");
+            FileUtils.writeStringToFile(file, StringUtils.repeat('a', sizes[i]), StandardCharsets.UTF_8);
+            files.add(new FileDataSource(file));
+        }
+        return files;
+    }
+
+    private static List<String> names(List<DataSource> files) {
+        List<String> names = new ArrayList<>();
+        for (DataSource file : files) {
+            names.add(file.getNiceFileName(false, null));
+        }
+        return names;
+    }
+
+    private static class DurationCache extends NoopAnalysisCache implements TimedAnalysisCache {
+        private final Map<String, Long> durations = new HashMap<>();
+
+        @Override
+        public long getAnalysisDuration(File sourceFile) {
+            Long duration = durations.get(sourceFile.getPath());
+            return duration == null ? -1 : duration;
+        }
+
+        @Override
+        public void analysisFinished(File sourceFile, long duration) {
+            durations.put(sourceFile.getPath(), duration);
+        }
+    }
+}
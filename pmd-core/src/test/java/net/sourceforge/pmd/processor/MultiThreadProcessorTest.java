@@ -5,16 +5,25 @@
 package net.sourceforge.pmd.processor;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import net.sourceforge.pmd.PMDConfiguration;
 import net.sourceforge.pmd.Report;
@@ -29,9 +38,13 @@ import net.sourceforge.pmd.renderers.AbstractAccumulatingRenderer;
 import net.sourceforge.pmd.renderers.Renderer;
 import net.sourceforge.pmd.stat.Metric;
 import net.sourceforge.pmd.util.datasource.DataSource;
+import net.sourceforge.pmd.util.datasource.ZipDataSource;
 
 public class MultiThreadProcessorTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private RuleContext ctx;
     private MultiThreadProcessor processor;
     private RuleSetFactory ruleSetFactory;
@@ -42,6 +55,7 @@ public class MultiThreadProcessorTest {
         PMDConfiguration configuration = new PMDConfiguration();
         configuration.setRuleSets(ruleset);
         configuration.setThreads(2);
+        NotThreadSafeRule.count.set(0);
         files = new ArrayList<>();
         files.add(new StringDataSource("file1-violation.dummy", "ABC"));
         files.add(new StringDataSource("file2-foo.dummy", "DEF"));
@@ -85,6 +99,29 @@ public class MultiThreadProcessorTest {
         Assert.assertEquals("Missing violation", 1, reportListener.violations.get());
     }
 
+    @Test
+    public void testArchiveEntries() throws IOException {
+        setUpForTest("rulesets/MultiThreadProcessorTest/basic.xml");
+        File archive = folder.newFile("sources.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archive))) {
+            for (int i = 0; i < 6; i++) {
+                out.putNextEntry(new ZipEntry("file" + i + (i == 3 ? "-violation" : "") + ".dummy"));
+                out.write("ABC".getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        try (ZipFile zipFile = new ZipFile(archive)) {
+            files.clear();
+            for (Enumeration<? extends ZipEntry> e = zipFile.entries(); e.hasMoreElements();) {
+                files.add(new ZipDataSource(zipFile, e.nextElement()));
+            }
+            processor.processFiles(ruleSetFactory, files, ctx, Collections.<Renderer>emptyList());
+        }
+
+        Assert.assertEquals("Test rule has not been executed", 6, NotThreadSafeRule.count.get());
+        Assert.assertEquals("Missing violation", 1, reportListener.violations.get());
+    }
+
     private static class StringDataSource implements DataSource {
         private final String data;
         private final String name;
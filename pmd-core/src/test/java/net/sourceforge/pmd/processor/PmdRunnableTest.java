@@ -0,0 +1,68 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.processor;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import net.sourceforge.pmd.PMDException;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.SourceCodeProcessor;
+import net.sourceforge.pmd.renderers.Renderer;
+import net.sourceforge.pmd.util.datasource.DataSource;
+
+public class PmdRunnableTest {
+
+    @After
+    public void tearDown() {
+        PmdRunnable.reset();
+    }
+
+    @Test
+    public void testDeprecatedRunnablesShareTheCopyOfTheirThread() throws IOException, PMDException {
+        final RuleSets ruleSets = new RuleSets();
+        final RuleContext ruleContext = new RuleContext();
+        final SourceCodeProcessor processor = mock(SourceCodeProcessor.class);
+
+        newRunnable(ruleContext, ruleSets, processor).call();
+        newRunnable(ruleContext, ruleSets, processor).call();
+        newRunnable(new RuleContext(), ruleSets, processor).call();
+        PmdRunnable.reset();
+        newRunnable(ruleContext, ruleSets, processor).call();
+
+        final ArgumentCaptor<RuleSets> copies = ArgumentCaptor.forClass(RuleSets.class);
+        verify(processor, times(4)).processSourceCode(any(InputStream.class), copies.capture(),
+                any(RuleContext.class));
+        final List<RuleSets> values = copies.getAllValues();
+        Assert.assertNotSame(ruleSets, values.get(0));
+        Assert.assertSame(values.get(0), values.get(1));
+        Assert.assertNotSame(values.get(1), values.get(2));
+        Assert.assertNotSame(values.get(0), values.get(3));
+    }
+
+    @SuppressWarnings("deprecation")
+    private PmdRunnable newRunnable(RuleContext ruleContext, RuleSets ruleSets, SourceCodeProcessor processor)
+            throws IOException {
+        final DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[0]));
+        return new PmdRunnable(dataSource, "Foo.java", Collections.<Renderer>emptyList(), ruleContext, ruleSets,
+                processor);
+    }
+}
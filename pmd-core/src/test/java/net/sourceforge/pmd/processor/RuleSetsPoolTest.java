@@ -0,0 +1,59 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.processor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSets;
+
+public class RuleSetsPoolTest {
+
+    @Test
+    public void testCopiesAreReused() throws InterruptedException {
+        RuleSetsPool pool = new RuleSetsPool(new RuleSets(), new RuleContext(), 2);
+
+        RuleSetsPool.Copy first = pool.acquire();
+        pool.release(first);
+
+        Assert.assertSame(first, pool.acquire());
+    }
+
+    @Test
+    public void testCopiesAreNotShared() throws InterruptedException {
+        RuleSets ruleSets = new RuleSets();
+        RuleSetsPool pool = new RuleSetsPool(ruleSets, new RuleContext(), 2);
+
+        RuleSetsPool.Copy first = pool.acquire();
+        RuleSetsPool.Copy second = pool.acquire();
+
+        Assert.assertNotSame(first.ruleSets, second.ruleSets);
+        Assert.assertNotSame(ruleSets, first.ruleSets);
+        Assert.assertNotSame(first.ruleContext, second.ruleContext);
+    }
+
+    @Test(timeout = 5000)
+    public void testAcquireWaitsForRelease() throws InterruptedException {
+        final RuleSetsPool pool = new RuleSetsPool(new RuleSets(), new RuleContext(), 1);
+        final RuleSetsPool.Copy first = pool.acquire();
+
+        Thread releaser = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    // ignored
+                }
+                pool.release(first);
+            }
+        });
+        releaser.start();
+
+        Assert.assertSame(first, pool.acquire());
+        releaser.join();
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.processor;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SourceBufferTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReadSmallFiles() throws IOException {
+        SourceBuffer buffer = new SourceBuffer(StandardCharsets.UTF_8);
+        assertEquals("class Foo { String s = \"\u00e4\u20ac\"; }", read(buffer, "class Foo { String s = \"\u00e4\u20ac\"; }"));
+        assertEquals("", read(buffer, ""));
+        assertEquals("a\nb", read(buffer, "a\nb"));
+    }
+
+    @Test
+    public void testReadMappedFiles() throws IOException {
+        SourceBuffer buffer = new SourceBuffer(StandardCharsets.UTF_8);
+        String large = StringUtils.repeat("\u00e4bc\n", (int) SourceBuffer.MAPPING_THRESHOLD / 3);
+        assertEquals(large, read(buffer, large));
+        assertEquals("small", read(buffer, "small"));
+    }
+
+    @Test
+    public void testMalformedInputIsReplaced() throws IOException {
+        File file = folder.newFile();
+        FileUtils.writeByteArrayToFile(file, new byte[] {'a', (byte) 0xff, 'b'});
+        try (Reader reader = new SourceBuffer(StandardCharsets.UTF_8).read(file)) {
+            assertEquals("a\ufffdb", IOUtils.toString(reader));
+        }
+    }
+
+    @Test
+    public void testOtherEncoding() throws IOException {
+        File file = folder.newFile();
+        FileUtils.writeStringToFile(file, "\u00e4\u00f6\u00fc", StandardCharsets.ISO_8859_1);
+        try (Reader reader = new SourceBuffer(StandardCharsets.ISO_8859_1).read(file)) {
+            assertEquals("\u00e4\u00f6\u00fc", IOUtils.toString(reader));
+        }
+    }
+
+    @Test
+    public void testReadZipEntries() throws IOException {
+        File archive = folder.newFile("sources.zip");
+        String large = StringUtils.repeat("class Foo {}\n", 10000);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archive))) {
+            out.putNextEntry(new ZipEntry("Foo.java"));
+            out.write(large.getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new ZipEntry("Bar.java"));
+            out.write("class B\u00e4r {}".getBytes(StandardCharsets.UTF_8));
+        }
+
+        SourceBuffer buffer = new SourceBuffer(StandardCharsets.UTF_8);
+        try (ZipFile zipFile = new ZipFile(archive)) {
+            // the size of the entry isn't known
+            ZipEntry listedEntry = new ZipEntry("Foo.java");
+            assertEquals(-1, listedEntry.getSize());
+            assertEquals(large, IOUtils.toString(buffer.read(zipFile, listedEntry)));
+
+            assertEquals(large, IOUtils.toString(buffer.read(zipFile, zipFile.getEntry("Foo.java"))));
+            assertEquals("class B\u00e4r {}", IOUtils.toString(buffer.read(zipFile, zipFile.getEntry("Bar.java"))));
+        }
+    }
+
+    @Test
+    public void testReadContent() throws IOException {
+        SourceBuffer buffer = new SourceBuffer(StandardCharsets.UTF_8);
+        ByteBuffer content = ByteBuffer.wrap("class B\u00e4r {}".getBytes(StandardCharsets.UTF_8));
+        assertEquals("class B\u00e4r {}", IOUtils.toString(buffer.read(content)));
+        assertEquals(0, content.remaining());
+    }
+
+    private String read(SourceBuffer buffer, String content) throws IOException {
+        File file = folder.newFile();
+        FileUtils.writeStringToFile(file, content, StandardCharsets.UTF_8);
+        try (Reader reader = buffer.read(file)) {
+            return IOUtils.toString(reader);
+        }
+    }
+}
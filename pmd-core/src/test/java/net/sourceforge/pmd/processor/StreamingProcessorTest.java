@@ -0,0 +1,170 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.processor;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSetFactory;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.rule.AbstractRule;
+import net.sourceforge.pmd.renderers.AbstractAccumulatingRenderer;
+import net.sourceforge.pmd.renderers.Renderer;
+import net.sourceforge.pmd.util.datasource.DataSource;
+import net.sourceforge.pmd.util.datasource.FileDataSource;
+
+public class StreamingProcessorTest {
+
+    private static final int FILE_COUNT = 50;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testAllFilesRenderedWithSmallQueues() throws IOException {
+        testAllFilesRendered(StandardExecutorFactory.FIXED_THREAD_POOL);
+    }
+
+    @Test
+    public void testAllFilesRenderedWithWorkStealing() throws IOException {
+        testAllFilesRendered(StandardExecutorFactory.WORK_STEALING);
+    }
+
+    @Test
+    public void testAllFilesRenderedWithVirtualThreads() throws IOException {
+        testAllFilesRendered(StandardExecutorFactory.VIRTUAL_THREADS);
+    }
+
+    private void testAllFilesRendered(ExecutorFactory executorFactory) throws IOException {
+        PMDConfiguration configuration = new PMDConfiguration();
+        configuration.setExecutorFactory(executorFactory);
+        configuration.setRuleSets("rulesets/StreamingProcessorTest/basic.xml");
+        configuration.setThreads(2);
+        configuration.setAnalysisQueueSize(0);
+        configuration.setReportQueueSize(1);
+
+        List<DataSource> files = new ArrayList<>();
+        for (int i = 0; i < FILE_COUNT; i++) {
+            String name = i % 5 == 0 ? "file" + i + "-violation.dummy" : "file" + i + ".dummy";
+            files.add(new StringDataSource(name, "ABC"));
+        }
+
+        CountingRenderer renderer = new CountingRenderer();
+        renderer.start();
+        new StreamingProcessor(configuration).processFiles(new RuleSetFactory(), files, new RuleContext(),
+                Collections.<Renderer>singletonList(renderer));
+        renderer.end();
+
+        // one base report and one report per file
+        Assert.assertEquals("Not all reports have been rendered", FILE_COUNT + 1, renderer.renderedReports);
+        Assert.assertEquals("Missing violations", FILE_COUNT / 5, renderer.getReport().size());
+        Assert.assertTrue("Reports rendered from worker threads", renderer.renderedOnCallingThread);
+    }
+
+    @Test
+    public void testReportOrderWithLargestFilesFirst() throws IOException {
+        PMDConfiguration configuration = new PMDConfiguration();
+        configuration.setRuleSets("rulesets/StreamingProcessorTest/basic.xml");
+        configuration.setThreads(2);
+        configuration.setLargestFilesFirst(true);
+
+        List<DataSource> files = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            File file = folder.newFile("file" + i + "-violation.dummy");
+            FileUtils.writeStringToFile(file, StringUtils.repeat('a', 10 * (10 - i)), StandardCharsets.UTF_8);
+            files.add(new FileDataSource(file));
+        }
+
+        CountingRenderer renderer = new CountingRenderer();
+        renderer.start();
+        new StreamingProcessor(configuration).processFiles(new RuleSetFactory(), files, new RuleContext(),
+                Collections.<Renderer>singletonList(renderer));
+        renderer.end();
+
+        Assert.assertEquals(10, renderer.renderedFiles.size());
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(renderer.renderedFiles.get(i).endsWith("file" + i + "-violation.dummy"));
+        }
+    }
+
+    private static class StringDataSource implements DataSource {
+        private final String data;
+        private final String name;
+
+        StringDataSource(String name, String data) {
+            this.name = name;
+            this.data = data;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return new ByteArrayInputStream(data.getBytes("UTF-8"));
+        }
+
+        @Override
+        public String getNiceFileName(boolean shortNames, String inputFileName) {
+            return name;
+        }
+    }
+
+    public static class ViolationFileRule extends AbstractRule {
+        @Override
+        public void apply(List<? extends Node> nodes, RuleContext ctx) {
+            if (ctx.getSourceCodeFilename().contains("violation")) {
+                addViolation(ctx, nodes.get(0));
+            }
+        }
+    }
+
+    private static class CountingRenderer extends AbstractAccumulatingRenderer {
+        private final Thread callingThread = Thread.currentThread();
+        /* default */ int renderedReports;
+        /* default */ List<String> renderedFiles = new ArrayList<>();
+        /* default */ boolean renderedOnCallingThread = true;
+
+        /* default */ CountingRenderer() {
+            super(null, null);
+        }
+
+        @Override
+        public String defaultFileExtension() {
+            return null;
+        }
+
+        @Override
+        public void renderFileReport(Report report) throws IOException {
+            if (!report.isEmpty()) {
+                renderedFiles.add(report.iterator().next().getFilename());
+            }
+            renderedReports++;
+            renderedOnCallingThread &= Thread.currentThread() == callingThread;
+            super.renderFileReport(report);
+        }
+
+        @Override
+        public void end() throws IOException {
+        }
+
+        public Report getReport() {
+            return report;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileFinderTest {
+
+    private static final FilenameFilter JAVA_OR_DIRECTORY = new FilenameFilter() {
+        @Override
+        public boolean accept(File dir, String name) {
+            return name.endsWith(".java") || new File(dir, name).isDirectory();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFindFiles() throws IOException {
+        File root = createTree();
+        List<String> expected = Arrays.asList("Bar.java", "a/A.java", "a/b/B.java", "a/b/c/C.java", "d/D.java");
+
+        assertEquals(expected, relativePaths(root, new FileFinder(1).findFilesFrom(root, JAVA_OR_DIRECTORY, true)));
+        assertEquals(expected, relativePaths(root, new FileFinder(4).findFilesFrom(root, JAVA_OR_DIRECTORY, true)));
+    }
+
+    @Test
+    public void testSameOrderAsSequentialScan() throws IOException {
+        File root = createTree();
+        List<File> sequential = new FileFinder(1).findFilesFrom(root, JAVA_OR_DIRECTORY, true);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(sequential, new FileFinder(8).findFilesFrom(root, JAVA_OR_DIRECTORY, true));
+        }
+    }
+
+    @Test
+    public void testNoRecursion() throws IOException {
+        File root = createTree();
+        assertEquals(Collections.singletonList("Bar.java"),
+                relativePaths(root, new FileFinder(4).findFilesFrom(root, JAVA_OR_DIRECTORY, false)));
+    }
+
+    @Test
+    public void testExcludedDirectoriesAreNotScanned() throws IOException {
+        File root = createTree();
+        FilenameFilter filter = new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return !"b".equals(name) && JAVA_OR_DIRECTORY.accept(dir, name);
+            }
+        };
+        assertEquals(Arrays.asList("Bar.java", "a/A.java", "d/D.java"),
+                relativePaths(root, new FileFinder(4).findFilesFrom(root, filter, true)));
+    }
+
+    @Test
+    public void testMissingDirectory() {
+        assertTrue(new FileFinder(4).findFilesFrom(new File(folder.getRoot(), "missing"), JAVA_OR_DIRECTORY, true)
+                .isEmpty());
+    }
+
+    private File createTree() throws IOException {
+        File root = folder.newFolder("src");
+        for (String path : new String[] {"Bar.java", "bar.txt", "a/A.java", "a/b/B.java", "a/b/b.txt",
+            "a/b/c/C.java", "d/D.java", "e/e.txt", }) {
+            File file = new File(root, path);
+            file.getParentFile().mkdirs();
+            assertTrue(file.createNewFile());
+        }
+        return root;
+    }
+
+    private static List<String> relativePaths(File root, List<File> files) {
+        List<String> paths = new ArrayList<>();
+        for (File file : files) {
+            paths.add(file.getPath().substring(root.getPath().length() + 1).replace(File.separatorChar, '/'));
+        }
+        // the order of the entries of a directory depends on the file system
+        Collections.sort(paths);
+        return paths;
+    }
+}
@@ -287,6 +287,8 @@ public class JavaTokenizer implements Tokenizer {
                     int lastTokenIndex = tokenEntries.size() - 1;
                     TokenEntry lastToken = tokenEntries.getTokens().get(lastTokenIndex);
                     lastToken.setImage(prevIdentifier);
+                    // the tokens are stored by value
+                    tokenEntries.set(lastTokenIndex, lastToken);
                 }
             }
         }
@@ -8,6 +8,7 @@ package net.sourceforge.pmd.lang.java.ast;
 import java.util.List;
 
 import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.ast.NodeTypeIndex;
 import net.sourceforge.pmd.lang.ast.RootNode;
 import net.sourceforge.pmd.lang.java.typeresolution.ClassTypeResolver;
 
@@ -16,6 +17,7 @@ public class ASTCompilationUnit extends AbstractJavaTypeNode implements RootNode
 
     private ClassTypeResolver classTypeResolver;
     private List<Comment> comments;
+    private NodeTypeIndex nodeTypeIndex;
 
     public ASTCompilationUnit(int id) {
         super(id);
@@ -53,6 +55,19 @@ public class ASTCompilationUnit extends AbstractJavaTypeNode implements RootNode
         return null;
     }
 
+    /**
+     * Returns the nodes of this AST by node type, as indexed by the parser.
+     *
+     * @return The index, or null if this node has not been created by the parser
+     */
+    public NodeTypeIndex getNodeTypeIndex() {
+        return nodeTypeIndex;
+    }
+
+    void setNodeTypeIndex(NodeTypeIndex nodeTypeIndex) {
+        this.nodeTypeIndex = nodeTypeIndex;
+    }
+
     public ClassTypeResolver getClassTypeResolver() {
         return classTypeResolver;
     }
@@ -12,6 +12,7 @@ public abstract class AbstractJavaNode extends AbstractNode implements JavaNode
     protected JavaParser parser;
     private Scope scope;
     private Comment comment;
+    private int documentOrder = -1;
 
     public AbstractJavaNode(int id) {
         super(id);
@@ -23,6 +24,7 @@ public abstract class AbstractJavaNode extends AbstractNode implements JavaNode
     }
 
     public void jjtOpen() {
+        documentOrder = parser.getNodeTypeIndex().nodeOpened();
         if (beginLine == -1 && parser.token.next != null) {
             beginLine = parser.token.next.beginLine;
             beginColumn = parser.token.next.beginColumn;
@@ -38,6 +40,7 @@ public abstract class AbstractJavaNode extends AbstractNode implements JavaNode
         }
         endLine = parser.token.endLine;
         endColumn = parser.token.endColumn;
+        parser.getNodeTypeIndex().add(id, documentOrder, this);
     }
 
     /**
@@ -16,12 +16,49 @@ import net.sourceforge.pmd.lang.rule.ImmutableLanguage;
 
 public abstract class AbstractJavaRule extends AbstractRule implements JavaParserVisitor, ImmutableLanguage {
 
+    private boolean fusedTraversal;
+
     public AbstractJavaRule() {
         super.setLanguage(LanguageRegistry.getLanguage(JavaLanguageModule.NAME));
         // Enable Type Resolution on Java Rules by default
         super.setTypeResolution(true);
     }
 
+    /**
+     * Lets this rule share a single traversal of the AST with the other
+     * rules, which enable it, instead of performing its own traversal. The
+     * shared traversal calls the {@code visit} methods overridden by the rule
+     * for the nodes in document order, and {@code super.visit(node, data)}
+     * doesn't visit the children of the node anymore.
+     *
+     * <p>This is only correct, if the {@code visit} methods of the rule always
+     * continue with {@code super.visit(node, data)}, and don't depend on the
+     * children having been visited when it returns. Rules, which skip
+     * subtrees, visit nodes themselves or override {@link #apply(List, RuleContext)},
+     * must not enable it. Rules using the rule chain ignore it.</p>
+     *
+     * @param fusedTraversal Whether the rule shares the traversal
+     */
+    public void setFusedTraversal(boolean fusedTraversal) {
+        this.fusedTraversal = fusedTraversal;
+    }
+
+    /**
+     * @see #setFusedTraversal(boolean)
+     */
+    public boolean isFusedTraversal() {
+        return fusedTraversal;
+    }
+
+    /**
+     * Rules sharing a traversal are applied by the {@link JavaRuleChainVisitor},
+     * like the rule chain rules.
+     */
+    @Override
+    public boolean isRuleChain() {
+        return fusedTraversal || super.isRuleChain();
+    }
+
     @Override
     public void apply(List<? extends Node> nodes, RuleContext ctx) {
         visitAll(nodes, ctx);
@@ -80,7 +117,10 @@ public abstract class AbstractJavaRule extends AbstractRule implements JavaParse
     // complex Rule base class instead of from relatively simple Visitor.
     //
     public Object visit(JavaNode node, Object data) {
-        node.childrenAccept(this, data);
+        // the shared traversal visits the children itself
+        if (!(data instanceof FusedJavaRuleVisitor.TraversalContext)) {
+            node.childrenAccept(this, data);
+        }
         return null;
     }
 
@@ -0,0 +1,194 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.rule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.benchmark.TimeTracker;
+import net.sourceforge.pmd.benchmark.TimedOperation;
+import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
+import net.sourceforge.pmd.lang.java.ast.JavaNode;
+import net.sourceforge.pmd.lang.java.ast.JavaParserTreeConstants;
+import net.sourceforge.pmd.lang.rule.RuleReference;
+
+/**
+ * Applies the rules, which enabled {@link AbstractJavaRule#setFusedTraversal(boolean)},
+ * in a single traversal of the AST. Each node is dispatched to the rules,
+ * which override the {@code visit} method of its type.
+ */
+final class FusedJavaRuleVisitor {
+
+    private static final Logger LOG = Logger.getLogger(FusedJavaRuleVisitor.class.getName());
+
+    /** The AST classes by node id, null if there's no such class. */
+    private static final Class<?>[] NODE_CLASSES = new Class<?>[JavaParserTreeConstants.jjtNodeName.length];
+
+    static {
+        for (int i = 0; i < NODE_CLASSES.length; i++) {
+            try {
+                NODE_CLASSES[i] = Class.forName(ASTCompilationUnit.class.getPackage().getName() + ".AST"
+                        + JavaParserTreeConstants.jjtNodeName[i]);
+            } catch (ClassNotFoundException e) {
+                NODE_CLASSES[i] = null;
+            }
+        }
+    }
+
+    private final List<RuleSet> ruleSets = new ArrayList<>();
+    /** The rules as added, they may be rule references. */
+    private final List<Rule> rules = new ArrayList<>();
+    private final List<AbstractJavaRule> actualRules = new ArrayList<>();
+
+    /** The indexes of the rules to dispatch to, by node id. */
+    private int[][] rulesByNodeId;
+    /** The rules which apply to the current file. */
+    private boolean[] applying;
+
+    /**
+     * Returns whether the given rule is applied by this visitor.
+     */
+    static boolean isFused(Rule rule) {
+        final Rule actualRule = getActualRule(rule);
+        return actualRule instanceof AbstractJavaRule && ((AbstractJavaRule) actualRule).isFusedTraversal()
+                && actualRule.getRuleChainVisits().isEmpty();
+    }
+
+    private static Rule getActualRule(Rule rule) {
+        Rule actualRule = rule;
+        while (actualRule instanceof RuleReference) {
+            actualRule = ((RuleReference) actualRule).getRule();
+        }
+        return actualRule;
+    }
+
+    void add(RuleSet ruleSet, Rule rule) {
+        ruleSets.add(ruleSet);
+        rules.add(rule);
+        actualRules.add((AbstractJavaRule) getActualRule(rule));
+        rulesByNodeId = null;
+    }
+
+    private void initialize() {
+        rulesByNodeId = new int[NODE_CLASSES.length][];
+        final List<Integer> dispatched = new ArrayList<>();
+        for (int id = 0; id < NODE_CLASSES.length; id++) {
+            dispatched.clear();
+            for (int r = 0; r < actualRules.size(); r++) {
+                final Class<?> ruleClass = actualRules.get(r).getClass();
+                if (overridesVisit(ruleClass, JavaNode.class)
+                        || NODE_CLASSES[id] != null && overridesVisit(ruleClass, NODE_CLASSES[id])) {
+                    dispatched.add(r);
+                }
+            }
+            rulesByNodeId[id] = new int[dispatched.size()];
+            for (int i = 0; i < dispatched.size(); i++) {
+                rulesByNodeId[id][i] = dispatched.get(i);
+            }
+        }
+        applying = new boolean[actualRules.size()];
+    }
+
+    private static boolean overridesVisit(Class<?> ruleClass, Class<?> nodeClass) {
+        try {
+            return ruleClass.getMethod("visit", nodeClass, Object.class).getDeclaringClass() != AbstractJavaRule.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Applies the rules to the given ASTs.
+     *
+     * @param nodes The root nodes of the ASTs
+     * @param ctx   The rule context
+     */
+    void visitAll(List<Node> nodes, RuleContext ctx) {
+        if (rules.isEmpty()) {
+            return;
+        }
+        if (rulesByNodeId == null) {
+            initialize();
+        }
+
+        boolean anyApplying = false;
+        for (int r = 0; r < rules.size(); r++) {
+            final Rule rule = rules.get(r);
+            applying[r] = ruleSets.get(r).applies(ctx.getSourceCodeFile()) && ctx.shouldApply(rule)
+                    && RuleSet.applies(rule, ctx.getLanguageVersion());
+            anyApplying |= applying[r];
+        }
+        if (!anyApplying) {
+            return;
+        }
+
+        try (TimedOperation to = TimeTracker.startOperation(TimedOperationCategory.RULE)) {
+            final TraversalContext traversalCtx = new TraversalContext(ctx);
+            for (Node node : nodes) {
+                if (node instanceof ASTCompilationUnit) {
+                    visit((JavaNode) node, ctx, traversalCtx);
+                }
+            }
+        }
+    }
+
+    private void visit(JavaNode node, RuleContext ctx, TraversalContext traversalCtx) {
+        for (int r : rulesByNodeId[node.jjtGetId()]) {
+            if (applying[r]) {
+                dispatch(r, node, ctx, traversalCtx);
+            }
+        }
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            visit((JavaNode) node.jjtGetChild(i), ctx, traversalCtx);
+        }
+    }
+
+    private void dispatch(int r, JavaNode node, RuleContext ctx, TraversalContext traversalCtx) {
+        // timed by rule name, like the rules applied by RuleSet#apply()
+        try (TimedOperation to = TimeTracker.startOperation(TimedOperationCategory.RULE, rules.get(r).getName())) {
+            node.jjtAccept(actualRules.get(r), traversalCtx);
+        } catch (RuntimeException e) {
+            if (!ctx.isIgnoreExceptions()) {
+                throw e;
+            }
+            // skip the rule for the rest of the file, like the other rules
+            applying[r] = false;
+            ctx.getReport().addError(new Report.ProcessingError(e, ctx.getSourceCodeFilename()));
+            if (LOG.isLoggable(Level.WARNING)) {
+                LOG.log(Level.WARNING, "Exception applying rule " + rules.get(r).getName() + " on file "
+                        + ctx.getSourceCodeFilename() + ", continuing with next rule", e);
+            }
+        }
+    }
+
+    /**
+     * The rule context passed to the rules by the shared traversal. It tells
+     * {@link AbstractJavaRule#visit(JavaNode, Object)}, that the children are
+     * visited by the traversal. The state is kept here and not in the rules,
+     * as a rule instance may be shared by several threads.
+     *
+     * <p>The violations are added to the report of the file, and the
+     * attributes are shared with its rule context.</p>
+     */
+    static final class TraversalContext extends RuleContext {
+
+        TraversalContext(RuleContext ctx) {
+            super(ctx);
+            setReport(ctx.getReport());
+            setSourceCodeFile(ctx.getSourceCodeFile());
+            setSourceCodeFilename(ctx.getSourceCodeFilename());
+            setLanguageVersion(ctx.getLanguageVersion());
+            setIgnoreExceptions(ctx.isIgnoreExceptions());
+        }
+    }
+}
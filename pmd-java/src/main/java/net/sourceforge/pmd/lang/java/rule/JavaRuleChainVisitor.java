@@ -8,16 +8,37 @@ import java.util.List;
 
 import net.sourceforge.pmd.Rule;
 import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSet;
 import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.ast.NodeTypeIndex;
 import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
 import net.sourceforge.pmd.lang.java.ast.JavaNode;
 import net.sourceforge.pmd.lang.java.ast.JavaParserVisitor;
+import net.sourceforge.pmd.lang.java.ast.JavaParserTreeConstants;
 import net.sourceforge.pmd.lang.java.ast.JavaParserVisitorAdapter;
 import net.sourceforge.pmd.lang.rule.AbstractRuleChainVisitor;
 import net.sourceforge.pmd.lang.rule.XPathRule;
 
 public class JavaRuleChainVisitor extends AbstractRuleChainVisitor {
 
+    private final FusedJavaRuleVisitor fusedVisitor = new FusedJavaRuleVisitor();
+
+    @Override
+    public void add(RuleSet ruleSet, Rule rule) {
+        if (FusedJavaRuleVisitor.isFused(rule)) {
+            fusedVisitor.add(ruleSet, rule);
+        } else {
+            super.add(ruleSet, rule);
+        }
+    }
+
+    @Override
+    public void visitAll(List<Node> nodes, RuleContext ctx) {
+        super.visitAll(nodes, ctx);
+        // the rules without rule chain visits share a single traversal
+        fusedVisitor.visitAll(nodes, ctx);
+    }
+
     protected void indexNodes(List<Node> nodes, RuleContext ctx) {
         JavaParserVisitor javaParserVistor = new JavaParserVisitorAdapter() {
             // Perform a visitation of the AST to index nodes which need
@@ -33,6 +54,14 @@ public class JavaRuleChainVisitor extends AbstractRuleChainVisitor {
         }
     }
 
+    protected String[] getNodeTypeNames() {
+        return JavaParserTreeConstants.jjtNodeName;
+    }
+
+    protected NodeTypeIndex getNodeTypeIndex(Node rootNode) {
+        return ((ASTCompilationUnit) rootNode).getNodeTypeIndex();
+    }
+
     protected void visit(Rule rule, Node node, RuleContext ctx) {
         // Rule better either be a JavaParserVisitor, or a XPathRule
         if (rule instanceof XPathRule) {
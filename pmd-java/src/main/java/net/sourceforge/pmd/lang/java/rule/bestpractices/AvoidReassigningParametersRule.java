@@ -16,6 +16,10 @@ import net.sourceforge.pmd.lang.symboltable.NameOccurrence;
 
 public class AvoidReassigningParametersRule extends AbstractJavaRule {
 
+    public AvoidReassigningParametersRule() {
+        setFusedTraversal(true);
+    }
+
     @Override
     public Object visit(ASTMethodDeclarator node, Object data) {
         Map<VariableNameDeclaration, List<NameOccurrence>> params = node.getScope()
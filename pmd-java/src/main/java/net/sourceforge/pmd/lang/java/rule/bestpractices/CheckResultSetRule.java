@@ -40,6 +40,10 @@ public class CheckResultSetRule extends AbstractJavaRule {
         methods.add(".first");
     }
 
+    public CheckResultSetRule() {
+        setFusedTraversal(true);
+    }
+
     @Override
     public Object visit(ASTMethodDeclaration node, Object data) {
         resultSetVariables.clear();
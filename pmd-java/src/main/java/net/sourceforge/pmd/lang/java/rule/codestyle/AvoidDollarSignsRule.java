@@ -8,8 +8,9 @@ import net.sourceforge.pmd.lang.java.ast.ASTClassOrInterfaceDeclaration;
 import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclarator;
 import net.sourceforge.pmd.lang.java.ast.ASTVariableDeclaratorId;
 import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
+import net.sourceforge.pmd.lang.rule.ThreadSafeRule;
 
-public class AvoidDollarSignsRule extends AbstractJavaRule {
+public class AvoidDollarSignsRule extends AbstractJavaRule implements ThreadSafeRule {
 
     public Object visit(ASTClassOrInterfaceDeclaration node, Object data) {
         if (node.getImage().indexOf('$') != -1) {
@@ -57,6 +57,7 @@ public class ConfusingTernaryRule extends AbstractJavaRule {
     public ConfusingTernaryRule() {
         super();
         definePropertyDescriptor(ignoreElseIfProperty);
+        setFusedTraversal(true);
     }
 
     public Object visit(ASTIfStatement node, Object data) {
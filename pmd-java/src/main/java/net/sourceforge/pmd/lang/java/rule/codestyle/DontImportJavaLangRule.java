@@ -6,8 +6,9 @@ package net.sourceforge.pmd.lang.java.rule.codestyle;
 
 import net.sourceforge.pmd.lang.java.ast.ASTImportDeclaration;
 import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
+import net.sourceforge.pmd.lang.rule.ThreadSafeRule;
 
-public class DontImportJavaLangRule extends AbstractJavaRule {
+public class DontImportJavaLangRule extends AbstractJavaRule implements ThreadSafeRule {
     private static final String IMPORT_JAVA_LANG = "java.lang";
 
     @Override
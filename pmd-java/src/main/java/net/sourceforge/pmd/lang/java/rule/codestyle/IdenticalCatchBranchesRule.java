@@ -28,6 +28,9 @@ import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
  */
 public class IdenticalCatchBranchesRule extends AbstractJavaRule {
 
+    public IdenticalCatchBranchesRule() {
+        setFusedTraversal(true);
+    }
 
     private boolean areEquivalent(ASTCatchStatement st1, ASTCatchStatement st2) {
         return hasSameSubTree(st1.getBlock(), st2.getBlock(), st1.getExceptionName(), st2.getExceptionName());
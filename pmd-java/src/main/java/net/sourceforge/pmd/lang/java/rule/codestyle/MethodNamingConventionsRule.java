@@ -47,6 +47,7 @@ public class MethodNamingConventionsRule extends AbstractJavaRule {
         definePropertyDescriptor(NATIVE_REGEX);
         definePropertyDescriptor(JUNIT3_REGEX);
         definePropertyDescriptor(JUNIT4_REGEX);
+        setFusedTraversal(true);
     }
 
     private void checkMatches(ASTMethodDeclaration node, PropertyDescriptor<Pattern> regex, Object data) {
@@ -26,6 +26,9 @@ import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
  */
 public class PrematureDeclarationRule extends AbstractJavaRule {
 
+    public PrematureDeclarationRule() {
+        setFusedTraversal(true);
+    }
 
     @Override
     public Object visit(ASTLocalVariableDeclaration node, Object data) {
@@ -9,12 +9,13 @@ import java.util.List;
 import net.sourceforge.pmd.lang.java.ast.ASTAnnotation;
 import net.sourceforge.pmd.lang.java.ast.ASTMemberValuePair;
 import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
+import net.sourceforge.pmd.lang.rule.ThreadSafeRule;
 
 /**
  * @author Kirk Clemens
  * @since 6.2.0
  */
-public class UnnecessaryAnnotationValueElementRule extends AbstractJavaRule {
+public class UnnecessaryAnnotationValueElementRule extends AbstractJavaRule implements ThreadSafeRule {
 
     public UnnecessaryAnnotationValueElementRule() {
         addRuleChainVisit(ASTAnnotation.class);
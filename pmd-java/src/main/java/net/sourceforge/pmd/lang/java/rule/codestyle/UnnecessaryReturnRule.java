@@ -10,8 +10,9 @@ import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclaration;
 import net.sourceforge.pmd.lang.java.ast.ASTReturnStatement;
 import net.sourceforge.pmd.lang.java.ast.ASTStatement;
 import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
+import net.sourceforge.pmd.lang.rule.ThreadSafeRule;
 
-public class UnnecessaryReturnRule extends AbstractJavaRule {
+public class UnnecessaryReturnRule extends AbstractJavaRule implements ThreadSafeRule {
 
     public Object visit(ASTMethodDeclaration node, Object data) {
 
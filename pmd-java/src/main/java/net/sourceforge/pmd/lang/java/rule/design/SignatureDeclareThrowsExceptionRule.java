@@ -46,6 +46,7 @@ public class SignatureDeclareThrowsExceptionRule extends AbstractJavaRule {
 
     public SignatureDeclareThrowsExceptionRule() {
         definePropertyDescriptor(IGNORE_JUNIT_COMPLETELY_DESCRIPTOR);
+        setFusedTraversal(true);
     }
 
     @Override
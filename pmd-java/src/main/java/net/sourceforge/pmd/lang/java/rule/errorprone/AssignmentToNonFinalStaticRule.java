@@ -22,6 +22,10 @@ import net.sourceforge.pmd.lang.symboltable.NameOccurrence;
  */
 public class AssignmentToNonFinalStaticRule extends AbstractJavaRule {
 
+    public AssignmentToNonFinalStaticRule() {
+        setFusedTraversal(true);
+    }
+
     public Object visit(ASTClassOrInterfaceDeclaration node, Object data) {
         Map<VariableNameDeclaration, List<NameOccurrence>> vars = node.getScope()
                 .getDeclarations(VariableNameDeclaration.class);
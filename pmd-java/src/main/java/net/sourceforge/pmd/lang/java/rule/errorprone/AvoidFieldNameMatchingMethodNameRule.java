@@ -16,8 +16,9 @@ import net.sourceforge.pmd.lang.java.ast.ASTClassOrInterfaceDeclaration;
 import net.sourceforge.pmd.lang.java.ast.ASTFieldDeclaration;
 import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclaration;
 import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
+import net.sourceforge.pmd.lang.rule.ThreadSafeRule;
 
-public class AvoidFieldNameMatchingMethodNameRule extends AbstractJavaRule {
+public class AvoidFieldNameMatchingMethodNameRule extends AbstractJavaRule implements ThreadSafeRule {
 
     @Override
     public Object visit(ASTClassOrInterfaceDeclaration node, Object data) {
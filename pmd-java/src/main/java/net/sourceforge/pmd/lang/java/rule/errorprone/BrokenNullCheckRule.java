@@ -27,6 +27,10 @@ import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
 
 public class BrokenNullCheckRule extends AbstractJavaRule {
 
+    public BrokenNullCheckRule() {
+        setFusedTraversal(true);
+    }
+
     @Override
     public Object visit(ASTIfStatement node, Object data) {
         ASTExpression expression = (ASTExpression) node.jjtGetChild(0);
@@ -71,6 +71,7 @@ public class CloseResourceRule extends AbstractJavaRule {
         definePropertyDescriptor(CLOSE_TARGETS_DESCRIPTOR);
         definePropertyDescriptor(TYPES_DESCRIPTOR);
         definePropertyDescriptor(USE_CLOSE_AS_DEFAULT_TARGET);
+        setFusedTraversal(true);
     }
 
     @Override
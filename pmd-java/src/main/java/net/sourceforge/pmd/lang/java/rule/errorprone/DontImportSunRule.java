@@ -6,8 +6,9 @@ package net.sourceforge.pmd.lang.java.rule.errorprone;
 
 import net.sourceforge.pmd.lang.java.ast.ASTImportDeclaration;
 import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
+import net.sourceforge.pmd.lang.rule.ThreadSafeRule;
 
-public class DontImportSunRule extends AbstractJavaRule {
+public class DontImportSunRule extends AbstractJavaRule implements ThreadSafeRule {
 
     public Object visit(ASTImportDeclaration node, Object data) {
         String img = node.jjtGetChild(0).getImage();
@@ -9,8 +9,9 @@ import org.apache.commons.lang3.StringUtils;
 import net.sourceforge.pmd.lang.java.ast.ASTImportDeclaration;
 import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
 import net.sourceforge.pmd.lang.java.symboltable.SourceFileScope;
+import net.sourceforge.pmd.lang.rule.ThreadSafeRule;
 
-public class ImportFromSamePackageRule extends AbstractJavaRule {
+public class ImportFromSamePackageRule extends AbstractJavaRule implements ThreadSafeRule {
 
     public Object visit(ASTImportDeclaration importDecl, Object data) {
         String packageName = importDecl.getScope().getEnclosingScope(SourceFileScope.class).getPackageName();
@@ -42,6 +42,10 @@ public class InvalidSlf4jMessageFormatRule extends AbstractJavaRule {
                 .unmodifiableSet(new HashSet<String>(Arrays.asList("trace", "debug", "info", "warn", "error")));
     }
 
+    public InvalidSlf4jMessageFormatRule() {
+        setFusedTraversal(true);
+    }
+
     @Override
     public Object visit(final ASTName node, final Object data) {
         final NameDeclaration nameDeclaration = node.getNameDeclaration();
@@ -18,6 +18,10 @@ import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
  */
 public class SingleMethodSingletonRule extends AbstractJavaRule {
 
+    public SingleMethodSingletonRule() {
+        setFusedTraversal(true);
+    }
+
     /**
      * Checks for getInstance method usage in the same class.
      * @param node of ASTCLass
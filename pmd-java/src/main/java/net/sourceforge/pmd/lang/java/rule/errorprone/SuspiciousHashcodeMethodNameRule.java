@@ -10,8 +10,9 @@ import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclarator;
 import net.sourceforge.pmd.lang.java.ast.ASTPrimitiveType;
 import net.sourceforge.pmd.lang.java.ast.ASTResultType;
 import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
+import net.sourceforge.pmd.lang.rule.ThreadSafeRule;
 
-public class SuspiciousHashcodeMethodNameRule extends AbstractJavaRule {
+public class SuspiciousHashcodeMethodNameRule extends AbstractJavaRule implements ThreadSafeRule {
 
     public Object visit(ASTMethodDeclaration node, Object data) {
         /*
@@ -9,6 +9,10 @@ import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
 
 public class SuspiciousOctalEscapeRule extends AbstractJavaRule {
 
+    public SuspiciousOctalEscapeRule() {
+        setFusedTraversal(true);
+    }
+
     @Override
     public Object visit(ASTLiteral node, Object data) {
         if (node.isStringLiteral()) {
@@ -40,6 +40,7 @@ public class NonThreadSafeSingletonRule extends AbstractJavaRule {
     public NonThreadSafeSingletonRule() {
         definePropertyDescriptor(CHECK_NON_STATIC_METHODS_DESCRIPTOR);
         definePropertyDescriptor(CHECK_NON_STATIC_FIELDS_DESCRIPTOR);
+        setFusedTraversal(true);
     }
 
     @Override
@@ -7,6 +7,7 @@ package net.sourceforge.pmd.lang.java.rule.performance;
 import net.sourceforge.pmd.lang.java.ast.ASTBlockStatement;
 import net.sourceforge.pmd.lang.java.ast.ASTLiteral;
 import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
+import net.sourceforge.pmd.lang.rule.ThreadSafeRule;
 
 /**
  * This rule finds the following:
@@ -21,7 +22,7 @@ import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
  * 
  * @see <a href="https://sourceforge.net/p/pmd/feature-requests/381/">feature request #381 Single character StringBuffer.append </a>
  */
-public class AppendCharacterWithCharRule extends AbstractJavaRule {
+public class AppendCharacterWithCharRule extends AbstractJavaRule implements ThreadSafeRule {
 
     @Override
     public Object visit(ASTLiteral node, Object data) {
@@ -26,6 +26,10 @@ import net.sourceforge.pmd.lang.symboltable.NameOccurrence;
 
 public class ConsecutiveAppendsShouldReuseRule extends AbstractJavaRule {
 
+    public ConsecutiveAppendsShouldReuseRule() {
+        setFusedTraversal(true);
+    }
+
     @Override
     public Object visit(ASTBlockStatement node, Object data) {
         String variable = getVariableAppended(node);
@@ -14,6 +14,7 @@ import java.util.concurrent.ConcurrentMap;
 
 import org.objectweb.asm.ClassReader;
 
+import net.sourceforge.pmd.cache.TypeDependencyRecorder;
 import net.sourceforge.pmd.lang.java.typeresolution.visitors.PMDASMVisitor;
 
 /*
@@ -35,6 +36,32 @@ import net.sourceforge.pmd.lang.java.typeresolution.visitors.PMDASMVisitor;
  */
 public final class PMDASMClassLoader extends ClassLoader {
 
+    /**
+     * The names of the supertypes of the loaded classes. Members are resolved
+     * through the supertypes, so they are dependencies of the files looking
+     * up a class as well.
+     */
+    private static final ClassValue<List<String>> SUPERTYPES = new ClassValue<List<String>>() {
+        @Override
+        protected List<String> computeValue(Class<?> type) {
+            List<String> supertypes = new ArrayList<>();
+            collectSupertypes(type, supertypes);
+            return supertypes;
+        }
+
+        private void collectSupertypes(Class<?> type, List<String> supertypes) {
+            Class<?> superclass = type.getSuperclass();
+            if (superclass != null) {
+                supertypes.add(superclass.getName());
+                collectSupertypes(superclass, supertypes);
+            }
+            for (Class<?> iface : type.getInterfaces()) {
+                supertypes.add(iface.getName());
+                collectSupertypes(iface, supertypes);
+            }
+        }
+    };
+
     private static PMDASMClassLoader cachedPMDASMClassLoader;
     private static ClassLoader cachedClassLoader;
 
@@ -67,12 +94,18 @@ public final class PMDASMClassLoader extends ClassLoader {
 
     @Override
     public Class<?> loadClass(String name) throws ClassNotFoundException {
+        // the file being analyzed depends on the type, even if it doesn't exist
+        TypeDependencyRecorder.typeLookedUp(name);
         if (dontBother.containsKey(name)) {
             throw new ClassNotFoundException(name);
         }
 
         try {
-            return super.loadClass(name);
+            Class<?> type = super.loadClass(name);
+            for (String supertype : SUPERTYPES.get(type)) {
+                TypeDependencyRecorder.typeLookedUp(supertype);
+            }
+            return type;
         } catch (ClassNotFoundException e) {
             dontBother.put(name, Boolean.TRUE);
             throw e;
@@ -96,10 +129,13 @@ public final class PMDASMClassLoader extends ClassLoader {
      * @return whether the class can be resolved
      */
     public boolean couldResolve(String name) {
+        // the callers skip loading the class, if it's known to be missing
+        TypeDependencyRecorder.typeLookedUp(name);
         return !dontBother.containsKey(name);
     }
 
     public synchronized Map<String, String> getImportedClasses(String name) throws ClassNotFoundException {
+        TypeDependencyRecorder.typeLookedUp(name);
         if (dontBother.containsKey(name)) {
             throw new ClassNotFoundException(name);
         }
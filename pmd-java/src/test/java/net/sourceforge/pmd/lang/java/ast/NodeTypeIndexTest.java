@@ -0,0 +1,58 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.ast;
+
+import static net.sourceforge.pmd.lang.java.ParserTstUtil.parseJava18;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.sourceforge.pmd.PMD;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.ast.NodeTypeIndex;
+
+public class NodeTypeIndexTest {
+
+    private static final String NESTED_NODES = "public class Foo {" + PMD.EOL
+            + "  private int value = (1 + 2) * (3 + (4 - 5));" + PMD.EOL
+            + "  class Inner {" + PMD.EOL
+            + "    Runnable runnable = new Runnable() {" + PMD.EOL
+            + "      public void run() {" + PMD.EOL
+            + "        if (value > 0) {" + PMD.EOL
+            + "          if (value > 1) {" + PMD.EOL
+            + "            value = Math.max(value, Math.min(value, 3));" + PMD.EOL
+            + "          }" + PMD.EOL
+            + "        }" + PMD.EOL
+            + "      }" + PMD.EOL
+            + "    };" + PMD.EOL
+            + "  }" + PMD.EOL
+            + "}";
+
+    @Test
+    public void testIndexMatchesDepthFirstWalk() {
+        ASTCompilationUnit acu = parseJava18(NESTED_NODES);
+        NodeTypeIndex index = acu.getNodeTypeIndex();
+
+        List<List<Node>> expected = new ArrayList<>();
+        for (int i = 0; i < JavaParserTreeConstants.jjtNodeName.length; i++) {
+            expected.add(new ArrayList<Node>());
+        }
+        collect(acu, expected);
+
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(JavaParserTreeConstants.jjtNodeName[i], expected.get(i), index.getNodes(i));
+        }
+    }
+
+    private void collect(Node node, List<List<Node>> nodesById) {
+        nodesById.get(node.jjtGetId()).add(node);
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            collect(node.jjtGetChild(i), nodesById);
+        }
+    }
+}
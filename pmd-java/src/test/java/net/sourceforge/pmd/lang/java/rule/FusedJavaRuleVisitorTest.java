@@ -0,0 +1,163 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.rule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.sourceforge.pmd.PMD;
+import net.sourceforge.pmd.PMDException;
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.RuleSetFactory;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.benchmark.TimeTracker;
+import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.benchmark.TimingReport;
+import net.sourceforge.pmd.lang.LanguageRegistry;
+import net.sourceforge.pmd.lang.java.JavaLanguageModule;
+import net.sourceforge.pmd.lang.java.ast.ASTClassOrInterfaceDeclaration;
+import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
+import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclaration;
+
+public class FusedJavaRuleVisitorTest {
+
+    private static final String TEST_CODE = "public class Foo {" + PMD.EOL
+            + "  void a() {}" + PMD.EOL
+            + "  class Bar {" + PMD.EOL
+            + "    void b() {}" + PMD.EOL
+            + "  }" + PMD.EOL
+            + "  void c() {}" + PMD.EOL
+            + "}";
+
+    @Test
+    public void testSameVisitsAsOwnTraversal() throws PMDException {
+        RecordingRule ownTraversal = new RecordingRule();
+        Report ownReport = process(ownTraversal);
+
+        RecordingRule fused = new RecordingRule();
+        fused.setFusedTraversal(true);
+        assertTrue(fused.isRuleChain());
+        Report fusedReport = process(fused);
+
+        assertEquals("[class Foo, method a, class Bar, method b, method c]", ownTraversal.visits.toString());
+        assertEquals(ownTraversal.visits, fused.visits);
+        assertEquals(3, ownReport.size());
+        assertEquals(3, fusedReport.size());
+    }
+
+    @Test
+    public void testExceptionOnlySkipsFailingRule() throws PMDException {
+        RecordingRule fused = new RecordingRule();
+        fused.setFusedTraversal(true);
+        RecordingRule failing = new RecordingRule() {
+            @Override
+            public Object visit(ASTMethodDeclaration node, Object data) {
+                throw new IllegalStateException("failing rule");
+            }
+        };
+        failing.setFusedTraversal(true);
+        failing.setName("FailingRule");
+
+        RuleSetFactory factory = new RuleSetFactory();
+        Report report = process(factory.createSingleRuleRuleSet(failing), factory.createSingleRuleRuleSet(fused));
+
+        assertEquals(3, report.size());
+        assertTrue(report.errors().hasNext());
+        assertEquals("[class Foo]", failing.visits.toString());
+    }
+
+    @Test
+    public void testRulesAreTimedByName() throws PMDException {
+        RecordingRule fused = new RecordingRule();
+        fused.setFusedTraversal(true);
+
+        TimeTracker.startGlobalTracking();
+        TimingReport timingReport;
+        try {
+            process(fused);
+        } finally {
+            timingReport = TimeTracker.stopGlobalTracking();
+        }
+
+        assertTrue(timingReport.getLabeledMeasurements(TimedOperationCategory.RULE).containsKey("RecordingRule"));
+    }
+
+    @Test
+    public void testOwnTraversalDuringSharedTraversal() throws PMDException {
+        RecordingRule fused = new RecordingRule() {
+            private boolean applied;
+
+            @Override
+            public Object visit(ASTCompilationUnit node, Object data) {
+                if (!applied) {
+                    // meanwhile, the rule is applied by its own traversal, like by another thread sharing it
+                    applied = true;
+                    RuleContext ctx = new RuleContext();
+                    ctx.setReport(new Report());
+                    ctx.setSourceCodeFilename("n/a");
+                    ctx.setLanguageVersion(((RuleContext) data).getLanguageVersion());
+                    apply(Collections.singletonList(node), ctx);
+                }
+                return super.visit(node, data);
+            }
+        };
+        fused.setFusedTraversal(true);
+        process(fused);
+
+        assertEquals("[class Foo, method a, class Bar, method b, method c,"
+                + " class Foo, method a, class Bar, method b, method c]", fused.visits.toString());
+    }
+
+    private Report process(AbstractJavaRule rule) throws PMDException {
+        return process(new RuleSetFactory().createSingleRuleRuleSet(rule));
+    }
+
+    private Report process(RuleSet... ruleSets) throws PMDException {
+        PMD p = new PMD();
+        RuleContext ctx = new RuleContext();
+        Report report = new Report();
+        ctx.setReport(report);
+        ctx.setSourceCodeFilename("n/a");
+        ctx.setIgnoreExceptions(true);
+        ctx.setLanguageVersion(LanguageRegistry.getLanguage(JavaLanguageModule.NAME).getDefaultVersion());
+        RuleSets rs = new RuleSets();
+        for (RuleSet ruleSet : ruleSets) {
+            rs.addRuleSet(ruleSet);
+        }
+        p.getSourceCodeProcessor().processSourceCode(new StringReader(TEST_CODE), rs, ctx);
+        return report;
+    }
+
+    private static class RecordingRule extends AbstractJavaRule {
+        private final List<String> visits = new ArrayList<>();
+
+        RecordingRule() {
+            setName("RecordingRule");
+            setMessage("method");
+        }
+
+        @Override
+        public Object visit(ASTClassOrInterfaceDeclaration node, Object data) {
+            visits.add("class " + node.getImage());
+            return super.visit(node, data);
+        }
+
+        @Override
+        public Object visit(ASTMethodDeclaration node, Object data) {
+            visits.add("method " + node.getName());
+            addViolation(data, node);
+            return super.visit(node, data);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.rule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.RuleSetFactory;
+import net.sourceforge.pmd.RuleSetNotFoundException;
+import net.sourceforge.pmd.RuleSets;
+
+public class ThreadSafeRulesTest {
+
+    @Test
+    public void testThreadSafeRulesAreShared() throws RuleSetNotFoundException {
+        RuleSets ruleSets = new RuleSetFactory().createRuleSets("category/java/errorprone.xml/DontImportSun,"
+                + "category/java/codestyle.xml/UnnecessaryReturn,category/java/bestpractices.xml/UnusedLocalVariable");
+        List<Rule> rules = getRules(ruleSets);
+        List<Rule> copies = getRules(new RuleSets(ruleSets, true));
+
+        assertEquals(3, rules.size());
+        assertSame(rules.get(0), copies.get(0));
+        assertSame(rules.get(1), copies.get(1));
+        // not tagged, so it is copied
+        assertNotSame(rules.get(2), copies.get(2));
+    }
+
+    private static List<Rule> getRules(RuleSets ruleSets) {
+        List<Rule> rules = new ArrayList<>();
+        for (RuleSet ruleSet : ruleSets.getAllRuleSets()) {
+            rules.addAll(ruleSet.getRules());
+        }
+        return rules;
+    }
+}
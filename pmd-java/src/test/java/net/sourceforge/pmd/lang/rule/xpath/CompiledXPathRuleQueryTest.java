@@ -0,0 +1,156 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.xpath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import net.sourceforge.pmd.PMD;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.lang.LanguageRegistry;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.LanguageVersionHandler;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.java.JavaLanguageModule;
+import net.sourceforge.pmd.lang.rule.XPathRule;
+import net.sourceforge.pmd.properties.PropertyDescriptor;
+import net.sourceforge.pmd.properties.StringProperty;
+
+public class CompiledXPathRuleQueryTest {
+
+    private static final String TEST_CODE = "public class Foo {" + PMD.EOL
+            + "  private static final int MAX = 10;" + PMD.EOL
+            + "  int a, bb;" + PMD.EOL
+            + "  public void bar(int x) {" + PMD.EOL
+            + "    if (x > MAX) { return; }" + PMD.EOL
+            + "    for (int i = 0; i < x; i++) { bb += i; }" + PMD.EOL
+            + "    String s = \"fiddle\";" + PMD.EOL
+            + "  }" + PMD.EOL
+            + "  public abstract class Bar {" + PMD.EOL
+            + "    abstract void baz();" + PMD.EOL
+            + "    protected void bazz() { bar(1); }" + PMD.EOL
+            + "  }" + PMD.EOL
+            + "}";
+
+    private static final String[] COMPILED_QUERIES = {
+        "//VariableDeclaratorId",
+        "//VariableDeclaratorId[string-length(@Image) < 3]",
+        "//MethodDeclaration[@Public='true']",
+        "//MethodDeclaration[@Abstract='true' or ./Block//IfStatement]",
+        "//MethodDeclaration[not(./Block)] | //FieldDeclaration[@Static='true' and @Final='true']",
+        "//ClassOrInterfaceDeclaration[count(.//MethodDeclaration) > 1]",
+        "//ClassOrInterfaceDeclaration[count(./ClassOrInterfaceBody/ClassOrInterfaceBodyDeclaration) = 3]",
+        "//FieldDeclaration/VariableDeclarator/VariableDeclaratorId",
+        "//PrimaryPrefix/Name[starts-with(@Image, 'b') or contains(@Image, 'A') or ends-with(@Image, 'X')]",
+        "//Literal[@Image = '0' or @Image = 10 or @IntLiteral = true()]",
+        "//Literal[@StringLiteral != 'false']",
+        "//Name[ancestor::ForStatement][parent::PrimaryPrefix]",
+        "//Name[ancestor-or-self::*/@Image='bb']",
+        "//FormalParameter/following-sibling::*",
+        "//BlockStatement[preceding-sibling::BlockStatement]",
+        "//VariableDeclaratorId[@Image = $var]",
+        "//LocalVariableDeclaration[.//Literal[@Image = concat('\"', $var, '\"')]]",
+        "//ClassOrInterfaceBodyDeclaration/*[@Image]",
+        "//ClassOrInterfaceDeclaration/descendant::VariableDeclaratorId[@Image != 'i']",
+        "//ClassOrInterfaceDeclaration[string(@Image) = 'Bar']//Block/../..",
+    };
+
+    private static final String[] FALLBACK_QUERIES = {
+        "//ClassOrInterfaceBodyDeclaration[1]",
+        "//MethodDeclaration[position() = last()]",
+        "/CompilationUnit//Name",
+        "//Name[matches(@Image, 'b.*')]",
+        "//Name[@Image = //MethodDeclarator/@Image]",
+    };
+
+    @Test
+    public void testSameResultsAsJaxen() throws Exception {
+        for (String query : COMPILED_QUERIES) {
+            boolean compiled = !query.contains("concat");
+            assertSameResults(query, compiled);
+        }
+        for (String query : FALLBACK_QUERIES) {
+            assertSameResults(query, false);
+        }
+    }
+
+    @Test
+    public void testCompilationDisabled() {
+        System.setProperty(CompiledXPathRuleQuery.COMPILE_PROPERTY, "false");
+        try {
+            assertFalse(CompiledXPathRuleQuery.isEnabled());
+        } finally {
+            System.clearProperty(CompiledXPathRuleQuery.COMPILE_PROPERTY);
+        }
+        assertTrue(CompiledXPathRuleQuery.isEnabled());
+    }
+
+    private void assertSameResults(String query, boolean compiled) throws Exception {
+        LanguageVersion version = LanguageRegistry.getLanguage(JavaLanguageModule.NAME).getDefaultVersion();
+        LanguageVersionHandler handler = version.getLanguageVersionHandler();
+        Node root = handler.getParser(handler.getDefaultParserOptions()).parse("n/a", new StringReader(TEST_CODE));
+        RuleContext ctx = new RuleContext();
+        ctx.setLanguageVersion(version);
+
+        CompiledXPathRuleQuery compiledQuery = new CompiledXPathRuleQuery(new JaxenXPathRuleQuery());
+        JaxenXPathRuleQuery jaxenQuery = new JaxenXPathRuleQuery();
+        for (XPathRuleQuery xpathRuleQuery : new XPathRuleQuery[] {compiledQuery, jaxenQuery}) {
+            xpathRuleQuery.setXPath(query);
+            xpathRuleQuery.setVersion(XPathRuleQuery.XPATH_1_0);
+            xpathRuleQuery.setProperties(getProperties());
+        }
+
+        assertEquals(query, compiled, compiledQuery.isCompiled());
+        assertEquals(query, getRuleChainVisits(jaxenQuery), getRuleChainVisits(compiledQuery));
+        List<Node> expected = evaluate(jaxenQuery, root, ctx);
+        List<Node> actual = evaluate(compiledQuery, root, ctx);
+        assertEquals(query, expected.size(), actual.size());
+        assertEquals(query, new HashSet<>(expected), new HashSet<>(actual));
+    }
+
+    private static Set<String> getRuleChainVisits(XPathRuleQuery query) {
+        Set<String> visits = new HashSet<>(query.getRuleChainVisits());
+        // the name, under which Jaxen registers the original query
+        visits.remove("_AST_ROOT_");
+        return visits;
+    }
+
+    private static Map<PropertyDescriptor<?>, Object> getProperties() {
+        Map<PropertyDescriptor<?>, Object> properties = new LinkedHashMap<>();
+        properties.put(XPathRule.XPATH_DESCRIPTOR, "");
+        properties.put(new StringProperty("var", "Test var", null, 1.0f), "fiddle");
+        return properties;
+    }
+
+    private static List<Node> evaluate(XPathRuleQuery query, Node root, RuleContext ctx) {
+        List<Node> results = new ArrayList<>();
+        if (query.getRuleChainVisits().isEmpty()) {
+            results.addAll(query.evaluate(root, ctx));
+        } else {
+            collect(query, root, ctx, results);
+        }
+        return results;
+    }
+
+    private static void collect(XPathRuleQuery query, Node node, RuleContext ctx, List<Node> results) {
+        if (query.getRuleChainVisits().contains(node.getXPathNodeName())) {
+            results.addAll(query.evaluate(node, ctx));
+        }
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            collect(query, node.jjtGetChild(i), ctx, results);
+        }
+    }
+}
@@ -5,19 +5,36 @@
 package net.sourceforge.pmd.typeresolution;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import net.sourceforge.pmd.RuleSetFactory;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.cache.FileAnalysisCache;
+import net.sourceforge.pmd.cache.TypeDependencyRecorder;
+import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
 import net.sourceforge.pmd.lang.java.typeresolution.PMDASMClassLoader;
 
 public class PMDASMClassLoaderTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private PMDASMClassLoader cl;
 
     @Before
@@ -85,6 +102,55 @@ public class PMDASMClassLoaderTest {
         assertEquals(1, mockedClassloader.findClassCalls);
     }
 
+    @Test
+    public void testMissingTypesAreRecordedForEachFile() throws Exception {
+        File classpathDir = folder.newFolder();
+        writeClassFile(classpathDir, "foo/Present");
+        File firstFile = folder.newFile("First.java");
+        File secondFile = folder.newFile("Second.java");
+        File cacheFile = new File(folder.getRoot(), "pmd.cache");
+        AbstractJavaRule rule = new AbstractJavaRule() { };
+        rule.setTypeResolution(true);
+        RuleSets ruleSets = new RuleSets(new RuleSetFactory().createSingleRuleRuleSet(rule));
+
+        FileAnalysisCache cache = new FileAnalysisCache(cacheFile);
+        try (URLClassLoader auxclasspath = new URLClassLoader(new URL[] { classpathDir.toURI().toURL() }, null)) {
+            PMDASMClassLoader cl = PMDASMClassLoader.getInstance(auxclasspath);
+            cache.checkValidity(ruleSets, auxclasspath);
+            for (File file : new File[] { firstFile, secondFile }) {
+                cache.isUpToDate(file);
+                // a dependency which doesn't change
+                TypeDependencyRecorder.typeLookedUp("foo.Present");
+                // type resolution checks, whether the type is known to be missing, before loading it
+                if (cl.couldResolve("foo.Missing")) {
+                    try {
+                        cl.loadClass("foo.Missing");
+                        fail();
+                    } catch (ClassNotFoundException e) {
+                        // expected
+                    }
+                }
+                cache.analysisFinished(file, 1);
+            }
+            cache.persist();
+        }
+
+        // the missing type is added to the auxclasspath
+        File otherClasspathDir = folder.newFolder();
+        writeClassFile(otherClasspathDir, "foo/Missing");
+        FileAnalysisCache reloadedCache = new FileAnalysisCache(cacheFile);
+        try (URLClassLoader auxclasspath = new URLClassLoader(new URL[] { classpathDir.toURI().toURL(),
+            otherClasspathDir.toURI().toURL(), }, null)) {
+            reloadedCache.checkValidity(ruleSets, auxclasspath);
+        }
+        assertFalse(reloadedCache.isUpToDate(firstFile));
+        assertFalse(reloadedCache.isUpToDate(secondFile));
+    }
+
+    private static void writeClassFile(File classpathDir, String name) throws IOException {
+        FileUtils.writeStringToFile(new File(classpathDir, name + ".class"), name, StandardCharsets.UTF_8);
+    }
+
     private static class MockedClassLoader extends ClassLoader {
         int findClassCalls = 0;
 
@@ -6,9 +6,12 @@
 
 package net.sourceforge.pmd.lang.plsql.ast;
 
+import net.sourceforge.pmd.lang.ast.NodeTypeIndex;
 import net.sourceforge.pmd.lang.ast.RootNode;
 
 public class ASTInput extends net.sourceforge.pmd.lang.plsql.ast.AbstractPLSQLNode implements RootNode {
+    private NodeTypeIndex nodeTypeIndex;
+
     public ASTInput(int id) {
         super(id);
     }
@@ -17,6 +20,19 @@ public class ASTInput extends net.sourceforge.pmd.lang.plsql.ast.AbstractPLSQLNo
         super(p, id);
     }
 
+    /**
+     * Returns the nodes of this AST by node type, as indexed by the parser.
+     *
+     * @return The index, or null if this node has not been created by the parser
+     */
+    public NodeTypeIndex getNodeTypeIndex() {
+        return nodeTypeIndex;
+    }
+
+    void setNodeTypeIndex(NodeTypeIndex nodeTypeIndex) {
+        this.nodeTypeIndex = nodeTypeIndex;
+    }
+
     /** Accept the visitor. **/
     public Object jjtAccept(PLSQLParserVisitor visitor, Object data) {
         return visitor.visit(this, data);
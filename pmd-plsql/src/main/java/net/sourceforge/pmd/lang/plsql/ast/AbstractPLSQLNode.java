@@ -13,6 +13,7 @@ public abstract class AbstractPLSQLNode extends net.sourceforge.pmd.lang.ast.Abs
     protected Object value;
     protected PLSQLParser parser;
     protected Scope scope;
+    private int documentOrder = -1;
 
     public AbstractPLSQLNode(int i) {
         super(i);
@@ -24,6 +25,7 @@ public abstract class AbstractPLSQLNode extends net.sourceforge.pmd.lang.ast.Abs
     }
 
     public void jjtOpen() {
+        documentOrder = parser.getNodeTypeIndex().nodeOpened();
         if (beginLine == -1 && parser.token.next != null) {
             beginLine = parser.token.next.beginLine;
             beginColumn = parser.token.next.beginColumn;
@@ -39,6 +41,7 @@ public abstract class AbstractPLSQLNode extends net.sourceforge.pmd.lang.ast.Abs
         }
         endLine = parser.token.endLine;
         endColumn = parser.token.endColumn;
+        parser.getNodeTypeIndex().add(id, documentOrder, this);
     }
 
     public void jjtSetValue(Object value) {
@@ -11,8 +11,10 @@ import java.util.logging.Logger;
 import net.sourceforge.pmd.Rule;
 import net.sourceforge.pmd.RuleContext;
 import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.ast.NodeTypeIndex;
 import net.sourceforge.pmd.lang.plsql.ast.ASTInput;
 import net.sourceforge.pmd.lang.plsql.ast.PLSQLNode;
+import net.sourceforge.pmd.lang.plsql.ast.PLSQLParserTreeConstants;
 import net.sourceforge.pmd.lang.plsql.ast.PLSQLParserVisitor;
 import net.sourceforge.pmd.lang.plsql.ast.PLSQLParserVisitorAdapter;
 import net.sourceforge.pmd.lang.rule.AbstractRuleChainVisitor;
@@ -41,6 +43,16 @@ public class PLSQLRuleChainVisitor extends AbstractRuleChainVisitor {
         LOGGER.exiting(CLASS_NAME, "indexNodes");
     }
 
+    @Override
+    protected String[] getNodeTypeNames() {
+        return PLSQLParserTreeConstants.jjtNodeName;
+    }
+
+    @Override
+    protected NodeTypeIndex getNodeTypeIndex(Node rootNode) {
+        return ((ASTInput) rootNode).getNodeTypeIndex();
+    }
+
     @Override
     protected void visit(Rule rule, Node node, RuleContext ctx) {
         LOGGER.entering(CLASS_NAME, "visit");
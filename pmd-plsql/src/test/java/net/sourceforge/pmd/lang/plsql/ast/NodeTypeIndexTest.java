@@ -0,0 +1,56 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.plsql.ast;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.sourceforge.pmd.PMD;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.ast.NodeTypeIndex;
+import net.sourceforge.pmd.lang.plsql.AbstractPLSQLParserTst;
+
+public class NodeTypeIndexTest extends AbstractPLSQLParserTst {
+
+    private static final String NESTED_NODES = "CREATE OR REPLACE PROCEDURE bar (p IN NUMBER) IS" + PMD.EOL
+            + "  v NUMBER := (1 + 2) * (3 + (4 - 5));" + PMD.EOL
+            + "BEGIN" + PMD.EOL
+            + "  IF p > 0 THEN" + PMD.EOL
+            + "    IF p > 1 THEN" + PMD.EOL
+            + "      v := GREATEST(v, LEAST(v, 3));" + PMD.EOL
+            + "    END IF;" + PMD.EOL
+            + "  END IF;" + PMD.EOL
+            + "EXCEPTION" + PMD.EOL
+            + "  WHEN OTHERS THEN" + PMD.EOL
+            + "    doSomethingElse;" + PMD.EOL
+            + "END;";
+
+    @Test
+    public void testIndexMatchesDepthFirstWalk() {
+        ASTInput input = parsePLSQL(NESTED_NODES);
+        NodeTypeIndex index = input.getNodeTypeIndex();
+
+        List<List<Node>> expected = new ArrayList<>();
+        for (int i = 0; i < PLSQLParserTreeConstants.jjtNodeName.length; i++) {
+            expected.add(new ArrayList<Node>());
+        }
+        collect(input, expected);
+
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(PLSQLParserTreeConstants.jjtNodeName[i], expected.get(i), index.getNodes(i));
+        }
+    }
+
+    private void collect(Node node, List<List<Node>> nodesById) {
+        nodesById.get(node.jjtGetId()).add(node);
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            collect(node.jjtGetChild(i), nodesById);
+        }
+    }
+}